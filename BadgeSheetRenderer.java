@@ -0,0 +1,331 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Renders printable badge sheets: pages tiled with many students' QR codes, each with
+ * the student's name, ID and section printed underneath.
+ *
+ * <p>Students are grouped by section or grade level, and every group starts on a new
+ * page. A page is a single 1-bit raster. Its tiles are rendered in parallel, with each
+ * tile writing to its own region of the page. Tiles are a whole number of bytes wide
+ * and start on byte boundaries, so no two tiles ever share a byte of the packed raster.
+ * QR codes are rasterized straight into the page rows, and labels are drawn into a small
+ * per-thread scratch image and copied in. No image is kept per student, so memory stays
+ * at one page however many students are printed. Pages are streamed to disk as 1-bit PNGs
+ * and the page buffer is reused for the next one.</p>
+ */
+public class BadgeSheetRenderer {
+    /** How students are split into groups, each starting on a fresh page. */
+    public enum Grouping {
+        /** One group per section. */
+        SECTION(Student::getSection),
+        /** One group per grade level. */
+        GRADE(student -> student.getGrade().name());
+
+        /** Maps a student to its group key. */
+        private final Function<Student, String> key;
+
+        /**
+         * Constructs a grouping.
+         *
+         * @param key Maps a student to its group key.
+         */
+        Grouping(Function<Student, String> key) {
+            this.key = key;
+        }
+
+        /**
+         * Gets the group key of a student.
+         *
+         * @param student The student.
+         * @return The key; "Unassigned" if the student has none.
+         */
+        public String keyOf(Student student) {
+            String value = key.apply(student);
+            return value == null || value.isBlank() ? "Unassigned" : value;
+        }
+    }
+
+    /** Default number of tile columns per page. */
+    public static final int DEFAULT_COLUMNS = 4;
+
+    /** Default number of tile rows per page. */
+    public static final int DEFAULT_ROWS = 5;
+
+    /** Light padding around the QR code inside a tile, in pixels; a multiple of 8. */
+    private static final int TILE_PADDING = 8;
+
+    /** Height of the label band below each code, in pixels. */
+    private static final int LABEL_HEIGHT = 40;
+
+    /** Page margin on every side, in pixels; a multiple of 8. */
+    private static final int PAGE_MARGIN = 32;
+
+    /** Font used for badge labels. */
+    private static final Font LABEL_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 13);
+
+    /** Generator used to encode and rasterize the QR codes. */
+    private final QRCodeGenerator qrGenerator;
+
+    /** Number of tile columns per page. */
+    private final int columns;
+
+    /** Number of tile rows per page. */
+    private final int rows;
+
+    /** Number of threads rendering tiles. */
+    private final int threads;
+
+    /** Tile width in pixels; always a multiple of 8. */
+    private final int tileWidth;
+
+    /** Tile height in pixels. */
+    private final int tileHeight;
+
+    /** Page width in pixels. */
+    private final int pageWidth;
+
+    /** Page height in pixels. */
+    private final int pageHeight;
+
+    /** Number of bytes in one packed page row. */
+    private final int pageStride;
+
+    /**
+     * Constructs a BadgeSheetRenderer with the default page layout and one thread per processor.
+     *
+     * @param qrGenerator Generator used to encode and rasterize the QR codes.
+     */
+    public BadgeSheetRenderer(QRCodeGenerator qrGenerator) {
+        this(qrGenerator, DEFAULT_COLUMNS, DEFAULT_ROWS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a BadgeSheetRenderer with the given page layout.
+     *
+     * @param qrGenerator Generator used to encode and rasterize the QR codes.
+     * @param columns Number of tile columns per page.
+     * @param rows Number of tile rows per page.
+     * @param threads Number of threads rendering tiles.
+     * @throws IllegalArgumentException If any of the counts is less than 1.
+     */
+    public BadgeSheetRenderer(QRCodeGenerator qrGenerator, int columns, int rows, int threads) {
+        if (columns < 1 || rows < 1 || threads < 1) {
+            throw new IllegalArgumentException("Columns, rows and threads must be at least 1");
+        }
+        this.qrGenerator = qrGenerator;
+        this.columns = columns;
+        this.rows = rows;
+        this.threads = threads;
+        this.tileWidth = qrGenerator.getRowBytes() * 8 + 2 * TILE_PADDING;
+        this.tileHeight = TILE_PADDING + qrGenerator.getImageSize() + LABEL_HEIGHT;
+        this.pageWidth = 2 * PAGE_MARGIN + columns * tileWidth;
+        this.pageHeight = 2 * PAGE_MARGIN + rows * tileHeight;
+        this.pageStride = (pageWidth + 7) / 8;
+    }
+
+    /**
+     * Gets the page width.
+     * @return The page width in pixels.
+     */
+    public int getPageWidth() { return pageWidth; }
+
+    /**
+     * Gets the page height.
+     * @return The page height in pixels.
+     */
+    public int getPageHeight() { return pageHeight; }
+
+    /**
+     * Renders badge sheets for the given students and writes each page as a PNG named
+     * {@code <grouping>_<key>_page-NNN.png}. Within a group, students are ordered by last
+     * name, first name and ID.
+     *
+     * @param students The students to print.
+     * @param grouping How students are grouped onto pages.
+     * @param outputDirectory Directory the pages are written to; created if missing.
+     * @return The paths of the pages written, in order.
+     * @throws IOException If a page cannot be written.
+     */
+    public List<Path> renderSheets(Collection<Student> students, Grouping grouping, String outputDirectory)
+            throws IOException {
+        Map<String, List<Student>> groups = new TreeMap<>();
+        for (Student student : students) {
+            groups.computeIfAbsent(grouping.keyOf(student), key -> new ArrayList<>()).add(student);
+        }
+
+        Path directory = Paths.get(outputDirectory);
+        Files.createDirectories(directory);
+        List<Path> pages = new ArrayList<>();
+        byte[] page = new byte[pageStride * pageHeight];
+        PngWriter pngWriter = new PngWriter();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "badge-tile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadLocal<TileScratch> scratch = ThreadLocal.withInitial(TileScratch::new);
+        try {
+            for (Map.Entry<String, List<Student>> group : groups.entrySet()) {
+                List<Student> members = group.getValue();
+                members.sort(Comparator.comparing(Student::getLastName, String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(Student::getFirstName, String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(Student::getStudentId));
+                String prefix = grouping.name().toLowerCase() + "_"
+                        + group.getKey().replaceAll("[^A-Za-z0-9._-]+", "_");
+                int perPage = columns * rows;
+                for (int first = 0; first < members.size(); first += perPage) {
+                    List<Student> onPage = members.subList(first, Math.min(first + perPage, members.size()));
+                    renderPage(onPage, page, pool, scratch);
+                    Path file = directory.resolve(String.format("%s_page-%03d.png", prefix, first / perPage + 1));
+                    pngWriter.write(file, pageWidth, pageHeight,
+                            (y, row, offset) -> System.arraycopy(page, y * pageStride, row, offset, pageStride));
+                    pages.add(file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Badge sheet rendering interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return pages;
+    }
+
+    /**
+     * Clears the page buffer and renders one tile per student into it in parallel.
+     *
+     * @param students The students on this page, at most one page worth.
+     * @param page The packed 1-bit page buffer.
+     * @param pool The pool tiles are rendered on.
+     * @param scratch Per-thread scratch buffers.
+     * @throws InterruptedException If interrupted while waiting for the tiles.
+     */
+    private void renderPage(List<Student> students, byte[] page, ExecutorService pool,
+                            ThreadLocal<TileScratch> scratch) throws InterruptedException {
+        Arrays.fill(page, (byte) 0xFF);
+        CountDownLatch remaining = new CountDownLatch(students.size());
+        for (int i = 0; i < students.size(); i++) {
+            final Student student = students.get(i);
+            final int x = PAGE_MARGIN + (i % columns) * tileWidth;
+            final int y = PAGE_MARGIN + (i / columns) * tileHeight;
+            pool.execute(() -> {
+                try {
+                    renderTile(student, page, x, y, scratch.get());
+                } finally {
+                    remaining.countDown();
+                }
+            });
+        }
+        remaining.await();
+    }
+
+    /**
+     * Renders one badge into its region of the page: the QR code followed by the label.
+     * The page region is already white.
+     *
+     * @param student The student on the badge.
+     * @param page The packed 1-bit page buffer.
+     * @param x Left edge of the tile in pixels; a multiple of 8.
+     * @param y Top edge of the tile in pixels.
+     * @param scratch This thread's scratch buffers.
+     */
+    private void renderTile(Student student, byte[] page, int x, int y, TileScratch scratch) {
+        int codeByte = (x + TILE_PADDING) >>> 3;
+        int codeTop = y + TILE_PADDING;
+        String error = null;
+        try {
+            scratch.matrix = qrGenerator.encode(student.toQRString(), scratch.matrix);
+            for (int row = 0; row < qrGenerator.getImageSize(); row++) {
+                qrGenerator.rasterizeRow(scratch.matrix, row, page, (codeTop + row) * pageStride + codeByte);
+            }
+        } catch (RuntimeException e) {
+            error = "QR code unavailable";
+            System.err.println("Error rendering badge for " + student.getStudentId() + ": " + e.getMessage());
+        }
+
+        Graphics2D graphics = scratch.graphics;
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, tileWidth, LABEL_HEIGHT);
+        graphics.setColor(Color.BLACK);
+        FontMetrics metrics = graphics.getFontMetrics();
+        int line = metrics.getAscent() + 2;
+        drawCentered(graphics, metrics, student.getFirstName() + " " + student.getLastName(), line);
+        drawCentered(graphics, metrics, error != null ? error
+                : student.getStudentId() + " - " + student.getSection(), line + metrics.getHeight());
+
+        byte[] label = scratch.labelPixels;
+        int labelStride = tileWidth >>> 3;
+        int labelTop = codeTop + qrGenerator.getImageSize();
+        for (int row = 0; row < LABEL_HEIGHT; row++) {
+            System.arraycopy(label, row * labelStride, page, (labelTop + row) * pageStride + (x >>> 3), labelStride);
+        }
+    }
+
+    /**
+     * Draws a line of text centred in the label, shortened with an ellipsis if it is
+     * wider than the tile.
+     *
+     * @param graphics The label graphics.
+     * @param metrics Metrics of the label font.
+     * @param text The text to draw.
+     * @param baseline The baseline of the line.
+     */
+    private void drawCentered(Graphics2D graphics, FontMetrics metrics, String text, int baseline) {
+        int available = tileWidth - 2 * TILE_PADDING;
+        if (metrics.stringWidth(text) > available) {
+            int end = text.length();
+            while (end > 0 && metrics.stringWidth(text.substring(0, end) + "...") > available) {
+                end--;
+            }
+            text = text.substring(0, end) + "...";
+        }
+        graphics.drawString(text, (tileWidth - metrics.stringWidth(text)) / 2, baseline);
+    }
+
+    /**
+     * Per-thread buffers reused from one tile to the next.
+     */
+    private class TileScratch {
+        /** 1-bit image the label is drawn into before being copied onto the page. */
+        final BufferedImage labelImage;
+
+        /** Packed pixels of {@link #labelImage}. */
+        final byte[] labelPixels;
+
+        /** Graphics of {@link #labelImage}, kept open for the thread's lifetime. */
+        final Graphics2D graphics;
+
+        /** Module matrix reused between encodes. */
+        QRMatrix matrix;
+
+        /**
+         * Constructs the scratch buffers for one thread.
+         */
+        TileScratch() {
+            this.labelImage = new BufferedImage(tileWidth, LABEL_HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+            this.labelPixels = ((DataBufferByte) labelImage.getRaster().getDataBuffer()).getData();
+            this.graphics = labelImage.createGraphics();
+            this.graphics.setFont(LABEL_FONT);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle on a bulk QR code generation run started with
+ * {@link StudentManager#startQRCodeGeneration(StudentQuery)}: progress, an estimate of
+ * the time left, cancellation and the final results.
+ *
+ * <p>Students an interrupted earlier run had already finished are skipped at start and
+ * counted as resumed; they count towards progress but not towards the rate the estimate
+ * is based on. Cancelling lets the students already in the pipeline finish and reports
+ * the rest in the results as failed with the message {@code Cancelled}. All methods
+ * are thread-safe.</p>
+ */
+public class BulkGenerationJob {
+    /** What the run generates, for display. */
+    private final String description;
+
+    /** Number of students in the run, including resumed ones. */
+    private final int total;
+
+    /** Number of students an earlier run had already finished. */
+    private volatile int resumed;
+
+    /** Number of students finished by this run so far, successfully or not. */
+    private final AtomicInteger processed;
+
+    /** Number of students that failed so far. */
+    private final AtomicInteger failed;
+
+    /** When this run started processing, from {@link System#nanoTime()}; 0 until then. */
+    private volatile long startNanos;
+
+    /** Whether cancellation was requested. */
+    private volatile boolean cancelled;
+
+    /** One result per student, in roster order, once the run has finished. */
+    private volatile List<GenerationResult> results;
+
+    /** Released once the run has finished. */
+    private final CountDownLatch done;
+
+    /**
+     * Constructs a BulkGenerationJob that has not started yet.
+     *
+     * @param description What the run generates, for display.
+     * @param total Number of students in the run.
+     */
+    BulkGenerationJob(String description, int total) {
+        this.description = description;
+        this.total = total;
+        this.processed = new AtomicInteger();
+        this.failed = new AtomicInteger();
+        this.done = new CountDownLatch(1);
+    }
+
+    /**
+     * Gets what the run generates.
+     * @return A description such as {@code all students}.
+     */
+    public String getDescription() { return description; }
+
+    /**
+     * Gets the number of students in the run.
+     * @return The total, including students resumed from an earlier run.
+     */
+    public int getTotal() { return total; }
+
+    /**
+     * Gets the number of students an interrupted earlier run had already finished.
+     * @return The number of students skipped at start.
+     */
+    public int getResumed() { return resumed; }
+
+    /**
+     * Gets the number of students finished so far.
+     * @return The count of resumed and processed students, successful or not.
+     */
+    public int getCompleted() { return resumed + processed.get(); }
+
+    /**
+     * Gets the number of students that failed so far.
+     * @return The failure count; students skipped by cancellation are not included.
+     */
+    public int getFailed() { return failed.get(); }
+
+    /**
+     * Gets the fraction of the run that is finished.
+     * @return A value from 0 to 1; 1 for an empty run.
+     */
+    public double getFractionDone() {
+        return total == 0 ? 1 : Math.min(1, (double) getCompleted() / total);
+    }
+
+    /**
+     * Estimates the time left from the rate at which this run has processed students.
+     *
+     * @return The estimate, zero once finished, or null while there is no rate to go by.
+     */
+    public Duration getEstimatedTimeRemaining() {
+        if (isDone()) {
+            return Duration.ZERO;
+        }
+        long start = startNanos;
+        int count = processed.get();
+        if (start == 0 || count == 0) {
+            return null;
+        }
+        long elapsed = System.nanoTime() - start;
+        long left = Math.max(0, total - resumed - count);
+        return Duration.ofNanos((long) ((double) elapsed / count * left));
+    }
+
+    /**
+     * Asks the run to stop. Students already in the pipeline are still finished.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether cancellation was requested.
+     * @return True once {@link #cancel()} has been called.
+     */
+    public boolean isCancelled() { return cancelled; }
+
+    /**
+     * Checks whether the run has finished, completely or after cancellation.
+     * @return True once results are available.
+     */
+    public boolean isDone() { return done.getCount() == 0; }
+
+    /**
+     * Waits for the run to finish.
+     *
+     * @return One result per student, in roster order.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public List<GenerationResult> await() throws InterruptedException {
+        done.await();
+        return results;
+    }
+
+    /**
+     * Waits up to a time limit for the run to finish.
+     *
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if the run finished in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * Gets the results of a finished run.
+     * @return One result per student, in roster order, or null while the run is going.
+     */
+    public List<GenerationResult> getResults() { return results; }
+
+    /**
+     * Marks the start of processing, after students finished by an earlier run have been skipped.
+     *
+     * @param resumedCount Number of students skipped.
+     */
+    void start(int resumedCount) {
+        this.resumed = resumedCount;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Counts the outcome for one processed student.
+     *
+     * @param result The outcome.
+     */
+    void record(GenerationResult result) {
+        if (!result.isSuccess()) {
+            failed.incrementAndGet();
+        }
+        processed.incrementAndGet();
+    }
+
+    /**
+     * Publishes the results and releases everyone waiting for the run.
+     *
+     * @param finalResults One result per student, in roster order.
+     */
+    void finish(List<GenerationResult> finalResults) {
+        this.results = finalResults;
+        done.countDown();
+    }
+
+    /**
+     * Formats the progress of the run for display.
+     *
+     * @return A line such as {@code all students: 1200/5000 (24.0%), 3 failed, about 0:42 left}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(description).append(": ")
+                .append(getCompleted()).append('/').append(total)
+                .append(String.format(" (%.1f%%)", 100 * getFractionDone()));
+        if (resumed > 0) {
+            line.append(", ").append(resumed).append(" resumed");
+        }
+        if (getFailed() > 0) {
+            line.append(", ").append(getFailed()).append(" failed");
+        }
+        if (isDone()) {
+            line.append(cancelled ? ", cancelled" : ", done");
+        } else if (cancelled) {
+            line.append(", cancelling");
+        } else {
+            Duration eta = getEstimatedTimeRemaining();
+            if (eta != null) {
+                long seconds = eta.getSeconds();
+                line.append(String.format(", about %d:%02d left", seconds / 60, seconds % 60));
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,654 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Generates QR codes for many students at once using a two-stage pipeline.
+ *
+ * <p>The first stage encodes each payload into a compact {@link QRMatrix} on a bounded
+ * pool of worker threads. The second stage streams the matrix through the PNG encoder
+ * and writes it to disk on a separate
+ * I/O pool, so slow writes never stall rendering and vice versa. A semaphore limits
+ * how many students may be in flight between the two stages, which keeps memory
+ * bounded no matter how large the roster is.</p>
+ *
+ * <p>Students are passed in directly, so no lookups by student ID are needed. When a
+ * {@link QRRenderCache} is supplied, students whose payload has not changed since their
+ * file was last written are skipped, and recently encoded images are reused.</p>
+ *
+ * <p>Within a run, students are grouped by the digest of their payload, so duplicated
+ * or re-imported records are rendered and encoded once. The first student with a
+ * payload renders it; others with the same payload that arrive while it is in flight
+ * wait for its PNG bytes without holding a thread. Later ones take the bytes from the
+ * run's most recent images, or from the render cache once those have moved on. All of
+ * them share one byte array. Beyond a bounded number of recent images only digests are
+ * kept for the whole run, so memory stays bounded. See {@link #getDeduplicationRatio()}.</p>
+ *
+ * <p>Instead of one file per student, the write stage can also stream every image into
+ * a {@link QRArchiveWriter}; see {@link #generateToArchive}. When a
+ * {@link ShardedFileWriter} is supplied, the write stage only encodes the PNG and hands
+ * it to the writer, and a student counts as finished once the writer has renamed its
+ * file into place.</p>
+ *
+ * <p>Stage latencies, outcomes and queue depths are recorded in {@link QRMetrics#global()}.</p>
+ */
+public class BulkQRCodeGenerator {
+    /** Default number of threads used to render QR images. */
+    public static final int DEFAULT_RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Default number of threads used to encode and write QR images. */
+    public static final int DEFAULT_IO_THREADS = Math.max(2, DEFAULT_RENDER_THREADS / 2);
+
+    /** Default limit on students rendered but not yet written. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4 * (DEFAULT_RENDER_THREADS + DEFAULT_IO_THREADS);
+
+    private static final LatencyHistogram RENDER_TIME = QRMetrics.global().histogram("qr.render");
+    private static final LatencyHistogram ENCODE_TIME = QRMetrics.global().histogram("qr.encode");
+    private static final LatencyHistogram WRITE_TIME = QRMetrics.global().histogram("qr.write");
+    private static final LongAdder GENERATED = QRMetrics.global().counter("qr.generated");
+    private static final LongAdder UNCHANGED = QRMetrics.global().counter("qr.unchanged");
+    private static final LongAdder FAILED = QRMetrics.global().counter("qr.failed");
+    private static final LongAdder CACHED_IMAGES = QRMetrics.global().counter("qr.cachedImages");
+    private static final LongAdder DEDUPLICATED = QRMetrics.global().counter("qr.deduplicated");
+    private static final LongAdder IN_FLIGHT = QRMetrics.global().counter("bulk.inFlight");
+    private static final LongAdder WRITE_QUEUE = QRMetrics.global().counter("bulk.writeQueue");
+
+    /** The generator used to render and save individual QR codes. */
+    private final QRCodeGenerator qrGenerator;
+
+    /** Cache used to skip unchanged files and reuse encoded images, or null. */
+    private final QRRenderCache cache;
+
+    /** Writer that batches file output, or null to write files on the I/O pool. */
+    private final ShardedFileWriter fileWriter;
+
+    /** Number of threads in the render (matrix encoding) pool. */
+    private final int renderThreads;
+
+    /** Number of threads in the encode/write pool. */
+    private final int ioThreads;
+
+    /** Maximum number of students encoded but not yet written at any time. */
+    private final int maxInFlight;
+
+    /** Number of students that needed an image in runs of this generator. */
+    private final LongAdder imagesNeeded = new LongAdder();
+
+    /** Number of those whose image was shared from another student with the same payload. */
+    private final LongAdder imagesShared = new LongAdder();
+
+    /**
+     * Constructs a BulkQRCodeGenerator with default parallelism and no render cache.
+     *
+     * @param qrGenerator The generator used to render and save QR codes.
+     */
+    public BulkQRCodeGenerator(QRCodeGenerator qrGenerator) {
+        this(qrGenerator, null, DEFAULT_RENDER_THREADS, DEFAULT_IO_THREADS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Constructs a BulkQRCodeGenerator with the given parallelism.
+     *
+     * @param qrGenerator The generator used to render and save QR codes.
+     * @param cache Cache used to skip unchanged files and reuse encoded images; may be null.
+     * @param renderThreads Number of threads used to render QR images.
+     * @param ioThreads Number of threads used to encode and write QR images.
+     * @param maxInFlight Maximum number of students between the two stages at once.
+     * @throws IllegalArgumentException If any of the counts is less than 1.
+     */
+    public BulkQRCodeGenerator(QRCodeGenerator qrGenerator, QRRenderCache cache,
+                               int renderThreads, int ioThreads, int maxInFlight) {
+        this(qrGenerator, cache, null, renderThreads, ioThreads, maxInFlight);
+    }
+
+    /**
+     * Constructs a BulkQRCodeGenerator that writes files through a batching writer.
+     *
+     * @param qrGenerator The generator used to render and save QR codes.
+     * @param cache Cache used to skip unchanged files and reuse encoded images; may be null.
+     * @param fileWriter Writer that batches file output; null to write files on the I/O pool.
+     * @param renderThreads Number of threads used to render QR images.
+     * @param ioThreads Number of threads used to encode and write QR images.
+     * @param maxInFlight Maximum number of students between the two stages at once.
+     * @throws IllegalArgumentException If any of the counts is less than 1.
+     */
+    public BulkQRCodeGenerator(QRCodeGenerator qrGenerator, QRRenderCache cache, ShardedFileWriter fileWriter,
+                               int renderThreads, int ioThreads, int maxInFlight) {
+        if (renderThreads < 1 || ioThreads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Thread counts and in-flight limit must be at least 1");
+        }
+        this.qrGenerator = qrGenerator;
+        this.cache = cache;
+        this.fileWriter = fileWriter;
+        this.renderThreads = renderThreads;
+        this.ioThreads = ioThreads;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Gets the number of images taken from another student with the same payload
+     * instead of being rendered, over all runs of this generator.
+     *
+     * @return The number of shared images.
+     */
+    public long getSharedImages() {
+        return imagesShared.sum();
+    }
+
+    /**
+     * Gets how many students needed an image for every image actually rendered or taken
+     * from an earlier run, over all runs of this generator. Unchanged students and
+     * single-student runs are not counted.
+     *
+     * @return The ratio, 1 when no payload was shared.
+     */
+    public double getDeduplicationRatio() {
+        long needed = imagesNeeded.sum();
+        long distinct = needed - imagesShared.sum();
+        return distinct == 0 ? 1 : (double) needed / distinct;
+    }
+
+    /**
+     * Generates the QR code for a single student on the calling thread, running
+     * both pipeline stages back to back.
+     *
+     * @param student The student to generate the QR code for.
+     * @param fileName The file path the QR code is written to.
+     * @return The outcome for the student.
+     */
+    public GenerationResult generateOne(Student student, String fileName) {
+        RenderedCode code = render(student, ignored -> fileName, null, null);
+        GenerationResult result = code.result != null ? code.result : write(code, null);
+        count(result);
+        if (cache != null) {
+            cache.flush();
+        }
+        return result;
+    }
+
+    /**
+     * Generates QR codes for all given students and waits for the run to finish.
+     *
+     * @param students The students to generate QR codes for.
+     * @param fileNamer Maps a student to the file path its QR code is written to.
+     * @param listener Called once per student as soon as its outcome is known; may be null.
+     *                 It is invoked from pool threads and must be thread-safe.
+     * @return One result per student, in the same order as the input list.
+     */
+    public List<GenerationResult> generate(List<Student> students, Function<Student, String> fileNamer,
+                                           Consumer<GenerationResult> listener) {
+        return run(students, fileNamer, null, listener, () -> false);
+    }
+
+    /**
+     * Generates QR codes for all given students and waits for the run to finish, or to
+     * wind down once cancelled. Cancellation is checked before each student enters the
+     * pipeline; students already in flight are finished, and the rest are reported as
+     * failed with the message {@code Cancelled}.
+     *
+     * @param students The students to generate QR codes for.
+     * @param fileNamer Maps a student to the file path its QR code is written to.
+     * @param listener Called once per student as soon as its outcome is known; may be null.
+     *                 It is invoked from pool threads and must be thread-safe.
+     * @param cancelled Returns true once the run should stop taking new students.
+     * @return One result per student, in the same order as the input list.
+     */
+    public List<GenerationResult> generate(List<Student> students, Function<Student, String> fileNamer,
+                                           Consumer<GenerationResult> listener, BooleanSupplier cancelled) {
+        return run(students, fileNamer, null, listener, cancelled);
+    }
+
+    /**
+     * Generates QR codes for all given students into an archive and waits for the run
+     * to finish. Every image is written, since the archive replaces any earlier output,
+     * but encoded images are still taken from the cache when available. The caller
+     * owns the archive and must close it afterwards.
+     *
+     * @param students The students to generate QR codes for.
+     * @param entryNamer Maps a student to the name of its entry in the archive.
+     * @param archive The archive the images are appended to.
+     * @param listener Called once per student as soon as its outcome is known; may be null.
+     *                 It is invoked from pool threads and must be thread-safe.
+     * @return One result per student, in the same order as the input list.
+     */
+    public List<GenerationResult> generateToArchive(List<Student> students, Function<Student, String> entryNamer,
+                                                    QRArchiveWriter archive, Consumer<GenerationResult> listener) {
+        return run(students, entryNamer, archive, listener, () -> false);
+    }
+
+    /**
+     * Runs the two-stage pipeline over all given students.
+     *
+     * @param students The students to generate QR codes for.
+     * @param fileNamer Maps a student to its output file path or archive entry name.
+     * @param archive The archive to write to, or null to write one file per student.
+     * @param listener The per-item listener, or null.
+     * @param cancelled Returns true once no more students should be started.
+     * @return One result per student, in the same order as the input list.
+     */
+    private List<GenerationResult> run(List<Student> students, Function<Student, String> fileNamer,
+                                       QRArchiveWriter archive, Consumer<GenerationResult> listener,
+                                       BooleanSupplier cancelled) {
+        GenerationResult[] results = new GenerationResult[students.size()];
+        CountDownLatch remaining = new CountDownLatch(students.size());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService renderPool = Executors.newFixedThreadPool(renderThreads, namedThreads("qr-render"));
+        ExecutorService ioPool = Executors.newFixedThreadPool(ioThreads, namedThreads("qr-write"));
+        InternedImages interned = new InternedImages();
+
+        try {
+            for (int i = 0; i < students.size(); i++) {
+                inFlight.acquire();
+                if (cancelled.getAsBoolean()) {
+                    inFlight.release();
+                    for (int skipped = i; skipped < students.size(); skipped++) {
+                        remaining.countDown();
+                    }
+                    break;
+                }
+                IN_FLIGHT.increment();
+                final int index = i;
+                final Student student = students.get(i);
+                renderPool.execute(() -> {
+                    RenderedCode code = render(student, fileNamer, archive, interned);
+                    if (code.result != null) {
+                        complete(results, index, code.result, listener, remaining, inFlight);
+                        return;
+                    }
+                    Runnable writeStage = () -> {
+                        WRITE_QUEUE.increment();
+                        try {
+                            ioPool.execute(() -> {
+                                WRITE_QUEUE.decrement();
+                                if (fileWriter != null && archive == null) {
+                                    writeQueued(code, result -> complete(results, index, result, listener,
+                                            remaining, inFlight));
+                                } else {
+                                    complete(results, index, write(code, archive), listener, remaining,
+                                            inFlight);
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            WRITE_QUEUE.decrement();
+                            abandon(code, e);
+                            complete(results, index, GenerationResult.failure(code.studentId, code.fileName,
+                                    "Cancelled"), listener, remaining, inFlight);
+                        }
+                    };
+                    if (code.shared == null) {
+                        writeStage.run();
+                        return;
+                    }
+                    // Runs on the thread that finishes the shared image, or here if it already has
+                    code.shared.whenComplete((png, error) -> {
+                        if (error != null) {
+                            complete(results, index, GenerationResult.failure(code.studentId, code.fileName,
+                                    "Render failed: " + error), listener, remaining, inFlight);
+                        } else {
+                            code.png = png;
+                            writeStage.run();
+                        }
+                    });
+                });
+            }
+            remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            renderPool.shutdownNow();
+            ioPool.shutdownNow();
+            if (cache != null) {
+                cache.flush();
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = GenerationResult.failure(students.get(i).getStudentId(), null, "Cancelled");
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * First pipeline stage: works out the output file and payload, consults the cache,
+     * joins a student with the same payload if there is one, and encodes the module
+     * matrix if the image is neither cached nor shared.
+     *
+     * @param student The student to render.
+     * @param fileNamer Maps the student to its output file path or archive entry name.
+     * @param archive The archive being written, or null when writing individual files.
+     * @param interned The run's images by payload digest, or null to render every student.
+     * @return The rendered code; its result is already set if no write is needed.
+     */
+    private RenderedCode render(Student student, Function<Student, String> fileNamer, QRArchiveWriter archive,
+                                InternedImages interned) {
+        long start = System.nanoTime();
+        RenderedCode code = new RenderedCode(student.getStudentId());
+        try {
+            code.fileName = fileNamer.apply(student);
+            String payload = student.toQRString();
+            if (cache != null || interned != null) {
+                code.digest = QRRenderCache.digest(qrGenerator.getOutputSignature(), payload);
+            }
+            if (cache != null && archive == null && cache.isUpToDate(code.fileName, code.digest)) {
+                code.result = GenerationResult.unchanged(code.studentId, code.fileName, code.digest);
+                return code;
+            }
+            if (interned != null && intern(code, interned)) {
+                RENDER_TIME.recordSince(start);
+                return code;
+            }
+            if (cache != null) {
+                code.png = cache.getImage(code.digest);
+            }
+            if (code.png == null) {
+                code.matrix = qrGenerator.encode(payload);
+            } else {
+                CACHED_IMAGES.increment();
+                publish(code);
+            }
+        } catch (RuntimeException e) {
+            abandon(code, e);
+            code.result = GenerationResult.failure(code.studentId, code.fileName, "Render failed: " + e);
+        }
+        RENDER_TIME.recordSince(start);
+        return code;
+    }
+
+    /**
+     * Looks up a student's payload digest among the images of the run. If another
+     * student with the same payload is in flight or rendered it recently, the code
+     * takes or waits for its image. Otherwise this student renders the image, or takes
+     * it from the cache, and publishes it for later ones.
+     *
+     * @param code The code being rendered, with its digest set.
+     * @param interned The run's images by payload digest.
+     * @return True if the image comes from another student, false if this one renders it.
+     */
+    private boolean intern(RenderedCode code, InternedImages interned) {
+        imagesNeeded.increment();
+        CompletableFuture<byte[]> own = new CompletableFuture<>();
+        CompletableFuture<byte[]> previous = interned.images.putIfAbsent(code.digest, own);
+        if (previous != null) {
+            code.shared = previous;
+            imagesShared.increment();
+            DEDUPLICATED.increment();
+            return true;
+        }
+        code.owned = own;
+        code.interned = interned;
+        return false;
+    }
+
+    /**
+     * Second pipeline stage: encodes the PNG if needed and writes it to disk or appends
+     * it to the archive.
+     *
+     * @param code The output of the render stage.
+     * @param archive The archive being written, or null when writing individual files.
+     * @return The outcome for the student.
+     */
+    private GenerationResult write(RenderedCode code, QRArchiveWriter archive) {
+        try {
+            boolean saved;
+            if (archive == null && fileWriter != null) {
+                encodePng(code);
+                long start = System.nanoTime();
+                saved = fileWriter.writeAndWait(code.fileName, code.png);
+                WRITE_TIME.recordSince(start);
+                if (saved && cache != null) {
+                    cache.record(code.fileName, code.digest);
+                }
+            } else if (archive == null && cache == null && code.png == null && code.interned == null) {
+                // Encoding and writing are fused here, so the whole stage counts as write time
+                long start = System.nanoTime();
+                saved = qrGenerator.saveQRCode(code.matrix, code.fileName);
+                WRITE_TIME.recordSince(start);
+            } else {
+                encodePng(code);
+                long start = System.nanoTime();
+                if (archive != null) {
+                    archive.addEntry(code.fileName, code.png);
+                    saved = true;
+                } else {
+                    saved = qrGenerator.saveQRCode(code.png, code.fileName);
+                    if (saved && cache != null) {
+                        cache.record(code.fileName, code.digest);
+                    }
+                }
+                WRITE_TIME.recordSince(start);
+            }
+            return saved
+                    ? GenerationResult.success(code.studentId, code.fileName, code.digest)
+                    : GenerationResult.failure(code.studentId, code.fileName, "Write failed");
+        } catch (IOException | RuntimeException e) {
+            abandon(code, e);
+            return GenerationResult.failure(code.studentId, code.fileName, "Write failed: " + e);
+        }
+    }
+
+    /**
+     * Second pipeline stage when a file writer is in use: encodes the PNG if needed and
+     * queues it on the writer. The outcome is reported from the writer thread once the
+     * file is in place.
+     *
+     * @param code The output of the render stage.
+     * @param done Receives the outcome for the student.
+     */
+    private void writeQueued(RenderedCode code, Consumer<GenerationResult> done) {
+        try {
+            encodePng(code);
+        } catch (RuntimeException e) {
+            abandon(code, e);
+            done.accept(GenerationResult.failure(code.studentId, code.fileName, "Write failed: " + e));
+            return;
+        }
+        long start = System.nanoTime();
+        fileWriter.write(code.fileName, code.png, saved -> {
+            WRITE_TIME.recordSince(start);
+            if (saved && cache != null) {
+                cache.record(code.fileName, code.digest);
+            }
+            done.accept(saved
+                    ? GenerationResult.success(code.studentId, code.fileName, code.digest)
+                    : GenerationResult.failure(code.studentId, code.fileName, "Write failed"));
+        });
+    }
+
+    /**
+     * Encodes the PNG of a rendered code unless it came from the cache or another
+     * student, adds it to the cache and hands it to students waiting for the same payload.
+     *
+     * @param code The output of the render stage.
+     */
+    private void encodePng(RenderedCode code) {
+        if (code.png == null) {
+            long start = System.nanoTime();
+            code.png = qrGenerator.toPngBytes(code.matrix);
+            code.matrix = null;
+            ENCODE_TIME.recordSince(start);
+            if (cache != null) {
+                cache.putImage(code.digest, code.png);
+            }
+        }
+        publish(code);
+    }
+
+    /**
+     * Hands a code's PNG to the students waiting for the same payload, if it renders
+     * one for them, and keeps it for later students among the run's recent images.
+     *
+     * @param code A code whose PNG is set.
+     */
+    private static void publish(RenderedCode code) {
+        if (code.owned != null) {
+            code.owned.complete(code.png);
+            code.interned.retain(code.digest, code.owned);
+            code.owned = null;
+        }
+    }
+
+    /**
+     * Fails the students waiting for a code's image after it could not be produced.
+     * The digest is forgotten, so a later student with the payload tries again.
+     *
+     * @param code The code that failed.
+     * @param error Why it failed.
+     */
+    private static void abandon(RenderedCode code, Throwable error) {
+        if (code.owned != null) {
+            code.interned.images.remove(code.digest, code.owned);
+            code.owned.completeExceptionally(error);
+            code.owned = null;
+        }
+    }
+
+    /**
+     * Records the outcome for one student and releases its in-flight slot.
+     *
+     * @param results The result array being filled in.
+     * @param index The student's position in the input list.
+     * @param result The outcome to record.
+     * @param listener The per-item listener, or null.
+     * @param remaining Latch counting students that have not finished yet.
+     * @param inFlight Semaphore bounding the number of students in the pipeline.
+     */
+    private static void complete(GenerationResult[] results, int index, GenerationResult result,
+                                 Consumer<GenerationResult> listener, CountDownLatch remaining,
+                                 Semaphore inFlight) {
+        results[index] = result;
+        count(result);
+        IN_FLIGHT.decrement();
+        try {
+            if (listener != null) {
+                listener.accept(result);
+            }
+        } finally {
+            inFlight.release();
+            remaining.countDown();
+        }
+    }
+
+    /**
+     * Counts a student's outcome in the global metrics.
+     *
+     * @param result The outcome.
+     */
+    private static void count(GenerationResult result) {
+        (result.isUnchanged() ? UNCHANGED : result.isSuccess() ? GENERATED : FAILED).increment();
+    }
+
+    /**
+     * Work item handed from the render stage to the write stage.
+     */
+    private static class RenderedCode {
+        /** The ID of the student being generated. */
+        final String studentId;
+
+        /** The output file path, once known. */
+        String fileName;
+
+        /** Digest of the QR payload, unless neither a cache nor deduplication is in use. */
+        String digest;
+
+        /** Image this student renders for others with the same payload, until it is published. */
+        CompletableFuture<byte[]> owned;
+
+        /** Image rendered by another student with the same payload, which this one waits for. */
+        CompletableFuture<byte[]> shared;
+
+        /** The run's images by payload digest, when this student renders one. */
+        InternedImages interned;
+
+        /** The encoded module matrix, unless the PNG came from the cache or another student. */
+        QRMatrix matrix;
+
+        /** The encoded PNG bytes, if taken from the cache or another student, or already encoded. */
+        byte[] png;
+
+        /** The final outcome, if the render stage already settled it. */
+        GenerationResult result;
+
+        /**
+         * Constructs a RenderedCode for a student.
+         *
+         * @param studentId The ID of the student.
+         */
+        RenderedCode(String studentId) {
+            this.studentId = studentId;
+        }
+    }
+
+    /**
+     * Images of one run by payload digest, in flight or recently published. At most
+     * {@link #RETAINED_IMAGES} published images are kept, oldest out first; an evicted
+     * digest is forgotten, and a later student with that payload finds the image in the
+     * render cache instead. The run therefore holds a bounded number of digests and PNGs
+     * however many payloads it sees.
+     */
+    private static final class InternedImages {
+        /** Most published images kept by a run. */
+        static final int RETAINED_IMAGES = 1024;
+
+        /** Futures for the images by payload digest. */
+        final ConcurrentMap<String, CompletableFuture<byte[]>> images = new ConcurrentHashMap<>();
+
+        /** The published images still kept, with their digests, oldest first. */
+        final Queue<Map.Entry<String, CompletableFuture<byte[]>>> retained = new ConcurrentLinkedQueue<>();
+
+        /** Number of entries in {@link #retained}. */
+        final AtomicInteger retainedCount = new AtomicInteger();
+
+        /**
+         * Keeps a published image for later students, letting the oldest one go if
+         * too many are kept.
+         *
+         * @param digest The payload digest.
+         * @param image The completed future holding the image.
+         */
+        void retain(String digest, CompletableFuture<byte[]> image) {
+            retained.add(new SimpleImmutableEntry<>(digest, image));
+            if (retainedCount.incrementAndGet() > RETAINED_IMAGES) {
+                Map.Entry<String, CompletableFuture<byte[]>> oldest = retained.poll();
+                retainedCount.decrementAndGet();
+                if (oldest != null) {
+                    images.remove(oldest.getKey(), oldest.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a thread factory producing named daemon threads.
+     *
+     * @param prefix The prefix for thread names.
+     * @return A ThreadFactory for the pipeline pools.
+     */
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
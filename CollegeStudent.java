@@ -4,6 +4,9 @@
  */
 public class CollegeStudent extends Student {
 
+    /** Format used to serialize college student QR payloads. */
+    public static final StudentPayloadFormat PAYLOAD_FORMAT = new StudentPayloadFormat("College Student", 1);
+
     /**
      * Constructs a CollegeStudent instance with the specified details.
      * 
@@ -28,8 +31,7 @@ public class CollegeStudent extends Student {
      */
     @Override
     public String toQRString() {
-        return String.format("College Student\nID: %s\nName: %s\nEmail: %s\nGrade: %s\nSection: %s",
-                getStudentId(), getFullName(), getEmail(), getGrade(), getSection());
+        return PAYLOAD_FORMAT.toText(this);
     }
 }
 
@@ -0,0 +1,1511 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Student store that keeps records off the Java heap, in columns, for rosters of
+ * millions of students.
+ *
+ * <p>Rows live in direct buffers of 16384 rows each. Each buffer holds one column after
+ * another, so scans by section or grade read a single tightly packed array:</p>
+ *
+ * <pre>
+ * 16 bytes      ID: length and up to 15 UTF-8 bytes inline, or a reference into the text area
+ * 8 bytes x 3   first name, last name, email: reference into the text area
+ * 8 bytes       modification version
+ * 4 bytes       section code in the section dictionary, or -1
+ * 4 bytes       generation, bumped each time the row is reused
+ * 1 byte        grade level ordinal, or 255
+ * 1 byte        payload type tag of the stored subtype; high bit set once removed
+ * </pre>
+ *
+ * <p>Other strings, and IDs too long to fit in their column, are stored as UTF-8 in
+ * 1 MiB direct chunks. Text is appended; values that are replaced or removed leave dead
+ * bytes behind, and once at least 1 MiB of them make up half the text area, the live
+ * text is copied into fresh chunks. Sections repeat
+ * across many students, so each distinct section is interned once in a dictionary on
+ * the heap and rows store its code. The ID index is an open-addressing hash table in a
+ * direct buffer whose slots hold the ID's hash code next to the row, so lookups need no
+ * heap object per student and only touch the row of the student they find.</p>
+ *
+ * <p>{@link #add(Student)} copies the student into the columns; the object passed in
+ * is not kept. Lookups return lightweight views, created on demand, that read and
+ * write the columns. Views of the same row are equal, and their setters notify
+ * listeners like the setters of students held in a {@link StudentRepository}. Rows of
+ * removed students are reused once all segments are full, so the store grows only
+ * when it holds more students than ever before; until then students are kept in the
+ * order they were added. {@link #remove(String)} returns a copy of the removed student.
+ * Other views of it read null after its text is compacted away, and once its row is
+ * reused they read null and reject changes rather than reach the new student. Only
+ * {@link CollegeStudent}s and {@link HighSchoolStudent}s can be stored.</p>
+ *
+ * <p>Reads share a read lock and changes take the write lock only while they touch the
+ * columns. Changes to the same row are serialized by one of a fixed set of row
+ * monitors, which is held while listeners are called, like the monitor of a student
+ * held in a {@link StudentRepository}; the store's lock is not, so listeners that do
+ * slow work such as file I/O do not hold up lookups, queries or other rows.</p>
+ */
+public class ColumnarStudentStore implements StudentStore {
+    private static final int SEGMENT_SHIFT = 14;
+    private static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    private static final int ROW_MASK = SEGMENT_ROWS - 1;
+
+    private static final int ID_WIDTH = 16;
+    private static final int ID_COLUMN = 0;
+    private static final int FIRST_NAME_COLUMN = ID_COLUMN + SEGMENT_ROWS * ID_WIDTH;
+    private static final int LAST_NAME_COLUMN = FIRST_NAME_COLUMN + SEGMENT_ROWS * Long.BYTES;
+    private static final int EMAIL_COLUMN = LAST_NAME_COLUMN + SEGMENT_ROWS * Long.BYTES;
+    private static final int VERSION_COLUMN = EMAIL_COLUMN + SEGMENT_ROWS * Long.BYTES;
+    private static final int SECTION_COLUMN = VERSION_COLUMN + SEGMENT_ROWS * Long.BYTES;
+    private static final int GENERATION_COLUMN = SECTION_COLUMN + SEGMENT_ROWS * Integer.BYTES;
+    private static final int GRADE_COLUMN = GENERATION_COLUMN + SEGMENT_ROWS * Integer.BYTES;
+    private static final int TYPE_COLUMN = GRADE_COLUMN + SEGMENT_ROWS;
+    private static final int SEGMENT_BYTES = TYPE_COLUMN + SEGMENT_ROWS;
+
+    private static final int TEXT_CHUNK_SHIFT = 20;
+    private static final int TEXT_CHUNK_SIZE = 1 << TEXT_CHUNK_SHIFT;
+    private static final int MAX_TEXT_LENGTH = 0xFFFF;
+    private static final int MIN_DEAD_TEXT = TEXT_CHUNK_SIZE;
+    private static final long NULL_TEXT = -1;
+    private static final int MAX_INLINE_ID = ID_WIDTH - 1;
+    private static final int NULL_ID = 0xFE;
+    private static final int EXTERNAL_ID = 0xFF;
+
+    private static final int NO_SECTION = -1;
+    private static final byte NO_GRADE = (byte) 0xFF;
+    private static final int REMOVED = 0x80;
+
+    private static final int EMPTY_SLOT = 0;
+    private static final int DELETED_SLOT = -1;
+    private static final long DELETED_ENTRY = 0xFFFFFFFFL;
+    private static final int MIN_TABLE_CAPACITY = 1024;
+    private static final int ROW_LOCKS = 64;
+
+    /** Grade levels by ordinal. */
+    private static final GradeLevel[] GRADES = GradeLevel.values();
+
+    /** Per-thread buffer that stored text is copied into before decoding. */
+    private static final ThreadLocal<byte[]> TEXT_BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+    /** Guards every column, the text area, the ID index and the section dictionary. */
+    private final ReadWriteLock lock;
+
+    /** Row segments; row r lives in segment r / 16384. */
+    private ByteBuffer[] segments;
+
+    /** Number of rows ever allocated, including removed ones. */
+    private int rowCount;
+
+    /** Number of stored students. */
+    private int size;
+
+    /** Text chunks holding the UTF-8 bytes of stored strings. */
+    private final List<ByteBuffer> textChunks;
+
+    /** Next free byte in the last text chunk. */
+    private int textPosition;
+
+    /** Bytes of text stored since the text area was last compacted, live or dead. */
+    private long textBytes;
+
+    /** Bytes of stored text that no row refers to any more. */
+    private long deadTextBytes;
+
+    /** Rows of removed students that can be reused, most recently removed last. */
+    private int[] freeRows;
+
+    /** Number of entries used in {@link #freeRows}. */
+    private int freeRowCount;
+
+    /**
+     * ID index: open-addressing table whose slots hold the ID's hash code in the high half
+     * and row + 1, {@link #EMPTY_SLOT} or {@link #DELETED_SLOT} in the low half.
+     */
+    private LongBuffer idTable;
+
+    /** Number of ID index slots that are not empty, including deleted ones. */
+    private int idTableUsed;
+
+    /** Section dictionary from name to code. */
+    private final Map<String, Integer> sectionCodes;
+
+    /** Section dictionary from code to the interned name. */
+    private final List<String> sectionNames;
+
+    /** Listeners that changes to stored students are forwarded to. */
+    private final List<StudentChangeListener> changeListeners;
+
+    /** Monitors serializing changes to a row, and the listener calls for them; row r uses r % 64. */
+    private final Object[] rowLocks;
+
+    /**
+     * Constructs an empty ColumnarStudentStore. Off-heap memory is allocated as students
+     * are added.
+     */
+    public ColumnarStudentStore() {
+        this.lock = new ReentrantReadWriteLock();
+        this.segments = new ByteBuffer[0];
+        this.textChunks = new ArrayList<>();
+        this.freeRows = new int[16];
+        this.idTable = allocateTable(MIN_TABLE_CAPACITY);
+        this.sectionCodes = new HashMap<>();
+        this.sectionNames = new ArrayList<>();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        this.rowLocks = new Object[ROW_LOCKS];
+        for (int i = 0; i < ROW_LOCKS; i++) {
+            rowLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Registers a listener that is told about every change to a stored student.
+     *
+     * @param listener The listener to add.
+     */
+    @Override
+    public void addChangeListener(StudentChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addChangeListener(StudentChangeListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    @Override
+    public void removeChangeListener(StudentChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Copies a student into the store. Later changes to the object passed in are not
+     * seen by the store; change the view returned by {@link #findById(String)} instead.
+     *
+     * @param student The student to add.
+     * @return True if the student was added; false if another student already uses the same ID.
+     * @throws IllegalArgumentException If the student has no ID, is of an unsupported
+     *         type, or has a value longer than 65535 UTF-8 bytes.
+     */
+    @Override
+    public boolean add(Student student) {
+        int typeTag = QRPayloadSerializer.getDefault().formatFor(student).getTypeTag();
+        if (typeTag != CollegeStudent.PAYLOAD_FORMAT.getTypeTag()
+                && typeTag != HighSchoolStudent.PAYLOAD_FORMAT.getTypeTag()) {
+            throw new IllegalArgumentException("Cannot store students of type " + student.getClass().getName());
+        }
+        String studentId;
+        byte[] id;
+        byte[] firstName;
+        byte[] lastName;
+        byte[] email;
+        GradeLevel grade;
+        String section;
+        long version;
+        synchronized (student) {
+            studentId = student.getStudentId();
+            if (studentId == null) {
+                throw new IllegalArgumentException("Student ID must not be null");
+            }
+            id = encode(studentId);
+            firstName = encode(student.getFirstName());
+            lastName = encode(student.getLastName());
+            email = encode(student.getEmail());
+            grade = student.getGrade();
+            section = student.getSection();
+            version = student.getVersion();
+        }
+
+        lock.writeLock().lock();
+        try {
+            int hash = studentId.hashCode();
+            if (findRow(hash, studentId) >= 0) {
+                return false;
+            }
+            int row = allocateRow();
+            ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+            int index = row & ROW_MASK;
+            storeId(segment, index, id);
+            segment.putLong(FIRST_NAME_COLUMN + index * Long.BYTES, storeText(firstName));
+            segment.putLong(LAST_NAME_COLUMN + index * Long.BYTES, storeText(lastName));
+            segment.putLong(EMAIL_COLUMN + index * Long.BYTES, storeText(email));
+            segment.putLong(VERSION_COLUMN + index * Long.BYTES, version);
+            segment.putInt(SECTION_COLUMN + index * Integer.BYTES, sectionCode(section));
+            segment.put(GRADE_COLUMN + index, grade == null ? NO_GRADE : (byte) grade.ordinal());
+            segment.put(TYPE_COLUMN + index, (byte) typeTag);
+            insertId(row, hash);
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the student with the given ID. Its text becomes dead and its row can be
+     * reused by a later {@link #add(Student)}.
+     *
+     * @param studentId The ID of the student to remove.
+     * @return A copy of the removed student, not attached to the store, or null if no
+     *         student has that ID.
+     */
+    @Override
+    public Student remove(String studentId) {
+        if (studentId == null) {
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            int hash = studentId.hashCode();
+            int row = findRow(hash, studentId);
+            if (row < 0) {
+                return null;
+            }
+            Student removed = copy(row);
+            deleteId(row, hash);
+            ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+            int index = row & ROW_MASK;
+            segment.put(TYPE_COLUMN + index, (byte) (segment.get(TYPE_COLUMN + index) | REMOVED));
+            releaseId(segment, index);
+            releaseText(segment.getLong(FIRST_NAME_COLUMN + index * Long.BYTES));
+            releaseText(segment.getLong(LAST_NAME_COLUMN + index * Long.BYTES));
+            releaseText(segment.getLong(EMAIL_COLUMN + index * Long.BYTES));
+            if (freeRowCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeRowCount * 2);
+            }
+            freeRows[freeRowCount++] = row;
+            size--;
+            compactTextIfNeeded();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds a student by ID.
+     *
+     * @param studentId The ID to look up.
+     * @return A view of the student with that ID, or null if there is none.
+     */
+    @Override
+    public Student findById(String studentId) {
+        if (studentId == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int row = findRow(studentId.hashCode(), studentId);
+            return row < 0 ? null : view(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether a student with the given ID is stored.
+     *
+     * @param studentId The ID to check.
+     * @return True if a student uses that ID.
+     */
+    @Override
+    public boolean containsId(String studentId) {
+        return findById(studentId) != null;
+    }
+
+    /**
+     * Returns a snapshot of the students in a section, found by scanning the section column.
+     *
+     * @param section The section to look up.
+     * @return Views of the students in the section, in row order.
+     */
+    @Override
+    public Collection<Student> findBySection(String section) {
+        lock.readLock().lock();
+        try {
+            Integer code = section == null ? null : sectionCodes.get(section);
+            return code == null ? Collections.emptyList() : scan(SECTION_COLUMN, code);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the students in a grade level, found by scanning the grade column.
+     *
+     * @param grade The grade level to look up.
+     * @return Views of the students in the grade level, in row order.
+     */
+    @Override
+    public Collection<Student> findByGrade(GradeLevel grade) {
+        if (grade == null) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return scan(GRADE_COLUMN, grade.ordinal());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the students matching a query by walking the rows lazily. The section and
+     * grade columns are tested before a view is created, so rows they rule out cost
+     * one or two column reads.
+     *
+     * @param query The criteria to match.
+     * @param after Row to continue after, or -1 to start from the beginning.
+     * @return Views of the matching students keyed by row.
+     */
+    @Override
+    public Stream<Map.Entry<Long, Student>> query(StudentQuery query, long after) {
+        int start = (int) Math.max(0, Math.min(Integer.MAX_VALUE, after + 1));
+        return StreamSupport.stream(new QuerySpliterator(query, start), false);
+    }
+
+    /**
+     * Returns a snapshot of all students in row order. The list holds
+     * only row numbers; each view is created when it is fetched.
+     *
+     * @return A read-only list of views of every stored student.
+     */
+    @Override
+    public List<Student> getAll() {
+        lock.readLock().lock();
+        try {
+            return scan(-1, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of stored students.
+     *
+     * @return The student count.
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the store is empty.
+     *
+     * @return True if no students are stored.
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the off-heap memory allocated for rows, text and the ID index.
+     *
+     * @return The allocated size in bytes.
+     */
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) segments.length * SEGMENT_BYTES + (long) textChunks.size() * TEXT_CHUNK_SIZE
+                    + (long) idTable.capacity() * Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads one property of a view's row.
+     *
+     * @param view The view.
+     * @param field The property to read.
+     * @return The value, or null once the row has been reused; sections are the interned
+     *         dictionary instance.
+     */
+    private Object read(StudentView view, StudentField field) {
+        lock.readLock().lock();
+        try {
+            return isCurrent(view) ? read(view.row, field) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads one property of a row. The caller must hold the lock.
+     *
+     * @param row The row.
+     * @param field The property to read.
+     * @return The value; sections are the interned dictionary instance.
+     */
+    private Object read(int row, StudentField field) {
+        ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+        int index = row & ROW_MASK;
+        switch (field) {
+            case GRADE:
+                byte grade = segment.get(GRADE_COLUMN + index);
+                return grade == NO_GRADE ? null : GRADES[grade];
+            case SECTION:
+                int code = segment.getInt(SECTION_COLUMN + index * Integer.BYTES);
+                return code == NO_SECTION ? null : sectionNames.get(code);
+            case STUDENT_ID:
+                return loadId(segment, index);
+            default:
+                return loadText(segment.getLong(textColumn(field) + index * Long.BYTES));
+        }
+    }
+
+    /**
+     * Reads the modification version of a view's row.
+     *
+     * @param view The view.
+     * @return The version, or -1 once the row has been reused.
+     */
+    private long readVersion(StudentView view) {
+        lock.readLock().lock();
+        try {
+            if (!isCurrent(view)) {
+                return -1;
+            }
+            return segments[view.row >>> SEGMENT_SHIFT].getLong(VERSION_COLUMN + (view.row & ROW_MASK) * Long.BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the payload type tag of a row, without the removed flag.
+     *
+     * @param row The row.
+     * @return The type tag.
+     */
+    private int typeTag(int row) {
+        lock.readLock().lock();
+        try {
+            return readTypeTag(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the payload type tag of a row, without the removed flag. The caller must hold
+     * the lock.
+     *
+     * @param row The row.
+     * @return The type tag.
+     */
+    private int readTypeTag(int row) {
+        return segments[row >>> SEGMENT_SHIFT].get(TYPE_COLUMN + (row & ROW_MASK)) & ~REMOVED & 0xFF;
+    }
+
+    /**
+     * Changes one property of a row on behalf of its view, keeping the ID index up to
+     * date and notifying listeners while the row is stored. The old value is read and
+     * the new one written under the store's lock; listeners are called outside it, while
+     * only the row's monitor is held.
+     *
+     * @param view The view being modified.
+     * @param field The property to change.
+     * @param newValue The value to set.
+     * @throws IllegalArgumentException If the new ID is null or in use, a string is too
+     *         long, or a listener vetoes the change.
+     * @throws IllegalStateException If the view's row has been reused for another student.
+     */
+    private void update(StudentView view, StudentField field, Object newValue) {
+        byte[] text = field == StudentField.GRADE || field == StudentField.SECTION ? null : encode((String) newValue);
+        int row = view.row;
+        synchronized (rowLocks[row & (ROW_LOCKS - 1)]) {
+            boolean stored;
+            Object oldValue;
+            lock.readLock().lock();
+            try {
+                checkCurrent(view);
+                stored = isStored(row);
+                oldValue = read(row, field);
+                if (stored && field == StudentField.STUDENT_ID) {
+                    checkNewId(oldValue, newValue);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (stored) {
+                for (StudentChangeListener listener : changeListeners) {
+                    listener.beforeChange(view, field, oldValue, newValue);
+                }
+            }
+
+            if (!Objects.equals(oldValue, newValue)) {
+                lock.writeLock().lock();
+                try {
+                    checkCurrent(view);
+                    stored = isStored(row);
+                    if (stored && field == StudentField.STUDENT_ID) {
+                        checkNewId(oldValue, newValue); // another row may have taken the ID meanwhile
+                    }
+                    write(row, field, oldValue, newValue, text, stored);
+                    compactTextIfNeeded();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            if (stored) {
+                for (StudentChangeListener listener : changeListeners) {
+                    listener.afterChange(view, field, oldValue, newValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a view still stands for the student in its row, that is whether the
+     * row has not been reused since the view was created. The caller must hold the lock.
+     *
+     * @param view The view.
+     * @return True if the row's generation matches the view's.
+     */
+    private boolean isCurrent(StudentView view) {
+        return generation(view.row) == view.generation;
+    }
+
+    /**
+     * Reads the generation of a row. The caller must hold the lock.
+     *
+     * @param row The row.
+     * @return The number of times the row has been reused.
+     */
+    private int generation(int row) {
+        return segments[row >>> SEGMENT_SHIFT].getInt(GENERATION_COLUMN + (row & ROW_MASK) * Integer.BYTES);
+    }
+
+    /**
+     * Rejects changes through a view whose row has been reused. The caller must hold the lock.
+     *
+     * @param view The view.
+     * @throws IllegalStateException If the row now holds another student.
+     */
+    private void checkCurrent(StudentView view) {
+        if (!isCurrent(view)) {
+            throw new IllegalStateException("Student was removed and its row reused");
+        }
+    }
+
+    /**
+     * Checks whether a row holds a stored student rather than a removed one. The caller
+     * must hold the lock.
+     *
+     * @param row The row.
+     * @return True if the row has not been removed.
+     */
+    private boolean isStored(int row) {
+        return (segments[row >>> SEGMENT_SHIFT].get(TYPE_COLUMN + (row & ROW_MASK)) & REMOVED) == 0;
+    }
+
+    /**
+     * Validates a stored row's new ID. The caller must hold the lock.
+     *
+     * @param oldValue The row's current ID.
+     * @param newValue The ID about to be set.
+     * @throws IllegalArgumentException If the new ID is null or used by another row.
+     */
+    private void checkNewId(Object oldValue, Object newValue) {
+        if (Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        if (newValue == null) {
+            throw new IllegalArgumentException("Student ID must not be null");
+        }
+        if (findRow(newValue.hashCode(), (String) newValue) >= 0) {
+            throw new IllegalArgumentException("Student with ID " + newValue + " already exists");
+        }
+    }
+
+    /**
+     * Writes a changed property into a row and bumps its version. Text the row no longer
+     * refers to, and any text written to a removed row, is counted as dead. The caller
+     * must hold the write lock.
+     *
+     * @param row The row.
+     * @param field The property to change.
+     * @param oldValue The row's current value.
+     * @param newValue The value to set.
+     * @param text The new value as UTF-8, for string properties.
+     * @param stored Whether the row is stored, so its ID is in the ID index.
+     */
+    private void write(int row, StudentField field, Object oldValue, Object newValue, byte[] text, boolean stored) {
+        ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+        int index = row & ROW_MASK;
+        switch (field) {
+            case GRADE:
+                GradeLevel grade = (GradeLevel) newValue;
+                segment.put(GRADE_COLUMN + index, grade == null ? NO_GRADE : (byte) grade.ordinal());
+                break;
+            case SECTION:
+                segment.putInt(SECTION_COLUMN + index * Integer.BYTES, sectionCode((String) newValue));
+                break;
+            case STUDENT_ID:
+                if (stored) {
+                    deleteId(row, oldValue.hashCode());
+                    releaseId(segment, index);
+                }
+                storeId(segment, index, text);
+                if (stored) {
+                    insertId(row, newValue.hashCode());
+                } else {
+                    releaseId(segment, index);
+                }
+                break;
+            default:
+                int column = textColumn(field) + index * Long.BYTES;
+                if (stored) {
+                    releaseText(segment.getLong(column));
+                }
+                segment.putLong(column, storeText(text));
+                if (!stored) {
+                    releaseText(segment.getLong(column));
+                }
+                break;
+        }
+        int versionIndex = VERSION_COLUMN + index * Long.BYTES;
+        segment.putLong(versionIndex, segment.getLong(versionIndex) + 1);
+    }
+
+    /**
+     * Collects the stored rows whose byte or int column equals a value.
+     *
+     * @param column The column to test, or -1 to collect every stored row.
+     * @param value The value to match.
+     * @return Views of the matching rows, in row order.
+     */
+    private List<Student> scan(int column, int value) {
+        int[] rows = new int[column < 0 ? size : 16];
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+            int index = row & ROW_MASK;
+            if ((segment.get(TYPE_COLUMN + index) & REMOVED) != 0) {
+                continue;
+            }
+            boolean matches = column < 0
+                    || (column == SECTION_COLUMN && segment.getInt(column + index * Integer.BYTES) == value)
+                    || (column == GRADE_COLUMN && segment.get(column + index) == (byte) value);
+            if (matches) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = row;
+            }
+        }
+        int[] generations = new int[count];
+        for (int i = 0; i < count; i++) {
+            generations[i] = generation(rows[i]);
+        }
+        return new RowList(rows, generations, count);
+    }
+
+    /**
+     * Allocates a row. Once the last segment is full, the row of the most recently removed
+     * student is reused, bumping its generation; a segment is added only if there is none.
+     *
+     * @return The new row.
+     */
+    private int allocateRow() {
+        if (rowCount == segments.length * SEGMENT_ROWS && freeRowCount > 0) {
+            int row = freeRows[--freeRowCount];
+            ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+            int index = GENERATION_COLUMN + (row & ROW_MASK) * Integer.BYTES;
+            segment.putInt(index, segment.getInt(index) + 1);
+            return row;
+        }
+        if (rowCount == segments.length * SEGMENT_ROWS) {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segments.length - 1] = ByteBuffer.allocateDirect(SEGMENT_BYTES).order(ByteOrder.nativeOrder());
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Looks up the code of a section, adding it to the dictionary if it is new.
+     *
+     * @param section The section name, or null.
+     * @return The section code, or {@link #NO_SECTION} for null.
+     */
+    private int sectionCode(String section) {
+        if (section == null) {
+            return NO_SECTION;
+        }
+        return sectionCodes.computeIfAbsent(section, key -> {
+            sectionNames.add(key);
+            return sectionNames.size() - 1;
+        });
+    }
+
+    /**
+     * Gets the text column that holds a string property.
+     *
+     * @param field The property.
+     * @return The column offset within a segment.
+     */
+    private static int textColumn(StudentField field) {
+        switch (field) {
+            case FIRST_NAME:
+                return FIRST_NAME_COLUMN;
+            case LAST_NAME:
+                return LAST_NAME_COLUMN;
+            case EMAIL:
+                return EMAIL_COLUMN;
+            default:
+                throw new IllegalArgumentException("Not a text property: " + field);
+        }
+    }
+
+    /**
+     * Encodes a string as UTF-8, checking that it fits a text reference.
+     *
+     * @param value The string, or null.
+     * @return The UTF-8 bytes, or null for null.
+     * @throws IllegalArgumentException If the string is longer than 65535 bytes.
+     */
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Value is too long to store: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    /**
+     * Appends encoded text to the text area.
+     *
+     * @param bytes The UTF-8 bytes, or null.
+     * @return A reference packing chunk, offset and length, or {@link #NULL_TEXT} for null.
+     */
+    private long storeText(byte[] bytes) {
+        if (bytes == null) {
+            return NULL_TEXT;
+        }
+        if (textChunks.isEmpty() || textPosition + bytes.length > TEXT_CHUNK_SIZE) {
+            textChunks.add(ByteBuffer.allocateDirect(TEXT_CHUNK_SIZE));
+            textPosition = 0;
+        }
+        textChunks.get(textChunks.size() - 1).put(textPosition, bytes);
+        long reference = ((long) (textChunks.size() - 1) << (TEXT_CHUNK_SHIFT + 16))
+                | ((long) textPosition << 16) | bytes.length;
+        textPosition += bytes.length;
+        textBytes += bytes.length;
+        return reference;
+    }
+
+    /**
+     * Counts stored text as dead once no row refers to it.
+     *
+     * @param reference A reference from {@link #storeText(byte[])}.
+     */
+    private void releaseText(long reference) {
+        if (reference != NULL_TEXT) {
+            deadTextBytes += reference & 0xFFFF;
+        }
+    }
+
+    /**
+     * Counts the text holding a row's ID as dead, if the ID is not stored inline.
+     *
+     * @param segment The row's segment.
+     * @param index The row's index within the segment.
+     */
+    private void releaseId(ByteBuffer segment, int index) {
+        int start = ID_COLUMN + index * ID_WIDTH;
+        if ((segment.get(start) & 0xFF) == EXTERNAL_ID) {
+            releaseText(segment.getLong(start + Long.BYTES));
+        }
+    }
+
+    /**
+     * Copies the text of stored rows into fresh chunks once dead text is at least 1 MiB
+     * and half of the text stored. Removed rows lose their text: their strings read as
+     * null afterwards.
+     */
+    private void compactTextIfNeeded() {
+        if (deadTextBytes < MIN_DEAD_TEXT || deadTextBytes * 2 < textBytes) {
+            return;
+        }
+        List<ByteBuffer> old = new ArrayList<>(textChunks);
+        textChunks.clear();
+        textPosition = 0;
+        textBytes = 0;
+        deadTextBytes = 0;
+        for (int row = 0; row < rowCount; row++) {
+            ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+            int index = row & ROW_MASK;
+            boolean stored = (segment.get(TYPE_COLUMN + index) & REMOVED) == 0;
+            int id = ID_COLUMN + index * ID_WIDTH;
+            if ((segment.get(id) & 0xFF) == EXTERNAL_ID) {
+                if (stored) {
+                    segment.putLong(id + Long.BYTES, copyText(old, segment.getLong(id + Long.BYTES)));
+                } else {
+                    segment.put(id, (byte) NULL_ID);
+                }
+            }
+            for (int column = FIRST_NAME_COLUMN; column <= EMAIL_COLUMN; column += SEGMENT_ROWS * Long.BYTES) {
+                int offset = column + index * Long.BYTES;
+                segment.putLong(offset, stored ? copyText(old, segment.getLong(offset)) : NULL_TEXT);
+            }
+        }
+    }
+
+    /**
+     * Copies one string from the old text chunks into the current ones.
+     *
+     * @param old The chunks being compacted.
+     * @param reference A reference into the old chunks.
+     * @return A reference into the current chunks.
+     */
+    private long copyText(List<ByteBuffer> old, long reference) {
+        if (reference == NULL_TEXT) {
+            return NULL_TEXT;
+        }
+        byte[] bytes = new byte[(int) (reference & 0xFFFF)];
+        old.get((int) (reference >>> (TEXT_CHUNK_SHIFT + 16))).get(textOffset(reference), bytes);
+        return storeText(bytes);
+    }
+
+    /**
+     * Copies a stored row into a new student that is not attached to the store. The
+     * caller must hold the lock.
+     *
+     * @param row The row.
+     * @return A CollegeStudent or HighSchoolStudent with the row's values.
+     */
+    private Student copy(int row) {
+        String studentId = (String) read(row, StudentField.STUDENT_ID);
+        String firstName = (String) read(row, StudentField.FIRST_NAME);
+        String lastName = (String) read(row, StudentField.LAST_NAME);
+        String email = (String) read(row, StudentField.EMAIL);
+        GradeLevel grade = (GradeLevel) read(row, StudentField.GRADE);
+        String section = (String) read(row, StudentField.SECTION);
+        if (readTypeTag(row) == CollegeStudent.PAYLOAD_FORMAT.getTypeTag()) {
+            return new CollegeStudent(studentId, firstName, lastName, email, grade, section);
+        }
+        return new HighSchoolStudent(studentId, firstName, lastName, email, grade, section);
+    }
+
+    /**
+     * Creates a view of a row's current student. The caller must hold the lock.
+     *
+     * @param row The row.
+     * @return The view.
+     */
+    private StudentView view(int row) {
+        return new StudentView(row, generation(row));
+    }
+
+    /**
+     * Writes an ID into the ID column, inline if it is short enough.
+     *
+     * @param segment The row's segment.
+     * @param index The row's index within the segment.
+     * @param bytes The ID as UTF-8, or null.
+     */
+    private void storeId(ByteBuffer segment, int index, byte[] bytes) {
+        int start = ID_COLUMN + index * ID_WIDTH;
+        if (bytes == null) {
+            segment.put(start, (byte) NULL_ID);
+        } else if (bytes.length <= MAX_INLINE_ID) {
+            segment.put(start, (byte) bytes.length);
+            segment.put(start + 1, bytes);
+        } else {
+            segment.put(start, (byte) EXTERNAL_ID);
+            segment.putLong(start + Long.BYTES, storeText(bytes));
+        }
+    }
+
+    /**
+     * Reads an ID from the ID column.
+     *
+     * @param segment The row's segment.
+     * @param index The row's index within the segment.
+     * @return The ID, or null.
+     */
+    private String loadId(ByteBuffer segment, int index) {
+        int start = ID_COLUMN + index * ID_WIDTH;
+        int marker = segment.get(start) & 0xFF;
+        if (marker == NULL_ID) {
+            return null;
+        }
+        if (marker == EXTERNAL_ID) {
+            return loadText(segment.getLong(start + Long.BYTES));
+        }
+        return decode(segment, start + 1, marker);
+    }
+
+    /**
+     * Compares the ID in the ID column with a string without decoding it.
+     *
+     * @param segment The row's segment.
+     * @param index The row's index within the segment.
+     * @param id The ID to compare with.
+     * @return True if they are the same.
+     */
+    private boolean idEquals(ByteBuffer segment, int index, String id) {
+        int start = ID_COLUMN + index * ID_WIDTH;
+        int marker = segment.get(start) & 0xFF;
+        if (marker == NULL_ID) {
+            return false;
+        }
+        if (marker == EXTERNAL_ID) {
+            long reference = segment.getLong(start + Long.BYTES);
+            return bytesEqual(textChunk(reference), textOffset(reference), (int) (reference & 0xFFFF), id);
+        }
+        return bytesEqual(segment, start + 1, marker, id);
+    }
+
+    /**
+     * Decodes a string from the text area.
+     *
+     * @param reference A reference from {@link #storeText(byte[])}.
+     * @return The string, or null for {@link #NULL_TEXT}.
+     */
+    private String loadText(long reference) {
+        if (reference == NULL_TEXT) {
+            return null;
+        }
+        return decode(textChunk(reference), textOffset(reference), (int) (reference & 0xFFFF));
+    }
+
+    /**
+     * Decodes UTF-8 bytes from a direct buffer, copying them through a per-thread array.
+     *
+     * @param buffer The buffer holding the bytes.
+     * @param offset Index of the first byte.
+     * @param length Number of bytes.
+     * @return The string.
+     */
+    private static String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = TEXT_BUFFER.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            TEXT_BUFFER.set(bytes);
+        }
+        buffer.get(offset, bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares UTF-8 bytes in a direct buffer with a string without decoding them. ASCII
+     * strings are compared character by character; others are encoded first.
+     *
+     * @param buffer The buffer holding the bytes.
+     * @param offset Index of the first byte.
+     * @param length Number of bytes.
+     * @param value The string to compare with.
+     * @return True if they are the same.
+     */
+    private static boolean bytesEqual(ByteBuffer buffer, int offset, int length, String value) {
+        if (length < value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return bytesEqual(buffer, offset, length, value.getBytes(StandardCharsets.UTF_8));
+            }
+            if (buffer.get(offset + i) != c) {
+                return false;
+            }
+        }
+        return length == value.length();
+    }
+
+    /**
+     * Compares UTF-8 bytes in a direct buffer with encoded bytes.
+     *
+     * @param buffer The buffer holding the bytes.
+     * @param offset Index of the first byte.
+     * @param length Number of bytes.
+     * @param bytes The bytes to compare with.
+     * @return True if they are the same.
+     */
+    private static boolean bytesEqual(ByteBuffer buffer, int offset, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the chunk a text reference points into.
+     *
+     * @param reference The text reference.
+     * @return The chunk.
+     */
+    private ByteBuffer textChunk(long reference) {
+        return textChunks.get((int) (reference >>> (TEXT_CHUNK_SHIFT + 16)));
+    }
+
+    /**
+     * Gets the offset within its chunk of a text reference.
+     *
+     * @param reference The text reference.
+     * @return The offset.
+     */
+    private static int textOffset(long reference) {
+        return (int) (reference >>> 16) & (TEXT_CHUNK_SIZE - 1);
+    }
+
+    /**
+     * Finds the stored row with an ID.
+     *
+     * @param hash The ID's hash code.
+     * @param id The ID.
+     * @return The row, or -1 if the ID is not stored.
+     */
+    private int findRow(int hash, String id) {
+        int mask = idTable.capacity() - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            long entry = idTable.get(slot);
+            int rowEntry = (int) entry;
+            if (rowEntry == EMPTY_SLOT) {
+                return -1;
+            }
+            if (rowEntry != DELETED_SLOT && (int) (entry >>> 32) == hash) {
+                int row = rowEntry - 1;
+                if (idEquals(segments[row >>> SEGMENT_SHIFT], row & ROW_MASK, id)) {
+                    return row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a row to the ID index, growing the table to keep it at most half full.
+     *
+     * @param row The row.
+     * @param hash The hash code of the row's ID.
+     */
+    private void insertId(int row, int hash) {
+        if ((idTableUsed + 1) * 2L > idTable.capacity()) {
+            rehash();
+        }
+        int mask = idTable.capacity() - 1;
+        int slot = spread(hash) & mask;
+        while ((int) idTable.get(slot) > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if ((int) idTable.get(slot) == EMPTY_SLOT) {
+            idTableUsed++;
+        }
+        idTable.put(slot, (long) hash << 32 | (row + 1));
+    }
+
+    /**
+     * Removes a row from the ID index, leaving a deleted marker so probes continue past it.
+     *
+     * @param row The row.
+     * @param hash The hash code of the row's ID.
+     */
+    private void deleteId(int row, int hash) {
+        int mask = idTable.capacity() - 1;
+        for (int slot = spread(hash) & mask; (int) idTable.get(slot) != EMPTY_SLOT; slot = (slot + 1) & mask) {
+            if ((int) idTable.get(slot) == row + 1) {
+                idTable.put(slot, DELETED_ENTRY);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the ID index without deleted markers, sized for four times the stored students.
+     */
+    private void rehash() {
+        int capacity = MIN_TABLE_CAPACITY;
+        while (capacity < (size + 1) * 4L) {
+            capacity <<= 1;
+        }
+        LongBuffer old = idTable;
+        idTable = allocateTable(capacity);
+        idTableUsed = 0;
+        int mask = capacity - 1;
+        for (int slot = 0; slot < old.capacity(); slot++) {
+            long entry = old.get(slot);
+            if ((int) entry > 0) {
+                int target = spread((int) (entry >>> 32)) & mask;
+                while ((int) idTable.get(target) != EMPTY_SLOT) {
+                    target = (target + 1) & mask;
+                }
+                idTable.put(target, entry);
+                idTableUsed++;
+            }
+        }
+    }
+
+    /**
+     * Allocates an empty ID index table.
+     *
+     * @param capacity The number of slots, a power of two.
+     * @return The table.
+     */
+    private static LongBuffer allocateTable(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+     * Mixes the bits of a hash code so that similar IDs land in different slots.
+     *
+     * @param hash The hash code.
+     * @return The mixed hash.
+     */
+    private static int spread(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    /**
+     * Read-only list of views over a snapshot of row numbers and their generations.
+     */
+    private final class RowList extends AbstractList<Student> implements RandomAccess {
+        /** The rows, in order. */
+        private final int[] rows;
+
+        /** Generation of each row when the snapshot was taken. */
+        private final int[] generations;
+
+        /** Number of rows used. */
+        private final int count;
+
+        /**
+         * Constructs a RowList.
+         *
+         * @param rows The rows, in order.
+         * @param generations Generation of each row.
+         * @param count Number of rows used.
+         */
+        RowList(int[] rows, int[] generations, int count) {
+            this.rows = rows;
+            this.generations = generations;
+            this.count = count;
+        }
+
+        /**
+         * Creates a view of one row.
+         *
+         * @param position The position in the list.
+         * @return The view.
+         */
+        @Override
+        public Student get(int position) {
+            Objects.checkIndex(position, count);
+            return new StudentView(rows[position], generations[position]);
+        }
+
+        /**
+         * Gets the number of rows.
+         * @return The list size.
+         */
+        @Override
+        public int size() { return count; }
+    }
+
+    /**
+     * Walks the rows from a starting row, yielding views of the stored rows that match a
+     * query. The read lock is held only while looking for the next candidate row.
+     */
+    private final class QuerySpliterator extends Spliterators.AbstractSpliterator<Map.Entry<Long, Student>> {
+        /** The criteria to match. */
+        private final StudentQuery query;
+
+        /** Code of the queried section, or null while it is not in the dictionary. */
+        private Integer sectionCode;
+
+        /** Next row to examine. */
+        private int nextRow;
+
+        /**
+         * Constructs a QuerySpliterator.
+         *
+         * @param query The criteria to match.
+         * @param startRow The first row to examine.
+         */
+        QuerySpliterator(StudentQuery query, int startRow) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+            this.query = query;
+            this.nextRow = startRow;
+        }
+
+        /**
+         * Yields the next matching row, if any.
+         *
+         * @param action Receives the row and its view.
+         * @return True if a row was yielded.
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<Long, Student>> action) {
+            while (true) {
+                StudentView view = nextCandidate();
+                if (view == null) {
+                    return false;
+                }
+                if (query.matches(view)) {
+                    action.accept(new SimpleImmutableEntry<>((long) view.row, view));
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Finds the next stored row whose section and grade columns match the query.
+         *
+         * @return A view of the row, or null once every row has been examined.
+         */
+        private StudentView nextCandidate() {
+            String section = query.getSection();
+            GradeLevel grade = query.getGrade();
+            lock.readLock().lock();
+            try {
+                if (section != null && sectionCode == null) {
+                    sectionCode = sectionCodes.get(section);
+                    if (sectionCode == null) {
+                        nextRow = rowCount;
+                        return null;
+                    }
+                }
+                while (nextRow < rowCount) {
+                    int row = nextRow++;
+                    ByteBuffer segment = segments[row >>> SEGMENT_SHIFT];
+                    int index = row & ROW_MASK;
+                    if ((segment.get(TYPE_COLUMN + index) & REMOVED) == 0
+                            && (section == null || segment.getInt(SECTION_COLUMN + index * Integer.BYTES) == sectionCode)
+                            && (grade == null || segment.get(GRADE_COLUMN + index) == (byte) grade.ordinal())) {
+                        return view(row);
+                    }
+                }
+                return null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Flyweight student that reads and writes one row of the store. It holds nothing but
+     * the row number, its generation and the stored type.
+     */
+    private final class StudentView extends Student {
+        /** The row this view stands for. */
+        private final int row;
+
+        /** Generation of the row when the view was created; the view is stale once it changes. */
+        private final int generation;
+
+        /** The class of the student stored in the row, read on first use. */
+        private Class<? extends Student> recordType;
+
+        /**
+         * Constructs a view of a row.
+         *
+         * @param row The row.
+         * @param generation The row's current generation.
+         */
+        StudentView(int row, int generation) {
+            super(null, null, null, null, null, null);
+            this.row = row;
+            this.generation = generation;
+        }
+
+        /**
+         * Reads the student ID from the row.
+         * @return The student's unique identifier.
+         */
+        @Override
+        public String getStudentId() { return (String) read(this, StudentField.STUDENT_ID); }
+
+        /**
+         * Reads the first name from the row.
+         * @return The first name.
+         */
+        @Override
+        public String getFirstName() { return (String) read(this, StudentField.FIRST_NAME); }
+
+        /**
+         * Reads the last name from the row.
+         * @return The last name.
+         */
+        @Override
+        public String getLastName() { return (String) read(this, StudentField.LAST_NAME); }
+
+        /**
+         * Reads the email address from the row.
+         * @return The email address.
+         */
+        @Override
+        public String getEmail() { return (String) read(this, StudentField.EMAIL); }
+
+        /**
+         * Reads the grade level from the row.
+         * @return The grade level enum.
+         */
+        @Override
+        public GradeLevel getGrade() { return (GradeLevel) read(this, StudentField.GRADE); }
+
+        /**
+         * Reads the section from the row.
+         * @return The interned section name.
+         */
+        @Override
+        public String getSection() { return (String) read(this, StudentField.SECTION); }
+
+        /**
+         * Changes the student ID in the row and the ID index.
+         * @param studentId The unique identifier to set.
+         */
+        @Override
+        public void setStudentId(String studentId) { update(this, StudentField.STUDENT_ID, studentId); }
+
+        /**
+         * Changes the first name in the row.
+         * @param firstName The first name to set.
+         */
+        @Override
+        public void setFirstName(String firstName) { update(this, StudentField.FIRST_NAME, firstName); }
+
+        /**
+         * Changes the last name in the row.
+         * @param lastName The last name to set.
+         */
+        @Override
+        public void setLastName(String lastName) { update(this, StudentField.LAST_NAME, lastName); }
+
+        /**
+         * Changes the email address in the row.
+         * @param email The email to set.
+         */
+        @Override
+        public void setEmail(String email) { update(this, StudentField.EMAIL, email); }
+
+        /**
+         * Changes the grade level in the row.
+         * @param grade The grade level to set.
+         */
+        @Override
+        public void setGrade(GradeLevel grade) { update(this, StudentField.GRADE, grade); }
+
+        /**
+         * Changes the section in the row.
+         * @param section The section to set.
+         */
+        @Override
+        public void setSection(String section) { update(this, StudentField.SECTION, section); }
+
+        /**
+         * Reads the modification version from the row.
+         * @return The current modification version.
+         */
+        @Override
+        public long getVersion() { return readVersion(this); }
+
+        /**
+         * Gets the class of the student stored in the row.
+         * @return CollegeStudent or HighSchoolStudent.
+         */
+        @Override
+        Class<? extends Student> getRecordType() {
+            if (recordType == null) {
+                recordType = typeTag(row) == CollegeStudent.PAYLOAD_FORMAT.getTypeTag()
+                        ? CollegeStudent.class : HighSchoolStudent.class;
+            }
+            return recordType;
+        }
+
+        /**
+         * Gets the full name by combining first and last names.
+         * @return The full name of the student.
+         */
+        @Override
+        public String getFullName() {
+            return getFirstName() + " " + getLastName();
+        }
+
+        /**
+         * Builds the QR payload with the stored subtype's format.
+         * @return A string to be encoded in the QR code.
+         */
+        @Override
+        public String toQRString() {
+            return (getRecordType() == CollegeStudent.class ? CollegeStudent.PAYLOAD_FORMAT
+                    : HighSchoolStudent.PAYLOAD_FORMAT).toText(this);
+        }
+
+        /**
+         * Views are equal when they stand for the same row of the same store, in the same generation.
+         *
+         * @param other The object to compare with.
+         * @return True if other is a view of the same row.
+         */
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StudentView && ((StudentView) other).row == row
+                    && ((StudentView) other).generation == generation
+                    && ((StudentView) other).store() == ColumnarStudentStore.this;
+        }
+
+        /**
+         * Hashes the row number, consistent with {@link #equals(Object)}.
+         *
+         * @return The hash code.
+         */
+        @Override
+        public int hashCode() {
+            return spread(row);
+        }
+
+        /**
+         * Returns a string representation in the same form as {@link Student#toString()}.
+         * @return A formatted string containing student details.
+         */
+        @Override
+        public String toString() {
+            GradeLevel grade = getGrade();
+            return "Student{ID='" + getStudentId() + "', Name='" + getFullName() + "', Email='" + getEmail()
+                    + "', Grade='" + (grade == null ? null : grade.name()) + "', Section='" + getSection() + "'}";
+        }
+
+        /**
+         * Gets the store this view belongs to.
+         * @return The store.
+         */
+        private ColumnarStudentStore store() { return ColumnarStudentStore.this; }
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checkpoint journal of the students whose QR codes a bulk run has already written, so
+ * that a run interrupted by a crash can resume where it stopped.
+ *
+ * <p>The journal is an append-only text file in the output directory with one
+ * {@code digest<TAB>studentId} line per completed student, where the digest is the
+ * first 16 hex digits of the payload digest that was written. A student counts as done
+ * only if its current payload still has that digest, so students changed since the
+ * interrupted run are generated again. Lines are buffered and appended in batches of
+ * at most {@link #FLUSH_LINES} lines or {@link #FLUSH_INTERVAL_NANOS} apart, so a crash
+ * loses at most the last batch. The file is deleted once a run completes, since the
+ * {@link QRRenderCache} manifest then covers everything written. All methods are
+ * thread-safe.</p>
+ */
+public class GenerationJournal implements Closeable {
+    /** Name of the journal file inside the output directory. */
+    public static final String JOURNAL_NAME = ".qr_journal";
+
+    /** Most lines buffered before they are appended to the file. */
+    private static final int FLUSH_LINES = 256;
+
+    /** Longest time lines stay buffered before they are appended to the file. */
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+    /** Number of leading digest characters kept per entry. */
+    private static final int DIGEST_PREFIX = 16;
+
+    /** Location of the journal file. */
+    private final Path path;
+
+    /** Digest prefix recorded for each completed student ID, as read on open. */
+    private final Map<String, String> completed;
+
+    /** Lines not yet appended to the file. */
+    private final List<String> pendingLines;
+
+    /** Time of the last append, from {@link System#nanoTime()}. */
+    private long lastFlush;
+
+    /** Channel appending to the journal, opened on first write. */
+    private Writer writer;
+
+    /**
+     * Opens the journal in an output directory, reading the entries left by an earlier
+     * run that did not complete.
+     *
+     * @param outputDirectory The directory QR codes are written to; the journal lives here.
+     * @throws IOException If an existing journal cannot be read.
+     */
+    public GenerationJournal(String outputDirectory) throws IOException {
+        this.path = Paths.get(outputDirectory, JOURNAL_NAME);
+        this.completed = new HashMap<>();
+        this.pendingLines = new ArrayList<>();
+        this.lastFlush = System.nanoTime();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab == DIGEST_PREFIX) {
+                        completed.put(line.substring(tab + 1), line.substring(0, tab));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of students recorded as done by an earlier run.
+     *
+     * @return The number of entries read on open.
+     */
+    public synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Checks whether an earlier run recorded a student at all, before its digest is worked out.
+     *
+     * @param studentId The student ID.
+     * @return True if the journal has an entry for the student.
+     */
+    public synchronized boolean contains(String studentId) {
+        return completed.containsKey(studentId);
+    }
+
+    /**
+     * Checks whether an earlier run already wrote a student's QR code with its current payload.
+     *
+     * @param studentId The student ID.
+     * @param digest The digest of the student's current payload.
+     * @return True if the journal records the same digest for the student.
+     */
+    public synchronized boolean isCompleted(String studentId, String digest) {
+        String recorded = completed.get(studentId);
+        return recorded != null && digest.startsWith(recorded);
+    }
+
+    /**
+     * Records that a student's QR code has been written. The line reaches the file once
+     * the current batch is full or old enough, or on {@link #close()}.
+     *
+     * @param studentId The student ID.
+     * @param digest The digest of the payload that was written.
+     */
+    public synchronized void record(String studentId, String digest) {
+        if (studentId.indexOf('\n') >= 0 || studentId.indexOf('\r') >= 0 || digest.length() < DIGEST_PREFIX) {
+            return;
+        }
+        pendingLines.add(digest.substring(0, DIGEST_PREFIX) + '\t' + studentId);
+        if (pendingLines.size() >= FLUSH_LINES || System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends all buffered lines to the file.
+     *
+     * @return True if the lines were written; false if the journal could not be written.
+     */
+    public synchronized boolean flush() {
+        lastFlush = System.nanoTime();
+        if (pendingLines.isEmpty()) {
+            return true;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(path.getParent());
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192);
+            }
+            for (String line : pendingLines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing generation journal: " + e.getMessage());
+            return false;
+        } finally {
+            pendingLines.clear();
+        }
+    }
+
+    /**
+     * Flushes buffered lines and closes the journal, keeping the file so a later run
+     * can resume from it.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Closes the journal and deletes the file, once a run has completed.
+     *
+     * @return True if the file is gone; false if it could not be deleted.
+     */
+    public synchronized boolean delete() {
+        pendingLines.clear();
+        try {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            Files.deleteIfExists(path);
+            completed.clear();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error deleting generation journal: " + e.getMessage());
+            return false;
+        }
+    }
+}
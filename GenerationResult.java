@@ -0,0 +1,152 @@
+/**
+ * Outcome of generating a single student's QR code during a bulk run.
+ * Instances are immutable and safe to share between threads.
+ */
+public class GenerationResult {
+    /** The ID of the student the QR code was generated for. */
+    private final String studentId;
+
+    /** The output file the QR code was (or would have been) written to. */
+    private final String fileName;
+
+    /** Whether the QR code was rendered and written successfully. */
+    private final boolean success;
+
+    /** Whether the existing file was already up to date and nothing was written. */
+    private final boolean unchanged;
+
+    /** A short description of what went wrong, or null on success. */
+    private final String errorMessage;
+
+    /** Digest of the payload in the output file, or null if it was not computed. */
+    private final String digest;
+
+    /**
+     * Constructs a new GenerationResult.
+     *
+     * @param studentId The ID of the student.
+     * @param fileName The output file path.
+     * @param success Whether generation succeeded.
+     * @param unchanged Whether the file was already up to date.
+     * @param errorMessage The failure reason, or null on success.
+     * @param digest Digest of the payload in the output file, or null if not computed.
+     */
+    private GenerationResult(String studentId, String fileName, boolean success, boolean unchanged,
+                             String errorMessage, String digest) {
+        this.studentId = studentId;
+        this.fileName = fileName;
+        this.success = success;
+        this.unchanged = unchanged;
+        this.errorMessage = errorMessage;
+        this.digest = digest;
+    }
+
+    /**
+     * Creates a result for a QR code that was written successfully.
+     *
+     * @param studentId The ID of the student.
+     * @param fileName The output file path.
+     * @return A successful GenerationResult.
+     */
+    public static GenerationResult success(String studentId, String fileName) {
+        return success(studentId, fileName, null);
+    }
+
+    /**
+     * Creates a result for a QR code that was written successfully, recording the
+     * digest of the payload it holds.
+     *
+     * @param studentId The ID of the student.
+     * @param fileName The output file path.
+     * @param digest The payload digest, see {@link QRRenderCache#digest(String, String)}; may be null.
+     * @return A successful GenerationResult.
+     */
+    public static GenerationResult success(String studentId, String fileName, String digest) {
+        return new GenerationResult(studentId, fileName, true, false, null, digest);
+    }
+
+    /**
+     * Creates a result for a QR code whose file was already up to date and was skipped.
+     *
+     * @param studentId The ID of the student.
+     * @param fileName The output file path.
+     * @return A successful, unchanged GenerationResult.
+     */
+    public static GenerationResult unchanged(String studentId, String fileName) {
+        return unchanged(studentId, fileName, null);
+    }
+
+    /**
+     * Creates a result for a QR code whose file was already up to date, recording the
+     * digest of the payload it holds.
+     *
+     * @param studentId The ID of the student.
+     * @param fileName The output file path.
+     * @param digest The payload digest, see {@link QRRenderCache#digest(String, String)}; may be null.
+     * @return A successful, unchanged GenerationResult.
+     */
+    public static GenerationResult unchanged(String studentId, String fileName, String digest) {
+        return new GenerationResult(studentId, fileName, true, true, null, digest);
+    }
+
+    /**
+     * Creates a result for a QR code that could not be generated.
+     *
+     * @param studentId The ID of the student.
+     * @param fileName The output file path, or null if it was never determined.
+     * @param errorMessage A short description of the failure.
+     * @return A failed GenerationResult.
+     */
+    public static GenerationResult failure(String studentId, String fileName, String errorMessage) {
+        return new GenerationResult(studentId, fileName, false, false, errorMessage, null);
+    }
+
+    /**
+     * Gets the student ID.
+     * @return The ID of the student this result belongs to.
+     */
+    public String getStudentId() { return studentId; }
+
+    /**
+     * Gets the output file name.
+     * @return The output file path, or null if it was never determined.
+     */
+    public String getFileName() { return fileName; }
+
+    /**
+     * Checks whether generation succeeded.
+     * @return True if the QR code was written successfully.
+     */
+    public boolean isSuccess() { return success; }
+
+    /**
+     * Checks whether the file was skipped because its content was already up to date.
+     * @return True if nothing needed to be written.
+     */
+    public boolean isUnchanged() { return unchanged; }
+
+    /**
+     * Gets the failure reason.
+     * @return A short description of the failure, or null on success.
+     */
+    public String getErrorMessage() { return errorMessage; }
+
+    /**
+     * Gets the digest of the payload in the output file.
+     * @return The payload digest, or null if it was not computed or generation failed.
+     */
+    public String getDigest() { return digest; }
+
+    /**
+     * Returns a string representation of this result.
+     *
+     * @return A short summary of the outcome.
+     */
+    @Override
+    public String toString() {
+        return success
+                ? "GenerationResult{ID='" + studentId + "', File='" + fileName + "'"
+                        + (unchanged ? ", Unchanged" : "") + "}"
+                : "GenerationResult{ID='" + studentId + "', Error='" + errorMessage + "'}";
+    }
+}
@@ -22,5 +22,44 @@ public enum GradeLevel {
     /** College Junior year */
     COLLEGE_JUNIOR,
     /** College Senior year */
-    COLLEGE_SENIOR
+    COLLEGE_SENIOR;
+
+    /**
+     * Checks whether this grade level is a college year.
+     *
+     * @return True for the college years; false for grades 7 to 12.
+     */
+    public boolean isCollege() {
+        return name().startsWith("COLLEGE");
+    }
+
+    /**
+     * Parses a grade level from its enum name (case-insensitive) or from its
+     * 1-based position in the list of grade levels, as shown in the console menu.
+     *
+     * @param text The text to parse.
+     * @return The matching grade level.
+     * @throws IllegalArgumentException If the text matches no grade level.
+     */
+    public static GradeLevel parse(String text) {
+        String trimmed = text.trim();
+        GradeLevel[] values = values();
+        if (!trimmed.isEmpty() && Character.isDigit(trimmed.charAt(0))) {
+            try {
+                int choice = Integer.parseInt(trimmed);
+                if (choice >= 1 && choice <= values.length) {
+                    return values[choice - 1];
+                }
+            } catch (NumberFormatException e) {
+                // fall through to the error below
+            }
+        } else {
+            for (GradeLevel grade : values) {
+                if (grade.name().equalsIgnoreCase(trimmed)) {
+                    return grade;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown grade level: " + text);
+    }
 }
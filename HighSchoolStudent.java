@@ -4,6 +4,9 @@
  */
 public class HighSchoolStudent extends Student {
 
+    /** Format used to serialize high school student QR payloads. */
+    public static final StudentPayloadFormat PAYLOAD_FORMAT = new StudentPayloadFormat("High School Student", 2);
+
     /**
      * Constructs a HighSchoolStudent with the specified details.
      * 
@@ -27,7 +30,6 @@ public class HighSchoolStudent extends Student {
      */
     @Override
     public String toQRString() {
-        return String.format("High School Student\nID: %s\nName: %s\nEmail: %s\nGrade: %s\nSection: %s",
-                getStudentId(), getFullName(), getEmail(), getGrade(), getSection());
+        return PAYLOAD_FORMAT.toText(this);
     }
 }
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a bulk student import: how many rows were read and imported, and
+ * which rows failed and why.
+ *
+ * <p>Only the first {@link #MAX_RECORDED_ERRORS} failures are kept in detail, so
+ * importing a file where every row is broken does not exhaust memory; the total
+ * failure count is always exact.</p>
+ */
+public class ImportReport {
+    /** Maximum number of row errors kept in detail. */
+    public static final int MAX_RECORDED_ERRORS = 1000;
+
+    /** Number of data rows read from the file. */
+    private long rowCount;
+
+    /** Number of students added to the manager. */
+    private long importedCount;
+
+    /** Number of rows that failed to parse or were rejected. */
+    private long errorCount;
+
+    /** Detailed messages for the first failures, each prefixed with its line number. */
+    private final List<String> errors;
+
+    /**
+     * Constructs an empty ImportReport.
+     */
+    public ImportReport() {
+        this.errors = new ArrayList<>();
+    }
+
+    /**
+     * Records that data rows were read.
+     *
+     * @param rows The number of rows read.
+     */
+    void addRows(long rows) {
+        rowCount += rows;
+    }
+
+    /**
+     * Records that students were imported.
+     *
+     * @param students The number of students added.
+     */
+    void addImported(long students) {
+        importedCount += students;
+    }
+
+    /**
+     * Records a failed row.
+     *
+     * @param lineNumber The 1-based line number of the row in the file.
+     * @param message Why the row failed.
+     */
+    void addError(long lineNumber, String message) {
+        errorCount++;
+        if (errors.size() < MAX_RECORDED_ERRORS) {
+            errors.add("Line " + lineNumber + ": " + message);
+        }
+    }
+
+    /**
+     * Gets the number of data rows read.
+     * @return The row count.
+     */
+    public long getRowCount() { return rowCount; }
+
+    /**
+     * Gets the number of students imported.
+     * @return The imported count.
+     */
+    public long getImportedCount() { return importedCount; }
+
+    /**
+     * Gets the number of failed rows.
+     * @return The error count.
+     */
+    public long getErrorCount() { return errorCount; }
+
+    /**
+     * Gets the detailed messages for the first failed rows.
+     * @return A read-only list of error messages.
+     */
+    public List<String> getErrors() { return Collections.unmodifiableList(errors); }
+
+    /**
+     * Returns a one-line summary of the import.
+     *
+     * @return The counts formatted for display.
+     */
+    @Override
+    public String toString() {
+        return "Imported " + importedCount + " of " + rowCount + " rows (" + errorCount + " errors)";
+    }
+}
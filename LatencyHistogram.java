@@ -0,0 +1,195 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with bounded relative error.
+ *
+ * <p>Buckets follow the HdrHistogram layout: values below 64 get a bucket each, and
+ * every higher power of two is split into 32 equal sub-buckets, so any recorded value
+ * is reported within about 3% of its true value. The buckets cover the whole
+ * {@code long} range in 1888 counters. Recording is a few bit operations and one atomic
+ * increment, with no locks or allocation, so it is cheap enough for per-item hot paths
+ * under heavy contention.</p>
+ */
+public class LatencyHistogram {
+    /** Number of bits of precision kept below each value's leading bit, plus one. */
+    private static final int SUB_BUCKET_BITS = 6;
+
+    /** Number of values below which every value has its own bucket. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Number of sub-buckets each higher power of two is split into. */
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /** Total number of buckets needed to cover every non-negative long. */
+    private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 2) * HALF_SUB_BUCKET_COUNT;
+
+    /** Number of recorded values per bucket. */
+    private final AtomicLongArray counts;
+
+    /** Total number of recorded values. */
+    private final LongAdder totalCount;
+
+    /** Sum of all recorded values, for the mean. */
+    private final LongAdder totalSum;
+
+    /** Largest recorded value. */
+    private final AtomicLong max;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalCount = new LongAdder();
+        this.totalSum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records one duration. Negative values are recorded as zero.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Records the time elapsed since a start time taken with {@link System#nanoTime()}.
+     *
+     * @param startNanos The start time.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Takes a consistent-enough copy of the histogram for reporting. Values recorded
+     * while the copy is taken may or may not be included.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalSum.sum(), max.get());
+    }
+
+    /**
+     * Gets the number of recorded values.
+     * @return The count.
+     */
+    public long getCount() { return totalCount.sum(); }
+
+    /**
+     * Maps a value to its bucket.
+     *
+     * @param value A non-negative value.
+     * @return The bucket index.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the largest value that maps to a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return The bucket's inclusive upper bound.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / HALF_SUB_BUCKET_COUNT - 1;
+        long mantissa = bucket % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Point-in-time copy of a histogram with derived statistics.
+     */
+    public static class Snapshot {
+        /** Per-bucket counts at the time of the snapshot. */
+        private final long[] counts;
+
+        /** Number of values in the snapshot. */
+        private final long count;
+
+        /** Sum of the recorded values. */
+        private final long sum;
+
+        /** Largest recorded value. */
+        private final long max;
+
+        /**
+         * Constructs a Snapshot.
+         *
+         * @param counts Per-bucket counts.
+         * @param count Number of values.
+         * @param sum Sum of the values.
+         * @param max Largest value.
+         */
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         * @return The count.
+         */
+        public long getCount() { return count; }
+
+        /**
+         * Gets the largest recorded value.
+         * @return The maximum in nanoseconds.
+         */
+        public long getMax() { return max; }
+
+        /**
+         * Gets the mean of the recorded values.
+         * @return The mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+        /**
+         * Gets the value below which the given fraction of recorded values fall.
+         *
+         * @param fraction The quantile, from 0 to 1.
+         * @return The quantile in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getPercentile(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
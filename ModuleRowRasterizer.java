@@ -0,0 +1,26 @@
+/**
+ * Expands one row of a {@link QRMatrix} into a packed 1-bit pixel row, with every
+ * module scaled to a square of whole pixels. Pixels outside the symbol are light.
+ *
+ * <p>The scalar implementation in {@link QRCodeGenerator} fills runs of dark modules;
+ * {@link VectorModuleRowRasterizer} computes whole groups of pixels at once with the
+ * incubating Vector API. Both produce exactly the same bytes. See
+ * {@link QRCodeGenerator#createConfiguredRasterizer()} for how one is chosen.</p>
+ */
+@FunctionalInterface
+public interface ModuleRowRasterizer {
+
+    /**
+     * Writes one packed pixel row. The most significant bit of each byte is the
+     * leftmost pixel; 0 is black and 1 is white. Bits past the last pixel are white.
+     *
+     * @param matrix The module matrix.
+     * @param moduleY The module row, or a value outside the matrix for a blank row.
+     * @param row The destination buffer.
+     * @param offset Index of the row's first byte.
+     * @param rowBytes Number of bytes in the pixel row.
+     * @param scale Pixels per module side.
+     * @param margin Pixels left of the first module column.
+     */
+    void expandRow(QRMatrix matrix, int moduleY, byte[] row, int offset, int rowBytes, int scale, int margin);
+}
@@ -0,0 +1,242 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streams 1-bit grayscale PNG images row by row from a {@link ScanlineSource}.
+ *
+ * <p>Rows are produced one at a time and fed straight into a {@link Deflater}, so the
+ * image is never materialized. All buffers, the deflater and the CRC are reused from
+ * one image to the next, which makes a writer cheap to use for many small images.
+ * Instances are not thread-safe; use one writer per thread.</p>
+ */
+public class PngWriter {
+    /**
+     * Default deflate level, trading size for speed: against zlib's default level 6, a
+     * typical student QR code encodes about a third faster and comes out about a fifth
+     * larger (670 rather than 550 bytes), still far below one file system block.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    /** Size of the staging buffer for compressed data; one IDAT chunk at most. */
+    private static final int IDAT_CAPACITY = 32 * 1024;
+
+    /** Deflater reused for every image. */
+    private final Deflater deflater;
+
+    /** CRC reused for every chunk. */
+    private final CRC32 crc;
+
+    /** Compressed bytes waiting to be emitted as an IDAT chunk. */
+    private final byte[] idat;
+
+    /** Number of valid bytes in {@link #idat}. */
+    private int idatLength;
+
+    /** Encoded output waiting to be written to the channel. */
+    private final ByteBuffer out;
+
+    /** Scratch space for IHDR data. */
+    private final byte[] header;
+
+    /** Filter byte followed by one packed pixel row; grown on demand. */
+    private byte[] row;
+
+    /**
+     * Constructs a PngWriter using the default compression level.
+     */
+    public PngWriter() {
+        this(DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Constructs a PngWriter with the given compression level.
+     *
+     * @param compressionLevel Deflate level from 0 (none) to 9 (best), or -1 for zlib's default level 6.
+     * @throws IllegalArgumentException If the level is out of range.
+     */
+    public PngWriter(int compressionLevel) {
+        checkCompressionLevel(compressionLevel);
+        this.deflater = new Deflater(compressionLevel);
+        this.crc = new CRC32();
+        this.idat = new byte[IDAT_CAPACITY];
+        this.out = ByteBuffer.allocate(IDAT_CAPACITY + 1024);
+        this.header = new byte[13];
+        this.row = new byte[0];
+    }
+
+    /**
+     * Validates a deflate compression level.
+     *
+     * @param compressionLevel The level to check.
+     * @throws IllegalArgumentException If the level is not -1 or between 0 and 9.
+     */
+    public static void checkCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+    }
+
+    /**
+     * Writes an image to a file, replacing any existing file.
+     *
+     * @param path The file to write.
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
+     * @param source Supplies the pixel rows.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path, int width, int height, ScanlineSource source) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, width, height, source);
+        }
+    }
+
+    /**
+     * Encodes an image into a byte array.
+     *
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
+     * @param source Supplies the pixel rows.
+     * @return The complete PNG file contents.
+     */
+    public byte[] toByteArray(int width, int height, ScanlineSource source) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try {
+            write(Channels.newChannel(bytes), width, height, source);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory PNG encoding failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes an image to a channel. The channel is left open.
+     *
+     * @param channel The channel to write to.
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
+     * @param source Supplies the pixel rows.
+     * @throws IOException If writing to the channel fails.
+     */
+    public void write(WritableByteChannel channel, int width, int height, ScanlineSource source) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Image dimensions must be positive");
+        }
+        int rowBytes = (width + 7) >>> 3;
+        if (row.length < rowBytes + 1) {
+            row = new byte[rowBytes + 1];
+        }
+        out.clear();
+        idatLength = 0;
+        out.put(SIGNATURE);
+
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 1;  // bit depth
+        header[9] = 0;  // color type: grayscale
+        header[10] = 0; // compression: deflate
+        header[11] = 0; // filter method: adaptive
+        header[12] = 0; // interlace: none
+        writeChunk(channel, IHDR, header, 13);
+
+        deflater.reset();
+        for (int y = 0; y < height; y++) {
+            row[0] = 0; // filter type: none
+            source.fillRow(y, row, 1);
+            deflater.setInput(row, 0, rowBytes + 1);
+            while (!deflater.needsInput()) {
+                deflate(channel);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate(channel);
+        }
+        if (idatLength > 0) {
+            writeChunk(channel, IDAT, idat, idatLength);
+            idatLength = 0;
+        }
+
+        writeChunk(channel, IEND, header, 0);
+        flush(channel);
+    }
+
+    /**
+     * Runs the deflater once into the IDAT staging buffer, emitting a chunk when it fills up.
+     *
+     * @param channel The channel to flush to if the output buffer fills up.
+     * @throws IOException If writing to the channel fails.
+     */
+    private void deflate(WritableByteChannel channel) throws IOException {
+        idatLength += deflater.deflate(idat, idatLength, idat.length - idatLength);
+        if (idatLength == idat.length) {
+            writeChunk(channel, IDAT, idat, idatLength);
+            idatLength = 0;
+        }
+    }
+
+    /**
+     * Appends a chunk to the output buffer, flushing the buffer first if needed.
+     *
+     * @param channel The channel to flush to.
+     * @param type The four-byte chunk type.
+     * @param data The chunk data.
+     * @param length Number of data bytes.
+     * @throws IOException If writing to the channel fails.
+     */
+    private void writeChunk(WritableByteChannel channel, byte[] type, byte[] data, int length) throws IOException {
+        if (out.remaining() < length + 12) {
+            flush(channel);
+        }
+        crc.reset();
+        crc.update(type);
+        crc.update(data, 0, length);
+        out.putInt(length);
+        out.put(type);
+        out.put(data, 0, length);
+        out.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes everything in the output buffer to the channel.
+     *
+     * @param channel The channel to write to.
+     * @throws IOException If writing to the channel fails.
+     */
+    private void flush(WritableByteChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Stores a big-endian int into a byte array.
+     *
+     * @param bytes The destination.
+     * @param offset Index of the first byte.
+     * @param value The value to store.
+     */
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,655 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Streams QR code images into ZIP or TAR archives instead of one file per student.
+ *
+ * <p>Entries are appended sequentially through a single buffered {@link FileChannel}.
+ * ZIP entries are stored uncompressed, since PNG data is already deflated, and ZIP64
+ * records are added automatically when an archive holds more than 65535 entries or
+ * grows past 4 GiB. TAR archives use the POSIX ustar layout, with a pax header for
+ * names that do not fit.</p>
+ *
+ * <p>When a volume size is given, the output is split into numbered volumes
+ * ({@code name-001.zip}, {@code name-002.zip}, ...), each a complete archive of its own
+ * that can be opened independently. The last volume ends with a {@value #MANIFEST_NAME}
+ * entry listing every entry with its volume, data offset, size and CRC-32, so a single
+ * image can be read back without scanning the archives.</p>
+ *
+ * <p>An archive can also be streamed into any channel, such as an HTTP response body,
+ * as a single volume that is never seeked back into.</p>
+ *
+ * <p>{@link #addEntry(String, byte[])} is synchronized, so entries may be added from
+ * several threads; they are written in the order the calls arrive.</p>
+ */
+public class QRArchiveWriter implements Closeable {
+    /** Supported archive formats. */
+    public enum Format {
+        /** ZIP archive with stored (uncompressed) entries. */
+        ZIP(".zip"),
+        /** POSIX ustar archive. */
+        TAR(".tar");
+
+        /** File extension, including the dot. */
+        private final String extension;
+
+        /**
+         * Constructs a format.
+         *
+         * @param extension File extension, including the dot.
+         */
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the file extension, including the dot.
+         * @return The extension.
+         */
+        public String getExtension() { return extension; }
+    }
+
+    /** Name of the manifest entry written at the end of the last volume. */
+    public static final String MANIFEST_NAME = "MANIFEST.tsv";
+
+    /** Size of the write buffer in front of the file channel. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int ZIP_LOCAL_HEADER = 0x04034b50;
+    private static final int ZIP_CENTRAL_HEADER = 0x02014b50;
+    private static final int ZIP_END = 0x06054b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    /** General purpose flag marking entry names as UTF-8. */
+    private static final int ZIP_UTF8_FLAG = 0x0800;
+
+    private static final int TAR_BLOCK = 512;
+
+    /** Directory the archive volumes are written to, or null when streaming to a channel. */
+    private final Path directory;
+
+    /** Archive name without the extension, or null when streaming to a channel. */
+    private final String baseName;
+
+    /** Archive format. */
+    private final Format format;
+
+    /** Maximum bytes per volume, or 0 to write a single archive. */
+    private final long volumeSize;
+
+    /** Buffer in front of the current volume's channel. */
+    private final ByteBuffer buffer;
+
+    /** Checksum used for ZIP entries. */
+    private final CRC32 crc;
+
+    /** Modification time stamped on every ZIP entry, in MS-DOS date/time form. */
+    private final int dosTime;
+
+    /** Modification time stamped on every TAR entry, in seconds since the epoch. */
+    private final long epochSeconds;
+
+    /** Manifest lines for every entry written so far. */
+    private final StringBuilder manifest;
+
+    /** Entries of the current ZIP volume, needed for its central directory. */
+    private final List<ZipEntry> zipEntries;
+
+    /** Paths of all volumes written so far. */
+    private final List<Path> volumes;
+
+    /** Channel of the current volume, or null before the first entry. */
+    private WritableByteChannel channel;
+
+    /** Name of the current volume as listed in the manifest. */
+    private String volumeName;
+
+    /** Bytes written to the current volume, including buffered bytes. */
+    private long position;
+
+    /** Number of entries written, not counting the manifest. */
+    private long entryCount;
+
+    /** Whether {@link #close()} has been called. */
+    private boolean closed;
+
+    /**
+     * Constructs a QRArchiveWriter. No file is created until the first entry is added.
+     *
+     * @param archivePath Path of the archive; the format's extension is added if missing.
+     * @param format The archive format.
+     * @param volumeSize Maximum bytes per volume, or 0 for a single archive of any size.
+     * @throws IllegalArgumentException If the volume size is negative.
+     */
+    public QRArchiveWriter(String archivePath, Format format, long volumeSize) {
+        this(Path.of(archivePath).toAbsolutePath(), format, volumeSize);
+        if (volumeSize < 0) {
+            throw new IllegalArgumentException("Volume size must not be negative");
+        }
+    }
+
+    /**
+     * Constructs a QRArchiveWriter that streams a single archive into a channel. The
+     * channel is closed when the writer is closed.
+     *
+     * @param output The channel to write the archive to.
+     * @param format The archive format.
+     */
+    public QRArchiveWriter(WritableByteChannel output, Format format) {
+        this((Path) null, format, 0);
+        this.channel = output;
+        this.volumeName = "-";
+    }
+
+    /**
+     * Constructs a QRArchiveWriter writing volumes next to the given path, or to a
+     * channel supplied by the caller when the path is null.
+     *
+     * @param path Absolute path of the archive, or null when streaming.
+     * @param format The archive format.
+     * @param volumeSize Maximum bytes per volume, or 0 for a single archive of any size.
+     */
+    private QRArchiveWriter(Path path, Format format, long volumeSize) {
+        String name = null;
+        if (path != null) {
+            name = path.getFileName().toString();
+            if (name.endsWith(format.getExtension())) {
+                name = name.substring(0, name.length() - format.getExtension().length());
+            }
+        }
+        this.directory = path == null ? null : path.getParent();
+        this.baseName = name;
+        this.format = format;
+        this.volumeSize = volumeSize;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.crc = new CRC32();
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = (now.getYear() - 1980) << 25 | now.getMonthValue() << 21 | now.getDayOfMonth() << 16
+                | now.getHour() << 11 | now.getMinute() << 5 | now.getSecond() >> 1;
+        this.epochSeconds = System.currentTimeMillis() / 1000;
+        this.manifest = new StringBuilder("name\tvolume\toffset\tsize\tcrc32\n");
+        this.zipEntries = new ArrayList<>();
+        this.volumes = new ArrayList<>();
+    }
+
+    /**
+     * Appends one file to the archive, starting a new volume first if it would not fit
+     * in the current one.
+     *
+     * @param name The entry name, using '/' as separator.
+     * @param data The file contents.
+     * @throws IOException If the archive cannot be written.
+     * @throws IllegalStateException If the writer has been closed.
+     */
+    public synchronized void addEntry(String name, byte[] data) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Archive writer is closed");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (channel == null || (volumeSize > 0 && entriesInVolume() > 0
+                && position + entryOverhead(nameBytes) + data.length + trailerOverhead() > volumeSize)) {
+            startVolume();
+        }
+        int checksum = checksum(data);
+        long dataOffset = writeEntry(nameBytes, data, checksum);
+        manifest.append(name).append('\t').append(volumeName).append('\t')
+                .append(dataOffset).append('\t').append(data.length).append('\t')
+                .append(Integer.toHexString(checksum)).append('\n');
+        entryCount++;
+    }
+
+    /**
+     * Gets the number of entries written, not counting the manifest.
+     * @return The entry count.
+     */
+    public synchronized long getEntryCount() { return entryCount; }
+
+    /**
+     * Gets the paths of all volumes created so far.
+     * @return A copy of the volume list, in order; empty when streaming to a channel.
+     */
+    public synchronized List<Path> getVolumes() { return new ArrayList<>(volumes); }
+
+    /**
+     * Writes the manifest, finishes the last volume and closes it.
+     * Creates an archive holding only the manifest if no entries were added.
+     *
+     * @throws IOException If the archive cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel == null) {
+            startVolume();
+        }
+        byte[] manifestBytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+        // Only ZIP headers hold a checksum; the manifest does not list itself
+        writeEntry(MANIFEST_NAME.getBytes(StandardCharsets.UTF_8), manifestBytes,
+                format == Format.ZIP ? checksum(manifestBytes) : 0);
+        finishVolume();
+    }
+
+    /**
+     * Finishes the current volume, if any, and opens the next one.
+     *
+     * @throws IOException If a volume cannot be written or created.
+     */
+    private void startVolume() throws IOException {
+        if (channel != null) {
+            finishVolume();
+        }
+        Path path = directory.resolve(volumeSize > 0
+                ? String.format("%s-%03d%s", baseName, volumes.size() + 1, format.getExtension())
+                : baseName + format.getExtension());
+        Files.createDirectories(directory);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        volumes.add(path);
+        volumeName = path.getFileName().toString();
+        position = 0;
+        zipEntries.clear();
+    }
+
+    /**
+     * Writes the current volume's trailer and closes its channel.
+     *
+     * @throws IOException If the volume cannot be written.
+     */
+    private void finishVolume() throws IOException {
+        try {
+            if (format == Format.ZIP) {
+                writeZipCentralDirectory();
+            } else {
+                ensureRoom(2 * TAR_BLOCK);
+                putZeros(2 * TAR_BLOCK);
+            }
+            flushBuffer();
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            }
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Computes the CRC-32 of an entry's contents.
+     *
+     * @param data The entry contents.
+     * @return The checksum.
+     */
+    private int checksum(byte[] data) {
+        crc.reset();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes one entry's header and data to the current volume.
+     *
+     * @param name The UTF-8 entry name.
+     * @param data The entry contents.
+     * @param checksum CRC-32 of the contents; only ZIP headers use it.
+     * @return The offset of the entry's data within the volume.
+     * @throws IOException If the volume cannot be written.
+     */
+    private long writeEntry(byte[] name, byte[] data, int checksum) throws IOException {
+        if (format == Format.ZIP) {
+            writeZipLocalHeader(name, data.length, checksum);
+        } else {
+            writeTarHeaders(name, data.length);
+        }
+        long dataOffset = position;
+        putBytes(data, 0, data.length);
+        if (format == Format.TAR) {
+            int padding = -data.length & (TAR_BLOCK - 1);
+            ensureRoom(padding);
+            putZeros(padding);
+        }
+        return dataOffset;
+    }
+
+    /**
+     * Writes a ZIP local file header and remembers the entry for the central directory.
+     *
+     * @param name The UTF-8 entry name.
+     * @param size The size of the contents.
+     * @param checksum CRC-32 of the contents.
+     * @throws IOException If the volume cannot be written.
+     */
+    private void writeZipLocalHeader(byte[] name, int size, int checksum) throws IOException {
+        ZipEntry entry = new ZipEntry(name, checksum, size, position);
+        zipEntries.add(entry);
+        ensureRoom(30 + name.length);
+        buffer.putInt(ZIP_LOCAL_HEADER);
+        buffer.putShort((short) 20);
+        buffer.putShort((short) ZIP_UTF8_FLAG);
+        buffer.putShort((short) 0);
+        buffer.putInt(dosTime);
+        buffer.putInt(entry.crc);
+        buffer.putInt(size);
+        buffer.putInt(size);
+        buffer.putShort((short) name.length);
+        buffer.putShort((short) 0);
+        buffer.put(name);
+        position += 30 + name.length;
+    }
+
+    /**
+     * Writes the central directory and end records of the current ZIP volume,
+     * including ZIP64 records when the entry count or offsets need them.
+     *
+     * @throws IOException If the volume cannot be written.
+     */
+    private void writeZipCentralDirectory() throws IOException {
+        long directoryOffset = position;
+        for (ZipEntry entry : zipEntries) {
+            boolean zip64 = entry.offset >= 0xFFFFFFFFL;
+            ensureRoom(46 + entry.name.length + (zip64 ? 12 : 0));
+            buffer.putInt(ZIP_CENTRAL_HEADER);
+            buffer.putShort((short) (zip64 ? 45 : 20));
+            buffer.putShort((short) (zip64 ? 45 : 20));
+            buffer.putShort((short) ZIP_UTF8_FLAG);
+            buffer.putShort((short) 0);
+            buffer.putInt(dosTime);
+            buffer.putInt(entry.crc);
+            buffer.putInt(entry.size);
+            buffer.putInt(entry.size);
+            buffer.putShort((short) entry.name.length);
+            buffer.putShort((short) (zip64 ? 12 : 0));
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt(0);
+            buffer.putInt(zip64 ? -1 : (int) entry.offset);
+            buffer.put(entry.name);
+            if (zip64) {
+                buffer.putShort((short) 0x0001);
+                buffer.putShort((short) 8);
+                buffer.putLong(entry.offset);
+            }
+            position += 46 + entry.name.length + (zip64 ? 12 : 0);
+        }
+        long directorySize = position - directoryOffset;
+        int count = zipEntries.size();
+        boolean zip64 = count >= 0xFFFF || directoryOffset >= 0xFFFFFFFFL || directorySize >= 0xFFFFFFFFL;
+        ensureRoom(56 + 20 + 22);
+        if (zip64) {
+            long zip64EndOffset = position;
+            buffer.putInt(ZIP64_END);
+            buffer.putLong(44);
+            buffer.putShort((short) 45);
+            buffer.putShort((short) 45);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putLong(count);
+            buffer.putLong(count);
+            buffer.putLong(directorySize);
+            buffer.putLong(directoryOffset);
+            buffer.putInt(ZIP64_LOCATOR);
+            buffer.putInt(0);
+            buffer.putLong(zip64EndOffset);
+            buffer.putInt(1);
+            position += 56 + 20;
+        }
+        buffer.putInt(ZIP_END);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) (zip64 ? 0xFFFF : count));
+        buffer.putShort((short) (zip64 ? 0xFFFF : count));
+        buffer.putInt(zip64 ? -1 : (int) directorySize);
+        buffer.putInt(zip64 ? -1 : (int) directoryOffset);
+        buffer.putShort((short) 0);
+        position += 22;
+    }
+
+    /**
+     * Writes the ustar header for an entry, preceded by a pax header if the name does
+     * not fit the ustar name and prefix fields.
+     *
+     * @param name The UTF-8 entry name.
+     * @param size The entry size in bytes.
+     * @throws IOException If the volume cannot be written.
+     */
+    private void writeTarHeaders(byte[] name, long size) throws IOException {
+        byte[] headerName = name;
+        byte[] prefix = null;
+        if (name.length > 100) {
+            int split = -1;
+            for (int i = name.length - 1; i > 0; i--) {
+                if (name[i] == '/' && i <= 155 && name.length - i - 1 <= 100) {
+                    split = i;
+                    break;
+                }
+            }
+            if (split > 0) {
+                prefix = Arrays.copyOfRange(name, 0, split);
+                headerName = Arrays.copyOfRange(name, split + 1, name.length);
+            } else {
+                byte[] record = paxRecord("path", name);
+                writeTarHeader("PaxHeaders/entry".getBytes(StandardCharsets.US_ASCII), null, record.length, (byte) 'x');
+                putBytes(record, 0, record.length);
+                int padding = -record.length & (TAR_BLOCK - 1);
+                ensureRoom(padding);
+                putZeros(padding);
+                headerName = Arrays.copyOf(name, 100);
+            }
+        }
+        writeTarHeader(headerName, prefix, size, (byte) '0');
+    }
+
+    /**
+     * Writes one 512-byte ustar header block.
+     *
+     * @param name The name field, at most 100 bytes.
+     * @param prefix The prefix field, at most 155 bytes, or null.
+     * @param size The size of the data following the header.
+     * @param type The type flag.
+     * @throws IOException If the volume cannot be written.
+     */
+    private void writeTarHeader(byte[] name, byte[] prefix, long size, byte type) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, 100));
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, epochSeconds);
+        header[156] = type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        if (prefix != null) {
+            System.arraycopy(prefix, 0, header, 345, prefix.length);
+        }
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+        putBytes(header, 0, header.length);
+    }
+
+    /**
+     * Builds a pax extended header record of the form {@code "<length> <key>=<value>\n"},
+     * where the length counts the whole record including its own digits.
+     *
+     * @param key The record key.
+     * @param value The UTF-8 record value.
+     * @return The encoded record.
+     */
+    private static byte[] paxRecord(String key, byte[] value) {
+        int body = 1 + key.length() + 1 + value.length + 1;
+        int length = body + String.valueOf(body).length();
+        if (String.valueOf(length).length() != String.valueOf(body).length()) {
+            length++;
+        }
+        byte[] prefix = (length + " " + key + "=").getBytes(StandardCharsets.US_ASCII);
+        byte[] record = new byte[length];
+        System.arraycopy(prefix, 0, record, 0, prefix.length);
+        System.arraycopy(value, 0, record, prefix.length, value.length);
+        record[length - 1] = '\n';
+        return record;
+    }
+
+    /**
+     * Writes a NUL-terminated octal number into a header field.
+     *
+     * @param header The header block.
+     * @param offset The field offset.
+     * @param length The field length, including the terminating NUL.
+     * @param value The value to write.
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int pad = length - 1 - digits.length();
+        for (int i = 0; i < length - 1; i++) {
+            header[offset + i] = (byte) (i < pad ? '0' : digits.charAt(i - pad));
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    /**
+     * Estimates the bytes an entry adds besides its data, for volume splitting.
+     *
+     * @param name The UTF-8 entry name.
+     * @return The header, padding and directory overhead of the entry.
+     */
+    private long entryOverhead(byte[] name) {
+        return format == Format.ZIP
+                ? 30 + 46 + 12 + 2L * name.length
+                : 3L * TAR_BLOCK + name.length;
+    }
+
+    /**
+     * Estimates the bytes still needed to finish a volume, for volume splitting.
+     *
+     * @return The size of the end records, plus the ZIP central directory written so far.
+     */
+    private long trailerOverhead() {
+        if (format == Format.TAR) {
+            return 2L * TAR_BLOCK;
+        }
+        long directory = 98;
+        for (ZipEntry entry : zipEntries) {
+            directory += 58 + entry.name.length;
+        }
+        return directory;
+    }
+
+    /**
+     * Gets the number of entries in the current volume.
+     *
+     * @return The entry count of the current volume.
+     */
+    private long entriesInVolume() {
+        return format == Format.ZIP ? zipEntries.size() : position > 0 ? 1 : 0;
+    }
+
+    /**
+     * Copies bytes into the buffer, flushing to the channel as it fills.
+     *
+     * @param bytes The bytes to write.
+     * @param offset Index of the first byte.
+     * @param length Number of bytes.
+     * @throws IOException If the channel cannot be written.
+     */
+    private void putBytes(byte[] bytes, int offset, int length) throws IOException {
+        position += length;
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes zero bytes into the buffer; callers must have made room with {@link #ensureRoom(int)}.
+     *
+     * @param count Number of zero bytes.
+     */
+    private void putZeros(int count) {
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) 0);
+        }
+        position += count;
+    }
+
+    /**
+     * Flushes the buffer if fewer than the given number of bytes are free.
+     *
+     * @param bytes Number of bytes about to be put.
+     * @throws IOException If the channel cannot be written.
+     */
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Writes all buffered bytes to the current channel.
+     *
+     * @throws IOException If the channel cannot be written.
+     */
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Central directory information about one ZIP entry.
+     */
+    private static class ZipEntry {
+        /** The UTF-8 entry name. */
+        final byte[] name;
+
+        /** CRC-32 of the entry contents. */
+        final int crc;
+
+        /** Size of the entry contents. */
+        final int size;
+
+        /** Offset of the entry's local header within the volume. */
+        final long offset;
+
+        /**
+         * Constructs a ZipEntry.
+         *
+         * @param name The UTF-8 entry name.
+         * @param crc CRC-32 of the contents.
+         * @param size Size of the contents.
+         * @param offset Offset of the local header.
+         */
+        ZipEntry(byte[] name, int crc, int size, long offset) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
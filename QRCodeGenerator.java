@@ -1,103 +1,579 @@
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-
-/**
- * A simple QR code generator that creates a visual representation of a QR-like code
- * based on the hash of an input string.
- * 
- * <p><strong>Note:</strong> This is not a standard QR code implementation,
- * but rather a stylized visual representation for demonstration purposes.</p>
- */
-public class QRCodeGenerator {
-    private static final int QR_SIZE = 200;
-    private static final int BORDER = 10;
-
-    /**
-     * Constructs a new QRCodeGenerator instance.
-     */
-    public QRCodeGenerator() {
-    }
-
-    /**
-     * Generates a stylized QR-like code image based on the hash of the input string.
-     * The generated image is a black and white pattern that visually represents the input data.
-     * 
-     * @param input The string data to encode visually into a QR-style pattern.
-     * @return A BufferedImage containing the generated QR code pattern.
-     */
-    public BufferedImage generateQRCode(String input) {
-        BufferedImage image = new BufferedImage(QR_SIZE, QR_SIZE, BufferedImage.TYPE_INT_RGB);
-        Graphics2D graphics = image.createGraphics();
-
-        // Fill background with white
-        graphics.setColor(Color.WHITE);
-        graphics.fillRect(0, 0, QR_SIZE, QR_SIZE);
-
-        // Draw black border
-        graphics.setColor(Color.BLACK);
-        graphics.fillRect(0, 0, QR_SIZE, BORDER);
-        graphics.fillRect(0, 0, BORDER, QR_SIZE);
-        graphics.fillRect(QR_SIZE - BORDER, 0, BORDER, QR_SIZE);
-        graphics.fillRect(0, QR_SIZE - BORDER, QR_SIZE, BORDER);
-
-        int hash = Math.abs(input.hashCode());
-        final int cellSize = 8;
-
-        // Generate pattern based on hash and position
-        for (int x = BORDER; x < QR_SIZE - BORDER; x += cellSize) {
-            for (int y = BORDER; y < QR_SIZE - BORDER; y += cellSize) {
-                if ((hash + x + y) % 3 == 0) {
-                    graphics.fillRect(x, y, cellSize - 1, cellSize - 1);
-                }
-            }
-        }
-
-        // Draw three corner markers as in typical QR codes
-        this.drawCornerMarker(graphics, 10, 10);
-        this.drawCornerMarker(graphics, 160, 10);
-        this.drawCornerMarker(graphics, 10, 160);
-
-        graphics.dispose();
-        return image;
-    }
-
-    /**
-     * Draws a corner marker for the QR code consisting of three nested squares.
-     * These markers mimic the positioning squares found in actual QR codes.
-     * 
-     * @param g The Graphics2D context to draw on.
-     * @param x The x-coordinate of the top-left corner of the marker.
-     * @param y The y-coordinate of the top-left corner of the marker.
-     */
-    private void drawCornerMarker(Graphics2D g, int x, int y) {
-        final int markerSize = 30;
-        g.fillRect(x, y, markerSize, markerSize);
-        g.setColor(Color.WHITE);
-        g.fillRect(x + 5, y + 5, markerSize - 10, markerSize - 10);
-        g.setColor(Color.BLACK);
-        g.fillRect(x + 10, y + 10, markerSize - 20, markerSize - 20);
-    }
-
-    /**
-     * Saves the generated QR code image to the specified file path in PNG format.
-     * Creates the necessary directories if they do not exist.
-     * 
-     * @param image    The BufferedImage representing the QR code to save.
-     * @param filePath The full file path including filename and extension.
-     * @return true if the image was saved successfully; false otherwise.
-     */
-    public boolean saveQRCode(BufferedImage image, String filePath) {
-        try {
-            File outputFile = new File(filePath);
-            outputFile.getParentFile().mkdirs(); // Ensure parent directories exist
-            return ImageIO.write(image, "PNG", outputFile);
-        } catch (IOException e) {
-            System.err.println("Error saving QR code: " + e.getMessage());
-            return false;
-        }
-    }
-}
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates standard QR codes (ISO/IEC 18004) as 1-bit images and PNG files.
+ *
+ * <p>Generation happens in two steps. The input is first encoded by a {@link QREncoder}
+ * into a packed {@link QRMatrix} of modules, which can be reused between calls. The matrix
+ * is then rasterized straight into 1-bit pixel rows, without going through Java2D: each
+ * module becomes a square of whole pixels, centred in a fixed-size image with at least the
+ * standard four-module light quiet zone around it. Saving streams those rows through a
+ * {@link PngWriter} into a 1-bit grayscale PNG. Module rows are expanded by a
+ * {@link ModuleRowRasterizer}, vectorized when the Vector API is available; see
+ * {@link #createConfiguredRasterizer()}.</p>
+ *
+ * <p>Besides the fixed-size image, {@link #render(String, List)} produces any number of
+ * {@link QROutput}s from one encode: PNGs at a chosen number of pixels per module, SVG
+ * and a raw bit matrix.</p>
+ */
+public class QRCodeGenerator {
+    private static final int QR_SIZE = 200;
+
+    /** Minimum light margin around the symbol, in modules. */
+    private static final int QUIET_ZONE = 4;
+
+    /** Number of bytes in one packed 1-bit pixel row. */
+    private static final int ROW_BYTES = (QR_SIZE + 7) / 8;
+
+    /** Encoder producing the module matrices. */
+    private final QREncoder encoder;
+
+    /** Expands module rows into pixel rows. */
+    private final ModuleRowRasterizer rasterizer;
+
+    /** Per-thread scratch matrix reused by {@link #generateQRCode(String)}. */
+    private final ThreadLocal<QRMatrix> scratchMatrix = new ThreadLocal<>();
+
+    /** Per-thread PNG writers, so their buffers and deflaters are reused. */
+    private final ThreadLocal<PngWriter> pngWriters;
+
+    /** Per-thread pixel row buffer shared by all scaled outputs. */
+    private final ThreadLocal<byte[]> rowBuffers = new ThreadLocal<>();
+
+    /** Per-thread text buffer reused for SVG output. */
+    private final ThreadLocal<StringBuilder> svgBuffers = ThreadLocal.withInitial(StringBuilder::new);
+
+    /** Directories already created for saved files, so each is only checked once. */
+    private final Set<File> createdDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a new QRCodeGenerator instance with medium error correction.
+     */
+    public QRCodeGenerator() {
+        this(PngWriter.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Constructs a new QRCodeGenerator that saves PNGs with the given deflate level.
+     *
+     * @param compressionLevel Deflate level from 0 (none) to 9 (best), or -1 for zlib's default level 6.
+     * @throws IllegalArgumentException If the level is out of range.
+     */
+    public QRCodeGenerator(int compressionLevel) {
+        this(compressionLevel, QRErrorCorrection.MEDIUM);
+    }
+
+    /**
+     * Constructs a new QRCodeGenerator with the given deflate level and error correction.
+     *
+     * @param compressionLevel Deflate level from 0 (none) to 9 (best), or -1 for zlib's default level 6.
+     * @param errorCorrection Error correction level of the generated codes.
+     * @throws IllegalArgumentException If the level is out of range.
+     */
+    public QRCodeGenerator(int compressionLevel, QRErrorCorrection errorCorrection) {
+        PngWriter.checkCompressionLevel(compressionLevel);
+        this.encoder = new QREncoder(errorCorrection);
+        this.rasterizer = createConfiguredRasterizer();
+        this.pngWriters = ThreadLocal.withInitial(() -> new PngWriter(compressionLevel));
+    }
+
+    /**
+     * Creates the module row rasterizer selected by the {@code qr.rasterizer} system
+     * property: {@code scalar} for the run-filling one, {@code vector} for a
+     * {@link VectorModuleRowRasterizer}. By default the vector one is used when the JVM
+     * was started with {@code --add-modules jdk.incubator.vector} and the scalar one
+     * otherwise. Both produce identical pixels, so the choice only affects speed.
+     *
+     * @return The rasterizer; the scalar one if the vector one cannot be used.
+     */
+    public static ModuleRowRasterizer createConfiguredRasterizer() {
+        String choice = System.getProperty("qr.rasterizer", "");
+        if (!"scalar".equalsIgnoreCase(choice) && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorModuleRowRasterizer();
+            } catch (LinkageError | IllegalStateException e) {
+                System.err.println("Vector rasterizer unavailable, using scalar: " + e);
+            }
+        } else if ("vector".equalsIgnoreCase(choice)) {
+            System.err.println("Vector rasterizer needs --add-modules jdk.incubator.vector, using scalar");
+        }
+        return QRCodeGenerator::expandModuleRow;
+    }
+
+    /**
+     * Identifies everything besides the payload that affects the generated pixels, so
+     * images cached under different settings are never mistaken for current ones.
+     *
+     * @return A short description of the symbology, error correction and image size.
+     */
+    public String getOutputSignature() {
+        return "ISO18004/" + encoder.getErrorCorrection() + "/" + QR_SIZE;
+    }
+
+    /**
+     * Gets the width and height of the generated images.
+     * @return The image size in pixels.
+     */
+    public int getImageSize() { return QR_SIZE; }
+
+    /**
+     * Gets the number of bytes in one packed 1-bit pixel row.
+     * @return The row length in bytes.
+     */
+    public int getRowBytes() { return ROW_BYTES; }
+
+    /**
+     * Encodes the input string into a new module matrix.
+     *
+     * @param input The string data to encode.
+     * @return A new QRMatrix holding the QR symbol.
+     * @throws IllegalArgumentException If the input is too long for a QR code.
+     */
+    public QRMatrix encode(String input) {
+        return encoder.encode(input, null);
+    }
+
+    /**
+     * Encodes the input string, reusing an existing module matrix when it has the right size.
+     *
+     * @param input The string data to encode.
+     * @param target The matrix to overwrite if its size matches the symbol; may be null.
+     * @return The target, or a new matrix if the symbol needs a different size.
+     * @throws IllegalArgumentException If the input is too long for a QR code.
+     */
+    public QRMatrix encode(String input, QRMatrix target) {
+        return encoder.encode(input, target);
+    }
+
+    /**
+     * Generates a QR code image for the input string.
+     *
+     * @param input The string data to encode.
+     * @return A 1-bit BufferedImage containing the QR code.
+     * @throws IllegalArgumentException If the input is too long for a QR code.
+     */
+    public BufferedImage generateQRCode(String input) {
+        BufferedImage image = new BufferedImage(QR_SIZE, QR_SIZE, BufferedImage.TYPE_BYTE_BINARY);
+        QRMatrix matrix = encode(input, scratchMatrix.get());
+        scratchMatrix.set(matrix);
+        renderInto(matrix, image);
+        return image;
+    }
+
+    /**
+     * Rasterizes a module matrix into an existing image, so callers can pool their images.
+     *
+     * @param matrix The module matrix produced by {@link #encode(String, QRMatrix)}.
+     * @param image A {@code TYPE_BYTE_BINARY} image of {@link #getImageSize()} pixels square.
+     * @throws IllegalArgumentException If the image has the wrong type or size.
+     */
+    public void renderInto(QRMatrix matrix, BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_BINARY || image.getWidth() != QR_SIZE
+                || image.getHeight() != QR_SIZE || image.getColorModel().getPixelSize() != 1) {
+            throw new IllegalArgumentException("Image must be a " + QR_SIZE + "x" + QR_SIZE + " 1-bit TYPE_BYTE_BINARY image");
+        }
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < QR_SIZE; y++) {
+            rasterizeRow(matrix, y, pixels, y * ROW_BYTES);
+        }
+    }
+
+    /**
+     * Rasterizes one pixel row of the code into packed 1-bit form: the most significant
+     * bit of each byte is the leftmost pixel, 0 is black and 1 is white. This is the layout
+     * of both {@code TYPE_BYTE_BINARY} rasters and 1-bit grayscale PNG scanlines.
+     *
+     * @param matrix The module matrix produced by {@link #encode(String, QRMatrix)}.
+     * @param y The pixel row to rasterize.
+     * @param row The destination buffer.
+     * @param offset Index in the destination of the row's first byte; {@link #getRowBytes()} bytes are written.
+     */
+    public void rasterizeRow(QRMatrix matrix, int y, byte[] row, int offset) {
+        int size = matrix.getSize();
+        int scale = Math.max(1, QR_SIZE / (size + 2 * QUIET_ZONE));
+        int margin = (QR_SIZE - size * scale) / 2;
+        int moduleY = y - margin;
+        rasterizer.expandRow(matrix, moduleY < 0 ? -1 : moduleY / scale, row, offset, ROW_BYTES, scale, margin);
+    }
+
+    /**
+     * Renders the module matrix once into every requested output. The payload is encoded
+     * a single time, and all outputs on this thread share the same row and text buffers
+     * and PNG encoder.
+     *
+     * @param input The string data to encode.
+     * @param outputs The renderings to produce.
+     * @return The encoded file contents, one per output, in the same order.
+     * @throws IllegalArgumentException If the input is too long for a QR code.
+     */
+    public List<byte[]> render(String input, List<QROutput> outputs) {
+        QRMatrix matrix = encode(input, scratchMatrix.get());
+        scratchMatrix.set(matrix);
+        List<byte[]> results = new ArrayList<>(outputs.size());
+        for (QROutput output : outputs) {
+            results.add(render(matrix, output));
+        }
+        return results;
+    }
+
+    /**
+     * Renders a module matrix in the given output format and scale.
+     *
+     * @param matrix The module matrix produced by {@link #encode(String, QRMatrix)}.
+     * @param output The rendering to produce.
+     * @return The encoded file contents.
+     */
+    public byte[] render(QRMatrix matrix, QROutput output) {
+        switch (output.getFormat()) {
+            case SVG:
+                return renderSvg(matrix, output);
+            case MATRIX:
+                return renderPbm(matrix, output);
+            default:
+                int imageSize = output.getImageSize(matrix.getSize());
+                return pngWriters.get().toByteArray(imageSize, imageSize, scaledRows(matrix, output));
+        }
+    }
+
+    /**
+     * Creates a source of packed pixel rows for a matrix at an arbitrary scale. Each
+     * module row is expanded once into a per-thread buffer and copied for the remaining
+     * pixel rows it covers.
+     *
+     * @param matrix The module matrix.
+     * @param output The scale and quiet zone.
+     * @return The row source; rows must be requested in order.
+     */
+    private ScanlineSource scaledRows(QRMatrix matrix, QROutput output) {
+        int scale = output.getModulePixels();
+        int margin = output.getQuietZone() * scale;
+        int rowBytes = (output.getImageSize(matrix.getSize()) + 7) >>> 3;
+        byte[] cached = rowBuffer(rowBytes);
+        int[] cachedModuleY = {Integer.MIN_VALUE};
+        return (y, row, offset) -> {
+            int moduleY = Math.floorDiv(y - margin, scale);
+            if (moduleY != cachedModuleY[0]) {
+                rasterizer.expandRow(matrix, moduleY, cached, 0, rowBytes, scale, margin);
+                cachedModuleY[0] = moduleY;
+            }
+            System.arraycopy(cached, 0, row, offset, rowBytes);
+        };
+    }
+
+    /**
+     * Encodes a matrix as a binary PBM (P4) bitmap, in which a set bit is a dark pixel.
+     *
+     * @param matrix The module matrix.
+     * @param output The scale and quiet zone.
+     * @return The PBM file contents.
+     */
+    private byte[] renderPbm(QRMatrix matrix, QROutput output) {
+        int imageSize = output.getImageSize(matrix.getSize());
+        int rowBytes = (imageSize + 7) >>> 3;
+        byte[] header = ("P4\n" + imageSize + " " + imageSize + "\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] pbm = Arrays.copyOf(header, header.length + rowBytes * imageSize);
+        ScanlineSource rows = scaledRows(matrix, output);
+        for (int y = 0; y < imageSize; y++) {
+            int offset = header.length + y * rowBytes;
+            rows.fillRow(y, pbm, offset);
+            for (int i = offset; i < offset + rowBytes; i++) {
+                pbm[i] = (byte) ~pbm[i];
+            }
+        }
+        return pbm;
+    }
+
+    /**
+     * Encodes a matrix as an SVG image. Each horizontal run of dark modules becomes one
+     * rectangle in a single path, in module units, so the image scales without loss.
+     *
+     * @param matrix The module matrix.
+     * @param output The nominal module size and the quiet zone.
+     * @return The UTF-8 SVG document.
+     */
+    private byte[] renderSvg(QRMatrix matrix, QROutput output) {
+        int size = matrix.getSize();
+        int quiet = output.getQuietZone();
+        int dimension = size + 2 * quiet;
+        int pixels = output.getImageSize(size);
+        StringBuilder svg = svgBuffers.get();
+        svg.setLength(0);
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" viewBox=\"0 0 ")
+                .append(dimension).append(' ').append(dimension)
+                .append("\" width=\"").append(pixels).append("\" height=\"").append(pixels)
+                .append("\" shape-rendering=\"crispEdges\">\n")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n")
+                .append("<path fill=\"#000000\" d=\"");
+        for (int y = 0; y < size; y++) {
+            for (int word = 0; word < matrix.getWordsPerRow(); word++) {
+                long bits = matrix.getWord(y, word);
+                while (bits != 0) {
+                    int start = Long.numberOfTrailingZeros(bits);
+                    int length = Long.numberOfTrailingZeros(~(bits >>> start));
+                    svg.append('M').append(quiet + (word << 6) + start).append(',').append(quiet + y)
+                            .append('h').append(length).append("v1h-").append(length).append('z');
+                    bits = start + length >= 64 ? 0 : bits & (-1L << (start + length));
+                }
+            }
+        }
+        svg.append("\"/>\n</svg>\n");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets this thread's row buffer, growing it if it is too small.
+     *
+     * @param length The number of bytes needed.
+     * @return A buffer of at least that length.
+     */
+    private byte[] rowBuffer(int length) {
+        byte[] buffer = rowBuffers.get();
+        if (buffer == null || buffer.length < length) {
+            buffer = new byte[length];
+            rowBuffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Rasterizes one module row into a packed 1-bit pixel row, light outside the symbol.
+     * This is the scalar {@link ModuleRowRasterizer}, used unless the Vector API is available.
+     *
+     * @param matrix The module matrix.
+     * @param moduleY The module row, or a value outside the matrix for a blank row.
+     * @param row The destination buffer.
+     * @param offset Index of the row's first byte.
+     * @param rowBytes Number of bytes in the pixel row.
+     * @param scale Pixels per module side.
+     * @param margin Pixels left of the first module column.
+     */
+    private static void expandModuleRow(QRMatrix matrix, int moduleY, byte[] row, int offset, int rowBytes,
+                                        int scale, int margin) {
+        Arrays.fill(row, offset, offset + rowBytes, (byte) 0xFF);
+        if (moduleY < 0 || moduleY >= matrix.getSize()) {
+            return;
+        }
+
+        // Dark modules are drawn a run at a time, found from the packed row words
+        for (int word = 0; word < matrix.getWordsPerRow(); word++) {
+            long bits = matrix.getWord(moduleY, word);
+            while (bits != 0) {
+                int start = Long.numberOfTrailingZeros(bits);
+                int length = Long.numberOfTrailingZeros(~(bits >>> start));
+                int x = margin + ((word << 6) + start) * scale;
+                fillSpan(row, offset, x, x + length * scale, false);
+                bits = start + length >= 64 ? 0 : bits & (-1L << (start + length));
+            }
+        }
+    }
+
+    /**
+     * Sets a horizontal span of pixels in a packed 1-bit row.
+     *
+     * @param row The destination buffer.
+     * @param offset Index of the row's first byte.
+     * @param from First pixel of the span, inclusive.
+     * @param to Last pixel of the span, exclusive.
+     * @param white True to set the pixels white; false for black.
+     */
+    private static void fillSpan(byte[] row, int offset, int from, int to, boolean white) {
+        if (from >= to) {
+            return;
+        }
+        int first = offset + (from >>> 3);
+        int last = offset + ((to - 1) >>> 3);
+        int firstMask = 0xFF >>> (from & 7);
+        int lastMask = (0xFF << (7 - ((to - 1) & 7))) & 0xFF;
+        if (first == last) {
+            applyMask(row, first, firstMask & lastMask, white);
+            return;
+        }
+        applyMask(row, first, firstMask, white);
+        Arrays.fill(row, first + 1, last, white ? (byte) 0xFF : 0);
+        applyMask(row, last, lastMask, white);
+    }
+
+    /**
+     * Sets the masked bits of one byte to white or black.
+     *
+     * @param row The destination buffer.
+     * @param index Index of the byte to update.
+     * @param mask Bits to update.
+     * @param white True to set the bits; false to clear them.
+     */
+    private static void applyMask(byte[] row, int index, int mask, boolean white) {
+        row[index] = (byte) (white ? row[index] | mask : row[index] & ~mask);
+    }
+
+    /**
+     * Saves the generated QR code image to the specified file path in PNG format.
+     * Creates the necessary directories if they do not exist.
+     * 
+     * @param image    The BufferedImage representing the QR code to save.
+     * @param filePath The full file path including filename and extension.
+     * @return true if the image was saved successfully; false otherwise.
+     */
+    public boolean saveQRCode(BufferedImage image, String filePath) {
+        ScanlineSource rows = packedRows(image);
+        return writeFile(new File(filePath), outputFile -> {
+            if (rows == null) {
+                return ImageIO.write(image, "PNG", outputFile);
+            }
+            pngWriters.get().write(outputFile.toPath(), image.getWidth(), image.getHeight(), rows);
+            return true;
+        });
+    }
+
+    /**
+     * Saves a module matrix as a 1-bit grayscale PNG without creating a BufferedImage.
+     * Pixel rows are rasterized one at a time and streamed straight into the encoder.
+     * Creates the necessary directories if they do not exist.
+     *
+     * @param matrix   The module matrix produced by {@link #encode(String, QRMatrix)}.
+     * @param filePath The full file path including filename and extension.
+     * @return true if the image was saved successfully; false otherwise.
+     */
+    public boolean saveQRCode(QRMatrix matrix, String filePath) {
+        return writeFile(new File(filePath), outputFile -> {
+            pngWriters.get().write(outputFile.toPath(), QR_SIZE, QR_SIZE,
+                    (y, row, offset) -> rasterizeRow(matrix, y, row, offset));
+            return true;
+        });
+    }
+
+    /**
+     * Saves already encoded PNG bytes to the specified file path.
+     * Creates the necessary directories if they do not exist.
+     *
+     * @param png      The complete PNG file contents.
+     * @param filePath The full file path including filename and extension.
+     * @return true if the file was saved successfully; false otherwise.
+     */
+    public boolean saveQRCode(byte[] png, String filePath) {
+        return writeFile(new File(filePath), outputFile -> {
+            try (FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(png);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Writes one output file, creating its directory first. If the write fails because
+     * the directory is gone, for example because it was deleted during a long session,
+     * the directory is created again and the write is retried once.
+     *
+     * @param file The file to write.
+     * @param write Writes the file's contents.
+     * @return true if the file was saved successfully; false otherwise.
+     */
+    private boolean writeFile(File file, FileWrite write) {
+        try {
+            ensureParentDirectory(file);
+            try {
+                return write.writeTo(file);
+            } catch (IOException e) {
+                File parent = file.getAbsoluteFile().getParentFile();
+                if (parent == null || parent.isDirectory()) {
+                    throw e;
+                }
+                createdDirectories.remove(parent);
+                ensureParentDirectory(file);
+                return write.writeTo(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving QR code: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Creates the directory a file goes into, unless this generator already created it.
+     * The directory is only remembered once it exists.
+     *
+     * @param file The file about to be written.
+     */
+    private void ensureParentDirectory(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !createdDirectories.contains(parent)) {
+            parent.mkdirs();
+            if (parent.isDirectory()) {
+                createdDirectories.add(parent);
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of one output file.
+     */
+    @FunctionalInterface
+    private interface FileWrite {
+        /**
+         * Writes the file.
+         *
+         * @param file The file to create or replace.
+         * @return true if the file was written.
+         * @throws IOException If the file cannot be written.
+         */
+        boolean writeTo(File file) throws IOException;
+    }
+
+    /**
+     * Encodes a module matrix as 1-bit grayscale PNG bytes.
+     *
+     * @param matrix The module matrix produced by {@link #encode(String, QRMatrix)}.
+     * @return The complete PNG file contents.
+     */
+    public byte[] toPngBytes(QRMatrix matrix) {
+        return pngWriters.get().toByteArray(QR_SIZE, QR_SIZE,
+                (y, row, offset) -> rasterizeRow(matrix, y, row, offset));
+    }
+
+    /**
+     * Exposes the pixel rows of a plain black-and-white 1-bit image for streaming.
+     *
+     * @param image The image to read.
+     * @return A source reading rows straight from the image's raster, or null if the
+     *         image is not a simple black-and-white TYPE_BYTE_BINARY image.
+     */
+    private static ScanlineSource packedRows(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_BINARY
+                || !(image.getColorModel() instanceof IndexColorModel)
+                || !(image.getSampleModel() instanceof MultiPixelPackedSampleModel)) {
+            return null;
+        }
+        IndexColorModel colors = (IndexColorModel) image.getColorModel();
+        MultiPixelPackedSampleModel layout = (MultiPixelPackedSampleModel) image.getSampleModel();
+        WritableRaster raster = image.getRaster();
+        if (colors.getMapSize() != 2 || colors.getRGB(0) != 0xFF000000 || colors.getRGB(1) != 0xFFFFFFFF
+                || layout.getPixelBitStride() != 1 || layout.getDataBitOffset() != 0
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return null;
+        }
+        byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int stride = layout.getScanlineStride();
+        int rowBytes = (image.getWidth() + 7) / 8;
+        return (y, row, offset) -> System.arraycopy(pixels, y * stride, row, offset, rowBytes);
+    }
+}
@@ -0,0 +1,444 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP service that renders QR codes on demand, with no pre-generated files.
+ *
+ * <ul>
+ *   <li>{@code GET /students} lists students as JSON, a page at a time. It takes the
+ *       filters {@code ?section=}, {@code ?grade=}, {@code ?type=} ({@code college} or
+ *       {@code highschool}) and {@code ?name=} (first or last name prefix), a
+ *       {@code ?limit=} of up to 1000 (default 100), and the {@code ?cursor=} returned
+ *       as {@code next} by the previous page.</li>
+ *   <li>{@code GET /students/{id}/qr.png} returns one student's QR code. The response
+ *       carries an ETag derived from the payload digest, and a matching
+ *       {@code If-None-Match} is answered with {@code 304 Not Modified}.</li>
+ *   <li>{@code GET /students/qr.zip} and {@code GET /students/qr.tar} stream an archive
+ *       of every student's QR code, optionally narrowed with the same filters as the
+ *       listing. The archive is written straight into the chunked response
+ *       body while the bulk pipeline produces it.</li>
+ *   <li>{@code GET /metrics} returns a snapshot of {@link QRMetrics#global()} as text, or
+ *       as JSON with {@code ?format=json}.</li>
+ * </ul>
+ *
+ * <p>PNG bytes come from the manager's render cache, so repeated requests for the same
+ * student skip encoding, and nothing is written to disk. Each request runs on its own
+ * virtual thread when the runtime supports them (Java 21 and later). On older runtimes
+ * requests fall back to a cached pool of daemon platform threads.</p>
+ */
+public class QRCodeServer {
+    /** Default port the server listens on. */
+    public static final int DEFAULT_PORT = 8080;
+
+    /** Path of the student listing. */
+    private static final String LIST_PATH = "/students";
+
+    /** Path prefix of all student resources. */
+    private static final String STUDENTS_PATH = LIST_PATH + "/";
+
+    /** Page size of the student listing when the request does not give one. */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    /** Largest page size of the student listing. */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /** Suffix of the single QR code resource. */
+    private static final String QR_SUFFIX = "/qr.png";
+
+    private static final LatencyHistogram REQUEST_TIME = QRMetrics.global().histogram("http.request");
+
+    /** Manager the students and QR images come from. */
+    private final StudentManager manager;
+
+    /** The underlying JDK HTTP server. */
+    private final HttpServer server;
+
+    /** Executor running the request handlers. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a QRCodeServer bound to the given port. The server does not accept
+     * requests until {@link #start()} is called.
+     *
+     * @param manager Manager the students and QR images come from.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public QRCodeServer(StudentManager manager, int port) throws IOException {
+        // Small responses otherwise stall on Nagle's algorithm meeting delayed ACKs; the
+        // JDK server only reads this setting once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.manager = manager;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        this.server.setExecutor(executor);
+        this.server.createContext(LIST_PATH, this::handle);
+        this.server.createContext("/metrics", this::handle);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting up to the given delay for in-flight exchanges to finish.
+     *
+     * @param delaySeconds Maximum time to wait for running exchanges, in seconds.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the port the server is listening on, which is useful when it was started on port 0.
+     * @return The bound port.
+     */
+    public int getPort() { return server.getAddress().getPort(); }
+
+    /**
+     * Routes a request to the matching handler and turns unexpected failures into a 500.
+     *
+     * @param exchange The HTTP exchange.
+     */
+    private void handle(HttpExchange exchange) {
+        long start = System.nanoTime();
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                sendText(exchange, 405, "Method not allowed");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/metrics")) {
+                boolean json = "json".equals(parseQuery(exchange.getRequestURI().getRawQuery()).get("format"));
+                QRMetrics metrics = QRMetrics.global();
+                sendText(exchange, 200, json ? metrics.toJson() : metrics.toText(),
+                        json ? "application/json" : "text/plain; charset=utf-8");
+            } else if (path.equals(LIST_PATH) || path.equals(STUDENTS_PATH)) {
+                sendStudentList(exchange);
+            } else if (path.equals(STUDENTS_PATH + "qr.zip")) {
+                sendArchive(exchange, QRArchiveWriter.Format.ZIP);
+            } else if (path.equals(STUDENTS_PATH + "qr.tar")) {
+                sendArchive(exchange, QRArchiveWriter.Format.TAR);
+            } else if (path.endsWith(QR_SUFFIX) && path.length() > STUDENTS_PATH.length() + QR_SUFFIX.length()) {
+                sendQRCode(exchange, path.substring(STUDENTS_PATH.length(), path.length() - QR_SUFFIX.length()));
+            } else {
+                sendText(exchange, 404, "Not found");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+            try {
+                sendText(exchange, 500, "Internal server error");
+            } catch (IOException | RuntimeException ignored) {
+                // Headers were already sent; closing the exchange below aborts the response
+            }
+        } finally {
+            exchange.close();
+            REQUEST_TIME.recordSince(start);
+            int status = exchange.getResponseCode();
+            if (status > 0) {
+                QRMetrics.global().counter("http.status." + status / 100 + "xx").increment();
+            }
+        }
+    }
+
+    /**
+     * Serves one student's QR code, or 304 if the client's copy is still current.
+     *
+     * @param exchange The HTTP exchange.
+     * @param studentId The student ID from the request path.
+     * @throws IOException If the response cannot be written.
+     */
+    private void sendQRCode(HttpExchange exchange, String studentId) throws IOException {
+        Student student = manager.findStudentById(studentId);
+        if (student == null) {
+            sendText(exchange, 404, "Student not found: " + studentId);
+            return;
+        }
+        String digest = manager.getQRCodeDigest(student);
+        String etag = "\"" + digest + "\"";
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        if (matchesETag(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        byte[] png = manager.getQRCodePng(student, digest);
+        headers.set("Content-Type", "image/png");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            headers.set("Content-Length", String.valueOf(png.length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, png.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(png);
+        }
+    }
+
+    /**
+     * Serves one page of the students matching the query filters as JSON.
+     *
+     * @param exchange The HTTP exchange.
+     * @throws IOException If the response cannot be written.
+     */
+    private void sendStudentList(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        QueryPage page;
+        try {
+            int limit = DEFAULT_PAGE_SIZE;
+            if (parameters.containsKey("limit")) {
+                try {
+                    limit = Integer.parseInt(parameters.get("limit").trim());
+                } catch (NumberFormatException e) {
+                    limit = 0;
+                }
+                if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                    throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+                }
+            }
+            page = manager.queryStudents(StudentQuery.fromParameters(parameters), parameters.get("cursor"), limit);
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("{\"students\":[");
+        List<Student> students = page.getStudents();
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("{\"id\":");
+            appendJsonString(json, student.getStudentId());
+            json.append(",\"firstName\":");
+            appendJsonString(json, student.getFirstName());
+            json.append(",\"lastName\":");
+            appendJsonString(json, student.getLastName());
+            json.append(",\"email\":");
+            appendJsonString(json, student.getEmail());
+            json.append(",\"grade\":");
+            appendJsonString(json, student.getGrade() == null ? null : student.getGrade().name());
+            json.append(",\"section\":");
+            appendJsonString(json, student.getSection());
+            json.append('}');
+        }
+        json.append("],\n\"next\":");
+        appendJsonString(json, page.getNextCursor());
+        json.append("}\n");
+        sendText(exchange, 200, json.toString(), "application/json");
+    }
+
+    /**
+     * Streams an archive of the QR codes of all students matching the query filters.
+     *
+     * @param exchange The HTTP exchange.
+     * @param format The archive format.
+     * @throws IOException If the response cannot be written.
+     */
+    private void sendArchive(HttpExchange exchange, QRArchiveWriter.Format format) throws IOException {
+        List<Student> targets;
+        try {
+            targets = manager.queryStudents(StudentQuery.fromParameters(parseQuery(exchange.getRequestURI().getRawQuery())))
+                    .collect(Collectors.toList());
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+            return;
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", format == QRArchiveWriter.Format.ZIP ? "application/zip" : "application/x-tar");
+        headers.set("Content-Disposition", "attachment; filename=\"qr_codes" + format.getExtension() + "\"");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (QRArchiveWriter archive = new QRArchiveWriter(Channels.newChannel(exchange.getResponseBody()), format)) {
+            manager.writeQRCodeArchive(targets, archive, result -> {
+                if (!result.isSuccess()) {
+                    System.err.println("Failed to archive QR code for " + result.getStudentId() + ": "
+                            + result.getErrorMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks whether an {@code If-None-Match} header matches the current entity tag.
+     *
+     * @param header The header value, or null if absent.
+     * @param etag The current strong entity tag, including quotes.
+     * @return True if the header is {@code *} or lists the tag, weak or strong.
+     */
+    private static boolean matchesETag(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a value as a JSON string literal, or {@code null}.
+     *
+     * @param json The JSON being built.
+     * @param value The value, or null.
+     */
+    private static void appendJsonString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Parses a raw query string into decoded parameters. Later duplicates win.
+     *
+     * @param rawQuery The raw query string, or null.
+     * @return The decoded parameters.
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Sends a short plain-text response.
+     *
+     * @param exchange The HTTP exchange.
+     * @param status The HTTP status code.
+     * @param message The response text.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        sendText(exchange, status, message + "\n", "text/plain; charset=utf-8");
+    }
+
+    /**
+     * Sends a complete text response with the given content type.
+     *
+     * @param exchange The HTTP exchange.
+     * @param status The HTTP status code.
+     * @param text The response body.
+     * @param contentType The Content-Type header value.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void sendText(HttpExchange exchange, int status, String text, String contentType)
+            throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Creates the executor running request handlers: one virtual thread per request when
+     * the runtime has them, otherwise a cached pool of daemon threads.
+     *
+     * @return The request executor.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "qr-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     *
+     * @param args Optional port, then optional roster file to serve students from.
+     */
+    public static void main(String[] args) {
+        StudentManager manager;
+        int port;
+        try {
+            port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            manager = args.length > 1 ? new StudentManager(args[1], StudentManager.createConfiguredStore())
+                    : new StudentManager(StudentManager.createConfiguredStore());
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: QRCodeServer [port] [roster file]");
+            return;
+        } catch (IOException e) {
+            System.err.println("Error opening roster file: " + e.getMessage());
+            return;
+        }
+
+        try {
+            QRCodeServer server = new QRCodeServer(manager, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                manager.close();
+            }));
+            QRMetrics.global().registerMBean();
+            QRMetrics.global().startConfiguredReporter();
+            server.start();
+            System.out.println("Serving QR codes on http://localhost:" + server.getPort() + STUDENTS_PATH);
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,846 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Encodes text into standard QR code symbols as defined by ISO/IEC 18004.
+ *
+ * <p>Text made only of digits, upper-case letters and {@code " $%*+-./:"} is stored in
+ * alphanumeric mode; anything else is stored in byte mode as UTF-8, preceded by an ECI
+ * header when it contains non-ASCII characters. The smallest version (size) that holds
+ * the payload at the configured error correction level is chosen automatically.</p>
+ *
+ * <p>Everything that depends only on the version is built once and shared: the function
+ * patterns, the order in which data modules are filled, and each mask pattern combined with
+ * its format information. Encoding a payload then places its codewords once and scores each
+ * of the eight masks by XOR-ing that mask into the packed {@link QRMatrix} rows, reading
+ * runs and 2x2 blocks a whole 64-bit word at a time. Columns are scored on a transposed copy
+ * that is filled in at the same time as the data, so no per-mask transposing is needed.</p>
+ *
+ * <p>Encoders are thread-safe; per-call buffers are kept per thread.</p>
+ */
+public class QREncoder {
+    /** Smallest QR version. */
+    public static final int MIN_VERSION = 1;
+
+    /** Largest QR version. */
+    public static final int MAX_VERSION = 40;
+
+    /** Error correction codewords per block, by error correction level and version. */
+    private static final int[][] ECC_CODEWORDS_PER_BLOCK = {
+        {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28,
+            28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+            26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+        {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30,
+            28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28,
+            30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+    };
+
+    /** Number of error correction blocks, by error correction level and version. */
+    private static final int[][] NUM_ERROR_CORRECTION_BLOCKS = {
+        {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8,
+            8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25},
+        {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+            17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+        {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20,
+            23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+        {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25,
+            25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81},
+    };
+
+    /** Characters allowed in alphanumeric mode, in code order. */
+    private static final String ALPHANUMERIC_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    /** Alphanumeric code of each ASCII character, or -1 if it is not allowed. */
+    private static final byte[] ALPHANUMERIC_CODES = new byte[128];
+
+    private static final int MODE_ALPHANUMERIC = 0x2;
+    private static final int MODE_BYTE = 0x4;
+    private static final int MODE_ECI = 0x7;
+
+    /** ECI assignment number for UTF-8. */
+    private static final int ECI_UTF_8 = 26;
+
+    private static final int PENALTY_N1 = 3;
+    private static final int PENALTY_N2 = 3;
+    private static final int PENALTY_N3 = 40;
+    private static final int PENALTY_N4 = 10;
+
+    /** Total codewords (data and error correction) in the largest version. */
+    private static final int MAX_CODEWORDS = numRawDataModules(MAX_VERSION) / 8;
+
+    static {
+        Arrays.fill(ALPHANUMERIC_CODES, (byte) -1);
+        for (int i = 0; i < ALPHANUMERIC_CHARSET.length(); i++) {
+            ALPHANUMERIC_CODES[ALPHANUMERIC_CHARSET.charAt(i)] = (byte) i;
+        }
+    }
+
+    /** Error correction level used for every symbol. */
+    private final QRErrorCorrection errorCorrection;
+
+    /** Number of data codewords each version holds at this error correction level. */
+    private final int[] dataCodewords;
+
+    /** Lazily built per-version templates. */
+    private final AtomicReferenceArray<Template> templates;
+
+    /** Per-thread working buffers. */
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Constructs a QREncoder.
+     *
+     * @param errorCorrection The error correction level used for every symbol.
+     */
+    public QREncoder(QRErrorCorrection errorCorrection) {
+        this.errorCorrection = errorCorrection;
+        this.dataCodewords = new int[MAX_VERSION + 1];
+        for (int version = MIN_VERSION; version <= MAX_VERSION; version++) {
+            dataCodewords[version] = numRawDataModules(version) / 8
+                    - ECC_CODEWORDS_PER_BLOCK[errorCorrection.ordinal()][version]
+                    * NUM_ERROR_CORRECTION_BLOCKS[errorCorrection.ordinal()][version];
+        }
+        this.templates = new AtomicReferenceArray<>(MAX_VERSION + 1);
+        this.scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    /**
+     * Gets the error correction level used for every symbol.
+     * @return The error correction level.
+     */
+    public QRErrorCorrection getErrorCorrection() { return errorCorrection; }
+
+    /**
+     * Gets the number of modules along each side of a symbol of the given version.
+     *
+     * @param version The QR version, 1 to 40.
+     * @return The symbol size in modules.
+     */
+    public static int getSize(int version) {
+        return version * 4 + 17;
+    }
+
+    /**
+     * Encodes text into a QR symbol.
+     *
+     * @param text The text to encode.
+     * @param target A matrix to reuse if it has the size of the chosen symbol; may be null.
+     * @return The target, or a new matrix if the target was null or the wrong size.
+     * @throws IllegalArgumentException If the text is too long for any QR version.
+     */
+    public QRMatrix encode(String text, QRMatrix target) {
+        Scratch buffers = scratch.get();
+        int version = writeDataCodewords(text, buffers);
+        Template template = template(version);
+        addErrorCorrection(version, buffers);
+
+        int size = template.size;
+        QRMatrix base = buffers.matrix(buffers.base, version);
+        QRMatrix transposed = buffers.matrix(buffers.transposed, version);
+        QRMatrix candidate = buffers.matrix(buffers.candidate, version);
+        base.copyFrom(template.functions);
+        transposed.copyFrom(template.transposedFunctions);
+        int[] positions = template.dataPositions;
+        byte[] codewords = buffers.codewords;
+        int bitCount = numRawDataModules(version) / 8 * 8;
+        for (int i = 0; i < bitCount; i++) {
+            if ((codewords[i >>> 3] & (0x80 >>> (i & 7))) != 0) {
+                int x = positions[i] & 0xFF;
+                int y = positions[i] >>> 8;
+                base.set(x, y, true);
+                transposed.set(y, x, true);
+            }
+        }
+
+        int bestMask = 0;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            candidate.copyFrom(base);
+            candidate.xor(template.overlays[mask]);
+            int penalty = penaltyRuns(candidate, buffers.runs) + penaltyBlocksAndBalance(candidate);
+            if (penalty >= bestPenalty) {
+                continue;
+            }
+            candidate.copyFrom(transposed);
+            candidate.xor(template.transposedOverlays[mask]);
+            penalty += penaltyRuns(candidate, buffers.runs);
+            if (penalty < bestPenalty) {
+                bestPenalty = penalty;
+                bestMask = mask;
+            }
+        }
+
+        QRMatrix result = target != null && target.getSize() == size ? target : new QRMatrix(size);
+        result.copyFrom(base);
+        result.xor(template.overlays[bestMask]);
+        return result;
+    }
+
+    /**
+     * Chooses the mode and version for the text and writes the padded data codewords.
+     *
+     * @param text The text to encode.
+     * @param buffers The working buffers; the codewords are written to {@code buffers.data}.
+     * @return The chosen version.
+     * @throws IllegalArgumentException If the text is too long for any QR version.
+     */
+    private int writeDataCodewords(String text, Scratch buffers) {
+        boolean alphanumeric = isAlphanumeric(text);
+        byte[] bytes = alphanumeric ? null : text.getBytes(StandardCharsets.UTF_8);
+        boolean eci = false;
+        if (bytes != null) {
+            for (byte b : bytes) {
+                if (b < 0) {
+                    eci = true;
+                    break;
+                }
+            }
+        }
+        int count = alphanumeric ? text.length() : bytes.length;
+        long payloadBits = alphanumeric ? 11L * (count / 2) + 6L * (count % 2) : 8L * count;
+
+        int version = MIN_VERSION;
+        int countBits;
+        while (true) {
+            countBits = alphanumeric
+                    ? (version <= 9 ? 9 : version <= 26 ? 11 : 13)
+                    : (version <= 9 ? 8 : 16);
+            long needed = (eci ? 12 : 0) + 4 + countBits + payloadBits;
+            if (count < (1 << countBits) && needed <= dataCodewords[version] * 8L) {
+                break;
+            }
+            if (++version > MAX_VERSION) {
+                throw new IllegalArgumentException("Text too long for a QR code: " + count
+                        + (alphanumeric ? " characters" : " bytes"));
+            }
+        }
+
+        int capacity = dataCodewords[version];
+        buffers.reset(capacity);
+        if (eci) {
+            buffers.appendBits(MODE_ECI, 4);
+            buffers.appendBits(ECI_UTF_8, 8);
+        }
+        buffers.appendBits(alphanumeric ? MODE_ALPHANUMERIC : MODE_BYTE, 4);
+        buffers.appendBits(count, countBits);
+        if (alphanumeric) {
+            int i = 0;
+            for (; i + 1 < count; i += 2) {
+                buffers.appendBits(ALPHANUMERIC_CODES[text.charAt(i)] * 45 + ALPHANUMERIC_CODES[text.charAt(i + 1)], 11);
+            }
+            if (i < count) {
+                buffers.appendBits(ALPHANUMERIC_CODES[text.charAt(i)], 6);
+            }
+        } else {
+            for (byte b : bytes) {
+                buffers.appendBits(b & 0xFF, 8);
+            }
+        }
+
+        // Terminator, then pad to a byte boundary and fill with alternating pad codewords
+        int capacityBits = capacity * 8;
+        buffers.appendBits(0, Math.min(4, capacityBits - buffers.bitLength));
+        buffers.appendBits(0, (8 - (buffers.bitLength & 7)) & 7);
+        for (int pad = 0xEC; buffers.bitLength < capacityBits; pad ^= 0xEC ^ 0x11) {
+            buffers.appendBits(pad, 8);
+        }
+        return version;
+    }
+
+    /**
+     * Splits the data codewords into blocks, computes each block's error correction
+     * codewords and interleaves everything into the final codeword sequence.
+     *
+     * @param version The symbol version.
+     * @param buffers The working buffers; reads {@code data}, writes {@code codewords}.
+     */
+    private void addErrorCorrection(int version, Scratch buffers) {
+        int numBlocks = NUM_ERROR_CORRECTION_BLOCKS[errorCorrection.ordinal()][version];
+        int eccLength = ECC_CODEWORDS_PER_BLOCK[errorCorrection.ordinal()][version];
+        int rawCodewords = numRawDataModules(version) / 8;
+        int numShortBlocks = numBlocks - rawCodewords % numBlocks;
+        int shortDataLength = rawCodewords / numBlocks - eccLength;
+        byte[] data = buffers.data;
+        byte[] ecc = buffers.ecc;
+        byte[] out = buffers.codewords;
+
+        for (int block = 0; block < numBlocks; block++) {
+            int start = block * shortDataLength + Math.max(0, block - numShortBlocks);
+            int length = shortDataLength + (block < numShortBlocks ? 0 : 1);
+            ReedSolomon.computeRemainder(data, start, length, ecc, block * eccLength, eccLength);
+        }
+
+        int k = 0;
+        for (int i = 0; i < shortDataLength; i++) {
+            for (int block = 0; block < numBlocks; block++) {
+                out[k++] = data[block * shortDataLength + Math.max(0, block - numShortBlocks) + i];
+            }
+        }
+        for (int block = numShortBlocks; block < numBlocks; block++) {
+            out[k++] = data[block * shortDataLength + (block - numShortBlocks) + shortDataLength];
+        }
+        for (int i = 0; i < eccLength; i++) {
+            for (int block = 0; block < numBlocks; block++) {
+                out[k++] = ecc[block * eccLength + i];
+            }
+        }
+    }
+
+    /**
+     * Scores every row of a matrix for long same-colour runs (N1) and finder-like
+     * 1:1:3:1:1 patterns (N3). Run boundaries are found a word at a time by XOR-ing each
+     * packed row with itself shifted by one module, so the cost is per run, not per module.
+     *
+     * @param matrix The matrix to score.
+     * @param runs Scratch run scorer.
+     * @return The summed penalty.
+     */
+    private static int penaltyRuns(QRMatrix matrix, RunScorer runs) {
+        int size = matrix.getSize();
+        int words = matrix.getWordsPerRow();
+        runs.penalty = 0;
+        for (int y = 0; y < size; y++) {
+            runs.startLine(size);
+            long previous = matrix.getWord(y, 0) & 1;
+            boolean color = previous != 0;
+            int start = 0;
+            for (int w = 0; w < words; w++) {
+                long bits = matrix.getWord(y, w);
+                // Bit x is set where module x differs from module x - 1
+                long transitions = bits ^ (bits << 1 | previous);
+                previous = bits >>> 63;
+                int valid = size - (w << 6);
+                if (valid < 64) {
+                    transitions &= (1L << valid) - 1;
+                }
+                while (transitions != 0) {
+                    int end = (w << 6) + Long.numberOfTrailingZeros(transitions);
+                    transitions &= transitions - 1;
+                    runs.addRun(color, end - start);
+                    color = !color;
+                    start = end;
+                }
+            }
+            runs.addRun(color, size - start);
+            runs.endLine();
+        }
+        return runs.penalty;
+    }
+
+    /**
+     * Scores 2x2 same-coloured blocks (N2) and the dark/light balance (N4),
+     * both computed with word-wide bit operations.
+     *
+     * @param matrix The matrix to score.
+     * @return The summed penalty.
+     */
+    private static int penaltyBlocksAndBalance(QRMatrix matrix) {
+        int size = matrix.getSize();
+        int words = matrix.getWordsPerRow();
+        int blocks = 0;
+        int dark = 0;
+        for (int y = 0; y < size; y++) {
+            for (int w = 0; w < words; w++) {
+                long top = matrix.getWord(y, w);
+                dark += Long.bitCount(top);
+                if (y + 1 == size) {
+                    continue;
+                }
+                long bottom = matrix.getWord(y + 1, w);
+                long topNext = w + 1 < words ? matrix.getWord(y, w + 1) : 0;
+                long bottomNext = w + 1 < words ? matrix.getWord(y + 1, w + 1) : 0;
+                // Bit x of the shifted words holds module x + 1
+                long topRight = (top >>> 1) | (topNext << 63);
+                long bottomRight = (bottom >>> 1) | (bottomNext << 63);
+                long same = ~(top ^ bottom) & ~(top ^ topRight) & ~(topRight ^ bottomRight);
+                int lastColumn = size - 2 - w * 64;
+                long valid = lastColumn >= 63 ? -1L : (1L << (lastColumn + 1)) - 1;
+                blocks += Long.bitCount(same & valid);
+            }
+        }
+        int total = size * size;
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        return blocks * PENALTY_N2 + k * PENALTY_N4;
+    }
+
+    /**
+     * Checks whether text can be stored in alphanumeric mode.
+     *
+     * @param text The text.
+     * @return True if every character is in the alphanumeric character set.
+     */
+    private static boolean isAlphanumeric(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 128 || ALPHANUMERIC_CODES[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts the modules available for data and error correction codewords,
+     * including remainder bits.
+     *
+     * @param version The symbol version.
+     * @return The number of data modules.
+     */
+    private static int numRawDataModules(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int numAlign = version / 7 + 2;
+            result -= (25 * numAlign - 10) * numAlign - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the centre coordinates of the alignment patterns of a version.
+     *
+     * @param version The symbol version.
+     * @return The coordinates, used for both rows and columns; empty for version 1.
+     */
+    private static int[] alignmentPatternPositions(int version) {
+        if (version == 1) {
+            return new int[0];
+        }
+        int numAlign = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + numAlign * 2 + 1) / (numAlign * 2 - 2) * 2;
+        int[] result = new int[numAlign];
+        result[0] = 6;
+        for (int i = numAlign - 1, position = getSize(version) - 7; i >= 1; i--, position -= step) {
+            result[i] = position;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the template for a version, building it on first use.
+     *
+     * @param version The symbol version.
+     * @return The shared template.
+     */
+    private Template template(int version) {
+        Template template = templates.get(version);
+        if (template == null) {
+            template = new Template(version, errorCorrection);
+            if (!templates.compareAndSet(version, null, template)) {
+                template = templates.get(version);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Everything about a symbol that depends only on its version and error correction level.
+     */
+    private static class Template {
+        /** Number of modules along each side. */
+        final int size;
+
+        /** Dark function modules: finders, timing, alignment, version information and the dark module. */
+        final QRMatrix functions;
+
+        /** Transpose of {@link #functions}. */
+        final QRMatrix transposedFunctions;
+
+        /** Data module coordinates in fill order, each packed as {@code y << 8 | x}. */
+        final int[] dataPositions;
+
+        /** Per mask: the mask pattern over data modules plus that mask's format information. */
+        final QRMatrix[] overlays;
+
+        /** Transposes of {@link #overlays}. */
+        final QRMatrix[] transposedOverlays;
+
+        /**
+         * Builds the template for a version.
+         *
+         * @param version The symbol version.
+         * @param errorCorrection The error correction level, which is part of the format information.
+         */
+        Template(int version, QRErrorCorrection errorCorrection) {
+            this.size = getSize(version);
+            this.functions = new QRMatrix(size);
+            this.transposedFunctions = new QRMatrix(size);
+            QRMatrix reserved = new QRMatrix(size);
+            drawFunctionPatterns(version, reserved);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (functions.get(x, y)) {
+                        transposedFunctions.set(y, x, true);
+                    }
+                }
+            }
+
+            this.dataPositions = new int[numRawDataModules(version)];
+            int count = 0;
+            for (int right = size - 1; right >= 1; right -= 2) {
+                if (right == 6) {
+                    right = 5;
+                }
+                boolean upward = ((right + 1) & 2) == 0;
+                for (int vertical = 0; vertical < size; vertical++) {
+                    int y = upward ? size - 1 - vertical : vertical;
+                    for (int j = 0; j < 2; j++) {
+                        int x = right - j;
+                        if (!reserved.get(x, y)) {
+                            dataPositions[count++] = y << 8 | x;
+                        }
+                    }
+                }
+            }
+
+            this.overlays = new QRMatrix[8];
+            this.transposedOverlays = new QRMatrix[8];
+            for (int mask = 0; mask < 8; mask++) {
+                QRMatrix overlay = new QRMatrix(size);
+                QRMatrix transposed = new QRMatrix(size);
+                for (int position : dataPositions) {
+                    int x = position & 0xFF;
+                    int y = position >>> 8;
+                    if (masked(mask, x, y)) {
+                        overlay.set(x, y, true);
+                        transposed.set(y, x, true);
+                    }
+                }
+                drawFormatBits(errorCorrection, mask, overlay, transposed);
+                overlays[mask] = overlay;
+                transposedOverlays[mask] = transposed;
+            }
+        }
+
+        /**
+         * Draws the function patterns into {@link #functions} and marks every function
+         * module, including the format information areas, in {@code reserved}.
+         *
+         * @param version The symbol version.
+         * @param reserved Receives every module that is not available for data.
+         */
+        private void drawFunctionPatterns(int version, QRMatrix reserved) {
+            for (int i = 0; i < size; i++) {
+                setFunction(6, i, i % 2 == 0, reserved);
+                setFunction(i, 6, i % 2 == 0, reserved);
+            }
+            drawFinderPattern(3, 3, reserved);
+            drawFinderPattern(size - 4, 3, reserved);
+            drawFinderPattern(3, size - 4, reserved);
+
+            int[] alignment = alignmentPatternPositions(version);
+            int last = alignment.length - 1;
+            for (int i = 0; i <= last; i++) {
+                for (int j = 0; j <= last; j++) {
+                    if ((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0)) {
+                        continue;
+                    }
+                    for (int dy = -2; dy <= 2; dy++) {
+                        for (int dx = -2; dx <= 2; dx++) {
+                            setFunction(alignment[i] + dx, alignment[j] + dy,
+                                    Math.max(Math.abs(dx), Math.abs(dy)) != 1, reserved);
+                        }
+                    }
+                }
+            }
+
+            // Format information areas are reserved here and drawn per mask in the overlays
+            for (int i = 0; i <= 8; i++) {
+                reserved.set(8, i, true);
+                reserved.set(i, 8, true);
+            }
+            for (int i = 0; i < 8; i++) {
+                reserved.set(size - 1 - i, 8, true);
+                reserved.set(8, size - 1 - i, true);
+            }
+            setFunction(8, size - 8, true, reserved);
+
+            if (version >= 7) {
+                int remainder = version;
+                for (int i = 0; i < 12; i++) {
+                    remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+                }
+                int bits = version << 12 | remainder;
+                for (int i = 0; i < 18; i++) {
+                    boolean dark = ((bits >>> i) & 1) != 0;
+                    int a = size - 11 + i % 3;
+                    int b = i / 3;
+                    setFunction(a, b, dark, reserved);
+                    setFunction(b, a, dark, reserved);
+                }
+            }
+        }
+
+        /**
+         * Draws a finder pattern and its light separator.
+         *
+         * @param centerX The column of the pattern's centre.
+         * @param centerY The row of the pattern's centre.
+         * @param reserved The function module mask.
+         */
+        private void drawFinderPattern(int centerX, int centerY, QRMatrix reserved) {
+            for (int dy = -4; dy <= 4; dy++) {
+                for (int dx = -4; dx <= 4; dx++) {
+                    int x = centerX + dx;
+                    int y = centerY + dy;
+                    if (x >= 0 && x < size && y >= 0 && y < size) {
+                        int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                        setFunction(x, y, distance != 2 && distance != 4, reserved);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sets a function module.
+         *
+         * @param x The module column.
+         * @param y The module row.
+         * @param dark Whether the module is dark.
+         * @param reserved The function module mask.
+         */
+        private void setFunction(int x, int y, boolean dark, QRMatrix reserved) {
+            functions.set(x, y, dark);
+            reserved.set(x, y, true);
+        }
+
+        /**
+         * Draws both copies of the format information for a mask.
+         *
+         * @param errorCorrection The error correction level.
+         * @param mask The mask number.
+         * @param overlay The overlay to draw into.
+         * @param transposed The transposed overlay to draw into.
+         */
+        private void drawFormatBits(QRErrorCorrection errorCorrection, int mask, QRMatrix overlay,
+                                    QRMatrix transposed) {
+            int data = errorCorrection.getFormatBits() << 3 | mask;
+            int remainder = data;
+            for (int i = 0; i < 10; i++) {
+                remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+            }
+            int bits = (data << 10 | remainder) ^ 0x5412;
+
+            for (int i = 0; i <= 5; i++) {
+                setFormat(8, i, bits, i, overlay, transposed);
+            }
+            setFormat(8, 7, bits, 6, overlay, transposed);
+            setFormat(8, 8, bits, 7, overlay, transposed);
+            setFormat(7, 8, bits, 8, overlay, transposed);
+            for (int i = 9; i < 15; i++) {
+                setFormat(14 - i, 8, bits, i, overlay, transposed);
+            }
+            for (int i = 0; i < 8; i++) {
+                setFormat(size - 1 - i, 8, bits, i, overlay, transposed);
+            }
+            for (int i = 8; i < 15; i++) {
+                setFormat(8, size - 15 + i, bits, i, overlay, transposed);
+            }
+        }
+
+        /**
+         * Sets one format information module in an overlay and its transpose.
+         *
+         * @param x The module column.
+         * @param y The module row.
+         * @param bits The 15 format information bits.
+         * @param index Which bit to draw.
+         * @param overlay The overlay.
+         * @param transposed The transposed overlay.
+         */
+        private static void setFormat(int x, int y, int bits, int index, QRMatrix overlay, QRMatrix transposed) {
+            if (((bits >>> index) & 1) != 0) {
+                overlay.set(x, y, true);
+                transposed.set(y, x, true);
+            }
+        }
+
+        /**
+         * Evaluates one of the eight data mask patterns.
+         *
+         * @param mask The mask number.
+         * @param x The module column.
+         * @param y The module row.
+         * @return True if the mask flips this module.
+         */
+        private static boolean masked(int mask, int x, int y) {
+            switch (mask) {
+                case 0: return (x + y) % 2 == 0;
+                case 1: return y % 2 == 0;
+                case 2: return x % 3 == 0;
+                case 3: return (x + y) % 3 == 0;
+                case 4: return (x / 3 + y / 2) % 2 == 0;
+                case 5: return x * y % 2 + x * y % 3 == 0;
+                case 6: return (x * y % 2 + x * y % 3) % 2 == 0;
+                default: return ((x + y) % 2 + x * y % 3) % 2 == 0;
+            }
+        }
+    }
+
+    /**
+     * Scores the runs of one line at a time for the N1 and N3 penalties. The seven most
+     * recent run lengths are kept in fields rather than an array, since they are shifted
+     * on every run.
+     */
+    private static class RunScorer {
+        /** Penalty accumulated since the last reset. */
+        int penalty;
+
+        /** Length of the line, also used as the width of the light quiet zone. */
+        private int size;
+
+        /** Colour and length of the run currently being extended. */
+        private boolean runColor;
+        private int runLength;
+
+        /** Lengths of the seven most recent finished runs, newest first. */
+        private int h0, h1, h2, h3, h4, h5, h6;
+
+        /**
+         * Starts scoring a new line.
+         *
+         * @param size The line length.
+         */
+        void startLine(int size) {
+            this.size = size;
+            runColor = false;
+            runLength = 0;
+            h0 = h1 = h2 = h3 = h4 = h5 = h6 = 0;
+        }
+
+        /**
+         * Adds a maximal run of same-coloured modules.
+         *
+         * @param color True for dark.
+         * @param length The run length.
+         */
+        void addRun(boolean color, int length) {
+            if (length >= 5) {
+                penalty += PENALTY_N1 + length - 5;
+            }
+            if (color == runColor) {
+                // Only the first run of a line can continue the initial light run
+                runLength += length;
+                return;
+            }
+            push(runLength);
+            if (!runColor) {
+                penalty += countFinderPatterns() * PENALTY_N3;
+            }
+            runColor = color;
+            runLength = length;
+        }
+
+        /**
+         * Finishes the line, treating the quiet zone after it as a light run.
+         */
+        void endLine() {
+            if (runColor) {
+                push(runLength);
+                runLength = 0;
+            }
+            push(runLength + size);
+            penalty += countFinderPatterns() * PENALTY_N3;
+        }
+
+        /**
+         * Pushes a finished run. The first run of a line is extended by the light quiet
+         * zone before it.
+         *
+         * @param length The run length.
+         */
+        private void push(int length) {
+            if (h0 == 0) {
+                length += size;
+            }
+            h6 = h5;
+            h5 = h4;
+            h4 = h3;
+            h3 = h2;
+            h2 = h1;
+            h1 = h0;
+            h0 = length;
+        }
+
+        /**
+         * Counts finder-like patterns ending at the most recent light run: a dark-light-dark
+         * run ratio of 1:1:3:1:1 with at least four light modules on one side.
+         *
+         * @return 0, 1 or 2.
+         */
+        private int countFinderPatterns() {
+            int n = h1;
+            boolean core = n > 0 && h2 == n && h3 == n * 3 && h4 == n && h5 == n;
+            return (core && h0 >= n * 4 && h6 >= n ? 1 : 0) + (core && h6 >= n * 4 && h0 >= n ? 1 : 0);
+        }
+    }
+
+    /**
+     * Per-thread working buffers, sized for the largest version.
+     */
+    private static class Scratch {
+        /** Data codewords being assembled. */
+        final byte[] data = new byte[MAX_CODEWORDS];
+
+        /** Error correction codewords of every block. */
+        final byte[] ecc = new byte[MAX_CODEWORDS];
+
+        /** Final interleaved codewords. */
+        final byte[] codewords = new byte[MAX_CODEWORDS];
+
+        /** Run scorer used by the N1 and N3 penalties. */
+        final RunScorer runs = new RunScorer();
+
+        /** Reusable matrices by version. */
+        final QRMatrix[] base = new QRMatrix[MAX_VERSION + 1];
+        final QRMatrix[] transposed = new QRMatrix[MAX_VERSION + 1];
+        final QRMatrix[] candidate = new QRMatrix[MAX_VERSION + 1];
+
+        /** Number of bits written to {@link #data}. */
+        int bitLength;
+
+        /**
+         * Clears the data buffer for a new payload.
+         *
+         * @param capacity Number of data codewords that will be written.
+         */
+        void reset(int capacity) {
+            Arrays.fill(data, 0, capacity, (byte) 0);
+            bitLength = 0;
+        }
+
+        /**
+         * Appends the low bits of a value to the data buffer, most significant first.
+         *
+         * @param value The value.
+         * @param count Number of bits to append.
+         */
+        void appendBits(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    data[bitLength >>> 3] |= (byte) (0x80 >>> (bitLength & 7));
+                }
+                bitLength++;
+            }
+        }
+
+        /**
+         * Gets a reusable matrix for a version, creating it on first use.
+         *
+         * @param pool The per-version pool.
+         * @param version The symbol version.
+         * @return A matrix of that version's size.
+         */
+        QRMatrix matrix(QRMatrix[] pool, int version) {
+            if (pool[version] == null) {
+                pool[version] = new QRMatrix(getSize(version));
+            }
+            return pool[version];
+        }
+    }
+}
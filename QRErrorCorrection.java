@@ -0,0 +1,32 @@
+/**
+ * Enum representing the four QR code error correction levels.
+ * Higher levels survive more damage but need a larger symbol for the same payload.
+ */
+public enum QRErrorCorrection {
+    /** Recovers about 7% of codewords. */
+    LOW(1),
+    /** Recovers about 15% of codewords. */
+    MEDIUM(0),
+    /** Recovers about 25% of codewords. */
+    QUARTILE(3),
+    /** Recovers about 30% of codewords. */
+    HIGH(2);
+
+    /** The two-bit value stored in the symbol's format information. */
+    private final int formatBits;
+
+    /**
+     * Constructs an error correction level.
+     *
+     * @param formatBits The two-bit value stored in the format information.
+     */
+    QRErrorCorrection(int formatBits) {
+        this.formatBits = formatBits;
+    }
+
+    /**
+     * Gets the two-bit value stored in the symbol's format information.
+     * @return The format bits.
+     */
+    public int getFormatBits() { return formatBits; }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/**
+ * A square matrix of QR modules packed one bit per module into a {@code long[]}.
+ * A set bit marks a dark module.
+ *
+ * <p>Each row starts on a fresh {@code long} word, so a row can be read a whole word
+ * at a time. Matrices are mutable and meant to be reused: {@link #clear()} resets
+ * every module without allocating.</p>
+ */
+public class QRMatrix {
+    /** Number of modules along each side of the matrix. */
+    private final int size;
+
+    /** Number of long words used to store a single row. */
+    private final int wordsPerRow;
+
+    /** Packed module bits, row by row. Bit {@code x & 63} of word {@code x >> 6} holds column x. */
+    private final long[] bits;
+
+    /**
+     * Constructs an all-light matrix of the given size.
+     *
+     * @param size Number of modules along each side.
+     * @throws IllegalArgumentException If size is less than 1.
+     */
+    public QRMatrix(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Matrix size must be at least 1");
+        }
+        this.size = size;
+        this.wordsPerRow = (size + 63) >>> 6;
+        this.bits = new long[wordsPerRow * size];
+    }
+
+    /**
+     * Gets the matrix size.
+     * @return The number of modules along each side.
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Gets the number of words backing a single row.
+     * @return The row stride in long words.
+     */
+    public int getWordsPerRow() { return wordsPerRow; }
+
+    /**
+     * Checks whether a module is dark.
+     *
+     * @param x The module column.
+     * @param y The module row.
+     * @return True if the module is dark.
+     */
+    public boolean get(int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets a module to dark or light.
+     *
+     * @param x The module column.
+     * @param y The module row.
+     * @param dark True to make the module dark; false to make it light.
+     */
+    public void set(int x, int y, boolean dark) {
+        int index = y * wordsPerRow + (x >>> 6);
+        if (dark) {
+            bits[index] |= 1L << x;
+        } else {
+            bits[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Gets one packed word of a row. Bit {@code i} of word {@code w} holds column {@code w * 64 + i}.
+     *
+     * @param y The module row.
+     * @param word The index of the word within the row.
+     * @return The packed module bits.
+     */
+    public long getWord(int y, int word) {
+        return bits[y * wordsPerRow + word];
+    }
+
+    /**
+     * Resets every module to light.
+     */
+    public void clear() {
+        Arrays.fill(bits, 0L);
+    }
+
+    /**
+     * Copies all modules from another matrix of the same size.
+     *
+     * @param other The matrix to copy from.
+     * @throws IllegalArgumentException If the sizes differ.
+     */
+    public void copyFrom(QRMatrix other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Matrix sizes differ: " + other.size + " vs " + size);
+        }
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+    }
+
+    /**
+     * Flips every module that is dark in another matrix of the same size.
+     *
+     * @param other The matrix whose dark modules are flipped in this one.
+     * @throws IllegalArgumentException If the sizes differ.
+     */
+    public void xor(QRMatrix other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Matrix sizes differ: " + other.size + " vs " + size);
+        }
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] ^= other.bits[i];
+        }
+    }
+
+    /**
+     * Creates an independent copy of this matrix.
+     *
+     * @return A new matrix with the same modules.
+     */
+    public QRMatrix copy() {
+        QRMatrix copy = new QRMatrix(size);
+        copy.copyFrom(this);
+        return copy;
+    }
+}
@@ -0,0 +1,341 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Registry of counters, gauges and latency histograms for QR generation, persistence
+ * and serving.
+ *
+ * <p>Metrics are created on first use by name and live for the life of the registry.
+ * Counters are {@link LongAdder}s and histograms are {@link LatencyHistogram}s, so
+ * updating them on hot paths takes no locks. A counter may also go down, which is how
+ * queue depths are tracked. Gauges read a value on demand from elsewhere, such as the
+ * render cache's own counters.</p>
+ *
+ * <p>The metrics recorded by the application are:</p>
+ * <ul>
+ *   <li>{@code qr.render}, {@code qr.encode}, {@code qr.write}: time to build the payload
+ *       and module matrix, to encode the PNG, and to write it to a file or archive.</li>
+ *   <li>{@code qr.generated}, {@code qr.unchanged}, {@code qr.failed}, {@code qr.cachedImages}:
+ *       per-student outcomes in bulk and single generation.</li>
+ *   <li>{@code bulk.inFlight}, {@code bulk.writeQueue}: students between the pipeline stages,
+ *       and students waiting for a write thread.</li>
+ *   <li>{@code roster.append}, {@code roster.compact}: roster file persistence times.</li>
+ *   <li>{@code http.request} and {@code http.status.Nxx}: HTTP service latency and status classes.</li>
+ *   <li>{@code cache.*}: render cache counters, as gauges.</li>
+ * </ul>
+ *
+ * <p>The registry can be published as a JMX MBean whose attributes are the flattened
+ * metric values, dumped as text or JSON, and written to a file periodically
+ * (see {@link #startConfiguredReporter()}).</p>
+ */
+public class QRMetrics implements DynamicMBean {
+    /** JMX object name the global registry is published under. */
+    public static final String OBJECT_NAME = "StudentQRCode:type=Metrics";
+
+    /** The registry used by the application. */
+    private static final QRMetrics GLOBAL = new QRMetrics();
+
+    /** Counters by name. */
+    private final Map<String, LongAdder> counters;
+
+    /** Gauges by name. */
+    private final Map<String, LongSupplier> gauges;
+
+    /** Histograms by name. */
+    private final Map<String, LatencyHistogram> histograms;
+
+    /** Scheduler for periodic reports, created on first use. */
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Constructs an empty registry.
+     */
+    public QRMetrics() {
+        this.counters = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the registry used by the application.
+     * @return The global registry.
+     */
+    public static QRMetrics global() { return GLOBAL; }
+
+    /**
+     * Gets a counter, creating it if needed.
+     *
+     * @param name The metric name.
+     * @return The counter.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Gets a histogram, creating it if needed.
+     *
+     * @param name The metric name.
+     * @return The histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     *
+     * @param name The metric name.
+     * @param value Supplies the current value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Flattens all metrics into named values, sorted by name. Histograms contribute
+     * {@code .count}, {@code .meanMicros}, {@code .p50Micros}, {@code .p90Micros},
+     * {@code .p99Micros} and {@code .maxMicros} entries.
+     *
+     * @return The current values.
+     */
+    public Map<String, Number> values() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            values.put(name + ".count", snapshot.getCount());
+            values.put(name + ".meanMicros", micros(snapshot.getMean()));
+            values.put(name + ".p50Micros", micros(snapshot.getPercentile(0.50)));
+            values.put(name + ".p90Micros", micros(snapshot.getPercentile(0.90)));
+            values.put(name + ".p99Micros", micros(snapshot.getPercentile(0.99)));
+            values.put(name + ".maxMicros", micros(snapshot.getMax()));
+        });
+        return values;
+    }
+
+    /**
+     * Formats all metrics as one {@code name value} line each.
+     *
+     * @return The text snapshot.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        values().forEach((name, value) -> text.append(name).append(' ').append(format(value)).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * Formats all metrics as a flat JSON object.
+     *
+     * @return The JSON snapshot.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        values().forEach((name, value) -> {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("\n  \"").append(name).append("\": ").append(format(value));
+        });
+        return json.append("\n}\n").toString();
+    }
+
+    /**
+     * Publishes this registry on the platform MBean server under {@link #OBJECT_NAME}.
+     * Does nothing if it is already published.
+     *
+     * @return True if the registry is published; false if registration failed.
+     */
+    public boolean registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+            return true;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot to a file at a fixed rate, on a daemon thread. Each snapshot
+     * replaces the previous one atomically, so readers never see a partial file.
+     *
+     * @param file The file to write.
+     * @param periodSeconds Seconds between snapshots.
+     * @param json True for JSON; false for text.
+     * @return The scheduled task; cancel it to stop reporting.
+     */
+    public synchronized ScheduledFuture<?> startReporter(Path file, long periodSeconds, boolean json) {
+        if (reporter == null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "qr-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return reporter.scheduleAtFixedRate(() -> {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                Path temp = Files.createTempFile(parent, ".metrics", ".tmp");
+                Files.write(temp, (json ? toJson() : toText()).getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics snapshot: " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts a periodic file report if the {@code qr.metrics.file} system property names
+     * a file. The period comes from {@code qr.metrics.period} in seconds (default 10), and
+     * the snapshot is JSON when the file name ends in {@code .json}, text otherwise.
+     *
+     * @return The scheduled task, or null if no report file is configured.
+     */
+    public ScheduledFuture<?> startConfiguredReporter() {
+        String file = System.getProperty("qr.metrics.file");
+        if (file == null || file.isBlank()) {
+            return null;
+        }
+        long period = Long.getLong("qr.metrics.period", 10);
+        return startReporter(Path.of(file), Math.max(1, period), file.endsWith(".json"));
+    }
+
+    /**
+     * Gets the current value of one flattened metric.
+     *
+     * @param attribute The metric name, as listed by {@link #values()}.
+     * @return The value.
+     * @throws AttributeNotFoundException If there is no such metric.
+     */
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = values().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    /**
+     * Metrics are read-only.
+     *
+     * @param attribute Ignored.
+     * @throws AttributeNotFoundException Always.
+     */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    /**
+     * Gets the current values of several flattened metrics; unknown names are skipped.
+     *
+     * @param attributes The metric names.
+     * @return The values found.
+     */
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Number> values = values();
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            Number value = values.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Metrics are read-only.
+     *
+     * @param attributes Ignored.
+     * @return An empty list.
+     */
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * The registry has no operations.
+     *
+     * @param actionName The operation name.
+     * @param params Ignored.
+     * @param signature Ignored.
+     * @return Never returns normally.
+     * @throws ReflectionException Always.
+     */
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * Describes one read-only attribute per flattened metric currently registered.
+     *
+     * @return The MBean description.
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        values().forEach((name, value) -> attributes.add(new MBeanAttributeInfo(name,
+                value.getClass().getName(), name, true, false, false)));
+        return new MBeanInfo(getClass().getName(), "Student QR code metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    /**
+     * Converts nanoseconds to microseconds, rounded to one decimal place.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The duration in microseconds.
+     */
+    private static double micros(double nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    /**
+     * Formats a metric value without locale-specific separators.
+     *
+     * @param value The value.
+     * @return The formatted value.
+     */
+    private static String format(Number value) {
+        return value instanceof Double ? String.format(Locale.ROOT, "%.1f", value.doubleValue()) : value.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Describes one rendering of a QR module matrix: its file format, how many pixels each
+ * module covers and how wide the light quiet zone around the symbol is.
+ *
+ * <p>Several outputs can be produced from a single encode with
+ * {@link QRCodeGenerator#render(String, java.util.List)}, for example a thumbnail, a
+ * print-resolution PNG and an SVG of the same code.</p>
+ */
+public class QROutput {
+    /** Output file formats. */
+    public enum Format {
+        /** 1-bit grayscale PNG. */
+        PNG(".png"),
+        /** Scalable vector graphic; dark modules are merged into one path. */
+        SVG(".svg"),
+        /** Raw bit matrix as a binary PBM (P4) bitmap. */
+        MATRIX(".pbm");
+
+        /** File extension, including the dot. */
+        private final String extension;
+
+        /**
+         * Constructs a format.
+         *
+         * @param extension File extension, including the dot.
+         */
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the file extension, including the dot.
+         * @return The extension.
+         */
+        public String getExtension() { return extension; }
+    }
+
+    /** Standard quiet zone width, in modules. */
+    public static final int STANDARD_QUIET_ZONE = 4;
+
+    /** The output format. */
+    private final Format format;
+
+    /** Pixels per module side; for SVG, the size of one module in the width and height attributes. */
+    private final int modulePixels;
+
+    /** Light margin around the symbol, in modules. */
+    private final int quietZone;
+
+    /**
+     * Constructs an output description.
+     *
+     * @param format The output format.
+     * @param modulePixels Pixels per module side.
+     * @param quietZone Light margin around the symbol, in modules.
+     * @throws IllegalArgumentException If modulePixels is less than 1 or quietZone is negative.
+     */
+    public QROutput(Format format, int modulePixels, int quietZone) {
+        if (modulePixels < 1 || quietZone < 0) {
+            throw new IllegalArgumentException("Module pixels must be at least 1 and quiet zone not negative");
+        }
+        this.format = format;
+        this.modulePixels = modulePixels;
+        this.quietZone = quietZone;
+    }
+
+    /**
+     * Creates a PNG output with the standard quiet zone.
+     *
+     * @param modulePixels Pixels per module side.
+     * @return The output description.
+     */
+    public static QROutput png(int modulePixels) {
+        return new QROutput(Format.PNG, modulePixels, STANDARD_QUIET_ZONE);
+    }
+
+    /**
+     * Creates an SVG output with the standard quiet zone, sized at 8 pixels per module.
+     *
+     * @return The output description.
+     */
+    public static QROutput svg() {
+        return new QROutput(Format.SVG, 8, STANDARD_QUIET_ZONE);
+    }
+
+    /**
+     * Creates a raw bit matrix output: one pixel per module and no quiet zone.
+     *
+     * @return The output description.
+     */
+    public static QROutput matrix() {
+        return new QROutput(Format.MATRIX, 1, 0);
+    }
+
+    /**
+     * Gets the output format.
+     * @return The format.
+     */
+    public Format getFormat() { return format; }
+
+    /**
+     * Gets the number of pixels per module side.
+     * @return The module size in pixels.
+     */
+    public int getModulePixels() { return modulePixels; }
+
+    /**
+     * Gets the quiet zone width.
+     * @return The quiet zone in modules.
+     */
+    public int getQuietZone() { return quietZone; }
+
+    /**
+     * Gets the side length of the rendered image for a matrix of the given size.
+     *
+     * @param matrixSize The number of modules along each side of the symbol.
+     * @return The image size in pixels.
+     */
+    public int getImageSize(int matrixSize) {
+        return (matrixSize + 2 * quietZone) * modulePixels;
+    }
+
+    /**
+     * Builds a file name suffix that tells outputs of the same code apart, such as
+     * {@code _8px.png}, {@code .svg} or {@code .pbm}.
+     *
+     * @return The suffix, including the extension.
+     */
+    public String getFileSuffix() {
+        return format == Format.PNG ? "_" + modulePixels + "px" + format.getExtension() : format.getExtension();
+    }
+
+    /**
+     * Returns a short description of this output.
+     *
+     * @return The format, module size and quiet zone.
+     */
+    @Override
+    public String toString() {
+        return format + "/" + modulePixels + "px/q" + quietZone;
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Defines how a kind of {@link Student} is serialized into a QR payload.
+ * Implementations write straight into a caller-supplied buffer, so no
+ * intermediate strings are created.
+ */
+public interface QRPayloadFormat {
+
+    /**
+     * Gets the tag identifying this format in compact binary payloads.
+     *
+     * @return A tag from 0 to 255, unique among registered formats.
+     */
+    int getTypeTag();
+
+    /**
+     * Appends the text payload for a student.
+     *
+     * @param student The student to serialize.
+     * @param out The buffer to append to.
+     */
+    void appendText(Student student, StringBuilder out);
+}
@@ -0,0 +1,261 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes students into QR payloads using a {@link QRPayloadFormat} registered
+ * for each {@link Student} subtype.
+ *
+ * <p>Two encodings are available. The text encoding is byte-for-byte identical to
+ * {@link Student#toQRString()} and can be written as UTF-8 straight into a
+ * {@link ByteBuffer}. The compact binary encoding is meant for high-volume callers
+ * and has this layout:</p>
+ *
+ * <pre>
+ * u8  version (1)
+ * u8  format type tag
+ * u8  grade ordinal, or 255 if no grade is set
+ * then for ID, first name, last name, email and section:
+ * u16 UTF-8 byte length, or 65535 if the value is null
+ * ... UTF-8 bytes
+ * </pre>
+ *
+ * <p>Lookups walk up the class hierarchy, so a format registered for a class also
+ * covers its subclasses. Students with no registered format fall back to
+ * {@link Student#toQRString()} and type tag 0. All methods are thread-safe.</p>
+ */
+public class QRPayloadSerializer {
+    /** Version byte written at the start of binary payloads. */
+    public static final int BINARY_VERSION = 1;
+
+    /** Length marker used in binary payloads for null values. */
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    /** Serializer with the built-in student subtypes registered. */
+    private static final QRPayloadSerializer DEFAULT = createDefault();
+
+    /** Per-thread builder for text payloads. */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /** Format used for students with no registered format. */
+    private static final QRPayloadFormat FALLBACK = new QRPayloadFormat() {
+        @Override
+        public int getTypeTag() {
+            return 0;
+        }
+
+        @Override
+        public void appendText(Student student, StringBuilder out) {
+            out.append(student.toQRString());
+        }
+    };
+
+    /** Registered formats by student class. */
+    private final Map<Class<?>, QRPayloadFormat> formats;
+
+    /**
+     * Constructs a serializer with no formats registered.
+     */
+    public QRPayloadSerializer() {
+        this.formats = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the shared serializer with the built-in student subtypes registered.
+     *
+     * @return The default serializer.
+     */
+    public static QRPayloadSerializer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers the format used for a student class and its subclasses.
+     *
+     * @param studentClass The student class.
+     * @param format The format to use for it.
+     */
+    public void register(Class<? extends Student> studentClass, QRPayloadFormat format) {
+        formats.put(studentClass, format);
+    }
+
+    /**
+     * Finds the format for a student, walking up its class hierarchy.
+     *
+     * @param student The student to look up.
+     * @return The registered format, or a fallback that uses {@link Student#toQRString()}.
+     */
+    public QRPayloadFormat formatFor(Student student) {
+        for (Class<?> type = student.getRecordType(); type != null && type != Object.class; type = type.getSuperclass()) {
+            QRPayloadFormat format = formats.get(type);
+            if (format != null) {
+                return format;
+            }
+        }
+        return FALLBACK;
+    }
+
+    /**
+     * Appends a student's text payload to a buffer.
+     *
+     * @param student The student to serialize.
+     * @param out The buffer to append to.
+     */
+    public void appendText(Student student, StringBuilder out) {
+        formatFor(student).appendText(student, out);
+    }
+
+    /**
+     * Serializes a student's text payload.
+     *
+     * @param student The student to serialize.
+     * @return The text payload, identical to {@link Student#toQRString()}.
+     */
+    public String toText(Student student) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        appendText(student, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Writes a student's text payload into a buffer as UTF-8, without creating a String.
+     *
+     * @param student The student to serialize.
+     * @param out The buffer to write to, starting at its position.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the buffer is too small.
+     */
+    public int writeText(Student student, ByteBuffer out) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        appendText(student, buffer);
+        return putUtf8(buffer, out);
+    }
+
+    /**
+     * Writes a student's compact binary payload into a buffer.
+     *
+     * @param student The student to serialize.
+     * @param out The buffer to write to, starting at its position.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the buffer is too small.
+     * @throws IllegalArgumentException If a value is longer than 65534 UTF-8 bytes.
+     */
+    public int writeBinary(Student student, ByteBuffer out) {
+        int start = out.position();
+        GradeLevel grade = student.getGrade();
+        out.put((byte) BINARY_VERSION);
+        out.put((byte) formatFor(student).getTypeTag());
+        out.put((byte) (grade == null ? 0xFF : grade.ordinal()));
+        putField(student.getStudentId(), out);
+        putField(student.getFirstName(), out);
+        putField(student.getLastName(), out);
+        putField(student.getEmail(), out);
+        putField(student.getSection(), out);
+        return out.position() - start;
+    }
+
+    /**
+     * Serializes a student's compact binary payload.
+     *
+     * @param student The student to serialize.
+     * @return The binary payload.
+     */
+    public byte[] toBinary(Student student) {
+        ByteBuffer buffer = ByteBuffer.allocate(3 + 5 * 2 + 4 * estimateLength(student));
+        writeBinary(student, buffer);
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes one length-prefixed binary field.
+     *
+     * @param value The value to write, or null.
+     * @param out The buffer to write to.
+     */
+    private static void putField(String value, ByteBuffer out) {
+        if (value == null) {
+            out.putShort((short) NULL_LENGTH);
+            return;
+        }
+        int lengthPosition = out.position();
+        out.putShort((short) 0);
+        int length = putUtf8(value, out);
+        if (length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Field too long for binary payload: " + length + " bytes");
+        }
+        out.putShort(lengthPosition, (short) length);
+    }
+
+    /**
+     * Encodes characters as UTF-8 into a buffer. Unpaired surrogates become '?'.
+     *
+     * @param text The characters to encode.
+     * @param out The buffer to write to.
+     * @return The number of bytes written.
+     */
+    private static int putUtf8(CharSequence text, ByteBuffer out) {
+        int start = out.position();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6));
+                out.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | codePoint >> 18));
+                out.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                out.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                out.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | c >> 12));
+                out.put((byte) (0x80 | c >> 6 & 0x3F));
+                out.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        return out.position() - start;
+    }
+
+    /**
+     * Sums the character lengths of a student's fields, as an upper bound helper for buffer sizing.
+     *
+     * @param student The student to measure.
+     * @return The total number of characters in its string fields.
+     */
+    private static int estimateLength(Student student) {
+        return length(student.getStudentId()) + length(student.getFirstName()) + length(student.getLastName())
+                + length(student.getEmail()) + length(student.getSection());
+    }
+
+    /**
+     * Gets the length of a possibly null string.
+     *
+     * @param value The string, or null.
+     * @return Its length, or 0 if null.
+     */
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Creates the default serializer with the built-in student subtypes registered.
+     *
+     * @return A new serializer.
+     */
+    private static QRPayloadSerializer createDefault() {
+        QRPayloadSerializer serializer = new QRPayloadSerializer();
+        serializer.register(CollegeStudent.class, CollegeStudent.PAYLOAD_FORMAT);
+        serializer.register(HighSchoolStudent.class, HighSchoolStudent.PAYLOAD_FORMAT);
+        return serializer;
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache for rendered QR codes, keyed by the SHA-256 digest of the QR payload.
+ *
+ * <p>The cache has two tiers. An in-memory LRU tier keeps the encoded PNG bytes of
+ * recently rendered payloads, so identical payloads are only rendered once. An on-disk
+ * manifest remembers which payload digest was last written to each output file, so a
+ * file whose payload has not changed can be skipped entirely on the next run.</p>
+ *
+ * <p>The manifest is an append-only text file with one {@code digest<TAB>fileName} line
+ * per write; later lines override earlier ones. It is rewritten compactly once stale
+ * lines outnumber live ones. All methods are thread-safe.</p>
+ */
+public class QRRenderCache {
+    /** Name of the manifest file inside the output directory. */
+    public static final String MANIFEST_NAME = ".qr_manifest";
+
+    /** Default number of encoded images kept in memory. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** Marker used in the manifest for files that were removed. */
+    private static final String REMOVED = "-";
+
+    /** Per-thread SHA-256 instances, since MessageDigest is not thread-safe. */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Location of the on-disk manifest. */
+    private final Path manifestPath;
+
+    /** Recently encoded PNG images by payload digest, in access order. Guarded by itself. */
+    private final LinkedHashMap<String, byte[]> images;
+
+    /** Last digest written to each output file. Loaded lazily from the manifest. */
+    private volatile Map<String, String> manifest;
+
+    /** Manifest lines not yet appended to disk. Guarded by itself. */
+    private final List<String> pendingLines;
+
+    /** Number of lines currently in the manifest file. */
+    private long manifestLines;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong manifestHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a QRRenderCache for the given output directory.
+     *
+     * @param outputDirectory The directory QR codes are written to; the manifest lives here.
+     * @param capacity Maximum number of encoded images kept in memory.
+     * @throws IllegalArgumentException If capacity is negative.
+     */
+    public QRRenderCache(String outputDirectory, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.manifestPath = Paths.get(outputDirectory, MANIFEST_NAME);
+        this.images = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                if (size() > capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.pendingLines = new ArrayList<>();
+    }
+
+    /**
+     * Computes the hex-encoded SHA-256 digest of a QR payload.
+     *
+     * @param payload The QR payload, as returned by {@link Student#toQRString()}.
+     * @return The 64-character lowercase hex digest.
+     */
+    public static String digest(String payload) {
+        return toHex(SHA_256.get().digest(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Computes the hex-encoded SHA-256 digest of a QR payload rendered with particular
+     * generator settings, so that changing the settings invalidates previously written files.
+     *
+     * @param signature The generator's output signature, see {@link QRCodeGenerator#getOutputSignature()}.
+     * @param payload The QR payload, as returned by {@link Student#toQRString()}.
+     * @return The 64-character lowercase hex digest.
+     */
+    public static String digest(String signature, String payload) {
+        MessageDigest sha256 = SHA_256.get();
+        sha256.update(signature.getBytes(StandardCharsets.UTF_8));
+        sha256.update((byte) 0);
+        return toHex(sha256.digest(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Formats a hash as lowercase hex.
+     *
+     * @param hash The hash bytes.
+     * @return The hex string.
+     */
+    private static String toHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Checks whether a file already holds the QR code for a payload digest.
+     * Counts a manifest hit when it does.
+     *
+     * @param fileName The output file path.
+     * @param digest The digest of the payload that should be in the file.
+     * @return True if the manifest records this digest for the file and the file still exists.
+     */
+    public boolean isUpToDate(String fileName, String digest) {
+        if (digest.equals(manifest().get(fileName)) && Files.exists(Paths.get(fileName))) {
+            manifestHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the encoded PNG for a payload digest in the memory tier.
+     * Counts a memory hit or a miss.
+     *
+     * @param digest The payload digest.
+     * @return The encoded PNG bytes, or null if they are not cached.
+     */
+    public byte[] getImage(String digest) {
+        byte[] png;
+        synchronized (images) {
+            png = images.get(digest);
+        }
+        (png != null ? memoryHits : misses).incrementAndGet();
+        return png;
+    }
+
+    /**
+     * Stores the encoded PNG for a payload digest in the memory tier.
+     *
+     * @param digest The payload digest.
+     * @param png The encoded PNG bytes; must not be modified afterwards.
+     */
+    public void putImage(String digest, byte[] png) {
+        synchronized (images) {
+            images.put(digest, png);
+        }
+    }
+
+    /**
+     * Records that a file now holds the QR code for a payload digest.
+     * The change reaches disk on the next {@link #flush()}.
+     *
+     * @param fileName The output file path.
+     * @param digest The digest of the payload written to the file.
+     */
+    public void record(String fileName, String digest) {
+        manifest().put(fileName, digest);
+        synchronized (pendingLines) {
+            pendingLines.add(digest + '\t' + fileName);
+        }
+    }
+
+    /**
+     * Forgets the digest recorded for a file, typically because the file was deleted.
+     * The change reaches disk on the next {@link #flush()}.
+     *
+     * @param fileName The output file path.
+     */
+    public void forget(String fileName) {
+        if (manifest().remove(fileName) != null) {
+            synchronized (pendingLines) {
+                pendingLines.add(REMOVED + '\t' + fileName);
+            }
+        }
+    }
+
+    /**
+     * Appends pending manifest changes to disk, compacting the manifest if it has
+     * accumulated too many stale lines.
+     *
+     * @return True if the manifest was written successfully; false otherwise.
+     */
+    public boolean flush() {
+        Map<String, String> current = manifest();
+        List<String> lines;
+        synchronized (pendingLines) {
+            if (pendingLines.isEmpty()) {
+                return true;
+            }
+            lines = new ArrayList<>(pendingLines);
+            pendingLines.clear();
+        }
+        try {
+            synchronized (manifestPath) {
+                Files.createDirectories(manifestPath.getParent());
+                if (manifestLines + lines.size() > 2L * current.size() + 1024) {
+                    compact(current);
+                } else {
+                    try (FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                         Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192)) {
+                        for (String line : lines) {
+                            writer.write(line);
+                            writer.write('\n');
+                        }
+                    }
+                    manifestLines += lines.size();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving QR manifest: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered by the memory tier.
+     * @return The memory hit count.
+     */
+    public long getMemoryHits() { return memoryHits.get(); }
+
+    /**
+     * Gets the number of files skipped because the manifest showed them up to date.
+     * @return The manifest hit count.
+     */
+    public long getManifestHits() { return manifestHits.get(); }
+
+    /**
+     * Gets the number of lookups that required rendering.
+     * @return The miss count.
+     */
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * Gets the number of images evicted from the memory tier.
+     * @return The eviction count.
+     */
+    public long getEvictions() { return evictions.get(); }
+
+    /**
+     * Returns a one-line summary of the cache counters.
+     *
+     * @return The counters formatted for display.
+     */
+    @Override
+    public String toString() {
+        return "QRRenderCache{unchanged=" + getManifestHits() + ", memoryHits=" + getMemoryHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "}";
+    }
+
+    /**
+     * Returns the manifest map, loading it from disk on first use.
+     *
+     * @return The live manifest map.
+     */
+    private Map<String, String> manifest() {
+        Map<String, String> current = manifest;
+        if (current == null) {
+            synchronized (manifestPath) {
+                current = manifest;
+                if (current == null) {
+                    current = load();
+                    manifest = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reads the manifest file, replaying its lines in order.
+     *
+     * @return The manifest contents; empty if the file does not exist or cannot be read.
+     */
+    private Map<String, String> load() {
+        Map<String, String> entries = new ConcurrentHashMap<>();
+        if (!Files.exists(manifestPath)) {
+            return entries;
+        }
+        long lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                String digest = line.substring(0, tab);
+                String fileName = line.substring(tab + 1);
+                if (REMOVED.equals(digest)) {
+                    entries.remove(fileName);
+                } else {
+                    entries.put(fileName, digest);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading QR manifest, starting fresh: " + e.getMessage());
+            entries.clear();
+        }
+        manifestLines = lines;
+        return entries;
+    }
+
+    /**
+     * Rewrites the manifest with one line per live entry, replacing the old file atomically.
+     *
+     * @param entries The current manifest contents.
+     * @throws IOException If the manifest cannot be written.
+     */
+    private void compact(Map<String, String> entries) throws IOException {
+        Path temp = manifestPath.resolveSibling(MANIFEST_NAME + ".tmp");
+        long lines = 0;
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writer.write(entry.getValue());
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.write('\n');
+                lines++;
+            }
+        }
+        Files.move(temp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifestLines = lines;
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the students matching a {@link StudentQuery}, with the cursor that
+ * continues after it.
+ *
+ * <p>Cursors mark a position in the store's order, so a page fetched with a cursor
+ * starts right after the last student of the previous page, even if students were
+ * added or removed in between. The store's order is the order students were added,
+ * except that a {@link ColumnarStudentStore} may place a new student in the row of a
+ * removed one, before the cursor, where later pages do not see it.</p>
+ */
+public class QueryPage {
+    /** The students on this page, in the store's order. */
+    private final List<Student> students;
+
+    /** Cursor for the next page, or null if this is the last page. */
+    private final String nextCursor;
+
+    /**
+     * Constructs a QueryPage.
+     *
+     * @param students The students on this page.
+     * @param nextCursor Cursor for the next page, or null if this is the last page.
+     */
+    public QueryPage(List<Student> students, String nextCursor) {
+        this.students = Collections.unmodifiableList(students);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets the students on this page.
+     * @return A read-only list, in the store's order.
+     */
+    public List<Student> getStudents() { return students; }
+
+    /**
+     * Gets the cursor that fetches the next page.
+     * @return The cursor, or null if this is the last page.
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    /**
+     * Checks whether more students match after this page.
+     * @return True if there is a next page.
+     */
+    public boolean hasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,98 @@
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Console log that prints at most a fixed number of messages per time window.
+ *
+ * <p>Messages beyond the limit are counted rather than printed, and the count is
+ * reported when the next window opens or when {@link #finish()} is called. This keeps
+ * per-student progress output from dominating the run time of bulk operations while
+ * still showing that work is happening. It is safe to use from several threads.</p>
+ */
+public class RateLimitedLog {
+    /** Default number of messages printed per window. */
+    public static final int DEFAULT_MESSAGES_PER_WINDOW = 20;
+
+    /** Default window length in milliseconds. */
+    public static final long DEFAULT_WINDOW_MILLIS = 1000;
+
+    /** Stream messages are printed to. */
+    private final PrintStream out;
+
+    /** Maximum messages printed per window. */
+    private final int messagesPerWindow;
+
+    /** Window length in nanoseconds. */
+    private final long windowNanos;
+
+    /** Start of the current window, from {@link System#nanoTime()}. */
+    private long windowStart;
+
+    /** Messages printed in the current window. */
+    private int printed;
+
+    /** Messages dropped since the last summary. */
+    private long suppressed;
+
+    /**
+     * Constructs a RateLimitedLog with the default limit, printing to standard output.
+     */
+    public RateLimitedLog() {
+        this(System.out, DEFAULT_MESSAGES_PER_WINDOW, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructs a RateLimitedLog.
+     *
+     * @param out Stream messages are printed to.
+     * @param messagesPerWindow Maximum messages printed per window.
+     * @param windowMillis Window length in milliseconds.
+     * @throws IllegalArgumentException If the limit or window is less than 1.
+     */
+    public RateLimitedLog(PrintStream out, int messagesPerWindow, long windowMillis) {
+        if (messagesPerWindow < 1 || windowMillis < 1) {
+            throw new IllegalArgumentException("Message limit and window must be at least 1");
+        }
+        this.out = out;
+        this.messagesPerWindow = messagesPerWindow;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Prints a message, unless the current window's limit has been reached.
+     *
+     * @param message The message to print.
+     */
+    public synchronized void log(String message) {
+        long now = System.nanoTime();
+        if (now - windowStart >= windowNanos) {
+            reportSuppressed();
+            windowStart = now;
+            printed = 0;
+        }
+        if (printed < messagesPerWindow) {
+            printed++;
+            out.println(message);
+        } else {
+            suppressed++;
+        }
+    }
+
+    /**
+     * Reports any messages still suppressed. Call once the operation being logged is done.
+     */
+    public synchronized void finish() {
+        reportSuppressed();
+    }
+
+    /**
+     * Prints how many messages were dropped since the last report, if any.
+     */
+    private void reportSuppressed() {
+        if (suppressed > 0) {
+            out.println("... " + suppressed + " more messages suppressed");
+            suppressed = 0;
+        }
+    }
+}
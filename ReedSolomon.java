@@ -0,0 +1,115 @@
+/**
+ * Reed-Solomon error correction over GF(256) as used by QR codes, with the field
+ * polynomial x^8 + x^4 + x^3 + x^2 + 1 (0x11D) and generator roots starting at 2^0.
+ *
+ * <p>Field multiplication goes through precomputed log and antilog tables, and the
+ * generator polynomial for each number of error correction codewords is built once and
+ * kept in log form, so computing a block's codewords is a table-driven shift register
+ * with no multiplications. All methods are thread-safe.</p>
+ */
+public final class ReedSolomon {
+    /** Largest number of error correction codewords per block used by any QR version. */
+    public static final int MAX_DEGREE = 30;
+
+    /** Antilog table: EXP[i] = 2^i, doubled in length so sums of two logs need no modulo. */
+    private static final int[] EXP = new int[512];
+
+    /** Log table: LOG[EXP[i]] = i. LOG[0] is unused. */
+    private static final int[] LOG = new int[256];
+
+    /** Generator polynomials by degree, as logs of their coefficients from x^(degree-1) down to x^0. */
+    private static final int[][] GENERATORS = new int[MAX_DEGREE + 1][];
+
+    static {
+        int value = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = value;
+            LOG[value] = i;
+            value <<= 1;
+            if (value >= 256) {
+                value ^= 0x11D;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+        for (int degree = 1; degree <= MAX_DEGREE; degree++) {
+            GENERATORS[degree] = buildGenerator(degree);
+        }
+    }
+
+    private ReedSolomon() {
+    }
+
+    /**
+     * Multiplies two field elements.
+     *
+     * @param a The first element, 0 to 255.
+     * @param b The second element, 0 to 255.
+     * @return The product in GF(256).
+     */
+    public static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    /**
+     * Computes the error correction codewords for one block of data codewords.
+     *
+     * @param data Buffer holding the block's data codewords.
+     * @param dataOffset Index of the first data codeword.
+     * @param dataLength Number of data codewords.
+     * @param ecc Buffer receiving the error correction codewords.
+     * @param eccOffset Index where the first error correction codeword is written.
+     * @param degree Number of error correction codewords to compute, 1 to {@link #MAX_DEGREE}.
+     * @throws IllegalArgumentException If the degree is out of range.
+     */
+    public static void computeRemainder(byte[] data, int dataOffset, int dataLength,
+                                        byte[] ecc, int eccOffset, int degree) {
+        if (degree < 1 || degree > MAX_DEGREE) {
+            throw new IllegalArgumentException("Degree must be between 1 and " + MAX_DEGREE + ": " + degree);
+        }
+        int[] generator = GENERATORS[degree];
+        int end = eccOffset + degree;
+        for (int i = eccOffset; i < end; i++) {
+            ecc[i] = 0;
+        }
+        for (int i = 0; i < dataLength; i++) {
+            int factor = (data[dataOffset + i] ^ ecc[eccOffset]) & 0xFF;
+            System.arraycopy(ecc, eccOffset + 1, ecc, eccOffset, degree - 1);
+            ecc[end - 1] = 0;
+            if (factor != 0) {
+                int logFactor = LOG[factor];
+                for (int j = 0; j < degree; j++) {
+                    ecc[eccOffset + j] ^= (byte) EXP[logFactor + generator[j]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the monic generator polynomial (x - 2^0)(x - 2^1)...(x - 2^(degree-1)).
+     *
+     * @param degree The polynomial degree.
+     * @return Logs of the coefficients below the leading term, highest power first.
+     */
+    private static int[] buildGenerator(int degree) {
+        // coefficients[i] is the coefficient of x^(degree-1-i); the leading 1 is implicit
+        int[] coefficients = new int[degree];
+        coefficients[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < degree; j++) {
+                coefficients[j] = multiply(coefficients[j], root);
+                if (j + 1 < degree) {
+                    coefficients[j] ^= coefficients[j + 1];
+                }
+            }
+            root = multiply(root, 2);
+        }
+        int[] logs = new int[degree];
+        for (int i = 0; i < degree; i++) {
+            logs[i] = LOG[coefficients[i]];
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,640 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent, append-only log of student records in a fixed-layout binary format.
+ *
+ * <p>The file starts with a 16-byte header (magic {@code QRRS}, format version and
+ * record size) followed by fixed-size 256-byte records. Each record is either a PUT,
+ * which stores a complete student and replaces any earlier record with the same ID,
+ * or a REMOVE, which deletes the student with that ID. Record layout:</p>
+ *
+ * <pre>
+ * u8  operation (1 = PUT, 2 = REMOVE)
+ * u8  payload type tag (see {@link QRPayloadFormat#getTypeTag()})
+ * u8  grade ordinal, or 255 if no grade is set
+ * u8  reserved
+ * then for ID (30), first name (46), last name (46), email (94) and section (26):
+ * u16 UTF-8 byte length, or 65535 if the value is null
+ * ... UTF-8 bytes, zero-padded to the field's capacity
+ * </pre>
+ *
+ * <p>On open the existing records are memory-mapped, in windows of 1 GiB so files past
+ * the 2 GiB limit of a single mapping can be read, and scanned once, reading only the ID
+ * and field lengths of each record. Students are materialized from the mapping on demand
+ * with {@link #load(String)}, so startup cost does not depend on how much data each
+ * record holds. A partial record at the end of the file, left by a crash during an
+ * append, is truncated away with a warning; a record that cannot be decoded, such as one
+ * with a field longer than its capacity, is skipped with a warning. Once superseded
+ * records outnumber live ones, {@link #needsCompaction(int)} reports true and
+ * {@link #compact(Collection, long)} rewrites the file with one record per live student,
+ * followed by whatever was appended after the snapshot of live students was taken. All
+ * methods are thread-safe.</p>
+ */
+public class RosterFile implements Closeable {
+    private static final LatencyHistogram APPEND_TIME = QRMetrics.global().histogram("roster.append");
+    private static final LatencyHistogram COMPACT_TIME = QRMetrics.global().histogram("roster.compact");
+
+    private static final int MAGIC = 0x51525253; // "QRRS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 256;
+
+    /** Each mapped window holds 2^22 records, 1 GiB. */
+    private static final int WINDOW_SHIFT = 22;
+    private static final int WINDOW_RECORDS = 1 << WINDOW_SHIFT;
+    private static final int WINDOW_MASK = WINDOW_RECORDS - 1;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int NO_GRADE = 0xFF;
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    /** Capacity in bytes of each string field, in record order. */
+    private static final int[] FIELD_CAPACITY = {30, 46, 46, 94, 26};
+
+    /** Record offset of each string field's length prefix, in record order. */
+    private static final int[] FIELD_OFFSET = new int[FIELD_CAPACITY.length];
+
+    static {
+        int offset = 4;
+        for (int i = 0; i < FIELD_CAPACITY.length; i++) {
+            FIELD_OFFSET[i] = offset;
+            offset += 2 + FIELD_CAPACITY[i];
+        }
+        if (offset != RECORD_SIZE) {
+            throw new AssertionError("Record layout does not add up to " + RECORD_SIZE);
+        }
+    }
+
+    /** Location of the roster file. */
+    private final Path path;
+
+    /** Channel used for appending records. */
+    private FileChannel channel;
+
+    /**
+     * Read-only mappings of the records that existed when the file was opened or compacted;
+     * record r lives in window r / 2^22.
+     */
+    private MappedByteBuffer[] windows;
+
+    /** Live records not yet materialized, by student ID, in file order. Value is the record index. */
+    private final LinkedHashMap<String, Integer> unloaded;
+
+    /** Total number of records in the file. */
+    private long recordCount;
+
+    /** Reusable buffer for encoding one record. */
+    private final ByteBuffer recordBuffer;
+
+    /**
+     * Opens a roster file, creating it if it does not exist.
+     *
+     * @param fileName The roster file path.
+     * @throws IOException If the file cannot be opened or is not a valid roster file.
+     */
+    public RosterFile(String fileName) throws IOException {
+        this.path = Paths.get(fileName);
+        this.unloaded = new LinkedHashMap<>();
+        this.recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        openAndScan();
+    }
+
+    /**
+     * Validates that a student property fits in a record.
+     *
+     * @param field The property.
+     * @param value The value it would take.
+     * @throws IllegalArgumentException If the value is too long to store.
+     */
+    public static void checkFits(StudentField field, Object value) {
+        int index;
+        switch (field) {
+            case STUDENT_ID: index = 0; break;
+            case FIRST_NAME: index = 1; break;
+            case LAST_NAME: index = 2; break;
+            case EMAIL: index = 3; break;
+            case SECTION: index = 4; break;
+            default: return;
+        }
+        if (value != null) {
+            int length = ((String) value).getBytes(StandardCharsets.UTF_8).length;
+            if (length > FIELD_CAPACITY[index]) {
+                throw new IllegalArgumentException(field + " is too long to store (" + length
+                        + " bytes, at most " + FIELD_CAPACITY[index] + ")");
+            }
+        }
+    }
+
+    /**
+     * Validates that all of a student's properties fit in a record.
+     *
+     * @param student The student to check.
+     * @throws IllegalArgumentException If any value is too long to store.
+     */
+    public static void checkFits(Student student) {
+        checkFits(StudentField.STUDENT_ID, student.getStudentId());
+        checkFits(StudentField.FIRST_NAME, student.getFirstName());
+        checkFits(StudentField.LAST_NAME, student.getLastName());
+        checkFits(StudentField.EMAIL, student.getEmail());
+        checkFits(StudentField.SECTION, student.getSection());
+    }
+
+    /**
+     * Checks whether a student ID refers to a stored student that has not been loaded yet.
+     *
+     * @param studentId The ID to check.
+     * @return True if the student exists in the file and has not been loaded.
+     */
+    public synchronized boolean isUnloaded(String studentId) {
+        return unloaded.containsKey(studentId);
+    }
+
+    /**
+     * Gets the number of stored students that have not been loaded yet.
+     *
+     * @return The number of unloaded students.
+     */
+    public synchronized int getUnloadedCount() {
+        return unloaded.size();
+    }
+
+    /**
+     * Materializes a stored student. Each student is handed out at most once; afterwards
+     * the caller owns it and must report changes through {@link #appendPut(Student)}.
+     *
+     * @param studentId The ID of the student to load.
+     * @return The student, or null if it is not stored or was already loaded.
+     */
+    public synchronized Student load(String studentId) {
+        Integer record = unloaded.remove(studentId);
+        return record == null ? null : readStudent(record);
+    }
+
+    /**
+     * Materializes every stored student that has not been loaded yet, in file order.
+     *
+     * @return The newly loaded students.
+     */
+    public synchronized List<Student> loadAll() {
+        List<Student> loaded = new ArrayList<>(unloaded.size());
+        for (int record : unloaded.values()) {
+            loaded.add(readStudent(record));
+        }
+        unloaded.clear();
+        return loaded;
+    }
+
+    /**
+     * Appends a PUT record for a new or modified student.
+     *
+     * @param student The student to store.
+     * @throws IOException If the record cannot be written.
+     * @throws IllegalArgumentException If a value is too long to store.
+     */
+    public synchronized void appendPut(Student student) throws IOException {
+        checkFits(student);
+        unloaded.remove(student.getStudentId());
+        encodePut(student, recordBuffer);
+        append();
+    }
+
+    /**
+     * Appends PUT records for a batch of students with as few writes as possible.
+     *
+     * @param batch The students to store.
+     * @throws IOException If the records cannot be written.
+     * @throws IllegalArgumentException If a value is too long to store; nothing is written then.
+     */
+    public synchronized void appendPutAll(Collection<Student> batch) throws IOException {
+        for (Student student : batch) {
+            checkFits(student);
+        }
+        long start = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * Math.min(Math.max(batch.size(), 1), 1024));
+        for (Student student : batch) {
+            unloaded.remove(student.getStudentId());
+            buffer = flushIfFull(channel, buffer);
+            encodePut(student, recordBuffer);
+            recordBuffer.flip();
+            buffer.put(recordBuffer);
+            recordCount++;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        APPEND_TIME.recordSince(start);
+    }
+
+    /**
+     * Appends a REMOVE record for a student ID.
+     *
+     * @param studentId The ID of the student that was removed.
+     * @throws IOException If the record cannot be written.
+     */
+    public synchronized void appendRemove(String studentId) throws IOException {
+        checkFits(StudentField.STUDENT_ID, studentId);
+        unloaded.remove(studentId);
+        encodeRemove(studentId, recordBuffer);
+        append();
+    }
+
+    /**
+     * Appends REMOVE records for a batch of student IDs with as few writes as possible.
+     *
+     * @param studentIds The IDs of the students that were removed.
+     * @throws IOException If the records cannot be written.
+     * @throws IllegalArgumentException If an ID is too long to store; nothing is written then.
+     */
+    public synchronized void appendRemoveAll(Collection<String> studentIds) throws IOException {
+        for (String studentId : studentIds) {
+            checkFits(StudentField.STUDENT_ID, studentId);
+        }
+        long start = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * Math.min(Math.max(studentIds.size(), 1), 1024));
+        for (String studentId : studentIds) {
+            unloaded.remove(studentId);
+            buffer = flushIfFull(channel, buffer);
+            encodeRemove(studentId, recordBuffer);
+            recordBuffer.flip();
+            buffer.put(recordBuffer);
+            recordCount++;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        APPEND_TIME.recordSince(start);
+    }
+
+    /**
+     * Gets the number of records in the file. Taken before a snapshot of the live students,
+     * it marks where the records appended after the snapshot begin; see
+     * {@link #compact(Collection, long)}.
+     *
+     * @return The record count.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Checks whether superseded records have built up enough to make compaction worthwhile.
+     *
+     * @param loadedCount Number of live students that have already been loaded.
+     * @return True if the file holds more than twice as many records as live students.
+     */
+    public synchronized boolean needsCompaction(int loadedCount) {
+        return recordCount > 2L * (loadedCount + unloaded.size()) + 1024;
+    }
+
+    /**
+     * Rewrites the file with one PUT record per live student and replaces the old file atomically.
+     * Records appended since {@code mark} are copied after the snapshot, so changes made
+     * while the snapshot was being taken are neither lost nor undone. Callers must change
+     * a student in memory before appending its record, take the mark before the snapshot,
+     * and must not load students between the two.
+     *
+     * @param loaded Snapshot of every live student that has already been loaded; unloaded
+     *               students are copied straight from the current file.
+     * @param mark {@link #getRecordCount()} from before the snapshot was taken.
+     * @throws IOException If the new file cannot be written.
+     */
+    public synchronized void compact(Collection<Student> loaded, long mark) throws IOException {
+        long started = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        List<String> appendedIds = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 64);
+            for (Map.Entry<String, Integer> entry : unloaded.entrySet()) {
+                int index = entry.getValue();
+                ByteBuffer record = windows[index >>> WINDOW_SHIFT].duplicate();
+                int start = (index & WINDOW_MASK) * RECORD_SIZE;
+                record.limit(start + RECORD_SIZE).position(start);
+                buffer = flushIfFull(out, buffer);
+                buffer.put(record);
+            }
+            for (Student student : loaded) {
+                if (student.getStudentId() == null) {
+                    continue; // a view of a student removed since the snapshot; its removal is appended after the mark
+                }
+                buffer = flushIfFull(out, buffer);
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                encodePut(student, record);
+                record.flip();
+                buffer.put(record);
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            for (long index = Math.max(mark, 0); index < recordCount; index++) {
+                record.clear();
+                long offset = HEADER_SIZE + index * RECORD_SIZE;
+                while (record.hasRemaining()) {
+                    if (channel.read(record, offset + record.position()) < 0) {
+                        throw new IOException("Roster file " + path + " ended while copying appended records");
+                    }
+                }
+                appendedIds.add(readField(record, 0, 0));
+                record.flip();
+                buffer = flushIfFull(out, buffer);
+                buffer.put(record);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openAndScan();
+        // Loaded students, and those appended since the mark, are held in memory
+        for (Student student : loaded) {
+            unloaded.remove(student.getStudentId());
+        }
+        for (String studentId : appendedIds) {
+            unloaded.remove(studentId);
+        }
+        COMPACT_TIME.recordSince(started);
+    }
+
+    /**
+     * Flushes buffered data to disk and closes the file.
+     *
+     * @throws IOException If the file cannot be flushed or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+        windows = null;
+    }
+
+    /**
+     * Opens the channel, writes a header if the file is new, truncates a partial last
+     * record, maps the records and indexes the live ones by ID.
+     *
+     * @throws IOException If the file cannot be read, is not a valid roster file, or
+     *         holds more records than can be indexed.
+     */
+    private void openAndScan() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            writeHeader(channel);
+        }
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(8) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException("Not a roster file or unsupported version: " + path);
+        }
+        long records = (size - HEADER_SIZE) / RECORD_SIZE;
+        if (records > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Roster file " + path + " holds " + records
+                    + " records, more than can be indexed; compact it first");
+        }
+        long complete = HEADER_SIZE + records * RECORD_SIZE;
+        if (size != complete) {
+            System.err.println("Warning: roster file " + path + " ends with a partial record ("
+                    + (size - complete) + " bytes); truncating it");
+            channel.truncate(complete);
+            size = complete;
+        }
+
+        windows = new MappedByteBuffer[(int) ((records + WINDOW_RECORDS - 1) >>> WINDOW_SHIFT)];
+        for (int window = 0; window < windows.length; window++) {
+            long first = (long) window << WINDOW_SHIFT;
+            long length = Math.min(WINDOW_RECORDS, records - first) * RECORD_SIZE;
+            windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE, length);
+        }
+
+        unloaded.clear();
+        recordCount = records;
+        for (int record = 0; record < records; record++) {
+            ByteBuffer window = windows[record >>> WINDOW_SHIFT];
+            int start = (record & WINDOW_MASK) * RECORD_SIZE;
+            String problem = checkRecord(window, start);
+            if (problem != null) {
+                System.err.println("Warning: roster file " + path + " has a corrupt record at index " + record
+                        + " (" + problem + "); skipping it");
+                continue;
+            }
+            String studentId = readField(window, start, 0);
+            if (window.get(start) == PUT) {
+                unloaded.put(studentId, record);
+            } else {
+                unloaded.remove(studentId);
+            }
+        }
+        channel.position(size);
+    }
+
+    /**
+     * Writes the file header at the channel's current position.
+     *
+     * @param out The channel to write to.
+     * @throws IOException If writing fails.
+     */
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    /**
+     * Writes the encoded record in {@link #recordBuffer} to the end of the file.
+     *
+     * @throws IOException If writing fails.
+     */
+    private void append() throws IOException {
+        long start = System.nanoTime();
+        recordBuffer.position(RECORD_SIZE).flip();
+        while (recordBuffer.hasRemaining()) {
+            channel.write(recordBuffer);
+        }
+        recordCount++;
+        APPEND_TIME.recordSince(start);
+    }
+
+    /**
+     * Encodes a PUT record for a student into a buffer.
+     *
+     * @param student The student to encode.
+     * @param buffer A buffer of at least {@link #RECORD_SIZE} bytes; it is cleared first.
+     */
+    private static void encodePut(Student student, ByteBuffer buffer) {
+        GradeLevel grade = student.getGrade();
+        buffer.clear();
+        buffer.put(PUT)
+                .put((byte) QRPayloadSerializer.getDefault().formatFor(student).getTypeTag())
+                .put((byte) (grade == null ? NO_GRADE : grade.ordinal()))
+                .put((byte) 0);
+        putField(buffer, 0, student.getStudentId());
+        putField(buffer, 1, student.getFirstName());
+        putField(buffer, 2, student.getLastName());
+        putField(buffer, 3, student.getEmail());
+        putField(buffer, 4, student.getSection());
+        buffer.position(RECORD_SIZE);
+    }
+
+    /**
+     * Encodes a REMOVE record for a student ID into a buffer.
+     *
+     * @param studentId The ID of the removed student.
+     * @param buffer A buffer of at least {@link #RECORD_SIZE} bytes; it is cleared first.
+     */
+    private static void encodeRemove(String studentId, ByteBuffer buffer) {
+        buffer.clear();
+        buffer.put(REMOVE).put((byte) 0).put((byte) NO_GRADE).put((byte) 0);
+        putField(buffer, 0, studentId);
+        buffer.position(RECORD_SIZE);
+    }
+
+    /**
+     * Writes one string field, zero-padding it to its capacity.
+     *
+     * @param buffer The record buffer, positioned anywhere; the field is written at its fixed offset.
+     * @param index The field index.
+     * @param value The value to write, or null.
+     */
+    private static void putField(ByteBuffer buffer, int index, String value) {
+        int offset = FIELD_OFFSET[index];
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort(offset, (short) (value == null ? NULL_LENGTH : bytes.length));
+        for (int i = 0; i < FIELD_CAPACITY[index]; i++) {
+            buffer.put(offset + 2 + i, i < bytes.length ? bytes[i] : 0);
+        }
+    }
+
+    /**
+     * Checks that a record can be decoded: a known record type, a student ID, a known
+     * grade level, and no field longer than its capacity.
+     *
+     * @param window The window holding the record.
+     * @param start Offset of the record in the window.
+     * @return What is wrong with the record, or null if it is intact.
+     */
+    private static String checkRecord(ByteBuffer window, int start) {
+        byte type = window.get(start);
+        if (type != PUT && type != REMOVE) {
+            return "unknown record type " + type;
+        }
+        int fields = type == PUT ? FIELD_CAPACITY.length : 1;
+        for (int index = 0; index < fields; index++) {
+            int length = window.getShort(start + FIELD_OFFSET[index]) & 0xFFFF;
+            if (length != NULL_LENGTH && length > FIELD_CAPACITY[index]) {
+                return "field " + index + " is " + length + " bytes, more than its " + FIELD_CAPACITY[index];
+            }
+        }
+        if ((window.getShort(start + FIELD_OFFSET[0]) & 0xFFFF) == NULL_LENGTH) {
+            return "no student ID";
+        }
+        int gradeOrdinal = window.get(start + 2) & 0xFF;
+        if (type == PUT && gradeOrdinal != NO_GRADE && gradeOrdinal >= GradeLevel.values().length) {
+            return "unknown grade " + gradeOrdinal;
+        }
+        return null;
+    }
+
+    /**
+     * Reads one string field from a mapped window.
+     *
+     * @param window The window holding the record.
+     * @param start Offset of the record in the window.
+     * @param index The field index.
+     * @return The field value, or null.
+     * @throws IllegalStateException If the stored length exceeds the field's capacity.
+     */
+    private static String readField(ByteBuffer window, int start, int index) {
+        int offset = start + FIELD_OFFSET[index];
+        int length = window.getShort(offset) & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length > FIELD_CAPACITY[index]) {
+            throw new IllegalStateException("Corrupt roster record: field " + index + " is " + length
+                    + " bytes, more than its " + FIELD_CAPACITY[index]);
+        }
+        byte[] bytes = new byte[length];
+        window.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Materializes the student stored in a record of the mapped file.
+     *
+     * @param record The record index.
+     * @return A new Student of the stored subtype.
+     */
+    private Student readStudent(int record) {
+        ByteBuffer window = windows[record >>> WINDOW_SHIFT];
+        int start = (record & WINDOW_MASK) * RECORD_SIZE;
+        int typeTag = window.get(start + 1) & 0xFF;
+        int gradeOrdinal = window.get(start + 2) & 0xFF;
+        GradeLevel grade = gradeOrdinal == NO_GRADE ? null : GradeLevel.values()[gradeOrdinal];
+        String studentId = readField(window, start, 0);
+        String firstName = readField(window, start, 1);
+        String lastName = readField(window, start, 2);
+        String email = readField(window, start, 3);
+        String section = readField(window, start, 4);
+        if (typeTag == CollegeStudent.PAYLOAD_FORMAT.getTypeTag()) {
+            return new CollegeStudent(studentId, firstName, lastName, email, grade, section);
+        }
+        if (typeTag == HighSchoolStudent.PAYLOAD_FORMAT.getTypeTag()) {
+            return new HighSchoolStudent(studentId, firstName, lastName, email, grade, section);
+        }
+        return StudentFactory.create(studentId, firstName, lastName, email, grade, section);
+    }
+
+    /**
+     * Writes a full buffer to the channel and returns it cleared, or returns it unchanged
+     * if it still has room for another record.
+     *
+     * @param out The channel to write to.
+     * @param buffer The staging buffer.
+     * @return The buffer, ready for another record.
+     * @throws IOException If writing fails.
+     */
+    private static ByteBuffer flushIfFull(FileChannel out, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Supplies packed 1-bit pixel rows on demand, so an image can be encoded
+ * without ever being held in memory as a whole.
+ */
+@FunctionalInterface
+public interface ScanlineSource {
+
+    /**
+     * Writes one packed pixel row. The most significant bit of each byte is the
+     * leftmost pixel; 0 is black and 1 is white.
+     *
+     * @param y The pixel row to produce.
+     * @param row The destination buffer.
+     * @param offset Index in the destination of the row's first byte.
+     */
+    void fillRow(int y, byte[] row, int offset);
+}
@@ -0,0 +1,414 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Output sink for QR code files that keeps directories small and batches the file
+ * system work on one writer thread.
+ *
+ * <p>Files are spread over 256 subdirectories named after two hex digits of the hash
+ * of the file name (see {@link #shardedPath(String, String)}), so no directory grows
+ * past a few thousand entries even for rosters of millions. Directories that have been
+ * created once are remembered and not checked again. The first time a directory is
+ * seen, temporary files left in it by a crash are deleted.</p>
+ *
+ * <p>{@link #write(String, byte[], Consumer)} queues a file and returns at once, blocking
+ * only while the bounded queue is full. The writer thread takes whatever has queued up
+ * as one batch of at most {@link #MAX_BATCH} files. Writes in a batch that target the
+ * same file are coalesced into the last one. Each file is written to a temporary file
+ * next to it and atomically renamed into place, so readers and crashes never see a
+ * partial image. With {@code sync} enabled, every temporary file is forced to disk
+ * before the batch is renamed, and each directory touched by the batch is then
+ * forced once, rather than once per file.</p>
+ */
+public class ShardedFileWriter implements Closeable {
+    /** Default number of files that may wait in the queue. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /** Most files written as one batch. */
+    private static final int MAX_BATCH = 256;
+
+    /** Suffix of the temporary file each write goes through. */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final LatencyHistogram BATCH_TIME = QRMetrics.global().histogram("writer.batch");
+    private static final LongAdder FILES = QRMetrics.global().counter("writer.files");
+    private static final LongAdder BATCHES = QRMetrics.global().counter("writer.batches");
+    private static final LongAdder COALESCED = QRMetrics.global().counter("writer.coalesced");
+    private static final LongAdder QUEUED = QRMetrics.global().counter("writer.queue");
+
+    /** Queue marker telling the writer thread to stop. */
+    private static final PendingWrite STOP = new PendingWrite(null, null, null);
+
+    /** Files waiting for the writer thread. */
+    private final BlockingQueue<PendingWrite> queue;
+
+    /** Whether files and directories are forced to disk before writes are reported done. */
+    private final boolean sync;
+
+    /** Directories known to exist. */
+    private final Set<Path> createdDirectories;
+
+    /** The writer thread. */
+    private final Thread writerThread;
+
+    /** Whether {@link #close()} has been called. Guarded by this writer. */
+    private boolean closed;
+
+    /**
+     * Constructs a ShardedFileWriter and starts its writer thread.
+     *
+     * @param queueCapacity Most files that may wait to be written before callers block.
+     * @param sync True to force every file and its directory to disk before reporting it written.
+     * @throws IllegalArgumentException If the capacity is less than 1.
+     */
+    public ShardedFileWriter(int queueCapacity, boolean sync) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.sync = sync;
+        this.createdDirectories = ConcurrentHashMap.newKeySet();
+        this.writerThread = new Thread(this::drain, "qr-file-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Gets the path a file is stored under inside a sharded directory: the directory,
+     * then the two lowest hex digits of the mixed hash of the file name, then the name.
+     * The shard depends only on the name, so it is the same on every run.
+     *
+     * @param directory The root directory.
+     * @param fileName The bare file name.
+     * @return A path such as {@code qr_codes/3f/S1001_John_Doe_QR.png}.
+     */
+    public static String shardedPath(String directory, String fileName) {
+        int hash = fileName.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        int shard = hash & 0xFF;
+        return directory + "/" + Character.forDigit(shard >>> 4, 16) + Character.forDigit(shard & 0xF, 16)
+                + "/" + fileName;
+    }
+
+    /**
+     * Queues a file to be written, blocking while the queue is full.
+     *
+     * @param filePath The file to create or replace.
+     * @param data The complete file contents; must not be modified afterwards.
+     * @param onDone Called on the writer thread with true once the file is in place, or
+     *               false if it could not be written; may be null. It must not queue
+     *               further writes, since the writer thread would wait on itself.
+     */
+    public void write(String filePath, byte[] data, Consumer<Boolean> onDone) {
+        PendingWrite write = new PendingWrite(Paths.get(filePath), data, onDone);
+        boolean queued = false;
+        // Holding the lock while enqueueing keeps writes from landing behind the stop marker
+        synchronized (this) {
+            if (!closed) {
+                try {
+                    queue.put(write);
+                    QUEUED.increment();
+                    queued = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (!queued) {
+            write.finish(false);
+        }
+    }
+
+    /**
+     * Writes a file through the queue and waits until it is in place.
+     *
+     * @param filePath The file to create or replace.
+     * @param data The complete file contents; must not be modified afterwards.
+     * @return True if the file was written; false otherwise.
+     */
+    public boolean writeAndWait(String filePath, byte[] data) {
+        CountDownLatch written = new CountDownLatch(1);
+        boolean[] saved = new boolean[1];
+        write(filePath, data, ok -> {
+            saved[0] = ok;
+            written.countDown();
+        });
+        try {
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return saved[0];
+    }
+
+    /**
+     * Creates a directory and its parents unless it is already known to exist, deleting
+     * temporary files left behind in it when it is first seen.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    public void ensureDirectory(Path directory) throws IOException {
+        if (directory != null && !createdDirectories.contains(directory)) {
+            Files.createDirectories(directory);
+            deleteStaleTemporaries(directory);
+            createdDirectories.add(directory);
+        }
+    }
+
+    /**
+     * Deletes the temporary files in a directory, which a crash between writing and
+     * renaming them would have left behind.
+     *
+     * @param directory The directory to sweep.
+     */
+    private static void deleteStaleTemporaries(Path directory) {
+        try (DirectoryStream<Path> temporaries = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path temporary : temporaries) {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            System.err.println("Error removing temporary files in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every queued file, then stops the writer thread. Writes queued afterwards
+     * fail at once.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            queue.put(STOP);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer thread loop: takes batches off the queue until told to stop.
+     */
+    private void drain() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            if (batch.remove(STOP)) {
+                stopping = true;
+            }
+            QUEUED.add(-batch.size());
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes one batch: temporary files first, then renames, then directory syncs, and
+     * finally reports the outcome of every write.
+     *
+     * @param batch The writes taken off the queue, in queue order.
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        // The last write to each path wins; earlier ones are reported with its outcome
+        Map<Path, PendingWrite> latest = new HashMap<>();
+        for (PendingWrite write : batch) {
+            PendingWrite previous = latest.put(write.target, write);
+            if (previous != null) {
+                write.superseded.add(previous);
+                write.superseded.addAll(previous.superseded);
+                previous.superseded.clear();
+                COALESCED.increment();
+            }
+        }
+
+        List<PendingWrite> written = new ArrayList<>(latest.size());
+        for (PendingWrite write : batch) {
+            if (latest.get(write.target) == write && writeTemporary(write)) {
+                written.add(write);
+            }
+        }
+        Set<Path> directories = new LinkedHashSet<>();
+        for (PendingWrite write : written) {
+            try {
+                Files.move(write.temporary(), write.target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                write.saved = true;
+                directories.add(write.target.toAbsolutePath().getParent());
+            } catch (IOException e) {
+                System.err.println("Error saving " + write.target + ": " + e.getMessage());
+                deleteTemporary(write);
+            }
+        }
+        if (sync) {
+            for (Path directory : directories) {
+                try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                    channel.force(true);
+                } catch (IOException e) {
+                    // Not every platform can open a directory to sync it; the renames still happened
+                }
+            }
+        }
+        BATCHES.increment();
+        BATCH_TIME.recordSince(start);
+
+        for (PendingWrite write : latest.values()) {
+            if (write.saved) {
+                FILES.increment();
+            }
+            for (PendingWrite previous : write.superseded) {
+                previous.finish(write.saved);
+            }
+            write.finish(write.saved);
+        }
+    }
+
+    /**
+     * Writes a file's contents to its temporary file, forcing them to disk when syncing.
+     *
+     * @param write The write.
+     * @return True if the temporary file was written.
+     */
+    private boolean writeTemporary(PendingWrite write) {
+        Path directory = write.target.toAbsolutePath().getParent();
+        try {
+            ensureDirectory(directory);
+            try {
+                writeFile(write.temporary(), write.data);
+            } catch (NoSuchFileException e) {
+                // The directory was removed behind our back; create it again
+                createdDirectories.remove(directory);
+                ensureDirectory(directory);
+                writeFile(write.temporary(), write.data);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving " + write.target + ": " + e.getMessage());
+            deleteTemporary(write);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the temporary file of a write that failed, if there is one.
+     *
+     * @param write The failed write.
+     */
+    private static void deleteTemporary(PendingWrite write) {
+        try {
+            Files.deleteIfExists(write.temporary());
+        } catch (IOException e) {
+            // Left for the sweep the next time its directory is first seen
+        }
+    }
+
+    /**
+     * Writes a complete file, forcing it to disk when syncing.
+     *
+     * @param file The file to create or replace.
+     * @param data The file contents.
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeFile(Path file, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * One queued file.
+     */
+    private static final class PendingWrite {
+        /** The file to create or replace. */
+        final Path target;
+
+        /** The file contents. */
+        final byte[] data;
+
+        /** Called with the outcome, or null. */
+        final Consumer<Boolean> onDone;
+
+        /** Earlier writes to the same file in the same batch, reported with this one's outcome. */
+        final List<PendingWrite> superseded = new ArrayList<>(0);
+
+        /** Whether the file was renamed into place. */
+        boolean saved;
+
+        /**
+         * Constructs a PendingWrite.
+         *
+         * @param target The file to create or replace.
+         * @param data The file contents.
+         * @param onDone Called with the outcome; may be null.
+         */
+        PendingWrite(Path target, byte[] data, Consumer<Boolean> onDone) {
+            this.target = target;
+            this.data = data;
+            this.onDone = onDone;
+        }
+
+        /**
+         * Gets the temporary file this write goes through.
+         * @return The target path with {@code .tmp} appended.
+         */
+        Path temporary() {
+            return target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        }
+
+        /**
+         * Reports the outcome to the caller.
+         *
+         * @param ok True if the file was written.
+         */
+        void finish(boolean ok) {
+            if (onDone != null) {
+                onDone.accept(ok);
+            }
+        }
+    }
+}
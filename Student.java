@@ -1,25 +1,33 @@
+import java.util.Objects;
+
 /**
  * Abstract class representing a student with common properties.
  * This class serves as a base for specific types of students.
  */
 public abstract class Student {
     /** The unique identifier for the student. */
-    private String studentId;
+    private volatile String studentId;
 
     /** The student's first name. */
-    private String firstName;
+    private volatile String firstName;
 
     /** The student's last name. */
-    private String lastName;
+    private volatile String lastName;
 
     /** The student's email address. */
-    private String email;
+    private volatile String email;
 
     /** The student's grade level, represented by the GradeLevel enum. */
-    private GradeLevel grade;
+    private volatile GradeLevel grade;
 
     /** The section or class group the student belongs to. */
-    private String section;
+    private volatile String section;
+
+    /** Modification version, incremented every time a property changes value. */
+    private volatile long version;
+
+    /** Listener notified when a property changes, or null if none is attached. */
+    private volatile StudentChangeListener changeListener;
 
     /**
      * Constructs a new Student with the specified details.
@@ -80,37 +88,144 @@ public abstract class Student {
      * Sets the student ID.
      * @param studentId The unique identifier to set.
      */
-    public void setStudentId(String studentId) { this.studentId = studentId; }
+    public synchronized void setStudentId(String studentId) {
+        String oldValue = this.studentId;
+        fireBeforeChange(StudentField.STUDENT_ID, oldValue, studentId);
+        this.studentId = studentId;
+        if (!Objects.equals(oldValue, studentId)) {
+            version++;
+        }
+        fireAfterChange(StudentField.STUDENT_ID, oldValue, studentId);
+    }
 
     /** 
      * Sets the first name.
      * @param firstName The first name to set.
      */
-    public void setFirstName(String firstName) { this.firstName = firstName; }
+    public synchronized void setFirstName(String firstName) {
+        String oldValue = this.firstName;
+        fireBeforeChange(StudentField.FIRST_NAME, oldValue, firstName);
+        this.firstName = firstName;
+        if (!Objects.equals(oldValue, firstName)) {
+            version++;
+        }
+        fireAfterChange(StudentField.FIRST_NAME, oldValue, firstName);
+    }
 
     /** 
      * Sets the last name.
      * @param lastName The last name to set.
      */
-    public void setLastName(String lastName) { this.lastName = lastName; }
+    public synchronized void setLastName(String lastName) {
+        String oldValue = this.lastName;
+        fireBeforeChange(StudentField.LAST_NAME, oldValue, lastName);
+        this.lastName = lastName;
+        if (!Objects.equals(oldValue, lastName)) {
+            version++;
+        }
+        fireAfterChange(StudentField.LAST_NAME, oldValue, lastName);
+    }
 
     /** 
      * Sets the email address.
      * @param email The email to set.
      */
-    public void setEmail(String email) { this.email = email; }
+    public synchronized void setEmail(String email) {
+        String oldValue = this.email;
+        fireBeforeChange(StudentField.EMAIL, oldValue, email);
+        this.email = email;
+        if (!Objects.equals(oldValue, email)) {
+            version++;
+        }
+        fireAfterChange(StudentField.EMAIL, oldValue, email);
+    }
 
     /** 
      * Sets the grade level.
      * @param grade The grade level to set.
      */
-    public void setGrade(GradeLevel grade) { this.grade = grade; }
+    public synchronized void setGrade(GradeLevel grade) {
+        GradeLevel oldValue = this.grade;
+        fireBeforeChange(StudentField.GRADE, oldValue, grade);
+        this.grade = grade;
+        if (!Objects.equals(oldValue, grade)) {
+            version++;
+        }
+        fireAfterChange(StudentField.GRADE, oldValue, grade);
+    }
 
     /** 
      * Sets the section.
      * @param section The section to set.
      */
-    public void setSection(String section) { this.section = section; }
+    public synchronized void setSection(String section) {
+        String oldValue = this.section;
+        fireBeforeChange(StudentField.SECTION, oldValue, section);
+        this.section = section;
+        if (!Objects.equals(oldValue, section)) {
+            version++;
+        }
+        fireAfterChange(StudentField.SECTION, oldValue, section);
+    }
+
+    /**
+     * Gets the modification version. It starts at 0 and is incremented each time a
+     * setter changes a property's value, so callers can detect changes by comparing versions.
+     *
+     * @return The current modification version.
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Gets the class whose payload format and stored type describe this student. This is
+     * the student's own class, except for views of students held in a
+     * {@link ColumnarStudentStore}, which report the class of the student they stand for.
+     *
+     * @return The student's record type.
+     */
+    Class<? extends Student> getRecordType() { return getClass(); }
+
+    /**
+     * Gets the listener attached to this student.
+     *
+     * @return The attached listener, or null if none is attached.
+     */
+    StudentChangeListener getChangeListener() { return changeListener; }
+
+    /**
+     * Attaches or detaches the change listener. Callers must hold this student's monitor.
+     *
+     * @param changeListener The listener to attach, or null to detach.
+     */
+    void setChangeListener(StudentChangeListener changeListener) { this.changeListener = changeListener; }
+
+    /**
+     * Notifies the attached listener that a property is about to change.
+     *
+     * @param field The property about to change.
+     * @param oldValue The current value.
+     * @param newValue The value about to be set.
+     */
+    private void fireBeforeChange(StudentField field, Object oldValue, Object newValue) {
+        StudentChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.beforeChange(this, field, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Notifies the attached listener that a property has changed.
+     *
+     * @param field The property that changed.
+     * @param oldValue The previous value.
+     * @param newValue The new value.
+     */
+    private void fireAfterChange(StudentField field, Object oldValue, Object newValue) {
+        StudentChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.afterChange(this, field, oldValue, newValue);
+        }
+    }
 
     /**
      * Gets the full name by combining first and last names.
@@ -136,7 +251,7 @@ public abstract class Student {
      */
     @Override
     public String toString() {
-        return String.format("Student{ID='%s', Name='%s', Email='%s', Grade='%s', Section='%s'}",
-                studentId, getFullName(), email, grade.name(), section);
+        return "Student{ID='" + studentId + "', Name='" + firstName + " " + lastName + "', Email='" + email
+                + "', Grade='" + grade.name() + "', Section='" + section + "'}";
     }
 }
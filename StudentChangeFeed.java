@@ -0,0 +1,267 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Fan-out of {@link StudentEvent}s to subscribers, each with its own bounded buffer
+ * and delivery thread.
+ *
+ * <p>Publishing never blocks: events are offered to every subscriber's queue, and a
+ * subscriber whose queue is full loses them. An {@link StudentEvent.Type#OVERFLOW}
+ * event then takes the place of the first lost event, in a slot kept free for it, and
+ * stands for everything dropped until the consumer has received it. Events before it
+ * in the stream are older than any dropped event and events after it are newer, so a
+ * consumer that rescans the roster when it reaches the overflow event is back in step.
+ * This keeps a slow consumer from stalling the setters and bulk operations that
+ * publish, which may hold a student's monitor while they do.</p>
+ *
+ * <p>Each subscriber's thread takes whatever has queued up, at most {@code maxBatch}
+ * events at a time, and hands it over as one list in publication order, so consumers
+ * can apply deltas in batches. All methods are thread-safe.</p>
+ */
+public class StudentChangeFeed implements Closeable {
+    /** Default number of events buffered per subscriber. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** Default largest batch handed to a subscriber at once. */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private static final LongAdder PUBLISHED = QRMetrics.global().counter("events.published");
+    private static final LongAdder DROPPED = QRMetrics.global().counter("events.dropped");
+    private static final LatencyHistogram DELIVERY_TIME = QRMetrics.global().histogram("events.deliver");
+
+    /** Queue marker telling a delivery thread to stop. */
+    private static final StudentEvent STOP = StudentEvent.removed("", null);
+
+    /** Numbers the delivery threads. */
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /** Current subscribers. Changed only while holding this feed's monitor. */
+    private final List<Subscription> subscriptions;
+
+    /**
+     * Constructs a StudentChangeFeed with no subscribers.
+     */
+    public StudentChangeFeed() {
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Subscribes to events with the default buffer size and batch size.
+     *
+     * @param consumer Called on the subscription's own thread with each batch of events.
+     * @return The subscription; close it to stop receiving events.
+     */
+    public Subscription subscribe(Consumer<List<StudentEvent>> consumer) {
+        return subscribe(consumer, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Subscribes to events published from now on.
+     *
+     * @param consumer Called on the subscription's own thread with each batch of events,
+     *                 as a read-only list in publication order.
+     * @param capacity Most events buffered for this subscriber before further ones are dropped.
+     * @param maxBatch Most events handed to the consumer at once.
+     * @return The subscription; close it to stop receiving events.
+     * @throws IllegalArgumentException If the capacity or batch size is less than 1.
+     */
+    public synchronized Subscription subscribe(Consumer<List<StudentEvent>> consumer, int capacity, int maxBatch) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Capacity and batch size must be at least 1");
+        }
+        Subscription subscription = new Subscription(consumer, capacity, maxBatch);
+        subscriptions.add(subscription);
+        subscription.deliveryThread.start();
+        return subscription;
+    }
+
+    /**
+     * Checks whether anyone is subscribed, so publishers can skip building events nobody reads.
+     *
+     * @return True if there is at least one open subscription.
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Publishes one event to every subscriber.
+     *
+     * @param event The event.
+     */
+    public void publish(StudentEvent event) {
+        publishAll(Collections.singletonList(event));
+    }
+
+    /**
+     * Publishes events to every subscriber, keeping them together and in order.
+     *
+     * @param events The events, in the order they happened.
+     */
+    public synchronized void publishAll(List<StudentEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(events);
+        }
+        PUBLISHED.add(events.size());
+    }
+
+    /**
+     * Closes every subscription, after delivering the events already queued for it.
+     */
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * One subscriber's buffer and delivery thread.
+     */
+    public final class Subscription implements Closeable {
+        /** Receives batches of events. */
+        private final Consumer<List<StudentEvent>> consumer;
+
+        /** Events waiting to be delivered, with one slot more than the capacity for the overflow event. */
+        private final BlockingQueue<StudentEvent> queue;
+
+        /** Most events buffered, not counting the overflow event. */
+        private final int capacity;
+
+        /** Most events delivered at once. */
+        private final int maxBatch;
+
+        /** Set from when an overflow event is queued until the consumer has taken it. */
+        private final AtomicBoolean overflowed;
+
+        /** Number of events dropped so far. */
+        private final LongAdder dropped;
+
+        /** The delivery thread. */
+        private final Thread deliveryThread;
+
+        /** Set when the consumer closed its own subscription; the thread stops once the queue is empty. */
+        private volatile boolean closedByConsumer;
+
+        /**
+         * Constructs a Subscription; its thread is started by the feed.
+         *
+         * @param consumer Receives batches of events.
+         * @param capacity Most events buffered.
+         * @param maxBatch Most events delivered at once.
+         */
+        private Subscription(Consumer<List<StudentEvent>> consumer, int capacity, int maxBatch) {
+            this.consumer = consumer;
+            this.queue = new ArrayBlockingQueue<>(capacity + 1);
+            this.capacity = capacity;
+            this.maxBatch = maxBatch;
+            this.overflowed = new AtomicBoolean();
+            this.dropped = new LongAdder();
+            this.deliveryThread = new Thread(this::deliver, "qr-events-" + THREAD_COUNT.incrementAndGet());
+            this.deliveryThread.setDaemon(true);
+        }
+
+        /**
+         * Gets the number of events this subscriber lost because its buffer was full.
+         *
+         * @return The dropped event count.
+         */
+        public long getDropped() {
+            return dropped.sum();
+        }
+
+        /**
+         * Stops the subscription. Events already queued are still delivered; unless
+         * called from the consumer itself, this waits until they have been.
+         */
+        @Override
+        public void close() {
+            synchronized (StudentChangeFeed.this) {
+                if (!subscriptions.remove(this)) {
+                    return;
+                }
+            }
+            if (Thread.currentThread() == deliveryThread) {
+                // Waiting for room in our own queue would never end
+                closedByConsumer = true;
+                return;
+            }
+            try {
+                queue.put(STOP);
+                deliveryThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Queues events without blocking, dropping those that do not fit and queueing
+         * an overflow event in their place unless one is still outstanding. Called only
+         * while holding the feed's monitor, so the queue can only shrink in between.
+         *
+         * @param events The events to queue.
+         */
+        private void offer(List<StudentEvent> events) {
+            for (StudentEvent event : events) {
+                if (queue.size() < capacity && queue.offer(event)) {
+                    continue;
+                }
+                dropped.increment();
+                DROPPED.increment();
+                if (overflowed.compareAndSet(false, true)) {
+                    queue.offer(StudentEvent.OVERFLOW);
+                }
+            }
+        }
+
+        /**
+         * Delivery loop: hands batches to the consumer until told to stop.
+         */
+        private void deliver() {
+            List<StudentEvent> batch = new ArrayList<>(maxBatch + 1);
+            boolean stopping = false;
+            while (!stopping) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                queue.drainTo(batch, maxBatch - 1);
+                int stop = batch.indexOf(STOP);
+                if (stop >= 0) {
+                    batch.subList(stop, batch.size()).clear();
+                    stopping = true;
+                }
+                // Events dropped from here on are newer than the consumer's rescan can be sure to see
+                if (batch.contains(StudentEvent.OVERFLOW)) {
+                    overflowed.set(false);
+                }
+                if (!batch.isEmpty()) {
+                    long start = System.nanoTime();
+                    try {
+                        consumer.accept(Collections.unmodifiableList(batch));
+                    } catch (RuntimeException e) {
+                        System.err.println("Error delivering student events: " + e.getMessage());
+                    }
+                    DELIVERY_TIME.recordSince(start);
+                }
+                batch.clear();
+                if (closedByConsumer && queue.isEmpty()) {
+                    stopping = true;
+                }
+            }
+        }
+    }
+}
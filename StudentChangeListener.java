@@ -0,0 +1,32 @@
+/**
+ * Receives notifications when a property of a {@link Student} is modified.
+ *
+ * <p>Both callbacks run on the thread calling the setter while it holds the
+ * student's monitor, so they see a consistent view of that student and must not
+ * block for long.</p>
+ */
+public interface StudentChangeListener {
+
+    /**
+     * Called before a property is changed. Throwing an exception vetoes the change
+     * and leaves the student untouched.
+     *
+     * @param student The student being modified.
+     * @param field The property about to change.
+     * @param oldValue The current value of the property.
+     * @param newValue The value the property is about to take.
+     */
+    default void beforeChange(Student student, StudentField field, Object oldValue, Object newValue) {
+    }
+
+    /**
+     * Called after a property has been changed.
+     *
+     * @param student The student that was modified.
+     * @param field The property that changed.
+     * @param oldValue The previous value of the property.
+     * @param newValue The new value of the property.
+     */
+    default void afterChange(Student student, StudentField field, Object oldValue, Object newValue) {
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Non-interactive front end for scripted, one-shot runs, e.g.
+ * {@code java -jar student-qr-code.jar import roster.csv} or
+ * {@code java -jar student-qr-code.jar generate}.
+ *
+ * <p>Each run executes one command against the roster file and exits with status 0
+ * on success, 1 if the command failed for some students and 2 for a usage error. No
+ * menu is shown and no metrics reporting is started. The QR code generator, and with
+ * it the imaging classes, are only loaded by commands that render, so listing or
+ * importing students starts as fast as the JVM does. See {@link #printUsage()} for
+ * the commands.</p>
+ */
+public class StudentCommandLine {
+    /** Exit status of a command that succeeded. */
+    public static final int EXIT_OK = 0;
+
+    /** Exit status of a command that failed for some or all students. */
+    public static final int EXIT_FAILED = 1;
+
+    /** Exit status of a command line that could not be understood. */
+    public static final int EXIT_USAGE = 2;
+
+    /** Roster file the commands operate on. */
+    private final String rosterFile;
+
+    /**
+     * Constructs a StudentCommandLine operating on a roster file.
+     *
+     * @param rosterFile The roster file to open or create.
+     */
+    public StudentCommandLine(String rosterFile) {
+        this.rosterFile = rosterFile;
+    }
+
+    /**
+     * Parses the command line and runs the command. Without a command, prints the usage
+     * and returns {@link #EXIT_USAGE}; {@link StudentQRCodeApp#main(String[])} starts the
+     * interactive menu instead before getting here.
+     *
+     * @param args Optional {@code --roster <file>}, then the command and its arguments.
+     * @return The exit status.
+     */
+    public static int run(String[] args) {
+        String rosterFile = StudentQRCodeApp.ROSTER_FILE;
+        int start = 0;
+        if (args.length >= 2 && args[0].equals("--roster")) {
+            rosterFile = args[1];
+            start = 2;
+        }
+        if (start >= args.length || args[start].equals("help") || args[start].equals("--help")) {
+            printUsage();
+            return start >= args.length ? EXIT_USAGE : EXIT_OK;
+        }
+        return new StudentCommandLine(rosterFile).execute(args[start],
+                Arrays.asList(args).subList(start + 1, args.length));
+    }
+
+    /**
+     * Prints the available commands.
+     */
+    public static void printUsage() {
+        System.out.println("Usage: StudentQRCodeApp [--roster <file>] <command> [arguments]");
+        System.out.println("Commands:");
+        System.out.println("  list [section=S] [grade=G] [type=T] [name=N]   List matching students");
+        System.out.println("  add <id> <first> <last> <email> <grade> <section> [type]");
+        System.out.println("                                                 Add a student");
+        System.out.println("  remove <id>...                                 Remove students");
+        System.out.println("  import <file>                                  Import a CSV or JSON-lines file");
+        System.out.println("  generate [id...]                               Generate QR codes, for everyone by default");
+        System.out.println("  generate-changed                               Generate QR codes for changed students");
+        System.out.println("  archive <file.zip|file.tar> [volumeMB]         Write all QR codes to an archive");
+        System.out.println("  badges section|grade                           Print badge sheets");
+        System.out.println("Grades are names such as GRADE_12 or COLLEGE_JUNIOR, or their menu numbers.");
+        System.out.println("Without a command, the interactive menu starts, on the --roster file if given.");
+    }
+
+    /**
+     * Opens the roster and runs one command against it.
+     *
+     * @param command The command name.
+     * @param arguments The command's arguments.
+     * @return The exit status.
+     */
+    public int execute(String command, List<String> arguments) {
+        StudentManager manager;
+        try {
+            manager = new StudentManager(rosterFile, StudentManager.createConfiguredStore());
+        } catch (IOException e) {
+            System.err.println("Error opening roster file: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        manager.setProgressLogging(false);
+        try {
+            switch (command) {
+                case "list": return list(manager, arguments);
+                case "add": return add(manager, arguments);
+                case "remove": return remove(manager, arguments);
+                case "import": return importFile(manager, arguments);
+                case "generate": return generate(manager, arguments);
+                case "generate-changed": return countFailures(manager.generateQRCodesForChangedStudents());
+                case "archive": return archive(manager, arguments);
+                case "badges": return badges(manager, arguments);
+                default:
+                    System.err.println("Unknown command: " + command);
+                    printUsage();
+                    return EXIT_USAGE;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return EXIT_USAGE;
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * Lists the students matching {@code key=value} filters, one per line.
+     *
+     * @param manager The student manager.
+     * @param arguments Filters on section, grade, type and name.
+     * @return The exit status.
+     */
+    private int list(StudentManager manager, List<String> arguments) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String argument : arguments) {
+            int equals = argument.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected key=value filter: " + argument);
+            }
+            parameters.put(argument.substring(0, equals), argument.substring(equals + 1));
+        }
+        try (Stream<Student> matching = manager.queryStudents(StudentQuery.fromParameters(parameters))) {
+            matching.forEach(System.out::println);
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Adds one student.
+     *
+     * @param manager The student manager.
+     * @param arguments ID, first name, last name, email, grade, section and optional type.
+     * @return The exit status.
+     */
+    private int add(StudentManager manager, List<String> arguments) {
+        if (arguments.size() != 6 && arguments.size() != 7) {
+            throw new IllegalArgumentException("add takes <id> <first> <last> <email> <grade> <section> [type]");
+        }
+        GradeLevel grade = GradeLevel.parse(arguments.get(4));
+        Student student;
+        if (arguments.size() == 7 && StudentQuery.parseType(arguments.get(6)) == CollegeStudent.class) {
+            student = new CollegeStudent(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3),
+                    grade, arguments.get(5));
+        } else if (arguments.size() == 7) {
+            student = new HighSchoolStudent(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3),
+                    grade, arguments.get(5));
+        } else {
+            student = StudentFactory.create(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3),
+                    grade, arguments.get(5));
+        }
+        return manager.addStudent(student) ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /**
+     * Removes students by ID.
+     *
+     * @param manager The student manager.
+     * @param arguments The IDs.
+     * @return The exit status; failed if any ID matched no student.
+     */
+    private int remove(StudentManager manager, List<String> arguments) {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("remove takes at least one student ID");
+        }
+        int removed = manager.removeAll(arguments);
+        System.out.println("Removed " + removed + " of " + arguments.size() + " students.");
+        return removed == arguments.size() ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /**
+     * Imports a CSV or JSON-lines file.
+     *
+     * @param manager The student manager.
+     * @param arguments The file name.
+     * @return The exit status; failed if any row was rejected.
+     */
+    private int importFile(StudentManager manager, List<String> arguments) {
+        if (arguments.size() != 1) {
+            throw new IllegalArgumentException("import takes one file name");
+        }
+        String fileName = arguments.get(0);
+        try {
+            ImportReport report = new StudentImporter(manager)
+                    .importFile(fileName, StudentImporter.detectFormat(fileName));
+            for (String error : report.getErrors()) {
+                System.err.println("  " + error);
+            }
+            System.out.println(report + ".");
+            return report.getErrorCount() == 0 ? EXIT_OK : EXIT_FAILED;
+        } catch (IOException e) {
+            System.err.println("Error reading import file: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Generates QR codes for the given students, or for everyone.
+     *
+     * @param manager The student manager.
+     * @param arguments Student IDs; empty for all students.
+     * @return The exit status.
+     */
+    private int generate(StudentManager manager, List<String> arguments) {
+        if (arguments.isEmpty()) {
+            return countFailures(manager.generateQRCodesForAllStudents(BulkQRCodeGenerator.DEFAULT_RENDER_THREADS,
+                    BulkQRCodeGenerator.DEFAULT_IO_THREADS, BulkQRCodeGenerator.DEFAULT_MAX_IN_FLIGHT));
+        }
+        int status = EXIT_OK;
+        for (String studentId : arguments) {
+            if (!manager.generateQRCodeForStudent(studentId)) {
+                status = EXIT_FAILED;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Writes every student's QR code into a ZIP or TAR archive, chosen by extension.
+     *
+     * @param manager The student manager.
+     * @param arguments The archive path and optional volume size in megabytes.
+     * @return The exit status.
+     */
+    private int archive(StudentManager manager, List<String> arguments) {
+        if (arguments.isEmpty() || arguments.size() > 2) {
+            throw new IllegalArgumentException("archive takes a file name and an optional volume size");
+        }
+        String archivePath = arguments.get(0);
+        QRArchiveWriter.Format format = archivePath.toLowerCase().endsWith(".tar")
+                ? QRArchiveWriter.Format.TAR
+                : QRArchiveWriter.Format.ZIP;
+        long volumeSize = 0;
+        if (arguments.size() == 2) {
+            try {
+                volumeSize = Long.parseLong(arguments.get(1)) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                volumeSize = -1;
+            }
+            if (volumeSize < 0) {
+                throw new IllegalArgumentException("Invalid volume size: " + arguments.get(1));
+            }
+        }
+        return countFailures(manager.generateQRCodeArchive(archivePath, format, volumeSize));
+    }
+
+    /**
+     * Renders badge sheets grouped by section or grade level.
+     *
+     * @param manager The student manager.
+     * @param arguments {@code section} or {@code grade}.
+     * @return The exit status.
+     */
+    private int badges(StudentManager manager, List<String> arguments) {
+        if (arguments.size() != 1 || !(arguments.get(0).equals("section") || arguments.get(0).equals("grade"))) {
+            throw new IllegalArgumentException("badges takes section or grade");
+        }
+        List<Path> pages = manager.generateBadgeSheets(arguments.get(0).equals("section")
+                ? BadgeSheetRenderer.Grouping.SECTION
+                : BadgeSheetRenderer.Grouping.GRADE);
+        return pages.isEmpty() && !manager.getAllStudents().isEmpty() ? EXIT_FAILED : EXIT_OK;
+    }
+
+    /**
+     * Turns bulk results into an exit status.
+     *
+     * @param results One result per student.
+     * @return Failed if any student failed; OK otherwise.
+     */
+    private static int countFailures(List<GenerationResult> results) {
+        for (GenerationResult result : results) {
+            if (!result.isSuccess()) {
+                return EXIT_FAILED;
+            }
+        }
+        return EXIT_OK;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * One change to the roster, as delivered by a {@link StudentChangeFeed}: a student
+ * was added, updated or removed, with its QR payload before and after the change.
+ *
+ * <p>Payloads are the text returned by {@link Student#toQRString()}, so a consumer can
+ * tell from them alone whether a QR code needs regenerating. An {@link Type#OVERFLOW}
+ * event stands for changes that were dropped because the consumer fell behind; it
+ * carries no student and tells the consumer to rescan the roster. Instances are
+ * immutable and safe to share between threads.</p>
+ */
+public class StudentEvent {
+    /**
+     * Kind of change an event describes.
+     */
+    public enum Type {
+        /** A student was added. */
+        ADDED,
+        /** A property of a stored student changed. */
+        UPDATED,
+        /** A student was removed. */
+        REMOVED,
+        /** Events were dropped; the roster must be rescanned to catch up. */
+        OVERFLOW
+    }
+
+    /** The single overflow event. */
+    static final StudentEvent OVERFLOW = new StudentEvent(Type.OVERFLOW, null, null, null, null);
+
+    /** Kind of change. */
+    private final Type type;
+
+    /** ID of the student after the change, or before it for removals. */
+    private final String studentId;
+
+    /** ID of the student before the change. */
+    private final String previousStudentId;
+
+    /** QR payload before the change, or null for additions. */
+    private final String oldPayload;
+
+    /** QR payload after the change, or null for removals. */
+    private final String newPayload;
+
+    /**
+     * Constructs a new StudentEvent.
+     *
+     * @param type Kind of change.
+     * @param studentId ID of the student after the change.
+     * @param previousStudentId ID of the student before the change.
+     * @param oldPayload QR payload before the change, or null.
+     * @param newPayload QR payload after the change, or null.
+     */
+    private StudentEvent(Type type, String studentId, String previousStudentId, String oldPayload,
+                         String newPayload) {
+        this.type = type;
+        this.studentId = studentId;
+        this.previousStudentId = previousStudentId;
+        this.oldPayload = oldPayload;
+        this.newPayload = newPayload;
+    }
+
+    /**
+     * Creates an event for a student that was added.
+     *
+     * @param studentId The ID of the student.
+     * @param payload The student's QR payload.
+     * @return An ADDED event.
+     */
+    public static StudentEvent added(String studentId, String payload) {
+        return new StudentEvent(Type.ADDED, studentId, studentId, null, payload);
+    }
+
+    /**
+     * Creates an event for a student that was modified.
+     *
+     * @param studentId The ID of the student after the change.
+     * @param previousStudentId The ID of the student before the change.
+     * @param oldPayload The QR payload before the change.
+     * @param newPayload The QR payload after the change.
+     * @return An UPDATED event.
+     */
+    public static StudentEvent updated(String studentId, String previousStudentId, String oldPayload,
+                                       String newPayload) {
+        return new StudentEvent(Type.UPDATED, studentId, previousStudentId, oldPayload, newPayload);
+    }
+
+    /**
+     * Creates an event for a student that was removed.
+     *
+     * @param studentId The ID of the student.
+     * @param payload The student's QR payload when it was removed.
+     * @return A REMOVED event.
+     */
+    public static StudentEvent removed(String studentId, String payload) {
+        return new StudentEvent(Type.REMOVED, studentId, studentId, payload, null);
+    }
+
+    /**
+     * Gets the kind of change.
+     * @return The event type.
+     */
+    public Type getType() { return type; }
+
+    /**
+     * Gets the ID of the student the event is about.
+     * @return The ID after the change, or the ID removed; null for overflow events.
+     */
+    public String getStudentId() { return studentId; }
+
+    /**
+     * Gets the ID the student had before the change. It differs from
+     * {@link #getStudentId()} only when the change renamed the student.
+     * @return The ID before the change; null for overflow events.
+     */
+    public String getPreviousStudentId() { return previousStudentId; }
+
+    /**
+     * Gets the QR payload before the change.
+     * @return The payload, or null for additions and overflow events.
+     */
+    public String getOldPayload() { return oldPayload; }
+
+    /**
+     * Gets the QR payload after the change.
+     * @return The payload, or null for removals and overflow events.
+     */
+    public String getNewPayload() { return newPayload; }
+
+    /**
+     * Checks whether the change altered the QR payload, and so the student's QR code.
+     * @return True unless this is an update that left the payload as it was.
+     */
+    public boolean isPayloadChanged() {
+        return type != Type.UPDATED || !oldPayload.equals(newPayload);
+    }
+
+    /**
+     * Formats the event for logging.
+     *
+     * @return A line such as {@code UPDATED S1001 (was S1000)}.
+     */
+    @Override
+    public String toString() {
+        if (type == Type.OVERFLOW) {
+            return type.name();
+        }
+        String line = type + " " + studentId;
+        return previousStudentId.equals(studentId) ? line : line + " (was " + previousStudentId + ")";
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Creates the right kind of {@link Student} for a grade level: a
+ * {@link CollegeStudent} for college years and a {@link HighSchoolStudent} otherwise.
+ */
+public final class StudentFactory {
+
+    /**
+     * Prevents instantiation; this class only has static methods.
+     */
+    private StudentFactory() {
+    }
+
+    /**
+     * Creates a student whose subtype is chosen from the grade level.
+     *
+     * @param studentId The unique identifier for the student.
+     * @param firstName The first name of the student.
+     * @param lastName The last name of the student.
+     * @param email The email address of the student.
+     * @param grade The grade level of the student.
+     * @param section The section or class group of the student.
+     * @return A CollegeStudent for college grades; a HighSchoolStudent otherwise.
+     */
+    public static Student create(String studentId, String firstName, String lastName, String email,
+                                 GradeLevel grade, String section) {
+        if (grade != null && grade.isCollege()) {
+            return new CollegeStudent(studentId, firstName, lastName, email, grade, section);
+        }
+        return new HighSchoolStudent(studentId, firstName, lastName, email, grade, section);
+    }
+}
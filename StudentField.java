@@ -0,0 +1,18 @@
+/**
+ * Enum naming the mutable properties of a {@link Student}.
+ * Used to describe which property changed when a student is modified.
+ */
+public enum StudentField {
+    /** The student's unique identifier. */
+    STUDENT_ID,
+    /** The student's first name. */
+    FIRST_NAME,
+    /** The student's last name. */
+    LAST_NAME,
+    /** The student's email address. */
+    EMAIL,
+    /** The student's grade level. */
+    GRADE,
+    /** The student's section or class group. */
+    SECTION
+}
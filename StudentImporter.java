@@ -0,0 +1,508 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports students in bulk from CSV or JSON-lines files.
+ *
+ * <p>The file is streamed line by line and cut into batches. Batches are parsed in
+ * parallel on a worker pool, while the calling thread inserts finished batches into
+ * the {@link StudentManager} in file order, so the first occurrence of a duplicate ID
+ * wins. Only a bounded number of batches are in flight at once, so files with millions
+ * of rows are imported without ever being held in memory.</p>
+ *
+ * <p>CSV files have the columns {@code studentId,firstName,lastName,email,grade,section}
+ * and may start with a header row. Fields may be quoted with double quotes, with
+ * {@code ""} standing for a literal quote; quoted fields cannot span lines. JSON-lines
+ * files hold one flat object per line with the same keys. In both formats the grade is
+ * either a {@link GradeLevel} name or its 1-based menu number, and it decides between
+ * {@link CollegeStudent} and {@link HighSchoolStudent} just as the interactive menu does.</p>
+ */
+public class StudentImporter {
+    /** Supported input formats. */
+    public enum Format {
+        /** Comma-separated values. */
+        CSV,
+        /** One JSON object per line. */
+        JSON_LINES
+    }
+
+    /** Default number of rows parsed as one batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** The manager students are imported into. */
+    private final StudentManager manager;
+
+    /** Number of threads used for parsing. */
+    private final int parserThreads;
+
+    /** Number of rows parsed as one batch. */
+    private final int batchSize;
+
+    /**
+     * Constructs a StudentImporter with default parallelism and batch size.
+     *
+     * @param manager The manager students are imported into.
+     */
+    public StudentImporter(StudentManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a StudentImporter.
+     *
+     * @param manager The manager students are imported into.
+     * @param parserThreads Number of threads used for parsing.
+     * @param batchSize Number of rows parsed and inserted as one batch.
+     * @throws IllegalArgumentException If either count is less than 1.
+     */
+    public StudentImporter(StudentManager manager, int parserThreads, int batchSize) {
+        if (parserThreads < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Thread count and batch size must be at least 1");
+        }
+        this.manager = manager;
+        this.parserThreads = parserThreads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Guesses the format of a file from its extension.
+     *
+     * @param fileName The file name.
+     * @return JSON_LINES for .jsonl, .ndjson and .json files; CSV otherwise.
+     */
+    public static Format detectFormat(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jsonl") || lower.endsWith(".ndjson") || lower.endsWith(".json")
+                ? Format.JSON_LINES : Format.CSV;
+    }
+
+    /**
+     * Imports all students from a file.
+     *
+     * @param fileName The file to read, as UTF-8.
+     * @param format The file format.
+     * @return A report of what was imported and which rows failed.
+     * @throws IOException If the file cannot be read.
+     */
+    public ImportReport importFile(String fileName, Format format) throws IOException {
+        ImportReport report = new ImportReport();
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, runnable -> {
+            Thread thread = new Thread(runnable, "student-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<ParsedBatch>> pending = new ArrayDeque<>();
+        Path path = Paths.get(fileName);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>(batchSize);
+            long lineNumber = 0;
+            long firstLine = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && format == Format.CSV && isCsvHeader(line)) {
+                    firstLine = 2;
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == batchSize) {
+                    submit(parsers, pending, lines, firstLine, format, report);
+                    lines = new ArrayList<>(batchSize);
+                    firstLine = lineNumber + 1;
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(parsers, pending, lines, firstLine, format, report);
+            }
+            while (!pending.isEmpty()) {
+                insert(pending.removeFirst(), report);
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+        return report;
+    }
+
+    /**
+     * Submits a batch for parsing, first inserting the oldest batch if too many are in flight.
+     *
+     * @param parsers The parsing pool.
+     * @param pending Batches submitted but not yet inserted, oldest first.
+     * @param lines The raw lines of the batch.
+     * @param firstLine The line number of the batch's first line.
+     * @param format The file format.
+     * @param report The report to update.
+     */
+    private void submit(ExecutorService parsers, Deque<Future<ParsedBatch>> pending, List<String> lines,
+                        long firstLine, Format format, ImportReport report) {
+        while (pending.size() >= 2 * parserThreads) {
+            insert(pending.removeFirst(), report);
+        }
+        pending.addLast(parsers.submit(() -> parse(lines, firstLine, format)));
+    }
+
+    /**
+     * Waits for a parsed batch and inserts its students into the manager.
+     *
+     * @param future The batch being parsed.
+     * @param report The report to update.
+     */
+    private void insert(Future<ParsedBatch> future, ImportReport report) {
+        ParsedBatch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parsing failed", e.getCause());
+        }
+        report.addRows(batch.rowCount);
+        for (int i = 0; i < batch.errorLines.size(); i++) {
+            report.addError(batch.errorLines.get(i), batch.errorMessages.get(i));
+        }
+        Map<Student, Long> lineOf = new IdentityHashMap<>();
+        for (int i = 0; i < batch.students.size(); i++) {
+            lineOf.put(batch.students.get(i), batch.studentLines.get(i));
+        }
+        report.addImported(manager.addAll(batch.students,
+                (student, reason) -> report.addError(lineOf.get(student), reason)));
+    }
+
+    /**
+     * Parses a batch of lines into students. Runs on a parser thread.
+     *
+     * @param lines The raw lines.
+     * @param firstLine The line number of the first line.
+     * @param format The file format.
+     * @return The parsed students and any row errors.
+     */
+    private static ParsedBatch parse(List<String> lines, long firstLine, Format format) {
+        ParsedBatch batch = new ParsedBatch(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            long lineNumber = firstLine + i;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            batch.rowCount++;
+            try {
+                String[] fields = format == Format.CSV ? parseCsv(line) : parseJson(line);
+                batch.students.add(toStudent(fields));
+                batch.studentLines.add(lineNumber);
+            } catch (IllegalArgumentException e) {
+                batch.errorLines.add(lineNumber);
+                batch.errorMessages.add(e.getMessage());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Builds a student from parsed fields in column order.
+     *
+     * @param fields The studentId, firstName, lastName, email, grade and section values.
+     * @return The new student.
+     * @throws IllegalArgumentException If a required value is missing or the grade is invalid.
+     */
+    private static Student toStudent(String[] fields) {
+        String studentId = fields[0] == null ? "" : fields[0].trim();
+        if (studentId.isEmpty()) {
+            throw new IllegalArgumentException("Missing student ID");
+        }
+        if (fields[4] == null || fields[4].trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing grade level");
+        }
+        GradeLevel grade = GradeLevel.parse(fields[4]);
+        return StudentFactory.create(studentId, trim(fields[1]), trim(fields[2]), trim(fields[3]),
+                grade, trim(fields[5]));
+    }
+
+    /**
+     * Trims a value, treating null as empty.
+     *
+     * @param value The value.
+     * @return The trimmed value, or an empty string.
+     */
+    private static String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    /**
+     * Checks whether a CSV line is a header row.
+     *
+     * @param line The first line of the file.
+     * @return True if its first column is named like the student ID column.
+     */
+    private static boolean isCsvHeader(String line) {
+        String first = line.split(",", 2)[0].trim().replace("\"", "").toLowerCase(Locale.ROOT);
+        return first.equals("studentid") || first.equals("student_id") || first.equals("id");
+    }
+
+    /**
+     * Parses one CSV row into exactly six fields.
+     *
+     * @param line The row.
+     * @return The field values in column order.
+     * @throws IllegalArgumentException If the row is malformed or has the wrong number of fields.
+     */
+    static String[] parseCsv(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        if (fields.size() != 6) {
+            throw new IllegalArgumentException("Expected 6 fields but found " + fields.size());
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Parses one flat JSON object into the six student fields.
+     * String, number and null values are accepted; unknown keys are ignored.
+     *
+     * @param line The JSON object.
+     * @return The field values in column order; missing keys are null.
+     * @throws IllegalArgumentException If the line is not a flat JSON object.
+     */
+    static String[] parseJson(String line) {
+        String[] fields = new String[6];
+        JsonCursor cursor = new JsonCursor(line);
+        cursor.expect('{');
+        if (!cursor.tryConsume('}')) {
+            do {
+                String key = cursor.readString();
+                cursor.expect(':');
+                String value = cursor.readScalar();
+                int index = columnIndex(key);
+                if (index >= 0) {
+                    fields[index] = value;
+                }
+            } while (cursor.tryConsume(','));
+            cursor.expect('}');
+        }
+        cursor.expectEnd();
+        return fields;
+    }
+
+    /**
+     * Maps a JSON key to its column index.
+     *
+     * @param key The key.
+     * @return The column index, or -1 for unknown keys.
+     */
+    private static int columnIndex(String key) {
+        switch (key) {
+            case "studentId": return 0;
+            case "firstName": return 1;
+            case "lastName": return 2;
+            case "email": return 3;
+            case "grade": return 4;
+            case "section": return 5;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Minimal reader over a single line of JSON.
+     */
+    private static class JsonCursor {
+        /** The text being parsed. */
+        private final String text;
+
+        /** Index of the next character to read. */
+        private int position;
+
+        /**
+         * Constructs a cursor at the start of the text.
+         *
+         * @param text The JSON text.
+         */
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Consumes the expected character, skipping whitespace first.
+         *
+         * @param c The expected character.
+         * @throws IllegalArgumentException If a different character follows.
+         */
+        void expect(char c) {
+            if (!tryConsume(c)) {
+                throw new IllegalArgumentException("Invalid JSON: expected '" + c + "' at column " + (position + 1));
+            }
+        }
+
+        /**
+         * Consumes a character if it comes next, skipping whitespace first.
+         *
+         * @param c The character to look for.
+         * @return True if it was consumed.
+         */
+        boolean tryConsume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Checks that only whitespace remains.
+         *
+         * @throws IllegalArgumentException If other characters remain.
+         */
+        void expectEnd() {
+            skipWhitespace();
+            if (position != text.length()) {
+                throw new IllegalArgumentException("Invalid JSON: unexpected text at column " + (position + 1));
+            }
+        }
+
+        /**
+         * Reads a string, number, boolean or null value.
+         *
+         * @return The value as text, or null for a JSON null.
+         * @throws IllegalArgumentException If no scalar value follows.
+         */
+        String readScalar() {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == '"') {
+                return readString();
+            }
+            int start = position;
+            while (position < text.length() && ",}] \t".indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.isEmpty() || literal.startsWith("{") || literal.startsWith("[")) {
+                throw new IllegalArgumentException("Invalid JSON: expected a value at column " + (start + 1));
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        /**
+         * Reads a quoted string, decoding escape sequences.
+         *
+         * @return The decoded string.
+         * @throws IllegalArgumentException If no valid string follows.
+         */
+        String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escape = text.charAt(position++);
+                switch (escape) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Invalid JSON: truncated \\u escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid JSON: bad \\u escape");
+                        }
+                        position += 4;
+                        break;
+                    default: value.append(escape); break;
+                }
+            }
+            throw new IllegalArgumentException("Invalid JSON: unterminated string");
+        }
+
+        /**
+         * Advances past any whitespace.
+         */
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Result of parsing one batch of lines.
+     */
+    private static class ParsedBatch {
+        /** Number of non-blank rows in the batch. */
+        long rowCount;
+
+        /** Successfully parsed students, in file order. */
+        final List<Student> students;
+
+        /** Line number of each parsed student. */
+        final List<Long> studentLines;
+
+        /** Line numbers of rows that failed to parse. */
+        final List<Long> errorLines = new ArrayList<>();
+
+        /** Error message for each failed row. */
+        final List<String> errorMessages = new ArrayList<>();
+
+        /**
+         * Constructs an empty batch.
+         *
+         * @param capacity Expected number of rows.
+         */
+        ParsedBatch(int capacity) {
+            this.students = new ArrayList<>(capacity);
+            this.studentLines = new ArrayList<>(capacity);
+        }
+    }
+}
@@ -1,35 +1,379 @@
-import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Manages the collection of students and handles QR code generation for them.
  * Provides methods to add, remove, find, display students, and generate their QR codes.
  */
 public class StudentManager {
-    /** List that holds all student objects. */
-    private List<Student> students;
+    /** Directory that QR code images are written to. */
+    private static final String OUTPUT_DIRECTORY = "qr_codes";
 
-    /** QR code generator used to create QR images for students. */
-    private QRCodeGenerator qrGenerator;
+    /** Directory that badge sheet pages are written to. */
+    private static final String BADGE_DIRECTORY = "badge_sheets";
+
+    /** Indexed, thread-safe store holding all students. */
+    private final StudentStore students;
+
+    /** QR code generator used to create QR images for students. Created on first use by {@link #generator()}. */
+    private volatile QRCodeGenerator qrGenerator;
+
+    /** Cache of rendered QR codes, used to skip students whose payload has not changed. */
+    private final QRRenderCache renderCache;
+
+    /** Writer that batches QR code files into the sharded output directory. Started by {@link #writer()}. */
+    private volatile ShardedFileWriter fileWriter;
+
+    /** Student version at the last successful QR generation, keyed by student (by identity, or by row for views). */
+    private final Map<Student, Long> generatedVersions;
+
+    /** Persistent roster the students are stored in, or null if students live only in memory. */
+    private final RosterFile roster;
+
+    /**
+     * Serializes moving students from the roster into the store, so a thread that misses
+     * a student another thread is loading waits for it instead of finding neither.
+     */
+    private final Object rosterLoadLock;
+
+    /** Whether the roster file has been closed, so compactions still scheduled must not run. Guarded by rosterLoadLock. */
+    private boolean rosterClosed;
+
+    /** Whether a roster compaction has been scheduled and has not finished yet. */
+    private final AtomicBoolean rosterCompactionScheduled;
+
+    /** Whether bulk runs print a line for every student generated. */
+    private volatile boolean progressLogging;
+
+    /** The bulk generation run in progress, or null. Only one runs at a time, as they share the journal. */
+    private final AtomicReference<BulkGenerationJob> activeJob;
+
+    /** Publishes added, updated and removed students to subscribers. */
+    private final StudentChangeFeed changeFeed;
+
+    /** QR payload of the student a setter on this thread is about to change, while anyone is subscribed. */
+    private final ThreadLocal<String> payloadBeforeChange;
+
+    /** Student {@link #update} is applying changes to on this thread; its setters are recorded in bulk. */
+    private final ThreadLocal<Student> bulkUpdateTarget;
 
     /**
-     * Constructs a new StudentManager with an empty student list and
-     * initializes the QRCodeGenerator instance.
+     * Constructs a new StudentManager with an empty student repository and
+     * initializes the QRCodeGenerator instance. Students are kept in memory only.
      */
     public StudentManager() {
-        this.students = new ArrayList<>();
-        this.qrGenerator = new QRCodeGenerator();
+        this(new StudentRepository(), null);
+    }
+
+    /**
+     * Constructs a new StudentManager that keeps students in memory only, in the given store.
+     *
+     * @param store The empty store to hold students in.
+     */
+    public StudentManager(StudentStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Constructs a new StudentManager backed by a persistent roster file.
+     * Students stored in the file are loaded lazily, the first time they are needed,
+     * and every change is appended to the file.
+     *
+     * @param rosterFileName The roster file to open or create.
+     * @throws IOException If the roster file cannot be opened.
+     */
+    public StudentManager(String rosterFileName) throws IOException {
+        this(new StudentRepository(), new RosterFile(rosterFileName));
+    }
+
+    /**
+     * Constructs a new StudentManager backed by a persistent roster file, holding loaded
+     * students in the given store.
+     *
+     * @param rosterFileName The roster file to open or create.
+     * @param store The empty store to hold loaded students in.
+     * @throws IOException If the roster file cannot be opened.
+     */
+    public StudentManager(String rosterFileName, StudentStore store) throws IOException {
+        this(store, new RosterFile(rosterFileName));
+    }
+
+    /**
+     * Constructs a new StudentManager around a store and an already opened roster.
+     *
+     * @param store The empty store to hold students in.
+     * @param roster The roster to store students in, or null to keep students in memory only.
+     */
+    private StudentManager(StudentStore store, RosterFile roster) {
+        this.students = store;
+        this.renderCache = new QRRenderCache(OUTPUT_DIRECTORY, QRRenderCache.DEFAULT_CAPACITY);
+        this.generatedVersions = new ConcurrentHashMap<>();
+        this.roster = roster;
+        this.rosterLoadLock = new Object();
+        this.rosterCompactionScheduled = new AtomicBoolean();
+        this.progressLogging = true;
+        this.activeJob = new AtomicReference<>();
+        this.changeFeed = new StudentChangeFeed();
+        this.payloadBeforeChange = new ThreadLocal<>();
+        this.bulkUpdateTarget = new ThreadLocal<>();
+        QRMetrics metrics = QRMetrics.global();
+        metrics.gauge("cache.unchanged", renderCache::getManifestHits);
+        metrics.gauge("cache.memoryHits", renderCache::getMemoryHits);
+        metrics.gauge("cache.misses", renderCache::getMisses);
+        metrics.gauge("cache.evictions", renderCache::getEvictions);
+        this.students.addChangeListener(new StudentChangeListener() {
+            @Override
+            public void beforeChange(Student student, StudentField field, Object oldValue, Object newValue) {
+                if (roster != null) {
+                    RosterFile.checkFits(field, newValue);
+                }
+                if (changeFeed.hasSubscribers() && bulkUpdateTarget.get() != student
+                        && !Objects.equals(oldValue, newValue)) {
+                    payloadBeforeChange.set(student.toQRString());
+                } else {
+                    payloadBeforeChange.remove();
+                }
+            }
+
+            @Override
+            public void afterChange(Student student, StudentField field, Object oldValue, Object newValue) {
+                if (bulkUpdateTarget.get() == student) {
+                    return;
+                }
+                deleteRenamedQRCode(student, field, oldValue);
+                persistChange(student, field, oldValue);
+                String oldPayload = payloadBeforeChange.get();
+                if (oldPayload != null) {
+                    payloadBeforeChange.remove();
+                    String previousId = field == StudentField.STUDENT_ID ? (String) oldValue : student.getStudentId();
+                    changeFeed.publish(StudentEvent.updated(student.getStudentId(), previousId, oldPayload,
+                            student.toQRString()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the student store selected by the {@code qr.store} system property:
+     * a {@link ColumnarStudentStore} for {@code columnar}, for rosters too large to keep
+     * as heap objects, and a {@link StudentRepository} otherwise.
+     *
+     * @return A new, empty store.
+     */
+    public static StudentStore createConfiguredStore() {
+        if ("columnar".equalsIgnoreCase(System.getProperty("qr.store"))) {
+            return new ColumnarStudentStore();
+        }
+        return new StudentRepository();
+    }
+
+    /**
+     * Cancels any bulk generation run in progress and waits for it to wind down, writes
+     * out queued QR code files, delivers queued change events and closes their
+     * subscriptions, then flushes and closes the roster file, if there is one.
+     */
+    public void close() {
+        BulkGenerationJob job = activeJob.get();
+        if (job != null) {
+            job.cancel();
+            try {
+                job.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ShardedFileWriter writer = fileWriter;
+        if (writer != null) {
+            writer.close();
+        }
+        changeFeed.close();
+        if (roster == null) {
+            return;
+        }
+        try {
+            synchronized (rosterLoadLock) {
+                if (roster.needsCompaction(students.size())) {
+                    loadAllFromRoster();
+                    compactRosterIfNeeded();
+                }
+                rosterClosed = true;
+                roster.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing roster file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the QR code generator, creating it on first use, so that runs which never
+     * generate a QR code do not load the encoder and imaging classes.
+     *
+     * @return The shared QR code generator.
+     */
+    private QRCodeGenerator generator() {
+        QRCodeGenerator generator = qrGenerator;
+        if (generator == null) {
+            synchronized (this) {
+                generator = qrGenerator;
+                if (generator == null) {
+                    generator = new QRCodeGenerator();
+                    qrGenerator = generator;
+                }
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Gets the file writer, starting its thread on first use.
+     *
+     * @return The shared QR code file writer.
+     */
+    private ShardedFileWriter writer() {
+        ShardedFileWriter writer = fileWriter;
+        if (writer == null) {
+            synchronized (this) {
+                writer = fileWriter;
+                if (writer == null) {
+                    writer = new ShardedFileWriter(ShardedFileWriter.DEFAULT_QUEUE_CAPACITY,
+                            Boolean.getBoolean("qr.fsync"));
+                    fileWriter = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Gets the render cache, for inspecting its hit, miss and eviction counters.
+     *
+     * @return The render cache used for QR generation.
+     */
+    public QRRenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Turns the per-student success lines printed during bulk runs on or off. Failures
+     * are always printed. Either way, output is rate-limited so that printing never
+     * dominates a large run.
+     *
+     * @param enabled True to print a line for every generated QR code.
+     */
+    public void setProgressLogging(boolean enabled) {
+        this.progressLogging = enabled;
+    }
+
+    /**
+     * Subscribes to changes to the roster: students added, updated and removed through
+     * this manager, with their QR payloads before and after. Events are buffered and
+     * handed over in batches on a thread of the subscription's own; see
+     * {@link StudentChangeFeed} for what happens when a subscriber falls behind.
+     * Students loaded lazily from the roster file are not reported as added.
+     *
+     * @param consumer Called with each batch of events, in the order they happened.
+     * @param capacity Most events buffered before further ones are dropped.
+     * @param maxBatch Most events handed over at once.
+     * @return The subscription; close it to stop receiving events.
+     */
+    public StudentChangeFeed.Subscription subscribe(Consumer<List<StudentEvent>> consumer, int capacity,
+                                                    int maxBatch) {
+        return changeFeed.subscribe(consumer, capacity, maxBatch);
     }
 
     /**
      * Adds a student to the collection.
      * 
      * @param student The Student object to add.
+     * @return True if the student was added; false if the student ID is already in use.
      */
-    public void addStudent(Student student) {
-        students.add(student);
+    public boolean addStudent(Student student) {
+        if (findStudentById(student.getStudentId()) != null) {
+            System.out.println("Error: Student with ID " + student.getStudentId() + " already exists!");
+            return false;
+        }
+        if (roster != null) {
+            try {
+                RosterFile.checkFits(student);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: " + e.getMessage());
+                return false;
+            }
+        }
+        if (!students.add(student)) {
+            System.out.println("Error: Student with ID " + student.getStudentId() + " already exists!");
+            return false;
+        }
+        persist(student);
+        if (changeFeed.hasSubscribers()) {
+            changeFeed.publish(StudentEvent.added(student.getStudentId(), student.toQRString()));
+        }
         System.out.println("Student added successfully: " + student.getFullName());
+        return true;
+    }
+
+    /**
+     * Adds a batch of students without printing anything per student. Students whose ID
+     * is already in use, including by an earlier student in the same batch, are rejected.
+     * Accepted students are written to the roster file in a single append and published
+     * to subscribers as one batch of events.
+     *
+     * @param batch The students to add.
+     * @param onRejected Called with each rejected student and the reason; may be null.
+     * @return The number of students added.
+     */
+    public int addAll(List<? extends Student> batch, BiConsumer<Student, String> onRejected) {
+        List<Student> added = new ArrayList<>(batch.size());
+        for (Student student : batch) {
+            String reason = null;
+            if (roster != null) {
+                try {
+                    RosterFile.checkFits(student);
+                } catch (IllegalArgumentException e) {
+                    reason = e.getMessage();
+                }
+            }
+            if (reason == null && (findStudentById(student.getStudentId()) != null || !students.add(student))) {
+                reason = "Duplicate student ID: " + student.getStudentId();
+            }
+            if (reason == null) {
+                added.add(student);
+            } else if (onRejected != null) {
+                onRejected.accept(student, reason);
+            }
+        }
+        if (roster != null && !added.isEmpty()) {
+            try {
+                roster.appendPutAll(added);
+                scheduleRosterCompaction();
+            } catch (IOException e) {
+                System.err.println("Error saving roster: " + e.getMessage());
+            }
+        }
+        if (changeFeed.hasSubscribers() && !added.isEmpty()) {
+            List<StudentEvent> events = new ArrayList<>(added.size());
+            for (Student student : added) {
+                events.add(StudentEvent.added(student.getStudentId(), student.toQRString()));
+            }
+            changeFeed.publishAll(events);
+        }
+        return added.size();
     }
 
     /**
@@ -39,7 +383,139 @@ public class StudentManager {
      * @return True if a student was removed; false otherwise.
      */
     public boolean removeStudent(String studentId) {
-        return students.removeIf(student -> student.getStudentId().equals(studentId));
+        return removeAll(Collections.singletonList(studentId)) == 1;
+    }
+
+    /**
+     * Removes a batch of students by ID. The removals are written to the roster file in
+     * a single append, the students' QR code files are deleted with one update of the
+     * render cache manifest, and subscribers get the removals as one batch of events.
+     * IDs that match no student are ignored.
+     *
+     * @param studentIds The IDs of the students to remove.
+     * @return The number of students removed.
+     */
+    public int removeAll(Collection<String> studentIds) {
+        List<Student> removed = new ArrayList<>(studentIds.size());
+        List<String> removedIds = new ArrayList<>(studentIds.size());
+        for (String studentId : studentIds) {
+            Student current = findStudentById(studentId); // loads a stored student before removing it
+            Student student = students.remove(studentId);
+            if (student != null) {
+                removed.add(student);
+                removedIds.add(studentId);
+                if (current != null) {
+                    generatedVersions.remove(current); // the store may hand back a copy rather than current
+                }
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        if (roster != null) {
+            try {
+                roster.appendRemoveAll(removedIds);
+                scheduleRosterCompaction();
+            } catch (IOException e) {
+                System.err.println("Error saving roster: " + e.getMessage());
+            }
+        }
+        List<String> fileNames = new ArrayList<>(removed.size());
+        for (Student student : removed) {
+            fileNames.add(getQRCodeFileName(student));
+        }
+        deleteQRCodeFiles(fileNames);
+        if (changeFeed.hasSubscribers()) {
+            List<StudentEvent> events = new ArrayList<>(removed.size());
+            for (int i = 0; i < removed.size(); i++) {
+                events.add(StudentEvent.removed(removedIds.get(i), removed.get(i).toQRString()));
+            }
+            changeFeed.publishAll(events);
+        }
+        return removed.size();
+    }
+
+    /**
+     * Applies the same changes to a batch of students. Each student's setters are
+     * applied as usual, including the checks that can veto them, but the results are
+     * recorded once per student rather than once per setter: changed students are
+     * written to the roster file in a single append, QR code files left behind by
+     * renames are deleted with one update of the render cache manifest, and subscribers
+     * get one UPDATED event per changed student, as one batch. Changes made to other
+     * students, or on other threads, while this runs are recorded as usual.
+     *
+     * <p>If the changes throw for a student, for example because a new ID is already in
+     * use, the setters it had already applied are kept and recorded, and the student is
+     * reported as rejected.</p>
+     *
+     * @param studentIds The IDs of the students to change.
+     * @param changes Applies the changes to one student through its setters.
+     * @param onRejected Called with each ID that matched no student or whose changes
+     *                   failed, and the reason; may be null.
+     * @return The number of students that changed.
+     */
+    public int update(Collection<String> studentIds, Consumer<? super Student> changes,
+                      BiConsumer<String, String> onRejected) {
+        boolean publishing = changeFeed.hasSubscribers();
+        List<Student> changed = new ArrayList<>();
+        List<String> renamedIds = new ArrayList<>();
+        List<String> staleFileNames = new ArrayList<>();
+        List<StudentEvent> events = new ArrayList<>();
+        for (String studentId : studentIds) {
+            Student student = findStudentById(studentId);
+            if (student == null) {
+                if (onRejected != null) {
+                    onRejected.accept(studentId, "No student with ID " + studentId);
+                }
+                continue;
+            }
+            long version = student.getVersion();
+            String firstName = student.getFirstName();
+            String lastName = student.getLastName();
+            String oldPayload = publishing ? student.toQRString() : null;
+            bulkUpdateTarget.set(student);
+            try {
+                changes.accept(student);
+            } catch (RuntimeException e) {
+                if (onRejected != null) {
+                    onRejected.accept(studentId, e.getMessage());
+                }
+            } finally {
+                bulkUpdateTarget.remove();
+            }
+            if (student.getVersion() == version) {
+                continue;
+            }
+            changed.add(student);
+            if (!studentId.equals(student.getStudentId())) {
+                renamedIds.add(studentId);
+            }
+            if (!studentId.equals(student.getStudentId()) || !Objects.equals(firstName, student.getFirstName())
+                    || !Objects.equals(lastName, student.getLastName())) {
+                String oldFileName = getQRCodeFileName(studentId, firstName, lastName);
+                if (!oldFileName.equals(getQRCodeFileName(student))) {
+                    staleFileNames.add(oldFileName);
+                }
+            }
+            if (publishing) {
+                events.add(StudentEvent.updated(student.getStudentId(), studentId, oldPayload, student.toQRString()));
+            }
+        }
+        if (roster != null && !changed.isEmpty()) {
+            try {
+                // Removals of old IDs go first, so a student taking over a freed ID is not removed with it
+                if (!renamedIds.isEmpty()) {
+                    roster.appendRemoveAll(renamedIds);
+                }
+                roster.appendPutAll(changed);
+                scheduleRosterCompaction();
+            } catch (IOException e) {
+                System.err.println("Error saving roster: " + e.getMessage());
+            }
+        }
+        deleteQRCodeFiles(staleFileNames);
+        changeFeed.publishAll(events);
+        return changed.size();
     }
 
     /**
@@ -49,19 +525,201 @@ public class StudentManager {
      * @return The Student object if found; null otherwise.
      */
     public Student findStudentById(String studentId) {
-        return students.stream()
-                .filter(student -> student.getStudentId().equals(studentId))
-                .findFirst()
-                .orElse(null);
+        Student student = students.findById(studentId);
+        if (student == null && roster != null) {
+            synchronized (rosterLoadLock) {
+                student = students.findById(studentId);
+                if (student == null) {
+                    Student stored = roster.load(studentId);
+                    if (stored != null) {
+                        students.add(stored);
+                        student = students.findById(studentId);
+                    }
+                }
+            }
+        }
+        return student;
+    }
+
+    /**
+     * Finds all students in a section.
+     *
+     * @param section The section to look up.
+     * @return A read-only view of the students in that section.
+     */
+    public Collection<Student> findStudentsBySection(String section) {
+        loadAllFromRoster();
+        return students.findBySection(section);
+    }
+
+    /**
+     * Finds all students in a grade level.
+     *
+     * @param grade The grade level to look up.
+     * @return A read-only view of the students in that grade level.
+     */
+    public Collection<Student> findStudentsByGrade(GradeLevel grade) {
+        loadAllFromRoster();
+        return students.findByGrade(grade);
+    }
+
+    /**
+     * Streams the students matching a query, in the store's order: the order they were
+     * added, unless the store has placed a new student in the row of a removed one. The
+     * stream is lazy: students are read from the store as it is consumed, so it can be
+     * cut short without touching the rest of the roster.
+     *
+     * @param query The criteria to match.
+     * @return The matching students.
+     */
+    public Stream<Student> queryStudents(StudentQuery query) {
+        loadAllFromRoster();
+        return students.query(query, -1).map(Map.Entry::getValue);
     }
 
     /**
-     * Returns a copy of the list of all students.
+     * Fetches one page of the students matching a query. Pass the cursor of the previous
+     * page to continue after it; students removed between pages neither shift nor repeat
+     * the remaining results. Students added between pages are on a later page, unless
+     * the store has placed them before the cursor.
+     *
+     * @param query The criteria to match.
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @param pageSize Maximum number of students on the page; must be positive.
+     * @return The page, with a cursor for the next one if more students match.
+     * @throws IllegalArgumentException If the cursor is malformed or the page size is not positive.
+     */
+    public QueryPage queryStudents(StudentQuery query, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        long after = -1;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = Long.parseLong(cursor, Character.MAX_RADIX);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            if (after < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+
+        loadAllFromRoster();
+        List<Student> page = new ArrayList<>(Math.min(pageSize, 1024));
+        long last = after;
+        Iterator<Map.Entry<Long, Student>> matches = students.query(query, after).iterator();
+        while (page.size() < pageSize && matches.hasNext()) {
+            Map.Entry<Long, Student> match = matches.next();
+            page.add(match.getValue());
+            last = match.getKey();
+        }
+        String nextCursor = matches.hasNext() ? Long.toString(last, Character.MAX_RADIX) : null;
+        return new QueryPage(page, nextCursor);
+    }
+
+    /**
+     * Returns a copy of the list of all students, in the store's order.
      * 
      * @return A list of all Student objects.
      */
     public List<Student> getAllStudents() {
-        return new ArrayList<>(students);
+        loadAllFromRoster();
+        return students.getAll();
+    }
+
+    /**
+     * Materializes every student still waiting in the roster file.
+     */
+    private void loadAllFromRoster() {
+        if (roster != null && roster.getUnloadedCount() > 0) {
+            synchronized (rosterLoadLock) {
+                for (Student stored : roster.loadAll()) {
+                    students.add(stored);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a student's current state to the roster file, if there is one.
+     *
+     * @param student The student to persist.
+     */
+    private void persist(Student student) {
+        if (roster == null) {
+            return;
+        }
+        try {
+            roster.appendPut(student);
+            scheduleRosterCompaction();
+        } catch (IOException e) {
+            System.err.println("Error saving roster: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records a change to a stored student in the roster file. An ID change is stored
+     * as a removal of the old ID followed by the student under its new ID.
+     *
+     * @param student The student that was modified.
+     * @param field The property that changed.
+     * @param oldValue The previous value of the property.
+     */
+    private void persistChange(Student student, StudentField field, Object oldValue) {
+        if (roster == null) {
+            return;
+        }
+        if (field == StudentField.STUDENT_ID && oldValue != null && !oldValue.equals(student.getStudentId())) {
+            try {
+                roster.appendRemove((String) oldValue);
+            } catch (IOException e) {
+                System.err.println("Error saving roster: " + e.getMessage());
+            }
+        }
+        persist(student);
+    }
+
+    /**
+     * Compacts the roster file on a background thread once enough superseded records have
+     * built up. Changes are persisted while the changed student's monitor is held, and
+     * batches should not wait for a rewrite of the whole file either, so the rewrite is
+     * kept off both paths. At most one compaction is scheduled at a time.
+     */
+    private void scheduleRosterCompaction() {
+        if (!roster.needsCompaction(students.size()) || !rosterCompactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                compactRosterIfNeeded();
+            } catch (IOException e) {
+                System.err.println("Error compacting roster: " + e.getMessage());
+            } finally {
+                rosterCompactionScheduled.set(false);
+            }
+        }, "roster-compaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Rewrites the roster file without superseded records once enough have built up.
+     * Every change reaches the store before its record is appended, so marking the
+     * roster's record count before taking the snapshot of students, and having the
+     * roster carry over the records appended after the mark, keeps changes made during
+     * the compaction. Loading students from the roster is held off meanwhile.
+     *
+     * @throws IOException If the roster file cannot be rewritten.
+     */
+    private void compactRosterIfNeeded() throws IOException {
+        synchronized (rosterLoadLock) {
+            if (rosterClosed || !roster.needsCompaction(students.size())) {
+                return;
+            }
+            long mark = roster.getRecordCount();
+            roster.compact(students.getAll(), mark);
+        }
     }
 
     /**
@@ -78,36 +736,553 @@ public class StudentManager {
             return false;
         }
 
-        BufferedImage qrImage = qrGenerator.generateQRCode(student.toQRString());
-        String fileName = String.format("qr_codes/%s_%s_QR.png",
-                student.getStudentId(),
-                student.getFullName().replaceAll("\\s+", "_"));
+        String fileName = getQRCodeFileName(student);
+        long version = student.getVersion();
+        GenerationResult result = new BulkQRCodeGenerator(generator(), renderCache, writer(), 1, 1, 1)
+                .generateOne(student, fileName);
+        if (result.isSuccess()) {
+            generatedVersions.put(student, version);
+        }
+        if (result.isUnchanged()) {
+            System.out.println("QR code already up to date for " + student.getFullName() + " -> " + fileName);
+        } else {
+            System.out.println(result.isSuccess() ?
+                    "QR code generated successfully for " + student.getFullName() + " -> " + fileName
+                    : "Failed to generate QR code for " + student.getFullName());
+        }
+        return result.isSuccess();
+    }
+
+    /**
+     * Generates several renderings of one student's QR code, such as PNGs at different
+     * resolutions and an SVG, from a single encode. Each file is written next to the
+     * student's regular QR code image, named with the output's suffix.
+     *
+     * @param studentId The ID of the student to generate the QR codes for.
+     * @param outputs The renderings to produce.
+     * @return The paths of the files written; empty if the student was not found or writing failed.
+     */
+    public List<String> generateQRCodeVariants(String studentId, List<QROutput> outputs) {
+        Student student = findStudentById(studentId);
+        if (student == null) {
+            System.out.println("Student not found with ID: " + studentId);
+            return new ArrayList<>();
+        }
+
+        String baseName = getQRCodeFileName(student);
+        baseName = baseName.substring(0, baseName.length() - ".png".length());
+        List<byte[]> rendered;
+        try {
+            rendered = generator().render(student.toQRString(), outputs);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error generating QR code: " + e.getMessage());
+            return new ArrayList<>();
+        }
+
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < outputs.size(); i++) {
+            String fileName = baseName + outputs.get(i).getFileSuffix();
+            if (!writer().writeAndWait(fileName, rendered.get(i))) {
+                return new ArrayList<>();
+            }
+            written.add(fileName);
+        }
+        System.out.println("Generated " + written.size() + " QR code files for " + student.getFullName());
+        return written;
+    }
+
+    /**
+     * Builds the output file path for a student's QR code image, inside the shard of
+     * the output directory that its file name hashes to.
+     *
+     * @param student The student whose QR code file name is needed.
+     * @return The relative path of the student's QR code PNG file.
+     */
+    public String getQRCodeFileName(Student student) {
+        return getQRCodeFileName(student.getStudentId(), student.getFirstName(), student.getLastName());
+    }
+
+    /**
+     * Builds the output file path for a QR code image from the parts of a student's identity.
+     *
+     * @param studentId The student ID.
+     * @param firstName The student's first name.
+     * @param lastName The student's last name.
+     * @return The relative path of the QR code PNG file.
+     */
+    private static String getQRCodeFileName(String studentId, String firstName, String lastName) {
+        return ShardedFileWriter.shardedPath(OUTPUT_DIRECTORY, getQRCodeEntryName(studentId, firstName, lastName));
+    }
+
+    /**
+     * Builds the name of a student's QR code image inside an archive. This is the same
+     * name used for the individual file, without the output directory.
+     *
+     * @param student The student whose QR code entry name is needed.
+     * @return The archive entry name of the student's QR code PNG.
+     */
+    public String getQRCodeEntryName(Student student) {
+        return getQRCodeEntryName(student.getStudentId(), student.getFirstName(), student.getLastName());
+    }
+
+    /**
+     * Builds the QR code image name from the parts of a student's identity.
+     *
+     * @param studentId The student ID.
+     * @param firstName The student's first name.
+     * @param lastName The student's last name.
+     * @return The QR code PNG name, without a directory.
+     */
+    private static String getQRCodeEntryName(String studentId, String firstName, String lastName) {
+        return String.format("%s_%s_QR.png",
+                studentId,
+                (firstName + " " + lastName).replaceAll("\\s+", "_"));
+    }
+
+    /**
+     * Deletes a student's previous QR code file after a change to their ID or name
+     * moved the output to a different file name.
+     *
+     * @param student The student that was modified.
+     * @param field The property that changed.
+     * @param oldValue The previous value of the property.
+     */
+    private void deleteRenamedQRCode(Student student, StudentField field, Object oldValue) {
+        String oldFileName;
+        switch (field) {
+            case STUDENT_ID:
+                oldFileName = getQRCodeFileName((String) oldValue, student.getFirstName(), student.getLastName());
+                break;
+            case FIRST_NAME:
+                oldFileName = getQRCodeFileName(student.getStudentId(), (String) oldValue, student.getLastName());
+                break;
+            case LAST_NAME:
+                oldFileName = getQRCodeFileName(student.getStudentId(), student.getFirstName(), (String) oldValue);
+                break;
+            default:
+                return;
+        }
+        if (!oldFileName.equals(getQRCodeFileName(student))) {
+            deleteQRCodeFile(oldFileName);
+        }
+    }
+
+    /**
+     * Deletes a QR code file if it exists and drops it from the render cache manifest.
+     *
+     * @param fileName The QR code file to delete.
+     */
+    private void deleteQRCodeFile(String fileName) {
+        deleteQRCodeFiles(Collections.singletonList(fileName));
+    }
 
-        boolean success = qrGenerator.saveQRCode(qrImage, fileName);
-        System.out.println(success ?
-                "QR code generated successfully for " + student.getFullName() + " -> " + fileName
-                : "Failed to generate QR code for " + student.getFullName());
-        return success;
+    /**
+     * Deletes QR code files that exist and drops them from the render cache manifest,
+     * saving the manifest once.
+     *
+     * @param fileNames The QR code files to delete.
+     */
+    private void deleteQRCodeFiles(List<String> fileNames) {
+        if (fileNames.isEmpty()) {
+            return;
+        }
+        for (String fileName : fileNames) {
+            try {
+                Files.deleteIfExists(Paths.get(fileName));
+            } catch (IOException e) {
+                System.err.println("Error deleting stale QR code: " + e.getMessage());
+            }
+            renderCache.forget(fileName);
+        }
+        renderCache.flush();
     }
 
     /**
      * Generates QR code images for all students in the collection.
-     * Provides a summary of how many codes were successfully generated.
+     * Provides a summary of how many codes were successfully generated and how many
+     * were shared between students with identical payloads.
+     * Uses the bulk pipeline with default parallelism. Students whose QR payload
+     * has not changed since their file was last written are skipped.
      */
     public void generateQRCodesForAllStudents() {
-        if (students.isEmpty()) {
+        generateQRCodesForAllStudents(BulkQRCodeGenerator.DEFAULT_RENDER_THREADS,
+                BulkQRCodeGenerator.DEFAULT_IO_THREADS,
+                BulkQRCodeGenerator.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Generates QR code images for all students using a parallel render/write pipeline.
+     * Cell matrices are computed on one pool and PNG encoding and writing run on another; at most
+     * {@code maxInFlight} students are held between the two stages at any time.
+     *
+     * @param renderThreads Number of threads used to render QR images.
+     * @param ioThreads Number of threads used to encode and write QR images.
+     * @param maxInFlight Maximum number of rendered matrices waiting to be written.
+     * @return One result per student, in roster order.
+     */
+    public List<GenerationResult> generateQRCodesForAllStudents(int renderThreads, int ioThreads, int maxInFlight) {
+        List<Student> snapshot = getAllStudents();
+        if (snapshot.isEmpty()) {
             System.out.println("No students available to generate QR codes.");
-            return;
+            return new ArrayList<>();
         }
 
         System.out.println("Generating QR codes for all students...");
+        return generateQRCodes(snapshot, "all students", renderThreads, ioThreads, maxInFlight);
+    }
+
+    /**
+     * Starts generating QR code images for the students matching a query on a
+     * background thread and returns at once. The run uses the bulk pipeline with default
+     * parallelism and checkpoints finished students, so if the process dies, the next
+     * run skips the students this one already wrote. Only one run can be in progress.
+     *
+     * @param query The criteria selecting the students; {@link StudentQuery#all()} for everyone.
+     * @return A handle for following and cancelling the run, or null if another run is in progress.
+     */
+    public BulkGenerationJob startQRCodeGeneration(StudentQuery query) {
+        List<Student> targets = queryStudents(query).collect(Collectors.toList());
+        BulkGenerationJob job = new BulkGenerationJob(query.toString(), targets.size());
+        if (!activeJob.compareAndSet(null, job)) {
+            System.out.println("A bulk generation job is already running: " + activeJob.get());
+            return null;
+        }
+        Thread thread = new Thread(() -> runJob(job, targets, BulkQRCodeGenerator.DEFAULT_RENDER_THREADS,
+                BulkQRCodeGenerator.DEFAULT_IO_THREADS, BulkQRCodeGenerator.DEFAULT_MAX_IN_FLIGHT), "qr-bulk-job");
+        thread.setDaemon(true);
+        thread.start();
+        return job;
+    }
+
+    /**
+     * Gets the bulk generation run in progress.
+     *
+     * @return The run, or null if none is in progress.
+     */
+    public BulkGenerationJob getActiveJob() {
+        return activeJob.get();
+    }
+
+    /**
+     * Generates QR code images for the students matching a query, such as every
+     * {@code GRADE_12} student in section B, using the bulk pipeline with default
+     * parallelism. Students whose QR payload has not changed since their file was last
+     * written are skipped.
+     *
+     * @param query The criteria selecting the students.
+     * @return One result per matching student, in roster order.
+     */
+    public List<GenerationResult> generateQRCodesForQuery(StudentQuery query) {
+        List<Student> matches = queryStudents(query).collect(Collectors.toList());
+        if (matches.isEmpty()) {
+            System.out.println("No students match " + query + ".");
+            return new ArrayList<>();
+        }
+
+        System.out.println("Generating QR codes for " + matches.size() + " students (" + query + ")...");
+        return generateQRCodes(matches, query.toString(), BulkQRCodeGenerator.DEFAULT_RENDER_THREADS,
+                BulkQRCodeGenerator.DEFAULT_IO_THREADS, BulkQRCodeGenerator.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Generates QR code images only for students added or modified since their QR code
+     * was last generated successfully. Uses the bulk pipeline with default parallelism.
+     *
+     * @return One result per regenerated student, in roster order.
+     */
+    public List<GenerationResult> generateQRCodesForChangedStudents() {
+        List<Student> changed = new ArrayList<>();
+        for (Student student : getAllStudents()) {
+            Long generated = generatedVersions.get(student);
+            if (generated == null || generated != student.getVersion()) {
+                changed.add(student);
+            }
+        }
+        if (changed.isEmpty()) {
+            System.out.println("All QR codes are up to date.");
+            return new ArrayList<>();
+        }
+
+        System.out.println("Generating QR codes for " + changed.size() + " changed students...");
+        return generateQRCodes(changed, "changed students", BulkQRCodeGenerator.DEFAULT_RENDER_THREADS,
+                BulkQRCodeGenerator.DEFAULT_IO_THREADS, BulkQRCodeGenerator.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Runs the bulk pipeline over the given students on the calling thread, unless
+     * another run is in progress.
+     *
+     * @param targets The students to generate QR codes for.
+     * @param description What the run generates, for display.
+     * @param renderThreads Number of threads used to render QR images.
+     * @param ioThreads Number of threads used to encode and write QR images.
+     * @param maxInFlight Maximum number of rendered matrices waiting to be written.
+     * @return One result per student, in the order given; empty if another run is in progress.
+     */
+    private List<GenerationResult> generateQRCodes(List<Student> targets, String description, int renderThreads,
+                                                   int ioThreads, int maxInFlight) {
+        BulkGenerationJob job = new BulkGenerationJob(description, targets.size());
+        if (!activeJob.compareAndSet(null, job)) {
+            System.out.println("A bulk generation job is already running: " + activeJob.get());
+            return new ArrayList<>();
+        }
+        return runJob(job, targets, renderThreads, ioThreads, maxInFlight);
+    }
+
+    /**
+     * Runs a bulk generation job and publishes its results. Always finishes the job and
+     * clears it as the active one, even if the run fails.
+     *
+     * @param job The job to run; must already be the active job.
+     * @param targets The students to generate QR codes for.
+     * @param renderThreads Number of threads used to render QR images.
+     * @param ioThreads Number of threads used to encode and write QR images.
+     * @param maxInFlight Maximum number of rendered matrices waiting to be written.
+     * @return One result per student, in the order given.
+     */
+    private List<GenerationResult> runJob(BulkGenerationJob job, List<Student> targets, int renderThreads,
+                                          int ioThreads, int maxInFlight) {
+        List<GenerationResult> results = new ArrayList<>(Collections.nCopies(targets.size(), null));
+        try {
+            generateQRCodes(job, targets, results, renderThreads, ioThreads, maxInFlight);
+        } finally {
+            activeJob.compareAndSet(job, null);
+            job.finish(Collections.unmodifiableList(results));
+        }
+        return results;
+    }
+
+    /**
+     * Runs the bulk pipeline for a job, prints a summary and remembers which student
+     * versions were generated successfully. Students the journal shows an interrupted
+     * earlier run already wrote, with the same payload, are skipped; students written by
+     * this run are added to the journal, which is deleted once the run completes without
+     * being cancelled.
+     *
+     * @param job The job being run.
+     * @param targets The students to generate QR codes for.
+     * @param results Receives one result per student, in the order given.
+     * @param renderThreads Number of threads used to render QR images.
+     * @param ioThreads Number of threads used to encode and write QR images.
+     * @param maxInFlight Maximum number of rendered matrices waiting to be written.
+     */
+    private void generateQRCodes(BulkGenerationJob job, List<Student> targets, List<GenerationResult> results,
+                                 int renderThreads, int ioThreads, int maxInFlight) {
+        long[] versions = new long[targets.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = targets.get(i).getVersion();
+        }
+
+        GenerationJournal journal;
+        try {
+            journal = new GenerationJournal(OUTPUT_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("Error reading generation journal, not resuming: " + e.getMessage());
+            journal = null;
+        }
+        List<Student> pending = new ArrayList<>(targets.size());
+        int[] pendingIndex = new int[targets.size()];
+        String signature = generator().getOutputSignature();
+        for (int i = 0; i < targets.size(); i++) {
+            Student student = targets.get(i);
+            if (journal != null && journal.contains(student.getStudentId())) {
+                String fileName = getQRCodeFileName(student);
+                String digest = QRRenderCache.digest(signature, student.toQRString());
+                if (journal.isCompleted(student.getStudentId(), digest) && Files.exists(Paths.get(fileName))) {
+                    renderCache.record(fileName, digest);
+                    results.set(i, GenerationResult.unchanged(student.getStudentId(), fileName, digest));
+                    continue;
+                }
+            }
+            pendingIndex[pending.size()] = i;
+            pending.add(student);
+        }
+        int resumed = targets.size() - pending.size();
+        if (resumed > 0) {
+            System.out.println("Resuming: " + resumed + " students were already generated by an interrupted run.");
+        }
+        job.start(resumed);
+
+        BulkQRCodeGenerator bulkGenerator = new BulkQRCodeGenerator(generator(), renderCache, writer(),
+                renderThreads, ioThreads, maxInFlight);
+        RateLimitedLog log = new RateLimitedLog();
+        boolean logSuccesses = progressLogging;
+        GenerationJournal checkpoints = journal;
+        List<GenerationResult> generated = bulkGenerator.generate(pending, this::getQRCodeFileName, result -> {
+            job.record(result);
+            if (!result.isSuccess()) {
+                log.log("Failed to generate QR code for " + result.getStudentId() + ": " + result.getErrorMessage());
+                return;
+            }
+            if (checkpoints != null && result.getDigest() != null) {
+                checkpoints.record(result.getStudentId(), result.getDigest());
+            }
+            if (logSuccesses && !result.isUnchanged()) {
+                log.log("QR code generated successfully for " + result.getStudentId() + " -> " + result.getFileName());
+            }
+        }, job::isCancelled);
+        log.finish();
+        for (int i = 0; i < generated.size(); i++) {
+            results.set(pendingIndex[i], generated.get(i));
+        }
+        renderCache.flush();
+        if (journal != null) {
+            if (job.isCancelled()) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing generation journal: " + e.getMessage());
+                }
+            } else {
+                journal.delete();
+            }
+        }
+
+        int successCount = 0;
+        int unchangedCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            GenerationResult result = results.get(i);
+            if (result.isSuccess()) {
+                successCount++;
+                Student student = targets.get(i);
+                if (student.equals(students.findById(student.getStudentId()))) {
+                    generatedVersions.put(student, versions[i]);
+                }
+            }
+            if (result.isUnchanged()) {
+                unchangedCount++;
+            }
+        }
+        System.out.printf("Successfully generated %d out of %d QR codes (%d unchanged).\n",
+                successCount, results.size(), unchangedCount);
+        System.out.printf("Deduplicated %d QR codes with identical payloads (dedup ratio %.2f).\n",
+                bulkGenerator.getSharedImages(), bulkGenerator.getDeduplicationRatio());
+        if (job.isCancelled()) {
+            System.out.println("Generation was cancelled; the next run resumes where it stopped.");
+        }
+        System.out.println(renderCache);
+    }
+
+    /**
+     * Generates QR code images for all students into a single archive, or a series of
+     * numbered volumes, instead of one file per student. Each image is stored under the
+     * same name it would have in the output directory, and the archive ends with a
+     * manifest of all entries.
+     *
+     * @param archivePath Path of the archive to create; the format's extension is added if missing.
+     * @param format The archive format.
+     * @param volumeSize Maximum bytes per volume, or 0 to write a single archive.
+     * @return One result per student, in roster order; empty if the archive could not be written.
+     */
+    public List<GenerationResult> generateQRCodeArchive(String archivePath, QRArchiveWriter.Format format,
+                                                        long volumeSize) {
+        List<Student> snapshot = getAllStudents();
+        if (snapshot.isEmpty()) {
+            System.out.println("No students available to generate QR codes.");
+            return new ArrayList<>();
+        }
+
+        System.out.println("Generating QR code archive for all students...");
+        QRArchiveWriter archive = new QRArchiveWriter(archivePath, format, volumeSize);
+        RateLimitedLog log = new RateLimitedLog();
+        List<GenerationResult> results = writeQRCodeArchive(snapshot, archive, result -> {
+            if (!result.isSuccess()) {
+                log.log("Failed to generate QR code for " + result.getStudentId() + ": " + result.getErrorMessage());
+            }
+        });
+        log.finish();
+        try {
+            archive.close();
+        } catch (IOException e) {
+            System.err.println("Error writing QR code archive: " + e.getMessage());
+            return new ArrayList<>();
+        }
+
         int successCount = 0;
-        for (Student student : students) {
-            if (generateQRCodeForStudent(student.getStudentId())) {
+        for (GenerationResult result : results) {
+            if (result.isSuccess()) {
                 successCount++;
             }
         }
-        System.out.printf("Successfully generated %d out of %d QR codes.\n", successCount, students.size());
+        System.out.printf("Archived %d out of %d QR codes into %d volume(s):\n",
+                successCount, results.size(), archive.getVolumes().size());
+        for (Path volume : archive.getVolumes()) {
+            System.out.println("  " + volume);
+        }
+        return results;
+    }
+
+    /**
+     * Writes the QR codes of the given students into an archive using the bulk pipeline
+     * and the render cache. The archive is left open for the caller to close.
+     *
+     * @param targets The students to include.
+     * @param archive The archive to append the images to.
+     * @param listener Called once per student as soon as its outcome is known; may be null.
+     * @return One result per student, in the order given.
+     */
+    public List<GenerationResult> writeQRCodeArchive(List<Student> targets, QRArchiveWriter archive,
+                                                     Consumer<GenerationResult> listener) {
+        BulkQRCodeGenerator bulkGenerator = new BulkQRCodeGenerator(generator(), renderCache,
+                BulkQRCodeGenerator.DEFAULT_RENDER_THREADS, BulkQRCodeGenerator.DEFAULT_IO_THREADS,
+                BulkQRCodeGenerator.DEFAULT_MAX_IN_FLIGHT);
+        return bulkGenerator.generateToArchive(targets, this::getQRCodeEntryName, archive, listener);
+    }
+
+    /**
+     * Computes the digest identifying a student's current QR code image. It changes
+     * whenever the payload or the generator settings change, so it can serve as a
+     * cache validator.
+     *
+     * @param student The student.
+     * @return The hex digest of the student's QR code.
+     */
+    public String getQRCodeDigest(Student student) {
+        return QRRenderCache.digest(generator().getOutputSignature(), student.toQRString());
+    }
+
+    /**
+     * Gets a student's QR code as PNG bytes, taken from the render cache when possible
+     * and added to it otherwise. Nothing is written to disk.
+     *
+     * @param student The student.
+     * @param digest The digest from {@link #getQRCodeDigest(Student)}.
+     * @return The complete PNG file contents.
+     * @throws IllegalArgumentException If the payload is too long for a QR code.
+     */
+    public byte[] getQRCodePng(Student student, String digest) {
+        byte[] png = renderCache.getImage(digest);
+        if (png == null) {
+            QRCodeGenerator generator = generator();
+            png = generator.toPngBytes(generator.encode(student.toQRString()));
+            renderCache.putImage(digest, png);
+        }
+        return png;
+    }
+
+    /**
+     * Renders printable badge sheets for all students, one group of pages per section or
+     * grade level, into the badge sheet directory.
+     *
+     * @param grouping How students are grouped onto pages.
+     * @return The paths of the pages written; empty if there are no students or writing failed.
+     */
+    public List<Path> generateBadgeSheets(BadgeSheetRenderer.Grouping grouping) {
+        List<Student> snapshot = getAllStudents();
+        if (snapshot.isEmpty()) {
+            System.out.println("No students available to print badges for.");
+            return new ArrayList<>();
+        }
+
+        System.out.println("Rendering badge sheets by " + grouping.name().toLowerCase() + "...");
+        try {
+            List<Path> pages = new BadgeSheetRenderer(generator()).renderSheets(snapshot, grouping, BADGE_DIRECTORY);
+            System.out.printf("Rendered %d badges on %d pages in %s.\n", snapshot.size(), pages.size(), BADGE_DIRECTORY);
+            return pages;
+        } catch (IOException e) {
+            System.err.println("Error writing badge sheets: " + e.getMessage());
+            return new ArrayList<>();
+        }
     }
 
     /**
@@ -115,14 +1290,15 @@ public class StudentManager {
      * Prints a formatted list to the console.
      */
     public void displayAllStudents() {
-        if (students.isEmpty()) {
+        Iterator<Student> all = queryStudents(StudentQuery.all()).iterator();
+        if (!all.hasNext()) {
             System.out.println("No students registered.");
             return;
         }
 
         System.out.println("\n=== All Students ===");
-        for (int i = 0; i < students.size(); i++) {
-            System.out.printf("%d. %s\n", i + 1, students.get(i));
+        for (int i = 1; all.hasNext(); i++) {
+            System.out.printf("%d. %s\n", i, all.next());
         }
         System.out.println("==================\n");
     }
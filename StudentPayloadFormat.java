@@ -0,0 +1,80 @@
+/**
+ * The standard QR payload layout: a type label on the first line, followed by
+ * one {@code Key: value} line for each student property.
+ *
+ * <pre>
+ * College Student
+ * ID: 2024-001
+ * Name: Jane Doe
+ * Email: jane@example.com
+ * Grade: COLLEGE_FRESHMAN
+ * Section: A
+ * </pre>
+ */
+public class StudentPayloadFormat implements QRPayloadFormat {
+    /** Per-thread builder reused by {@link #toText(Student)}. */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /** The label written on the first line. */
+    private final String label;
+
+    /** The tag identifying this format in binary payloads. */
+    private final int typeTag;
+
+    /**
+     * Constructs a StudentPayloadFormat.
+     *
+     * @param label The label written on the first line, e.g. "College Student".
+     * @param typeTag The tag identifying this format in binary payloads, from 0 to 255.
+     * @throws IllegalArgumentException If the tag is out of range.
+     */
+    public StudentPayloadFormat(String label, int typeTag) {
+        if (typeTag < 0 || typeTag > 255) {
+            throw new IllegalArgumentException("Type tag must be between 0 and 255");
+        }
+        this.label = label;
+        this.typeTag = typeTag;
+    }
+
+    /**
+     * Gets the label.
+     * @return The label written on the first line.
+     */
+    public String getLabel() { return label; }
+
+    /**
+     * Gets the binary type tag.
+     * @return The tag identifying this format.
+     */
+    @Override
+    public int getTypeTag() { return typeTag; }
+
+    /**
+     * Appends the text payload for a student.
+     *
+     * @param student The student to serialize.
+     * @param out The buffer to append to.
+     */
+    @Override
+    public void appendText(Student student, StringBuilder out) {
+        out.append(label)
+                .append("\nID: ").append(student.getStudentId())
+                .append("\nName: ").append(student.getFirstName()).append(' ').append(student.getLastName())
+                .append("\nEmail: ").append(student.getEmail())
+                .append("\nGrade: ").append(student.getGrade())
+                .append("\nSection: ").append(student.getSection());
+    }
+
+    /**
+     * Serializes a student to its text payload using a reused per-thread buffer.
+     *
+     * @param student The student to serialize.
+     * @return The text payload.
+     */
+    public String toText(Student student) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        appendText(student, buffer);
+        return buffer.toString();
+    }
+}
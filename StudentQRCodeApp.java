@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.Scanner;
 
 /**
@@ -5,6 +6,12 @@ import java.util.Scanner;
  * Provides a console-based menu for user interaction.
  */
 public class StudentQRCodeApp {
+    /** File the student roster is persisted to between runs. */
+    static final String ROSTER_FILE = "students.roster";
+
+    /** Number of students listed at a time by the search option. */
+    private static final int SEARCH_PAGE_SIZE = 20;
+
     /** Manages student records and QR code generation. */
     private StudentManager studentManager;
 
@@ -13,10 +20,28 @@ public class StudentQRCodeApp {
 
     /**
      * Constructs a new StudentQRCodeApp instance.
-     * Initializes the StudentManager and Scanner.
+     * Initializes the StudentManager and Scanner. Students are loaded from and saved to
+     * the default roster file; if it cannot be opened, students are kept in memory only.
      */
     public StudentQRCodeApp() {
-        this.studentManager = new StudentManager();
+        this(ROSTER_FILE);
+    }
+
+    /**
+     * Constructs a new StudentQRCodeApp instance working on a given roster file.
+     * If the file cannot be opened, students are kept in memory only.
+     *
+     * @param rosterFile The roster file to open or create.
+     */
+    public StudentQRCodeApp(String rosterFile) {
+        StudentManager manager;
+        try {
+            manager = new StudentManager(rosterFile, StudentManager.createConfiguredStore());
+        } catch (IOException e) {
+            System.err.println("Could not open roster file, students will not be saved: " + e.getMessage());
+            manager = new StudentManager(StudentManager.createConfiguredStore());
+        }
+        this.studentManager = manager;
         this.scanner = new Scanner(System.in);
     }
 
@@ -29,9 +54,16 @@ public class StudentQRCodeApp {
         System.out.println("2. View All Students");
         System.out.println("3. Generate QR Code for Single Student");
         System.out.println("4. Generate QR Codes for All Students");
-        System.out.println("5. Remove Student");
-        System.out.println("6. Exit");
-        System.out.print("Choose an option (1-6): ");
+        System.out.println("5. Generate QR Codes for Changed Students");
+        System.out.println("6. Remove Student");
+        System.out.println("7. Import Students from File");
+        System.out.println("8. Export QR Codes to Archive");
+        System.out.println("9. Print Badge Sheets");
+        System.out.println("10. Show Metrics");
+        System.out.println("11. Search Students");
+        System.out.println("12. Bulk Job Status / Cancel");
+        System.out.println("13. Exit");
+        System.out.print("Choose an option (1-13): ");
     }
 
     /**
@@ -68,13 +100,7 @@ public class StudentQRCodeApp {
         int gradeChoice = Integer.parseInt(scanner.nextLine().trim());
         GradeLevel grade = values[gradeChoice - 1];
 
-        Student student;
-        if (grade.name().startsWith("COLLEGE")) {
-            student = new CollegeStudent(studentId, firstName, lastName, email, grade, section);
-        } else {
-            student = new HighSchoolStudent(studentId, firstName, lastName, email, grade, section);
-        }
-
+        Student student = StudentFactory.create(studentId, firstName, lastName, email, grade, section);
         studentManager.addStudent(student);
     }
 
@@ -101,11 +127,169 @@ public class StudentQRCodeApp {
         }
     }
 
+    /**
+     * Prompts the user for a CSV or JSON-lines file and imports the students in it.
+     */
+    private void importStudents() {
+        System.out.print("\nEnter path of CSV or JSON-lines file to import: ");
+        String fileName = scanner.nextLine().trim();
+
+        try {
+            ImportReport report = new StudentImporter(studentManager)
+                    .importFile(fileName, StudentImporter.detectFormat(fileName));
+            for (String error : report.getErrors()) {
+                System.out.println("  " + error);
+            }
+            if (report.getErrorCount() > report.getErrors().size()) {
+                System.out.println("  ... and " + (report.getErrorCount() - report.getErrors().size()) + " more errors");
+            }
+            System.out.println(report + ".");
+        } catch (IOException e) {
+            System.err.println("Error reading import file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prompts the user for an archive path and volume size and writes all QR codes into
+     * a ZIP or TAR archive. The format is taken from the file extension, defaulting to ZIP.
+     */
+    private void exportArchive() {
+        System.out.print("\nEnter archive path (.zip or .tar): ");
+        String archivePath = scanner.nextLine().trim();
+        QRArchiveWriter.Format format = archivePath.toLowerCase().endsWith(".tar")
+                ? QRArchiveWriter.Format.TAR
+                : QRArchiveWriter.Format.ZIP;
+
+        System.out.print("Enter volume size in MB (blank for a single archive): ");
+        String volumeInput = scanner.nextLine().trim();
+        long volumeSize = 0;
+        if (!volumeInput.isEmpty()) {
+            try {
+                volumeSize = Long.parseLong(volumeInput) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid volume size: " + volumeInput);
+                return;
+            }
+            if (volumeSize < 0) {
+                System.out.println("Invalid volume size: " + volumeInput);
+                return;
+            }
+        }
+        studentManager.generateQRCodeArchive(archivePath, format, volumeSize);
+    }
+
+    /**
+     * Asks whether to group badges by section or grade level and renders the badge sheets.
+     */
+    private void printBadgeSheets() {
+        System.out.print("\nGroup badges by (1) section or (2) grade level: ");
+        String choice = scanner.nextLine().trim();
+        BadgeSheetRenderer.Grouping grouping;
+        if (choice.equals("1")) {
+            grouping = BadgeSheetRenderer.Grouping.SECTION;
+        } else if (choice.equals("2")) {
+            grouping = BadgeSheetRenderer.Grouping.GRADE;
+        } else {
+            System.out.println("Invalid option: " + choice);
+            return;
+        }
+        studentManager.generateBadgeSheets(grouping);
+    }
+
+    /**
+     * Prompts for search criteria, pages through the matching students and offers to
+     * generate QR codes for all of them. Blank answers match every student.
+     */
+    private void searchStudents() {
+        StudentQuery query = StudentQuery.all();
+        try {
+            System.out.print("\nSection (blank for any): ");
+            String section = scanner.nextLine().trim();
+            if (!section.isEmpty()) {
+                query = query.inSection(section);
+            }
+            System.out.print("Grade level name or number (blank for any): ");
+            String grade = scanner.nextLine().trim();
+            if (!grade.isEmpty()) {
+                query = query.inGrade(GradeLevel.parse(grade));
+            }
+            System.out.print("Type, college or highschool (blank for any): ");
+            String type = scanner.nextLine().trim();
+            if (!type.isEmpty()) {
+                query = query.ofType(StudentQuery.parseType(type));
+            }
+            System.out.print("First or last name starts with (blank for any): ");
+            query = query.withNamePrefix(scanner.nextLine());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        System.out.println("\n=== Students matching " + query + " ===");
+        QueryPage page = studentManager.queryStudents(query, null, SEARCH_PAGE_SIZE);
+        int shown = 0;
+        while (true) {
+            for (Student student : page.getStudents()) {
+                System.out.printf("%d. %s\n", ++shown, student);
+            }
+            if (!page.hasMore()) {
+                break;
+            }
+            System.out.print("Press Enter for more, or q to stop listing: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                break;
+            }
+            page = studentManager.queryStudents(query, page.getNextCursor(), SEARCH_PAGE_SIZE);
+        }
+        if (shown == 0) {
+            System.out.println("No students match.");
+            return;
+        }
+
+        System.out.print("Generate QR codes for all matching students? (y/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            startBulkJob(query);
+        }
+    }
+
+    /**
+     * Starts generating QR codes for the students matching a query in the background,
+     * so the menu stays usable while the job runs.
+     *
+     * @param query The criteria selecting the students.
+     */
+    private void startBulkJob(StudentQuery query) {
+        BulkGenerationJob job = studentManager.startQRCodeGeneration(query);
+        if (job != null) {
+            System.out.println("Started generating QR codes for " + job.getTotal()
+                    + " students in the background. Choose option 12 to follow or cancel it.");
+        }
+    }
+
+    /**
+     * Shows the progress of the bulk job in progress and offers to cancel it.
+     */
+    private void showBulkJob() {
+        BulkGenerationJob job = studentManager.getActiveJob();
+        if (job == null) {
+            System.out.println("No bulk job is running.");
+            return;
+        }
+        System.out.println("\n" + job);
+        System.out.print("Cancel this job? (y/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            job.cancel();
+            System.out.println("Cancelling; students already in progress will finish first.");
+        }
+    }
+
     /**
      * Runs the main application loop, displaying the menu and handling user input.
      */
     public void run() {
         System.out.println("Welcome to Student QR Code Generator!");
+        QRMetrics.global().registerMBean();
+        QRMetrics.global().startConfiguredReporter();
 
         while (true) {
             displayMenu();
@@ -115,23 +299,45 @@ public class StudentQRCodeApp {
                 case "1": addStudentInteractive(); break;
                 case "2": studentManager.displayAllStudents(); break;
                 case "3": generateSingleQRCode(); break;
-                case "4": studentManager.generateQRCodesForAllStudents(); break;
-                case "5": removeStudent(); break;
-                case "6":
+                case "4": startBulkJob(StudentQuery.all()); break;
+                case "5": studentManager.generateQRCodesForChangedStudents(); break;
+                case "6": removeStudent(); break;
+                case "7": importStudents(); break;
+                case "8": exportArchive(); break;
+                case "9": printBadgeSheets(); break;
+                case "10": System.out.print("\n" + QRMetrics.global().toText()); break;
+                case "11": searchStudents(); break;
+                case "12": showBulkJob(); break;
+                case "13":
+                    studentManager.close();
                     System.out.println("Thank you for using Student QR Code Generator!");
                     return;
                 default:
-                    System.out.println("Invalid option. Please choose 1-6.");
+                    System.out.println("Invalid option. Please choose 1-13.");
             }
         }
     }
 
     /**
-     * Application entry point.
-     * 
-     * @param args Command-line arguments (not used).
+     * Application entry point. With a command, runs it as a single command through
+     * {@link StudentCommandLine} and exits with its status; otherwise starts the menu,
+     * on the roster file given with {@code --roster <file>} if there is one.
+     * The application never opens a window, so AWT runs headless unless told otherwise.
+     *
+     * @param args Optional {@code --roster <file>}, then a command and its arguments,
+     *             or no command for the interactive menu.
      */
     public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        if (args.length == 2 && args[0].equals("--roster")) {
+            new StudentQRCodeApp(args[1]).run();
+            return;
+        }
+        if (args.length > 0) {
+            System.exit(StudentCommandLine.run(args));
+        }
         new StudentQRCodeApp().run();
     }
 }
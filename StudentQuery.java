@@ -0,0 +1,209 @@
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable filter over the students in a {@link StudentStore}: by section, grade
+ * level, subtype and name prefix. Unset criteria match every student.
+ *
+ * <p>Queries are built by narrowing {@link #all()}, for example
+ * {@code StudentQuery.all().inGrade(GradeLevel.GRADE_12).inSection("B")}. Stores use the
+ * section or grade index to find candidates and test the remaining criteria with
+ * {@link #matches(Student)}.</p>
+ */
+public class StudentQuery {
+    /** The query matching every student. */
+    private static final StudentQuery ALL = new StudentQuery(null, null, null, null);
+
+    /** Section to match, or null for any. */
+    private final String section;
+
+    /** Grade level to match, or null for any. */
+    private final GradeLevel grade;
+
+    /** Student subtype to match, or null for any. */
+    private final Class<? extends Student> type;
+
+    /** Prefix of the first or last name to match, ignoring case, or null for any. */
+    private final String namePrefix;
+
+    /**
+     * Constructs a query.
+     *
+     * @param section Section to match, or null for any.
+     * @param grade Grade level to match, or null for any.
+     * @param type Student subtype to match, or null for any.
+     * @param namePrefix Prefix of the first or last name to match, or null for any.
+     */
+    private StudentQuery(String section, GradeLevel grade, Class<? extends Student> type, String namePrefix) {
+        this.section = section;
+        this.grade = grade;
+        this.type = type;
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * Gets the query matching every student.
+     * @return The unfiltered query.
+     */
+    public static StudentQuery all() { return ALL; }
+
+    /**
+     * Narrows this query to one section.
+     *
+     * @param section The section, or null for any.
+     * @return The narrowed query.
+     */
+    public StudentQuery inSection(String section) {
+        return new StudentQuery(section, grade, type, namePrefix);
+    }
+
+    /**
+     * Narrows this query to one grade level.
+     *
+     * @param grade The grade level, or null for any.
+     * @return The narrowed query.
+     */
+    public StudentQuery inGrade(GradeLevel grade) {
+        return new StudentQuery(section, grade, type, namePrefix);
+    }
+
+    /**
+     * Narrows this query to one student subtype and its subclasses.
+     *
+     * @param type The subtype, such as {@code CollegeStudent.class}, or null for any.
+     * @return The narrowed query.
+     */
+    public StudentQuery ofType(Class<? extends Student> type) {
+        return new StudentQuery(section, grade, type, namePrefix);
+    }
+
+    /**
+     * Narrows this query to students whose first or last name starts with a prefix,
+     * ignoring case.
+     *
+     * @param namePrefix The prefix, or null or blank for any.
+     * @return The narrowed query.
+     */
+    public StudentQuery withNamePrefix(String namePrefix) {
+        return new StudentQuery(section, grade, type,
+                namePrefix == null || namePrefix.isBlank() ? null : namePrefix.trim());
+    }
+
+    /**
+     * Gets the section to match.
+     * @return The section, or null for any.
+     */
+    public String getSection() { return section; }
+
+    /**
+     * Gets the grade level to match.
+     * @return The grade level, or null for any.
+     */
+    public GradeLevel getGrade() { return grade; }
+
+    /**
+     * Gets the student subtype to match.
+     * @return The subtype, or null for any.
+     */
+    public Class<? extends Student> getType() { return type; }
+
+    /**
+     * Gets the name prefix to match.
+     * @return The prefix, or null for any.
+     */
+    public String getNamePrefix() { return namePrefix; }
+
+    /**
+     * Tests a student against every criterion of this query.
+     *
+     * @param student The student to test.
+     * @return True if the student matches.
+     */
+    public boolean matches(Student student) {
+        return (section == null || section.equals(student.getSection()))
+                && (grade == null || grade == student.getGrade())
+                && (type == null || type.isAssignableFrom(student.getRecordType()))
+                && (namePrefix == null || startsWith(student.getFirstName()) || startsWith(student.getLastName()));
+    }
+
+    /**
+     * Builds a query from {@code section}, {@code grade}, {@code type} and {@code name}
+     * parameters, as given to the HTTP service and the command line. Absent or empty
+     * parameters match everyone.
+     *
+     * @param parameters The parameters by name.
+     * @return The query.
+     * @throws IllegalArgumentException If the grade or type is not recognized.
+     */
+    public static StudentQuery fromParameters(Map<String, String> parameters) {
+        StudentQuery query = ALL.withNamePrefix(parameters.get("name"));
+        String section = parameters.get("section");
+        if (section != null && !section.isEmpty()) {
+            query = query.inSection(section);
+        }
+        String grade = parameters.get("grade");
+        if (grade != null && !grade.isEmpty()) {
+            query = query.inGrade(GradeLevel.parse(grade));
+        }
+        String type = parameters.get("type");
+        if (type != null && !type.isEmpty()) {
+            query = query.ofType(parseType(type));
+        }
+        return query;
+    }
+
+    /**
+     * Parses a subtype name: {@code college} or {@code highschool}, ignoring case and
+     * punctuation, with or without a trailing {@code student}.
+     *
+     * @param name The subtype name.
+     * @return The subtype class.
+     * @throws IllegalArgumentException If the name is not a known subtype.
+     */
+    public static Class<? extends Student> parseType(String name) {
+        String key = name.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+        if (key.endsWith("student")) {
+            key = key.substring(0, key.length() - "student".length());
+        }
+        if (key.equals("college")) {
+            return CollegeStudent.class;
+        }
+        if (key.equals("highschool")) {
+            return HighSchoolStudent.class;
+        }
+        throw new IllegalArgumentException("Unknown student type: " + name);
+    }
+
+    /**
+     * Checks whether a name starts with this query's prefix, ignoring case.
+     *
+     * @param name The name, or null.
+     * @return True if the name starts with the prefix.
+     */
+    private boolean startsWith(String name) {
+        return name != null && name.regionMatches(true, 0, namePrefix, 0, namePrefix.length());
+    }
+
+    /**
+     * Describes the criteria of this query.
+     *
+     * @return A description such as {@code grade=GRADE_12, section=B}, or {@code all students}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        if (grade != null) {
+            description.append("grade=").append(grade);
+        }
+        if (section != null) {
+            description.append(description.length() > 0 ? ", " : "").append("section=").append(section);
+        }
+        if (type != null) {
+            description.append(description.length() > 0 ? ", " : "").append("type=").append(type.getSimpleName());
+        }
+        if (namePrefix != null) {
+            description.append(description.length() > 0 ? ", " : "").append("name=").append(namePrefix).append('*');
+        }
+        return description.length() > 0 ? description.toString() : "all students";
+    }
+}
@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe store of students with constant-time lookup by student ID and
+ * secondary indexes on section and grade level. Students are kept as the heap
+ * objects they were added as. The secondary indexes are ordered by insertion, so
+ * queries that use them stream students in the same order as {@link #getAll()}.
+ *
+ * <p>All indexes are concurrent maps, so readers never block. Writes that concern a
+ * single student are serialized on that student's monitor, which is the same lock
+ * the {@link Student} setters hold. The repository attaches itself as the student's
+ * {@link StudentChangeListener}, so changing the ID, section or grade of a stored
+ * student keeps every index up to date. Changing a student's ID to one already in
+ * use is rejected with an {@link IllegalArgumentException}.</p>
+ *
+ * <p>Other components can observe changes to stored students through
+ * {@link #addChangeListener(StudentChangeListener)}; the repository forwards every
+ * notification after updating its own indexes.</p>
+ *
+ * <p>A student can belong to at most one repository at a time.</p>
+ */
+public class StudentRepository implements StudentStore, StudentChangeListener {
+    /** Primary index from student ID to student. */
+    private final Map<String, Student> byId;
+
+    /** Secondary index from section to the students in it, keyed by insertion sequence. */
+    private final Map<String, ConcurrentSkipListMap<Long, Student>> bySection;
+
+    /** Secondary index from grade level to the students in it, keyed by insertion sequence. */
+    private final Map<GradeLevel, ConcurrentSkipListMap<Long, Student>> byGrade;
+
+    /** Students keyed by insertion sequence, used to list them in the order they were added. */
+    private final ConcurrentSkipListMap<Long, Student> insertionOrder;
+
+    /** Insertion sequence of each stored student. Students use identity equality. */
+    private final Map<Student, Long> sequences;
+
+    /** Source of insertion sequence numbers. */
+    private final AtomicLong nextSequence;
+
+    /** Listeners that changes to stored students are forwarded to. */
+    private final List<StudentChangeListener> changeListeners;
+
+    /**
+     * Constructs an empty StudentRepository.
+     */
+    public StudentRepository() {
+        this.byId = new ConcurrentHashMap<>();
+        this.bySection = new ConcurrentHashMap<>();
+        this.byGrade = new EnumMap<>(GradeLevel.class);
+        for (GradeLevel grade : GradeLevel.values()) {
+            byGrade.put(grade, new ConcurrentSkipListMap<>());
+        }
+        this.insertionOrder = new ConcurrentSkipListMap<>();
+        this.sequences = new ConcurrentHashMap<>();
+        this.nextSequence = new AtomicLong();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Registers a listener that is told about every change to a stored student.
+     *
+     * @param listener The listener to add.
+     */
+    @Override
+    public void addChangeListener(StudentChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addChangeListener(StudentChangeListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    @Override
+    public void removeChangeListener(StudentChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Adds a student to the repository.
+     *
+     * @param student The student to add.
+     * @return True if the student was added; false if another student already uses the same ID.
+     * @throws IllegalArgumentException If the student has no ID.
+     * @throws IllegalStateException If the student already belongs to a repository.
+     */
+    @Override
+    public boolean add(Student student) {
+        synchronized (student) {
+            String studentId = student.getStudentId();
+            if (studentId == null) {
+                throw new IllegalArgumentException("Student ID must not be null");
+            }
+            if (student.getChangeListener() != null) {
+                throw new IllegalStateException("Student " + studentId + " already belongs to a repository");
+            }
+            if (byId.putIfAbsent(studentId, student) != null) {
+                return false;
+            }
+            long sequence = nextSequence.getAndIncrement();
+            sequences.put(student, sequence);
+            insertionOrder.put(sequence, student);
+            indexSection(student, student.getSection());
+            indexGrade(student, student.getGrade());
+            student.setChangeListener(this);
+            return true;
+        }
+    }
+
+    /**
+     * Removes the student with the given ID.
+     *
+     * @param studentId The ID of the student to remove.
+     * @return The removed student, or null if no student has that ID.
+     */
+    @Override
+    public Student remove(String studentId) {
+        Student student = findById(studentId);
+        if (student == null) {
+            return null;
+        }
+        synchronized (student) {
+            if (!byId.remove(studentId, student)) {
+                return null;
+            }
+            unindexSection(student, student.getSection());
+            unindexGrade(student, student.getGrade());
+            Long sequence = sequences.remove(student);
+            if (sequence != null) {
+                insertionOrder.remove(sequence);
+            }
+            student.setChangeListener(null);
+            return student;
+        }
+    }
+
+    /**
+     * Finds a student by ID.
+     *
+     * @param studentId The ID to look up.
+     * @return The student with that ID, or null if there is none.
+     */
+    @Override
+    public Student findById(String studentId) {
+        return studentId == null ? null : byId.get(studentId);
+    }
+
+    /**
+     * Checks whether a student with the given ID is stored.
+     *
+     * @param studentId The ID to check.
+     * @return True if a student uses that ID.
+     */
+    @Override
+    public boolean containsId(String studentId) {
+        return findById(studentId) != null;
+    }
+
+    /**
+     * Returns a live, read-only view of the students in a section.
+     *
+     * @param section The section to look up.
+     * @return The students in the section; empty if there are none.
+     */
+    @Override
+    public Collection<Student> findBySection(String section) {
+        Map<Long, Student> students = section == null ? null : bySection.get(section);
+        return students == null ? Collections.emptySet() : Collections.unmodifiableCollection(students.values());
+    }
+
+    /**
+     * Returns a live, read-only view of the students in a grade level.
+     *
+     * @param grade The grade level to look up.
+     * @return The students in the grade level; empty if there are none.
+     */
+    @Override
+    public Collection<Student> findByGrade(GradeLevel grade) {
+        Map<Long, Student> students = grade == null ? null : byGrade.get(grade);
+        return students == null ? Collections.emptySet() : Collections.unmodifiableCollection(students.values());
+    }
+
+    /**
+     * Streams the students matching a query, in the order they were added. The section
+     * index is used when the query names a section, then the grade index, and otherwise
+     * the insertion order; remaining criteria are tested on each candidate.
+     *
+     * @param query The criteria to match.
+     * @param after Insertion sequence to continue after, or -1 to start from the beginning.
+     * @return The matching students keyed by insertion sequence.
+     */
+    @Override
+    public Stream<Entry<Long, Student>> query(StudentQuery query, long after) {
+        ConcurrentSkipListMap<Long, Student> candidates;
+        if (query.getSection() != null) {
+            candidates = bySection.get(query.getSection());
+        } else if (query.getGrade() != null) {
+            candidates = byGrade.get(query.getGrade());
+        } else {
+            candidates = insertionOrder;
+        }
+        if (candidates == null) {
+            return Stream.empty();
+        }
+        return candidates.tailMap(after, false).entrySet().stream()
+                .filter(entry -> query.matches(entry.getValue()));
+    }
+
+    /**
+     * Returns a snapshot of all students in the order they were added.
+     *
+     * @return A new list containing every stored student.
+     */
+    @Override
+    public List<Student> getAll() {
+        return new ArrayList<>(insertionOrder.values());
+    }
+
+    /**
+     * Gets the number of stored students.
+     *
+     * @return The student count.
+     */
+    @Override
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Checks whether the repository is empty.
+     *
+     * @return True if no students are stored.
+     */
+    @Override
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    /**
+     * Reserves the new ID before a stored student's ID changes, rejecting IDs already in use,
+     * then forwards the change to registered listeners. If a listener vetoes the change, the
+     * reservation is released again so the ID stays free.
+     *
+     * @param student The student being modified.
+     * @param field The property about to change.
+     * @param oldValue The current value.
+     * @param newValue The value about to be set.
+     * @throws IllegalArgumentException If the new ID is null or used by another student.
+     */
+    @Override
+    public void beforeChange(Student student, StudentField field, Object oldValue, Object newValue) {
+        if (field == StudentField.STUDENT_ID && !Objects.equals(oldValue, newValue)) {
+            if (newValue == null) {
+                throw new IllegalArgumentException("Student ID must not be null");
+            }
+            Student existing = byId.putIfAbsent((String) newValue, student);
+            if (existing != null && existing != student) {
+                throw new IllegalArgumentException("Student with ID " + newValue + " already exists");
+            }
+            try {
+                forwardBeforeChange(student, field, oldValue, newValue);
+            } catch (RuntimeException e) {
+                if (existing == null) {
+                    byId.remove(newValue, student);
+                }
+                throw e;
+            }
+            return;
+        }
+        forwardBeforeChange(student, field, oldValue, newValue);
+    }
+
+    /**
+     * Forwards a pending change to every registered listener.
+     *
+     * @param student The student being modified.
+     * @param field The property about to change.
+     * @param oldValue The current value.
+     * @param newValue The value about to be set.
+     */
+    private void forwardBeforeChange(Student student, StudentField field, Object oldValue, Object newValue) {
+        for (StudentChangeListener listener : changeListeners) {
+            listener.beforeChange(student, field, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Moves a stored student between index entries after its ID, section or grade changed,
+     * then forwards the change to registered listeners.
+     *
+     * @param student The student that was modified.
+     * @param field The property that changed.
+     * @param oldValue The previous value.
+     * @param newValue The new value.
+     */
+    @Override
+    public void afterChange(Student student, StudentField field, Object oldValue, Object newValue) {
+        switch (field) {
+            case STUDENT_ID:
+                if (oldValue != null && !oldValue.equals(newValue)) {
+                    byId.remove(oldValue, student);
+                }
+                break;
+            case SECTION:
+                unindexSection(student, (String) oldValue);
+                indexSection(student, (String) newValue);
+                break;
+            case GRADE:
+                unindexGrade(student, (GradeLevel) oldValue);
+                indexGrade(student, (GradeLevel) newValue);
+                break;
+            default:
+                break;
+        }
+        for (StudentChangeListener listener : changeListeners) {
+            listener.afterChange(student, field, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Adds a student to the section index.
+     *
+     * @param student The student to index.
+     * @param section The section to file it under; ignored if null.
+     */
+    private void indexSection(Student student, String section) {
+        if (section != null) {
+            long sequence = sequences.get(student);
+            bySection.compute(section, (key, students) -> {
+                ConcurrentSkipListMap<Long, Student> result = students == null ? new ConcurrentSkipListMap<>() : students;
+                result.put(sequence, student);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Removes a student from the section index, dropping the section once it is empty.
+     *
+     * @param student The student to remove.
+     * @param section The section it was filed under; ignored if null.
+     */
+    private void unindexSection(Student student, String section) {
+        if (section != null) {
+            Long sequence = sequences.get(student);
+            bySection.computeIfPresent(section, (key, students) -> {
+                students.remove(sequence, student);
+                return students.isEmpty() ? null : students;
+            });
+        }
+    }
+
+    /**
+     * Adds a student to the grade index.
+     *
+     * @param student The student to index.
+     * @param grade The grade level to file it under; ignored if null.
+     */
+    private void indexGrade(Student student, GradeLevel grade) {
+        if (grade != null) {
+            byGrade.get(grade).put(sequences.get(student), student);
+        }
+    }
+
+    /**
+     * Removes a student from the grade index.
+     *
+     * @param student The student to remove.
+     * @param grade The grade level it was filed under; ignored if null.
+     */
+    private void unindexGrade(Student student, GradeLevel grade) {
+        if (grade != null) {
+            byGrade.get(grade).remove(sequences.get(student), student);
+        }
+    }
+}
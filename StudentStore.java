@@ -0,0 +1,119 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Backing store for the students managed by a {@link StudentManager}: lookup by
+ * student ID, by section and by grade level, and notification of changes to stored
+ * students.
+ *
+ * <p>{@link StudentRepository} keeps the students it is given as ordinary heap
+ * objects. {@link ColumnarStudentStore} copies them into off-heap columns and hands
+ * out lightweight views instead, for rosters too large to hold as objects. Either
+ * way, a student returned by a store is kept up to date by the store when its
+ * setters are called. Implementations must be thread-safe.</p>
+ */
+public interface StudentStore {
+
+    /**
+     * Registers a listener that is told about every change to a stored student.
+     *
+     * @param listener The listener to add.
+     */
+    void addChangeListener(StudentChangeListener listener);
+
+    /**
+     * Unregisters a listener added with {@link #addChangeListener(StudentChangeListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    void removeChangeListener(StudentChangeListener listener);
+
+    /**
+     * Adds a student to the store.
+     *
+     * @param student The student to add.
+     * @return True if the student was added; false if another student already uses the same ID.
+     * @throws IllegalArgumentException If the student has no ID or cannot be stored.
+     * @throws IllegalStateException If the store keeps students as objects and this one
+     *         already belongs to another store.
+     */
+    boolean add(Student student);
+
+    /**
+     * Removes the student with the given ID.
+     *
+     * @param studentId The ID of the student to remove.
+     * @return The removed student, or null if no student has that ID.
+     */
+    Student remove(String studentId);
+
+    /**
+     * Finds a student by ID.
+     *
+     * @param studentId The ID to look up.
+     * @return The student with that ID, or null if there is none.
+     */
+    Student findById(String studentId);
+
+    /**
+     * Checks whether a student with the given ID is stored.
+     *
+     * @param studentId The ID to check.
+     * @return True if a student uses that ID.
+     */
+    boolean containsId(String studentId);
+
+    /**
+     * Returns a read-only collection of the students in a section.
+     *
+     * @param section The section to look up.
+     * @return The students in the section; empty if there are none.
+     */
+    Collection<Student> findBySection(String section);
+
+    /**
+     * Returns a read-only collection of the students in a grade level.
+     *
+     * @param grade The grade level to look up.
+     * @return The students in the grade level; empty if there are none.
+     */
+    Collection<Student> findByGrade(GradeLevel grade);
+
+    /**
+     * Streams the students matching a query, in the store's order, without copying the
+     * roster. That is the order students were added, except that a store which reuses
+     * the storage of removed students may place a newly added one earlier. Each element
+     * pairs a student with its position in that order, which can be passed back as
+     * {@code after} to continue from it. The stream is lazy and weakly consistent:
+     * students added or removed while it is consumed may or may not be seen.
+     *
+     * @param query The criteria to match.
+     * @param after Position to continue after, or -1 to start from the beginning.
+     * @return The matching students keyed by position.
+     */
+    Stream<Map.Entry<Long, Student>> query(StudentQuery query, long after);
+
+    /**
+     * Returns a snapshot of all students in the store's order, the same order as
+     * {@link #query(StudentQuery, long)}.
+     *
+     * @return A list containing every stored student.
+     */
+    List<Student> getAll();
+
+    /**
+     * Gets the number of stored students.
+     *
+     * @return The student count.
+     */
+    int size();
+
+    /**
+     * Checks whether the store is empty.
+     *
+     * @return True if no students are stored.
+     */
+    boolean isEmpty();
+}
@@ -0,0 +1,608 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Bridge from the benchmarks to the application classes.
+ *
+ * <p>The application lives in the default package, which named packages cannot import,
+ * and JMH refuses benchmarks in the default package. Every application call therefore
+ * goes through a constant {@link MethodHandle} adapted to {@code Object} types; the JIT
+ * inlines these like direct calls, so they add no measurable overhead.</p>
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> QR_CODE_GENERATOR = load("QRCodeGenerator");
+    private static final Class<?> QR_MATRIX = load("QRMatrix");
+    private static final Class<?> STUDENT = load("Student");
+    private static final Class<?> STUDENT_MANAGER = load("StudentManager");
+    private static final Class<?> GRADE_LEVEL = load("GradeLevel");
+    private static final Class<?> QR_RENDER_CACHE = load("QRRenderCache");
+    private static final Class<?> BULK_GENERATOR = load("BulkQRCodeGenerator");
+    private static final Class<?> QR_CODE_SERVER = load("QRCodeServer");
+    private static final Class<?> QR_OUTPUT = load("QROutput");
+    private static final Class<?> STUDENT_STORE = load("StudentStore");
+    private static final Class<?> STUDENT_QUERY = load("StudentQuery");
+    private static final Class<?> QUERY_PAGE = load("QueryPage");
+    private static final Class<?> FILE_WRITER = load("ShardedFileWriter");
+    private static final Class<?> ROW_RASTERIZER = load("ModuleRowRasterizer");
+
+    private static final MethodHandle NEW_GENERATOR = constructor(QR_CODE_GENERATOR);
+    private static final MethodHandle ENCODE = virtual(QR_CODE_GENERATOR, "encode", QR_MATRIX, String.class);
+    private static final MethodHandle ENCODE_INTO = virtual(QR_CODE_GENERATOR, "encode", QR_MATRIX, String.class, QR_MATRIX);
+    private static final MethodHandle GENERATE = virtual(QR_CODE_GENERATOR, "generateQRCode", BufferedImage.class, String.class);
+    private static final MethodHandle TO_PNG = virtual(QR_CODE_GENERATOR, "toPngBytes", byte[].class, QR_MATRIX);
+    private static final MethodHandle SAVE_MATRIX = virtual(QR_CODE_GENERATOR, "saveQRCode", boolean.class, QR_MATRIX, String.class);
+    private static final MethodHandle RENDER_OUTPUTS = virtual(QR_CODE_GENERATOR, "render", List.class, String.class, List.class);
+    private static final MethodHandle RENDER_OUTPUT = virtual(QR_CODE_GENERATOR, "render", byte[].class, QR_MATRIX, QR_OUTPUT);
+    private static final MethodHandle PNG_OUTPUT = staticMethod(QR_OUTPUT, "png", QR_OUTPUT, int.class);
+    private static final MethodHandle SVG_OUTPUT = staticMethod(QR_OUTPUT, "svg", QR_OUTPUT);
+    private static final MethodHandle MATRIX_OUTPUT = staticMethod(QR_OUTPUT, "matrix", QR_OUTPUT);
+    private static final MethodHandle MATRIX_SIZE = virtual(QR_MATRIX, "getSize", int.class);
+    private static final MethodHandle NEW_RASTERIZER = staticMethod(QR_CODE_GENERATOR, "createConfiguredRasterizer",
+            ROW_RASTERIZER);
+    private static final MethodHandle EXPAND_ROW = virtual(ROW_RASTERIZER, "expandRow", void.class, QR_MATRIX,
+            int.class, byte[].class, int.class, int.class, int.class, int.class);
+    private static final MethodHandle SAVE_IMAGE = virtual(QR_CODE_GENERATOR, "saveQRCode", boolean.class, BufferedImage.class, String.class);
+
+    private static final MethodHandle CREATE_STUDENT = staticMethod(load("StudentFactory"), "create", STUDENT,
+            String.class, String.class, String.class, String.class, GRADE_LEVEL, String.class);
+    private static final MethodHandle TO_QR_STRING = virtual(STUDENT, "toQRString", String.class);
+    private static final MethodHandle GET_STUDENT_ID = virtual(STUDENT, "getStudentId", String.class);
+    private static final MethodHandle SET_EMAIL = virtual(STUDENT, "setEmail", void.class, String.class);
+
+    private static final MethodHandle NEW_MANAGER = constructor(STUDENT_MANAGER);
+    private static final MethodHandle NEW_MANAGER_WITH_STORE = constructor(STUDENT_MANAGER, STUDENT_STORE);
+    private static final MethodHandle NEW_MANAGER_WITH_ROSTER = constructor(STUDENT_MANAGER, String.class);
+    private static final MethodHandle CLOSE_MANAGER = virtual(STUDENT_MANAGER, "close", void.class);
+    private static final MethodHandle UPDATE = virtual(STUDENT_MANAGER, "update", int.class, Collection.class,
+            Consumer.class, java.util.function.BiConsumer.class);
+    private static final MethodHandle SUBSCRIBE = virtual(STUDENT_MANAGER, "subscribe",
+            load("StudentChangeFeed$Subscription"), Consumer.class, int.class, int.class);
+    private static final MethodHandle NEW_REPOSITORY = constructor(load("StudentRepository"));
+    private static final MethodHandle NEW_COLUMNAR_STORE = constructor(load("ColumnarStudentStore"));
+    private static final MethodHandle ADD_ALL = virtual(STUDENT_MANAGER, "addAll", int.class, List.class,
+            java.util.function.BiConsumer.class);
+    private static final MethodHandle FIND_BY_ID = virtual(STUDENT_MANAGER, "findStudentById", STUDENT, String.class);
+    private static final MethodHandle GET_ALL = virtual(STUDENT_MANAGER, "getAllStudents", List.class);
+    private static final MethodHandle QUERY_STREAM = virtual(STUDENT_MANAGER, "queryStudents", Stream.class, STUDENT_QUERY);
+    private static final MethodHandle QUERY_PAGE_OF = virtual(STUDENT_MANAGER, "queryStudents", QUERY_PAGE,
+            STUDENT_QUERY, String.class, int.class);
+    private static final MethodHandle PAGE_STUDENTS = virtual(QUERY_PAGE, "getStudents", List.class);
+    private static final MethodHandle PAGE_NEXT = virtual(QUERY_PAGE, "getNextCursor", String.class);
+    private static final MethodHandle ALL_QUERY = staticMethod(STUDENT_QUERY, "all", STUDENT_QUERY);
+    private static final MethodHandle IN_SECTION = virtual(STUDENT_QUERY, "inSection", STUDENT_QUERY, String.class);
+    private static final MethodHandle IN_GRADE = virtual(STUDENT_QUERY, "inGrade", STUDENT_QUERY, GRADE_LEVEL);
+    private static final MethodHandle QUERY_MATCHES = virtual(STUDENT_QUERY, "matches", boolean.class, STUDENT);
+
+    private static final MethodHandle NEW_CACHE = constructor(QR_RENDER_CACHE, String.class, int.class);
+    private static final MethodHandle NEW_BULK = constructor(BULK_GENERATOR, QR_CODE_GENERATOR, QR_RENDER_CACHE,
+            int.class, int.class, int.class);
+    private static final MethodHandle NEW_BULK_WITH_WRITER = constructor(BULK_GENERATOR, QR_CODE_GENERATOR,
+            QR_RENDER_CACHE, FILE_WRITER, int.class, int.class, int.class);
+    private static final MethodHandle NEW_FILE_WRITER = constructor(FILE_WRITER, int.class, boolean.class);
+    private static final MethodHandle CLOSE_FILE_WRITER = virtual(FILE_WRITER, "close", void.class);
+    private static final MethodHandle SHARDED_PATH = staticMethod(FILE_WRITER, "shardedPath", String.class,
+            String.class, String.class);
+    private static final MethodHandle GENERATE_ALL = virtual(BULK_GENERATOR, "generate", List.class, List.class,
+            Function.class, Consumer.class);
+
+    private static final MethodHandle NEW_SERVER = constructor(QR_CODE_SERVER, STUDENT_MANAGER, int.class);
+    private static final MethodHandle START_SERVER = virtual(QR_CODE_SERVER, "start", void.class);
+    private static final MethodHandle STOP_SERVER = virtual(QR_CODE_SERVER, "stop", void.class, int.class);
+    private static final MethodHandle SERVER_PORT = virtual(QR_CODE_SERVER, "getPort", int.class);
+
+    private static final Object[] GRADES = GRADE_LEVEL.getEnumConstants();
+
+    private App() {
+    }
+
+    static Object newGenerator() {
+        try {
+            return NEW_GENERATOR.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object encode(Object generator, String payload) {
+        try {
+            return ENCODE.invokeExact(generator, payload);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object encode(Object generator, String payload, Object target) {
+        try {
+            return ENCODE_INTO.invokeExact(generator, payload, target);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static BufferedImage generateQRCode(Object generator, String payload) {
+        try {
+            return (BufferedImage) GENERATE.invokeExact(generator, payload);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static byte[] toPngBytes(Object generator, Object matrix) {
+        try {
+            return (byte[]) TO_PNG.invokeExact(generator, matrix);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> render(Object generator, String payload, List<Object> outputs) {
+        try {
+            return (List<?>) RENDER_OUTPUTS.invokeExact(generator, payload, outputs);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static byte[] render(Object generator, Object matrix, Object output) {
+        try {
+            return (byte[]) RENDER_OUTPUT.invokeExact(generator, matrix, output);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object pngOutput(int modulePixels) {
+        try {
+            return (Object) PNG_OUTPUT.invokeExact(modulePixels);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object svgOutput() {
+        try {
+            return (Object) SVG_OUTPUT.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object matrixOutput() {
+        try {
+            return (Object) MATRIX_OUTPUT.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int matrixSize(Object matrix) {
+        try {
+            return (int) MATRIX_SIZE.invokeExact(matrix);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates the row rasterizer the {@code qr.rasterizer} system property selects.
+     */
+    static Object newRasterizer() {
+        try {
+            return (Object) NEW_RASTERIZER.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void expandRow(Object rasterizer, Object matrix, int moduleY, byte[] row, int rowBytes, int scale,
+                          int margin) {
+        try {
+            EXPAND_ROW.invokeExact(rasterizer, matrix, moduleY, row, 0, rowBytes, scale, margin);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean saveQRCode(Object generator, Object matrix, String filePath) {
+        try {
+            return (boolean) SAVE_MATRIX.invokeExact(generator, matrix, filePath);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean saveQRCode(Object generator, BufferedImage image, String filePath) {
+        try {
+            return (boolean) SAVE_IMAGE.invokeExact(generator, image, filePath);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a synthetic student whose fields are derived from an index.
+     */
+    static Object student(int index) {
+        try {
+            return CREATE_STUDENT.invokeExact("S" + index, "First" + index, "Last" + index,
+                    "student" + index + "@example.edu", GRADES[index % GRADES.length], "Section-" + (index % 40));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void setEmail(Object student, String email) {
+        try {
+            SET_EMAIL.invokeExact(student, email);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<Object> students(int count) {
+        List<Object> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(student(i));
+        }
+        return students;
+    }
+
+    static String toQRString(Object student) {
+        try {
+            return (String) TO_QR_STRING.invokeExact(student);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static String studentId(Object student) {
+        try {
+            return (String) GET_STUDENT_ID.invokeExact(student);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates an in-memory student manager holding the given students.
+     */
+    static Object newManager(List<Object> students) {
+        try {
+            return fill((Object) NEW_MANAGER.invokeExact(), students);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates an in-memory student manager holding the given students in either the
+     * heap repository or the off-heap columnar store.
+     */
+    static Object newManager(List<Object> students, boolean columnar) {
+        try {
+            Object store = columnar ? (Object) NEW_COLUMNAR_STORE.invokeExact() : (Object) NEW_REPOSITORY.invokeExact();
+            return fill((Object) NEW_MANAGER_WITH_STORE.invokeExact(store), students);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a student manager backed by a roster file, holding the given students.
+     */
+    static Object newManager(List<Object> students, Path rosterFile) {
+        try {
+            return fill((Object) NEW_MANAGER_WITH_ROSTER.invokeExact(rosterFile.toString()), students);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void closeManager(Object manager) {
+        try {
+            CLOSE_MANAGER.invokeExact(manager);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int update(Object manager, Collection<String> studentIds, Consumer<Object> changes) {
+        try {
+            return (int) UPDATE.invokeExact(manager, (Collection<?>) studentIds, (Consumer<?>) changes,
+                    (java.util.function.BiConsumer<?, ?>) null);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Subscribes to a manager's change events; the consumer receives each batch as a list.
+     */
+    static Object subscribe(Object manager, Consumer<List<?>> consumer, int capacity, int maxBatch) {
+        try {
+            return (Object) SUBSCRIBE.invokeExact(manager, (Consumer<?>) consumer, capacity, maxBatch);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static Object fill(Object manager, List<Object> students) {
+        try {
+            int added = (int) ADD_ALL.invokeExact(manager, (List<?>) students, (java.util.function.BiConsumer<?, ?>) null);
+            if (added != students.size()) {
+                throw new IllegalStateException("Only " + added + " of " + students.size() + " students were added");
+            }
+            return manager;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object findStudentById(Object manager, String studentId) {
+        try {
+            return FIND_BY_ID.invokeExact(manager, studentId);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> getAllStudents(Object manager) {
+        try {
+            return (List<?>) GET_ALL.invokeExact(manager);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a query for one section and grade level; the grade is given by its index
+     * into the grade levels, as used by {@link #student(int)}.
+     */
+    static Object query(String section, int gradeIndex) {
+        try {
+            Object query = (Object) ALL_QUERY.invokeExact();
+            query = (Object) IN_SECTION.invokeExact(query, section);
+            return (Object) IN_GRADE.invokeExact(query, GRADES[gradeIndex]);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean matches(Object query, Object student) {
+        try {
+            return (boolean) QUERY_MATCHES.invokeExact(query, student);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Stream<?> queryStudents(Object manager, Object query) {
+        try {
+            return (Stream<?>) QUERY_STREAM.invokeExact(manager, query);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object queryPage(Object manager, Object query, String cursor, int pageSize) {
+        try {
+            return (Object) QUERY_PAGE_OF.invokeExact(manager, query, cursor, pageSize);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> pageStudents(Object page) {
+        try {
+            return (List<?>) PAGE_STUDENTS.invokeExact(page);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static String nextCursor(Object page) {
+        try {
+            return (String) PAGE_NEXT.invokeExact(page);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a render cache whose manifest lives in the given directory.
+     */
+    static Object newRenderCache(Path directory, int capacity) {
+        try {
+            return NEW_CACHE.invokeExact(directory.toString(), capacity);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a bulk generator; {@code cache} may be null to always render.
+     */
+    static Object newBulkGenerator(Object generator, Object cache, int renderThreads, int ioThreads, int maxInFlight) {
+        try {
+            return NEW_BULK.invokeExact(generator, cache, renderThreads, ioThreads, maxInFlight);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object newBulkGenerator(Object generator, Object cache, Object fileWriter, int renderThreads,
+                                   int ioThreads, int maxInFlight) {
+        try {
+            return NEW_BULK_WITH_WRITER.invokeExact(generator, cache, fileWriter, renderThreads, ioThreads, maxInFlight);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object newFileWriter(int queueCapacity, boolean sync) {
+        try {
+            return NEW_FILE_WRITER.invokeExact(queueCapacity, sync);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void closeFileWriter(Object fileWriter) {
+        try {
+            CLOSE_FILE_WRITER.invokeExact(fileWriter);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static String shardedPath(String directory, String fileName) {
+        try {
+            return (String) SHARDED_PATH.invokeExact(directory, fileName);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<?> generate(Object bulkGenerator, List<Object> students, Function<Object, String> fileNamer) {
+        try {
+            return (List<?>) GENERATE_ALL.invokeExact(bulkGenerator, (List<?>) students,
+                    (Function<?, ?>) fileNamer, (Consumer<?>) null);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates and starts an HTTP server for the manager on the given port (0 for any).
+     */
+    static Object startServer(Object manager, int port) {
+        try {
+            Object server = NEW_SERVER.invokeExact(manager, port);
+            START_SERVER.invokeExact(server);
+            return server;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void stopServer(Object server) {
+        try {
+            STOP_SERVER.invokeExact(server, 0);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int serverPort(Object server) {
+        try {
+            return (int) SERVER_PORT.invokeExact(server);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Creates a scratch directory for benchmark output, on tmpfs when one is available.
+     */
+    static Path scratchDirectory(String prefix) throws IOException {
+        Path shm = Paths.get("/dev/shm");
+        if (Files.isDirectory(shm) && Files.isWritable(shm)) {
+            return Files.createTempDirectory(shm, prefix);
+        }
+        return Files.createTempDirectory(prefix);
+    }
+
+    /**
+     * Deletes a scratch directory and everything in it.
+     */
+    static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted((a, b) -> b.compareTo(a))::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findConstructor(type, MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findVirtual(type, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findStatic(type, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Replaces application types in a handle's signature with Object, keeping JDK types,
+     * so it can be called with {@code invokeExact} from code that cannot name them.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationType(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isApplicationType(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end bulk generation through {@code BulkQRCodeGenerator}: payload, encode,
+ * PNG and file write for every student, with the default thread counts.
+ *
+ * <p>{@code cold} renders everything every time. {@code warm} uses a render cache whose
+ * manifest already covers every file, which is the cost of re-running generation over an
+ * unchanged roster. {@code coldWriter} renders everything like {@code cold} but hands the
+ * files to a {@code ShardedFileWriter}, which writes them in batches into hashed
+ * subdirectories through a temporary file and rename; {@code coldWriterSync} also
+ * forces every file to disk. Output goes to tmpfs when available.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkGenerationBenchmark {
+    @Param({"1000", "10000"})
+    public int studentCount;
+
+    private List<Object> students;
+    private Path directory;
+    private Object coldGenerator;
+    private Object warmGenerator;
+    private Object fileWriter;
+    private Object syncFileWriter;
+    private Object writerGenerator;
+    private Object syncWriterGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        students = App.students(studentCount);
+        directory = App.scratchDirectory("qr-bulk-bench");
+        Object generator = App.newGenerator();
+        int renderThreads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = Math.max(2, renderThreads / 2);
+        int maxInFlight = 4 * (renderThreads + ioThreads);
+        coldGenerator = App.newBulkGenerator(generator, null, renderThreads, ioThreads, maxInFlight);
+        warmGenerator = App.newBulkGenerator(generator, App.newRenderCache(directory, 4096),
+                renderThreads, ioThreads, maxInFlight);
+        App.generate(warmGenerator, students, this::fileName);
+        fileWriter = App.newFileWriter(1024, false);
+        syncFileWriter = App.newFileWriter(1024, true);
+        writerGenerator = App.newBulkGenerator(generator, null, fileWriter, renderThreads, ioThreads, maxInFlight);
+        syncWriterGenerator = App.newBulkGenerator(generator, null, syncFileWriter,
+                renderThreads, ioThreads, maxInFlight);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        App.closeFileWriter(fileWriter);
+        App.closeFileWriter(syncFileWriter);
+        App.deleteRecursively(directory);
+    }
+
+    private String fileName(Object student) {
+        return directory.resolve(App.studentId(student) + "_QR.png").toString();
+    }
+
+    private String shardedFileName(Object student) {
+        return App.shardedPath(directory.resolve("sharded").toString(), App.studentId(student) + "_QR.png");
+    }
+
+    @Benchmark
+    public List<?> cold() {
+        return App.generate(coldGenerator, students, this::fileName);
+    }
+
+    @Benchmark
+    public List<?> warm() {
+        return App.generate(warmGenerator, students, this::fileName);
+    }
+
+    @Benchmark
+    public List<?> coldWriter() {
+        return App.generate(writerGenerator, students, this::shardedFileName);
+    }
+
+    @Benchmark
+    public List<?> coldWriterSync() {
+        return App.generate(syncWriterGenerator, students, this::shardedFileName);
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk generation over a roster with duplicated records: {@code duplicatePercent} of
+ * the students are copies of others, as left behind by re-imports, each written to its
+ * own file. {@code cold} has no render cache, so only duplicates in flight together can
+ * share an image; {@code cached} uses a render cache with an empty manifest, so every
+ * file is written but later duplicates find the image in memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DedupBenchmark {
+    @Param({"1000"})
+    public int studentCount;
+
+    @Param({"0", "50", "90"})
+    public int duplicatePercent;
+
+    private List<Object> students;
+    private Map<Object, String> fileNames;
+    private Path directory;
+    private Object generator;
+    private Object coldGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int distinct = Math.max(1, studentCount * (100 - duplicatePercent) / 100);
+        students = new ArrayList<>(studentCount);
+        fileNames = new IdentityHashMap<>();
+        directory = App.scratchDirectory("qr-dedup-bench");
+        for (int i = 0; i < studentCount; i++) {
+            // Spread the copies over the roster, as a merged re-import would
+            Object student = App.student(i % distinct);
+            students.add(student);
+            fileNames.put(student, directory.resolve(i + "_QR.png").toString());
+        }
+        generator = App.newGenerator();
+        int renderThreads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = Math.max(2, renderThreads / 2);
+        coldGenerator = App.newBulkGenerator(generator, null, renderThreads, ioThreads,
+                4 * (renderThreads + ioThreads));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        App.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<?> cold() {
+        return App.generate(coldGenerator, students, fileNames::get);
+    }
+
+    @Benchmark
+    public List<?> cached() throws IOException {
+        int renderThreads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = Math.max(2, renderThreads / 2);
+        // A fresh cache and manifest each time, so every file is written and images come from this run
+        Files.deleteIfExists(directory.resolve(".qr_manifest"));
+        Object warmGenerator = App.newBulkGenerator(generator, App.newRenderCache(directory, 4096),
+                renderThreads, ioThreads, 4 * (renderThreads + ioThreads));
+        return App.generate(warmGenerator, students, fileNames::get);
+    }
+}
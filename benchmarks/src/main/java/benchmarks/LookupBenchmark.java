@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code StudentManager.findStudentById} against in-memory rosters of increasing size.
+ * Lookups follow a shuffled sequence of existing IDs, plus one benchmark for misses.
+ * {@code store} selects the heap repository or the off-heap columnar store; run with
+ * {@code -prof gc} to compare allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+    private static final int PROBES = 1 << 16;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rosterSize;
+
+    @Param({"heap", "columnar"})
+    public String store;
+
+    private Object manager;
+    private String[] probes;
+    private String[] missingProbes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Object> students = App.students(rosterSize);
+        manager = App.newManager(students, "columnar".equals(store));
+        probes = new String[PROBES];
+        missingProbes = new String[PROBES];
+        long seed = 42;
+        for (int i = 0; i < PROBES; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int index = (int) ((seed >>> 33) % rosterSize);
+            probes[i] = App.studentId(students.get(index));
+            missingProbes[i] = "X" + index;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextIndex() {
+            int index = next;
+            next = (index + 1) & (PROBES - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    public Object hit(Cursor cursor) {
+        return App.findStudentById(manager, probes[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public Object miss(Cursor cursor) {
+        return App.findStudentById(manager, missingProbes[cursor.nextIndex()]);
+    }
+}
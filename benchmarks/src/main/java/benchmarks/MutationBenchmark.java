@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Changing the email of 1000 students in a roster-backed manager: one setter call per
+ * student, each persisted and published on its own, against a single
+ * {@code StudentManager.update} that appends to the roster once and publishes one
+ * batch. With {@code subscribed}, a change-event subscriber is attached, so both
+ * variants also build and deliver events.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MutationBenchmark {
+    private static final int ROSTER_SIZE = 10_000;
+    private static final int CHANGED = 1000;
+
+    @Param({"false", "true"})
+    public boolean subscribed;
+
+    private Path directory;
+    private Object manager;
+    private List<String> ids;
+    private final LongAdder delivered = new LongAdder();
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = App.scratchDirectory("qr-mutation-bench");
+        manager = App.newManager(App.students(ROSTER_SIZE), directory.resolve("roster.dat"));
+        ids = new ArrayList<>(CHANGED);
+        for (int i = 0; i < CHANGED; i++) {
+            ids.add("S" + i);
+        }
+        if (subscribed) {
+            App.subscribe(manager, batch -> delivered.add(batch.size()), 1 << 16, 256);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        App.closeManager(manager);
+        App.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int perStudent() {
+        String email = "changed" + (round++) + "@example.edu";
+        for (String id : ids) {
+            App.setEmail(App.findStudentById(manager, id), email);
+        }
+        return CHANGED;
+    }
+
+    @Benchmark
+    public int bulk() {
+        String email = "changed" + (round++) + "@example.edu";
+        return App.update(manager, ids, student -> App.setEmail(student, email));
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Selecting one section and grade level (1 in 40 students) from an in-memory
+ * roster: copying the whole roster and filtering it, as callers did before
+ * {@code StudentQuery}, against the indexed query stream and against fetching one
+ * 20-student page. {@code store} selects the heap repository or the columnar store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    @Param({"100000", "1000000"})
+    public int rosterSize;
+
+    @Param({"heap", "columnar"})
+    public String store;
+
+    private Object manager;
+    private Object query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = App.newManager(App.students(rosterSize), "columnar".equals(store));
+        // Student i is in Section-(i % 40) with grade index i % 10
+        query = App.query("Section-7", 7);
+    }
+
+    @Benchmark
+    public int copyAndFilter() {
+        List<?> all = App.getAllStudents(manager);
+        int count = 0;
+        for (Object student : all) {
+            if (App.matches(query, student)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long queryCount() {
+        return App.queryStudents(manager, query).count();
+    }
+
+    @Benchmark
+    public List<?> firstPage() {
+        return App.pageStudents(App.queryPage(manager, query, null, 20));
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Module rasterization at print resolutions, with the scalar run-filling rasterizer
+ * against the Vector API one ({@code -Dqr.rasterizer}).
+ *
+ * <ul>
+ *   <li>{@code expand}: every module row of one code expanded into packed pixels, which
+ *       is all the rasterizer does.</li>
+ *   <li>{@code png}: the whole PNG at that scale, where row copies and deflate come on top.</li>
+ * </ul>
+ *
+ * The pool's codes are 45 modules wide, so with the standard quiet zone 24, 48 and 96
+ * pixels per module give images of 1272, 2544 and 5088 pixels. Setup checks that both
+ * rasterizers give byte-identical PNGs at the benchmarked scale, bit matrices and
+ * standard-size PNGs for every code in the pool, and fails the run if they do not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class RasterizeBenchmark {
+    private static final int POOL_SIZE = 64;
+
+    @Param({"scalar", "vector"})
+    public String rasterizer;
+
+    @Param({"24", "48", "96"})
+    public int modulePixels;
+
+    private Object generator;
+    private Object rowRasterizer;
+    private Object[] matrices;
+    private Object output;
+    private byte[] row;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] payloads = new String[POOL_SIZE];
+        List<Object> students = App.students(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            payloads[i] = App.toQRString(students.get(i));
+        }
+        output = App.pngOutput(modulePixels);
+        Object matrixOutput = App.matrixOutput();
+
+        System.setProperty("qr.rasterizer", "scalar");
+        Object scalar = App.newGenerator();
+        System.setProperty("qr.rasterizer", rasterizer);
+        generator = App.newGenerator();
+        rowRasterizer = App.newRasterizer();
+        matrices = new Object[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            matrices[i] = App.encode(generator, payloads[i]);
+            if (!Arrays.equals(App.render(scalar, matrices[i], output), App.render(generator, matrices[i], output))
+                    || !Arrays.equals(App.render(scalar, matrices[i], matrixOutput),
+                            App.render(generator, matrices[i], matrixOutput))
+                    || !Arrays.equals(App.toPngBytes(scalar, matrices[i]), App.toPngBytes(generator, matrices[i]))) {
+                throw new IllegalStateException(rasterizer + " rasterizer differs from scalar for " + payloads[i]);
+            }
+        }
+        row = new byte[rowBytes(App.matrixSize(matrices[0])) + 64];
+    }
+
+    private int rowBytes(int size) {
+        return ((size + 8) * modulePixels + 7) >>> 3;
+    }
+
+    private Object nextMatrix() {
+        Object matrix = matrices[next];
+        next = (next + 1) & (POOL_SIZE - 1);
+        return matrix;
+    }
+
+    @Benchmark
+    public byte[] expand() {
+        Object matrix = nextMatrix();
+        int size = App.matrixSize(matrix);
+        int rowBytes = rowBytes(size);
+        for (int y = 0; y < size; y++) {
+            App.expandRow(rowRasterizer, matrix, y, row, rowBytes, modulePixels, 4 * modulePixels);
+        }
+        return row;
+    }
+
+    @Benchmark
+    public byte[] png() {
+        return App.render(generator, nextMatrix(), output);
+    }
+}
@@ -0,0 +1,112 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-code CPU cost of the QR pipeline, without any file I/O.
+ *
+ * <ul>
+ *   <li>{@code payload}: building the QR text from a student.</li>
+ *   <li>{@code encode}: payload to module matrix, into a reused matrix and into a fresh one.</li>
+ *   <li>{@code render}: payload to {@link BufferedImage} via {@code generateQRCode}.</li>
+ *   <li>{@code png}: matrix to encoded PNG bytes.</li>
+ *   <li>{@code variants}: payload to a thumbnail PNG, a print PNG, an SVG and a bit matrix
+ *       from one encode; {@code variantsSeparate} encodes once per output for comparison.</li>
+ * </ul>
+ *
+ * Consecutive invocations cycle through a pool of distinct students so hash-dependent
+ * branches are not trivially predicted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+    private static final int POOL_SIZE = 1024;
+
+    private Object generator;
+    private Object[] students;
+    private String[] payloads;
+    private Object[] matrices;
+    private Object scratch;
+    private List<Object> outputs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = App.newGenerator();
+        students = App.students(POOL_SIZE).toArray();
+        payloads = new String[POOL_SIZE];
+        matrices = new Object[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            payloads[i] = App.toQRString(students[i]);
+            matrices[i] = App.encode(generator, payloads[i]);
+        }
+        scratch = App.encode(generator, payloads[0]);
+        outputs = List.of(App.pngOutput(2), App.pngOutput(12), App.svgOutput(), App.matrixOutput());
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) & (POOL_SIZE - 1);
+        return index;
+    }
+
+    @Benchmark
+    public String payload() {
+        return App.toQRString(students[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object encode() {
+        scratch = App.encode(generator, payloads[nextIndex()], scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Object encodeAllocating() {
+        return App.encode(generator, payloads[nextIndex()]);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return App.generateQRCode(generator, payloads[nextIndex()]);
+    }
+
+    @Benchmark
+    public byte[] png() {
+        return App.toPngBytes(generator, matrices[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<?> variants() {
+        return App.render(generator, payloads[nextIndex()], outputs);
+    }
+
+    @Benchmark
+    public int variantsSeparate() {
+        String payload = payloads[nextIndex()];
+        int bytes = 0;
+        for (Object output : outputs) {
+            scratch = App.encode(generator, payload, scratch);
+            bytes += App.render(generator, scratch, output).length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,160 @@
+package benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load test for the embedded QR HTTP service.
+ *
+ * <p>Starts the service in-process over a synthetic roster (or targets a running one),
+ * then keeps {@code concurrency} clients busy requesting random students' QR codes for a
+ * fixed duration. A share of the requests revalidate with the ETag from an earlier
+ * response, which exercises the 304 path. Prints throughput, latency percentiles and
+ * status counts.</p>
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.ServerLoadTest \
+ *     [students=10000] [concurrency=32] [seconds=10] [revalidate=0.5] [baseUrl]
+ * </pre>
+ *
+ * When {@code baseUrl} is given no server is started; the target must hold students
+ * {@code S0} to {@code S<students-1>}, as created by {@link App#student(int)}.
+ */
+public final class ServerLoadTest {
+    private ServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int studentCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        double revalidate = args.length > 3 ? Double.parseDouble(args[3]) : 0.5;
+
+        Object server = null;
+        String baseUrl;
+        if (args.length > 4) {
+            baseUrl = args[4];
+        } else {
+            server = App.startServer(App.newManager(App.students(studentCount)), 0);
+            baseUrl = "http://localhost:" + App.serverPort(server);
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ConcurrentHashMap<String, String> etags = new ConcurrentHashMap<>();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            System.out.printf("Warming up against %s ...%n", baseUrl);
+            runFor(client, etags, baseUrl, studentCount, revalidate, concurrency, workers, 2);
+            System.out.printf("Measuring %d clients for %d s, %.0f%% revalidation%n",
+                    concurrency, seconds, revalidate * 100);
+            Result result = runFor(client, etags, baseUrl, studentCount, revalidate, concurrency, workers, seconds);
+            result.print(seconds);
+        } finally {
+            workers.shutdownNow();
+            ((ExecutorService) client.executor().orElseThrow()).shutdownNow();
+            if (server != null) {
+                App.stopServer(server);
+            }
+        }
+    }
+
+    private static Result runFor(HttpClient client, ConcurrentHashMap<String, String> etags, String baseUrl,
+                                 int studentCount, double revalidate, int concurrency, ExecutorService workers,
+                                 int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Future<?>[] futures = new Future<?>[concurrency];
+        Result[] results = new Result[concurrency];
+        for (int w = 0; w < concurrency; w++) {
+            Result result = new Result();
+            results[w] = result;
+            futures[w] = workers.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    String id = "S" + random.nextInt(studentCount);
+                    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/students/" + id + "/qr.png"));
+                    String etag = etags.get(id);
+                    if (etag != null && random.nextDouble() < revalidate) {
+                        request.header("If-None-Match", etag);
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                        result.record(System.nanoTime() - start, response.statusCode());
+                        response.headers().firstValue("ETag").ifPresent(tag -> etags.put(id, tag));
+                    } catch (Exception e) {
+                        result.errors++;
+                    }
+                }
+                return null;
+            });
+        }
+        Result total = new Result();
+        for (int w = 0; w < concurrency; w++) {
+            futures[w].get();
+            total.merge(results[w]);
+        }
+        return total;
+    }
+
+    private static final class Result {
+        long[] latencies = new long[1024];
+        int count;
+        long ok;
+        long notModified;
+        long otherStatus;
+        long errors;
+
+        void record(long nanos, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (status == 200) {
+                ok++;
+            } else if (status == 304) {
+                notModified++;
+            } else {
+                otherStatus++;
+            }
+        }
+
+        void merge(Result other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            ok += other.ok;
+            notModified += other.notModified;
+            otherStatus += other.otherStatus;
+            errors += other.errors;
+        }
+
+        void print(int seconds) {
+            Arrays.sort(latencies, 0, count);
+            System.out.printf("Requests:   %d (%.0f/s)%n", count, count / (double) seconds);
+            System.out.printf("Status:     200=%d 304=%d other=%d errors=%d%n", ok, notModified, otherStatus, errors);
+            if (count > 0) {
+                System.out.printf("Latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+                        percentile(0.50), percentile(0.90), percentile(0.99), latencies[count - 1] / 1e6);
+            }
+        }
+
+        double percentile(double p) {
+            return latencies[Math.min(count - 1, (int) (p * count))] / 1e6;
+        }
+    }
+}
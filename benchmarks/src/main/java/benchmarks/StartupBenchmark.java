@@ -0,0 +1,169 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Startup time and footprint of one-shot command-line runs, each in a fresh JVM.
+ *
+ * <p>Seeds a roster file with synthetic students, then times {@code list} (which never
+ * touches the imaging classes) and {@code generate} (which renders, or finds every file
+ * unchanged after the first run) with class-data sharing off, with the JDK's default
+ * archive only, and with an application archive recorded from a training run of
+ * {@code generate}. Prints the median and 90th percentile wall time of each, and from
+ * native memory tracking the number of classes loaded and the memory committed at exit
+ * outside the Java heap.</p>
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.StartupBenchmark [students=1000] [runs=15] \
+ *     [target/student-qr-code-1.0-SNAPSHOT.jar]
+ * </pre>
+ *
+ * Child JVMs run the given application jar, or the benchmark jar itself when none is
+ * given; the much larger benchmark jar adds its own cost to every start.
+ */
+public final class StartupBenchmark {
+    private static final String MAIN_CLASS = "StudentQRCodeApp";
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int studentCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        String classPath = args.length > 2 ? Paths.get(args[2]).toAbsolutePath().toString() : applicationClassPath();
+
+        Path directory = App.scratchDirectory("qr-startup-bench");
+        try {
+            Path roster = directory.resolve("students.roster");
+            App.closeManager(App.newManager(App.students(studentCount), roster));
+            Path archive = directory.resolve("app.jsa");
+            run(directory, classPath, List.of("-XX:ArchiveClassesAtExit=" + archive), roster, "generate");
+
+            String[][] modes = {
+                    {"no CDS", "-Xshare:off"},
+                    {"JDK CDS", "-Xshare:auto"},
+                    {"AppCDS", "-XX:SharedArchiveFile=" + archive}
+            };
+            System.out.printf("%d students, %d runs each, running %s%n", studentCount, runs, classPath);
+            System.out.printf("%-10s %-8s %10s %10s %8s %14s%n", "command", "mode", "median ms", "p90 ms", "classes",
+                    "non-heap KB");
+            for (String command : new String[]{"list", "generate"}) {
+                for (String[] mode : modes) {
+                    List<String> options = List.of(mode[1]);
+                    run(directory, classPath, options, roster, command);
+                    long[] times = new long[runs];
+                    for (int i = 0; i < runs; i++) {
+                        times[i] = run(directory, classPath, options, roster, command);
+                    }
+                    Arrays.sort(times);
+                    long[] footprint = footprint(directory, classPath, options, roster, command);
+                    System.out.printf("%-10s %-8s %10.1f %10.1f %8d %14d%n", command, mode[0],
+                            times[runs / 2] / 1e6, times[(int) Math.ceil(runs * 0.9) - 1] / 1e6,
+                            footprint[0], footprint[1] / 1024);
+                }
+            }
+        } finally {
+            App.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Runs one command in a fresh JVM and returns its wall time in nanoseconds.
+     */
+    private static long run(Path directory, String classPath, List<String> jvmOptions, Path roster, String command)
+            throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(commandLine(classPath, jvmOptions, roster, command))
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        long start = System.nanoTime();
+        int status = builder.start().waitFor();
+        long elapsed = System.nanoTime() - start;
+        if (status != 0) {
+            throw new IllegalStateException(command + " with " + jvmOptions + " exited with status " + status);
+        }
+        return elapsed;
+    }
+
+    /**
+     * Runs one command with native memory tracking and returns the number of classes
+     * loaded and the bytes committed outside the Java heap at exit.
+     */
+    private static long[] footprint(Path directory, String classPath, List<String> jvmOptions, Path roster,
+                                    String command) throws IOException, InterruptedException {
+        List<String> options = new ArrayList<>(jvmOptions);
+        options.add("-XX:NativeMemoryTracking=summary");
+        options.add("-XX:+UnlockDiagnosticVMOptions");
+        options.add("-XX:+PrintNMTStatistics");
+        Process process = new ProcessBuilder(commandLine(classPath, options, roster, command))
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .start();
+        long classes = -1;
+        long total = 0;
+        long heap = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("Total:")) {
+                    total = number(line, "committed=");
+                } else if (line.startsWith("-") && line.contains("Java Heap")) {
+                    heap = number(line, "committed=");
+                } else if (line.startsWith("(classes #")) {
+                    classes = number(line, "#");
+                }
+            }
+        }
+        process.waitFor();
+        return new long[]{classes, total - heap};
+    }
+
+    /**
+     * Reads the number that follows a label in a line of native memory tracking output.
+     */
+    private static long number(String line, String label) {
+        int start = line.indexOf(label) + label.length();
+        int end = start;
+        while (end < line.length() && Character.isDigit(line.charAt(end))) {
+            end++;
+        }
+        return Long.parseLong(line.substring(start, end));
+    }
+
+    private static List<String> commandLine(String classPath, List<String> jvmOptions, Path roster, String command) {
+        List<String> line = new ArrayList<>();
+        line.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        line.addAll(jvmOptions);
+        line.add("-cp");
+        line.add(classPath);
+        line.add(MAIN_CLASS);
+        line.add("--roster");
+        line.add(roster.toString());
+        line.add(command);
+        return line;
+    }
+
+    /**
+     * Gets the class path the application classes were loaded from, so child JVMs run
+     * the same build.
+     */
+    private static String applicationClassPath() {
+        try {
+            return new File(Class.forName(MAIN_CLASS).getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .getPath();
+        } catch (ReflectiveOperationException | java.net.URISyntaxException e) {
+            return System.getProperty("java.class.path");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of writing one QR code file with {@code saveQRCode}, from a precomputed matrix
+ * and from a rendered image. Files go to tmpfs ({@code /dev/shm}) when available so
+ * the numbers reflect the encoder and syscalls rather than the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+    private static final int POOL_SIZE = 256;
+
+    private Object generator;
+    private Object[] matrices;
+    private BufferedImage[] images;
+    private String[] files;
+    private Path directory;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generator = App.newGenerator();
+        directory = App.scratchDirectory("qr-write-bench");
+        matrices = new Object[POOL_SIZE];
+        images = new BufferedImage[POOL_SIZE];
+        files = new String[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            String payload = App.toQRString(App.student(i));
+            matrices[i] = App.encode(generator, payload);
+            images[i] = App.generateQRCode(generator, payload);
+            files[i] = directory.resolve("S" + i + "_QR.png").toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        App.deleteRecursively(directory);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) % POOL_SIZE;
+        return index;
+    }
+
+    @Benchmark
+    public boolean writeMatrix() {
+        int i = nextIndex();
+        return App.saveQRCode(generator, matrices[i], files[i]);
+    }
+
+    @Benchmark
+    public boolean writeImage() {
+        int i = nextIndex();
+        return App.saveQRCode(generator, images[i], files[i]);
+    }
+}
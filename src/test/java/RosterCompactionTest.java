@@ -0,0 +1,146 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that compacting a roster file keeps changes made while the compaction runs,
+ * both when {@link RosterFile} is driven directly and through a {@link StudentManager}.
+ */
+public class RosterCompactionTest {
+    /** Directory the roster files are created in. */
+    @TempDir
+    Path directory;
+
+    /**
+     * Appends a change and a removal between taking the snapshot and compacting, and
+     * checks that the reopened roster holds them rather than the snapshot's state.
+     *
+     * @throws IOException If the roster file cannot be written.
+     */
+    @Test
+    public void compactKeepsRecordsAppendedAfterTheMark() throws IOException {
+        String fileName = directory.resolve("roster.dat").toString();
+        try (RosterFile roster = new RosterFile(fileName)) {
+            for (int i = 0; i < 3; i++) {
+                roster.appendPut(student(i, "first"));
+            }
+            long mark = roster.getRecordCount();
+            List<Student> snapshot = List.of(student(0, "first"), student(1, "first"), student(2, "first"));
+            roster.appendPut(student(0, "second"));
+            roster.appendRemove(id(1));
+            roster.appendPut(student(3, "first"));
+            roster.compact(snapshot, mark);
+            assertEquals(0, roster.getUnloadedCount());
+        }
+        try (RosterFile roster = new RosterFile(fileName)) {
+            Map<String, String> stored = new TreeMap<>();
+            for (Student student : roster.loadAll()) {
+                stored.put(student.getStudentId(), student.getEmail());
+            }
+            assertEquals(Map.of(id(0), "second@example.edu", id(2), "first@example.edu", id(3), "first@example.edu"),
+                    stored);
+        }
+    }
+
+    /**
+     * Adds, changes and removes students from several threads through a manager, enough
+     * to trigger a number of background compactions, then reopens the roster and checks
+     * that it holds exactly the final state. The store pauses after every snapshot, so
+     * other threads get to change students before the snapshot is written out.
+     *
+     * @throws Exception If a writer thread fails or the roster cannot be opened.
+     */
+    @Test
+    public void concurrentChangesSurviveCompaction() throws Exception {
+        String fileName = directory.resolve("roster.dat").toString();
+        StudentManager manager = new StudentManager(fileName, new StudentRepository() {
+            @Override
+            public List<Student> getAll() {
+                List<Student> snapshot = super.getAll();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return snapshot;
+            }
+        });
+        manager.setProgressLogging(false);
+        Map<String, String> expected = new ConcurrentHashMap<>();
+        List<Thread> writers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(writer);
+                for (int op = 0; op < 6000; op++) {
+                    int number = writer * 1000 + random.nextInt(40);
+                    String studentId = id(number);
+                    Student current = manager.findStudentById(studentId);
+                    if (current == null) {
+                        manager.addAll(List.of(student(number, "op" + op)), null);
+                        expected.put(studentId, "op" + op + "@example.edu");
+                    } else if (random.nextInt(4) == 0) {
+                        manager.removeStudent(studentId);
+                        expected.remove(studentId);
+                    } else {
+                        current.setEmail("op" + op + "@example.edu");
+                        expected.put(studentId, "op" + op + "@example.edu");
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            });
+            writers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+        manager.close();
+
+        StudentManager reopened = new StudentManager(fileName);
+        Map<String, String> stored = new TreeMap<>();
+        for (Student student : reopened.getAllStudents()) {
+            assertNull(stored.put(student.getStudentId(), student.getEmail()), student.getStudentId());
+        }
+        reopened.close();
+        assertEquals(new TreeMap<>(expected), stored);
+    }
+
+    /**
+     * Formats the ID of a test student.
+     *
+     * @param number The student's number.
+     * @return The student ID.
+     */
+    private static String id(int number) {
+        return "STU" + number;
+    }
+
+    /**
+     * Creates a test student whose email records the change that produced it.
+     *
+     * @param number The student's number.
+     * @param change Name of the change, used as the email's local part.
+     * @return The student.
+     */
+    private static Student student(int number, String change) {
+        return new HighSchoolStudent(id(number), "First" + number, "Last" + number, change + "@example.edu",
+                GradeLevel.GRADE_10, "A");
+    }
+}
@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks how {@link RosterFile} copes with records it cannot decode.
+ */
+public class RosterFileTest {
+    /** Directory the roster files are created in. */
+    @TempDir
+    Path directory;
+
+    /**
+     * Overwrites a field length of one record with more than the field can hold and
+     * checks that reopening skips that record and keeps the others.
+     *
+     * @throws IOException If the roster file cannot be written.
+     */
+    @Test
+    public void overlongFieldSkipsRecord() throws IOException {
+        Path path = directory.resolve("roster.dat");
+        try (RosterFile roster = new RosterFile(path.toString())) {
+            for (int i = 0; i < 3; i++) {
+                roster.appendPut(new CollegeStudent("STU" + i, "First", "Last", "s" + i + "@example.edu",
+                        GradeLevel.COLLEGE_JUNIOR, "A"));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // Header of 16 bytes, records of 256; the first name's length follows the 4-byte
+            // record header and the 2 + 30 bytes of the ID
+            ByteBuffer length = ByteBuffer.allocate(2).putShort(0, (short) 4000);
+            channel.write(length, 16 + 256 + 4 + 32);
+        }
+        try (RosterFile roster = new RosterFile(path.toString())) {
+            assertEquals(2, roster.getUnloadedCount());
+            assertNull(roster.load("STU1"));
+            List<Student> loaded = roster.loadAll();
+            assertEquals("STU0", loaded.get(0).getStudentId());
+            assertEquals("STU2", loaded.get(1).getStudentId());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link VectorModuleRowRasterizer} produces exactly the pixels of the scalar
+ * rasterizer. The build runs it once per vector width the JVM is limited to, so chunks
+ * of 16, 32 and 64 output bytes are all covered.
+ */
+public class VectorModuleRowRasterizerTest {
+    /** Value of the {@code qr.rasterizer} property before the test, restored afterwards. */
+    private String configuredRasterizer;
+
+    /** The scalar rasterizer the vector one is compared with. */
+    private ModuleRowRasterizer scalar;
+
+    /** The rasterizer under test. */
+    private ModuleRowRasterizer vector;
+
+    /**
+     * Creates both rasterizers, skipping the tests if the JVM was started without the
+     * Vector API.
+     */
+    @BeforeEach
+    public void createRasterizers() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "jdk.incubator.vector is not added to this JVM");
+        configuredRasterizer = System.getProperty("qr.rasterizer");
+        scalar = configuredRasterizer("scalar");
+        vector = configuredRasterizer("vector");
+        assertTrue(vector instanceof VectorModuleRowRasterizer, "vector rasterizer was not selected");
+    }
+
+    /**
+     * Restores the {@code qr.rasterizer} property.
+     */
+    @AfterEach
+    public void restoreProperty() {
+        if (configuredRasterizer == null) {
+            System.clearProperty("qr.rasterizer");
+        } else {
+            System.setProperty("qr.rasterizer", configuredRasterizer);
+        }
+    }
+
+    /**
+     * Expands random rows of random matrices at random scales, margins and row lengths,
+     * including rows above and below the symbol, and compares every byte of the row
+     * buffer, including the bytes around the row that must be left alone.
+     */
+    @Test
+    public void randomRowsMatchScalar() {
+        Random random = new Random(24);
+        QRMatrix matrix = null;
+        for (int trial = 0; trial < 50000; trial++) {
+            if (trial % 100 == 0) {
+                matrix = randomMatrix(random, 1 + random.nextInt(180));
+            }
+            int size = matrix.getSize();
+            int scale = 1 + random.nextInt(trial % 3 == 0 ? 3 : 40);
+            int margin = random.nextInt(6 * scale + 1);
+            int width = 2 * margin + size * scale + random.nextInt(9);
+            int rowBytes = (width + 7) / 8 + (trial % 7 == 0 ? 1 : 0);
+            int moduleY = random.nextInt(size + 4) - 2;
+            byte[] expected = new byte[rowBytes + 5];
+            byte[] actual = new byte[rowBytes + 5];
+            Arrays.fill(expected, (byte) 0x5A);
+            Arrays.fill(actual, (byte) 0x5A);
+            scalar.expandRow(matrix, moduleY, expected, 3, rowBytes, scale, margin);
+            vector.expandRow(matrix, moduleY, actual, 3, rowBytes, scale, margin);
+            assertArrayEquals(expected, actual, "size " + size + ", scale " + scale + ", margin " + margin
+                    + ", row bytes " + rowBytes + ", module row " + moduleY);
+        }
+    }
+
+    /**
+     * Renders real QR codes at several sizes with generators using either rasterizer and
+     * compares the encoded files.
+     */
+    @Test
+    public void renderedOutputsMatchScalar() {
+        System.setProperty("qr.rasterizer", "scalar");
+        QRCodeGenerator scalarGenerator = new QRCodeGenerator();
+        System.setProperty("qr.rasterizer", "vector");
+        QRCodeGenerator vectorGenerator = new QRCodeGenerator();
+        List<QROutput> outputs = List.of(QROutput.png(1), QROutput.png(3), QROutput.png(13), QROutput.png(24),
+                QROutput.matrix());
+        for (int i = 0; i < 40; i++) {
+            String payload = "College Student|ID:STU" + i + "|Name:" + "x".repeat(4 * i);
+            QRMatrix matrix = scalarGenerator.encode(payload);
+            for (QROutput output : outputs) {
+                assertArrayEquals(scalarGenerator.render(matrix, output), vectorGenerator.render(matrix, output),
+                        payload + " as " + output);
+            }
+            assertArrayEquals(scalarGenerator.toPngBytes(matrix), vectorGenerator.toPngBytes(matrix), payload);
+        }
+    }
+
+    /**
+     * Creates a matrix of random modules.
+     *
+     * @param random The source of the modules.
+     * @param size The number of modules per side.
+     * @return The matrix.
+     */
+    private static QRMatrix randomMatrix(Random random, int size) {
+        QRMatrix matrix = new QRMatrix(size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                matrix.set(x, y, random.nextBoolean());
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Creates the rasterizer a generator would pick with the {@code qr.rasterizer}
+     * property set to a value.
+     *
+     * @param name The property value.
+     * @return The rasterizer.
+     */
+    private static ModuleRowRasterizer configuredRasterizer(String name) {
+        System.setProperty("qr.rasterizer", name);
+        return QRCodeGenerator.createConfiguredRasterizer();
+    }
+}